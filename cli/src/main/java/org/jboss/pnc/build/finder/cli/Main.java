@@ -121,6 +121,18 @@ public final class Main implements Callable<Void> {
             converter = FilenameConverter.class)
     private List<String> archiveTypes = ConfigDefaults.ARCHIVE_TYPES;
 
+    @Option(
+            names = "--analyzer-num-threads",
+            paramLabel = "INT",
+            description = "Set number of threads used to analyze files.")
+    private Integer analyzerNumThreads = ConfigDefaults.ANALYZER_NUM_THREADS;
+
+    @Option(
+            names = "--archive-memory-threshold",
+            paramLabel = "LONG",
+            description = "Set maximum size in bytes of nested archives to read in memory.")
+    private Long archiveMemoryThreshold = ConfigDefaults.ARCHIVE_MEMORY_THRESHOLD;
+
     @Option(
             names = { "-b", "--build-system" },
             paramLabel = "BUILD_SYSTEM",
@@ -139,6 +151,9 @@ public final class Main implements Callable<Void> {
     @Option(names = "--disable-cache", description = "Disable local cache.")
     private Boolean disableCache = ConfigDefaults.DISABLE_CACHE;
 
+    @Option(names = "--disable-native-zip", description = "Disable native zip and tar archive reading.")
+    private Boolean disableNativeZip = ConfigDefaults.DISABLE_NATIVE_ZIP;
+
     @Option(names = "--disable-recursion", description = "Disable recursion.")
     private Boolean disableRecursion = ConfigDefaults.DISABLE_RECURSION;
 
@@ -152,9 +167,21 @@ public final class Main implements Callable<Void> {
     @Option(names = { "-k", "--checksum-only" }, description = "Only checksum files and do not find builds.")
     private Boolean checksumOnly = ConfigDefaults.CHECKSUM_ONLY;
 
+    @Option(
+            names = "--koji-hedge-percentile",
+            paramLabel = "INT",
+            description = "Set latency percentile after which a Koji chunk is requested again (0 to disable).")
+    private Integer kojiHedgePercentile = ConfigDefaults.KOJI_HEDGE_PERCENTILE;
+
     @Option(names = "--koji-hub-url", paramLabel = "URL", description = "Set Koji hub URL.")
     private URL kojiHubURL = ConfigDefaults.KOJI_HUB_URL;
 
+    @Option(
+            names = "--koji-max-in-flight-chunks",
+            paramLabel = "INT",
+            description = "Set maximum number of Koji multicall chunks in flight (defaults to Koji num threads).")
+    private Integer kojiMaxInFlightChunks;
+
     @Option(names = "--koji-multicall-size", paramLabel = "INT", description = "Set Koji multicall size.")
     private Integer kojiMulticallSize = ConfigDefaults.KOJI_MULTICALL_SIZE;
 
@@ -211,6 +238,9 @@ public final class Main implements Callable<Void> {
     @Option(names = "--use-checksums-file", description = "Use checksums file.")
     private Boolean useChecksumsFile = ConfigDefaults.USE_CHECKSUMS_FILE;
 
+    @Option(names = "--verify", description = "Verify cached checksums of input files by reading them in full.")
+    private Boolean verify = ConfigDefaults.VERIFY;
+
     @Option(
             names = { "-x", "--exclude" },
             paramLabel = "PATTERN",
@@ -312,6 +342,14 @@ public final class Main implements Callable<Void> {
             writeConfiguration(configFile, config);
         }
 
+        if (commandSpec.commandLine().getParseResult().hasMatchedOption("--analyzer-num-threads")) {
+            config.setAnalyzerNumThreads(analyzerNumThreads);
+        }
+
+        if (commandSpec.commandLine().getParseResult().hasMatchedOption("--archive-memory-threshold")) {
+            config.setArchiveMemoryThreshold(archiveMemoryThreshold);
+        }
+
         if (commandSpec.commandLine().getParseResult().hasMatchedOption("-b")) {
             config.setBuildSystems(buildSystems);
             LOGGER.info("Using build systems: {}", green(buildSystems));
@@ -333,6 +371,10 @@ public final class Main implements Callable<Void> {
                     green(config.getCacheLifespan()));
         }
 
+        if (commandSpec.commandLine().getParseResult().hasMatchedOption("--disable-native-zip")) {
+            config.setDisableNativeZip(disableNativeZip);
+        }
+
         if (commandSpec.commandLine().getParseResult().hasMatchedOption("--disable-recursion")) {
             config.setDisableRecursion(disableRecursion);
         }
@@ -357,10 +399,18 @@ public final class Main implements Callable<Void> {
             config.setExcludes(excludes);
         }
 
+        if (commandSpec.commandLine().getParseResult().hasMatchedOption("--koji-hedge-percentile")) {
+            config.setKojiHedgePercentile(kojiHedgePercentile);
+        }
+
         if (commandSpec.commandLine().getParseResult().hasMatchedOption("--koji-hub-url")) {
             config.setKojiHubURL(kojiHubURL);
         }
 
+        if (commandSpec.commandLine().getParseResult().hasMatchedOption("--koji-max-in-flight-chunks")) {
+            config.setKojiMaxInFlightChunks(kojiMaxInFlightChunks);
+        }
+
         if (commandSpec.commandLine().getParseResult().hasMatchedOption("--koji-multicall-size")) {
             config.setKojiMulticallSize(kojiMulticallSize);
         }
@@ -413,6 +463,10 @@ public final class Main implements Callable<Void> {
             config.setUseChecksumsFile(useChecksumsFile);
         }
 
+        if (commandSpec.commandLine().getParseResult().hasMatchedOption("--verify")) {
+            config.setVerify(verify);
+        }
+
         if (commandSpec.commandLine().getParseResult().hasMatchedOption("-o")) {
             config.setOutputDirectory(outputDirectory.toString());
             LOGGER.info("Output will be stored in directory: {}", green(outputDirectory));
@@ -451,6 +505,8 @@ public final class Main implements Callable<Void> {
 
         for (ChecksumType checksumType : checksumTypes) {
             cacheManager.defineConfiguration("files-" + checksumType, configuration);
+            cacheManager.defineConfiguration("entries-" + checksumType, configuration);
+            cacheManager.defineConfiguration("fingerprints-" + checksumType, configuration);
             cacheManager.defineConfiguration("checksums-" + checksumType, configuration);
             cacheManager.defineConfiguration("checksums-pnc-" + checksumType, configuration);
             cacheManager.defineConfiguration("rpms-" + checksumType, configuration);
@@ -606,7 +662,9 @@ public final class Main implements Callable<Void> {
                 pool = Executors.newSingleThreadExecutor();
 
                 DistributionAnalyzer analyzer = new DistributionAnalyzer(files, config, cacheManager);
-                Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool.submit(analyzer);
+                // Nothing receives the checksums from the channel, so only compute them
+                Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool
+                        .submit(analyzer::checksumFiles);
 
                 try {
                     checksums = futureChecksum.get();
@@ -746,7 +804,6 @@ public final class Main implements Callable<Void> {
                 finderPool = Executors.newSingleThreadExecutor();
 
                 DistributionAnalyzer analyzer = new DistributionAnalyzer(files, config, cacheManager);
-                Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool.submit(analyzer);
 
                 boolean isKerberos = krbService != null && krbPrincipal != null && krbPassword != null
                         || krbCCache != null || krbKeytab != null;
@@ -776,6 +833,11 @@ public final class Main implements Callable<Void> {
 
                     finder.setOutputDirectory(outputDirectory);
 
+                    // The finder restricts the files checksummed to the Koji archive extensions, so it is created first
+                    Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool.submit(analyzer);
+                    // The finder must receive the checksums while they are sent, or the analyzer waits forever
+                    Future<Map<BuildSystemInteger, KojiBuild>> futureBuilds = finderPool.submit(finder);
+
                     try {
                         checksums = futureChecksum.get();
                     } catch (ExecutionException e) {
@@ -804,8 +866,6 @@ public final class Main implements Callable<Void> {
                         LOGGER.warn("The list of checksums is empty");
                     }
 
-                    Future<Map<BuildSystemInteger, KojiBuild>> futureBuilds = finderPool.submit(finder);
-
                     try {
                         builds = futureBuilds.get();
                     } catch (ExecutionException e) {
@@ -36,9 +36,15 @@ public class BuildConfig {
             .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
             .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
 
+    @JsonAlias("analyzer-num-threads")
+    private Integer analyzerNumThreads;
+
     @JsonAlias("archive-extensions")
     private List<String> archiveExtensions;
 
+    @JsonAlias("archive-memory-threshold")
+    private Long archiveMemoryThreshold;
+
     @JsonAlias("archive-types")
     private List<String> archiveTypes;
 
@@ -60,14 +66,23 @@ public class BuildConfig {
     @JsonAlias("disable-cache")
     private Boolean disableCache;
 
+    @JsonAlias("disable-native-zip")
+    private Boolean disableNativeZip;
+
     @JsonAlias("disable-recursion")
     private Boolean disableRecursion;
 
     private List<Pattern> excludes;
 
+    @JsonAlias("koji-hedge-percentile")
+    private Integer kojiHedgePercentile;
+
     @JsonAlias("koji-hub-url")
     private URL kojiHubURL;
 
+    @JsonAlias("koji-max-in-flight-chunks")
+    private Integer kojiMaxInFlightChunks;
+
     @JsonAlias("koji-multicall-size")
     private Integer kojiMulticallSize;
 
@@ -95,6 +110,8 @@ public class BuildConfig {
     @JsonAlias("use-checksums-file")
     private Boolean useChecksumsFile;
 
+    private Boolean verify;
+
     public static BuildConfig load(Path path) throws IOException {
         return MAPPER.readValue(path.toFile(), BuildConfig.class);
     }
@@ -149,6 +166,18 @@ public class BuildConfig {
         JSONUtils.dumpObjectToFile(this, path, MAPPER);
     }
 
+    public Integer getAnalyzerNumThreads() {
+        if (analyzerNumThreads == null) {
+            analyzerNumThreads = ConfigDefaults.ANALYZER_NUM_THREADS;
+        }
+
+        return analyzerNumThreads;
+    }
+
+    public void setAnalyzerNumThreads(Integer analyzerNumThreads) {
+        this.analyzerNumThreads = analyzerNumThreads;
+    }
+
     public List<String> getArchiveExtensions() {
         if (archiveExtensions == null) {
             archiveExtensions = ConfigDefaults.ARCHIVE_EXTENSIONS;
@@ -161,6 +190,18 @@ public class BuildConfig {
         this.archiveExtensions = archiveExtensions;
     }
 
+    public Long getArchiveMemoryThreshold() {
+        if (archiveMemoryThreshold == null) {
+            archiveMemoryThreshold = ConfigDefaults.ARCHIVE_MEMORY_THRESHOLD;
+        }
+
+        return archiveMemoryThreshold;
+    }
+
+    public void setArchiveMemoryThreshold(Long archiveMemoryThreshold) {
+        this.archiveMemoryThreshold = archiveMemoryThreshold;
+    }
+
     public List<String> getArchiveTypes() {
         if (archiveTypes == null) {
             archiveTypes = ConfigDefaults.ARCHIVE_TYPES;
@@ -233,6 +274,18 @@ public class BuildConfig {
         this.disableCache = disableCache;
     }
 
+    public Boolean getDisableNativeZip() {
+        if (disableNativeZip == null) {
+            disableNativeZip = ConfigDefaults.DISABLE_NATIVE_ZIP;
+        }
+
+        return disableNativeZip;
+    }
+
+    public void setDisableNativeZip(Boolean disableNativeZip) {
+        this.disableNativeZip = disableNativeZip;
+    }
+
     public Boolean getDisableRecursion() {
         if (disableRecursion == null) {
             disableRecursion = ConfigDefaults.DISABLE_RECURSION;
@@ -257,6 +310,18 @@ public class BuildConfig {
         this.excludes = excludes;
     }
 
+    public int getKojiHedgePercentile() {
+        if (kojiHedgePercentile == null) {
+            kojiHedgePercentile = ConfigDefaults.KOJI_HEDGE_PERCENTILE;
+        }
+
+        return kojiHedgePercentile;
+    }
+
+    public void setKojiHedgePercentile(Integer kojiHedgePercentile) {
+        this.kojiHedgePercentile = kojiHedgePercentile;
+    }
+
     public URL getKojiHubURL() {
         if (kojiHubURL == null) {
             kojiHubURL = ConfigDefaults.KOJI_HUB_URL;
@@ -269,6 +334,18 @@ public class BuildConfig {
         this.kojiHubURL = kojiHubURL;
     }
 
+    public int getKojiMaxInFlightChunks() {
+        if (kojiMaxInFlightChunks == null) {
+            kojiMaxInFlightChunks = getKojiNumThreads();
+        }
+
+        return kojiMaxInFlightChunks;
+    }
+
+    public void setKojiMaxInFlightChunks(Integer kojiMaxInFlightChunks) {
+        this.kojiMaxInFlightChunks = kojiMaxInFlightChunks;
+    }
+
     public int getKojiMulticallSize() {
         if (kojiMulticallSize == null) {
             kojiMulticallSize = ConfigDefaults.KOJI_MULTICALL_SIZE;
@@ -377,19 +454,36 @@ public class BuildConfig {
         this.useChecksumsFile = useChecksumsFile;
     }
 
+    public Boolean getVerify() {
+        if (verify == null) {
+            verify = ConfigDefaults.VERIFY;
+        }
+
+        return verify;
+    }
+
+    public void setVerify(Boolean verify) {
+        this.verify = verify;
+    }
+
     public static <T> T convertValue(Object fromValue, Class<T> toValueType) {
         return MAPPER.convertValue(fromValue, toValueType);
     }
 
     @Override
     public String toString() {
-        return "BuildConfig{" + "archiveExtensions=" + archiveExtensions + ", archiveTypes=" + archiveTypes
-                + ", buildSystems=" + buildSystems + ", cacheLifespan=" + cacheLifespan + ", cacheMaxIdle="
-                + cacheMaxIdle + ", checksumOnly=" + checksumOnly + ", checksumTypes=" + checksumTypes
-                + ", disableCache=" + disableCache + ", disableRecursion=" + disableRecursion + ", excludes=" + excludes
-                + ", kojiHubURL=" + kojiHubURL + ", kojiMulticallSize=" + kojiMulticallSize + ", kojiNumThreads="
+        return "BuildConfig{" + "analyzerNumThreads=" + analyzerNumThreads + ", archiveExtensions="
+                + archiveExtensions + ", archiveMemoryThreshold=" + archiveMemoryThreshold + ", archiveTypes="
+                + archiveTypes + ", buildSystems=" + buildSystems
+                + ", cacheLifespan=" + cacheLifespan + ", cacheMaxIdle=" + cacheMaxIdle + ", checksumOnly="
+                + checksumOnly + ", checksumTypes=" + checksumTypes + ", disableCache=" + disableCache
+                + ", disableNativeZip=" + disableNativeZip + ", disableRecursion=" + disableRecursion + ", excludes="
+                + excludes
+                + ", kojiHedgePercentile=" + kojiHedgePercentile + ", kojiHubURL=" + kojiHubURL
+                + ", kojiMaxInFlightChunks=" + kojiMaxInFlightChunks
+                + ", kojiMulticallSize=" + kojiMulticallSize + ", kojiNumThreads="
                 + kojiNumThreads + ", kojiWebURL=" + kojiWebURL + ", outputDirectory='" + outputDirectory + '\''
                 + ", pncPartitionSize=" + pncPartitionSize + ", pncURL=" + pncURL + ", useBuildsFile=" + useBuildsFile
-                + ", useChecksumsFile=" + useChecksumsFile + '}';
+                + ", useChecksumsFile=" + useChecksumsFile + ", verify=" + verify + '}';
     }
 }
@@ -26,11 +26,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,15 +42,23 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -69,7 +79,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.redhat.red.build.koji.KojiClientException;
 import com.redhat.red.build.koji.model.xmlrpc.KojiArchiveInfo;
 import com.redhat.red.build.koji.model.xmlrpc.KojiArchiveQuery;
@@ -90,8 +99,6 @@ public class BuildFinder
 
     private static final String CHECKSUMS_FILENAME_BASENAME = "checksums-";
 
-    private static final int CHECKSUMS_SIZE = 18130;
-
     private static final int ALL_BUILDS_SIZE = 2048;
 
     private static final int BUILDS_SIZE = 1330;
@@ -106,6 +113,21 @@ public class BuildFinder
 
     private static final long RETRY_MAX_WAIT_SECONDS = 60L;
 
+    private static final String LIST_ARCHIVES = "listArchives";
+
+    // Listing the archives of a build returns many more of them than looking up a checksum, so it is limited on its own
+    private static final String LIST_BUILD_ARCHIVES = "listArchives(buildId)";
+
+    private static final String GET_BUILD = "getBuild";
+
+    private static final String LIST_TAGS = "listTags";
+
+    private static final String GET_TASK_INFO = "getTaskInfo";
+
+    private static final String GET_RPM = "getRPM";
+
+    private static final String LIST_BUILD_RPMS = "listBuildRPMs";
+
     private final ClientSession session;
 
     private final BuildConfig config;
@@ -138,6 +160,18 @@ public class BuildFinder
 
     private final BuildFinderUtils buildFinderUtils;
 
+    private final KojiBuildMemo buildMemo;
+
+    private final Map<String, KojiCallLimit> callLimits;
+
+    private final LocalArchiveIndex archiveIndex;
+
+    private final KojiLatencies archiveLatencies;
+
+    private final LongAdder hedgedChunks;
+
+    private final LongAdder hedgeWins;
+
     private BuildFinderListener listener;
 
     public BuildFinder(ClientSession session, BuildConfig config) {
@@ -171,6 +205,12 @@ public class BuildFinder
         this.allKojiBuilds = new HashMap<>(); // FIXME
         this.buildFinderUtils = new BuildFinderUtils(config, analyzer, session);
         this.pncBuildFinder = new PncBuildFinder(pncclient, buildFinderUtils, config);
+        this.buildMemo = new KojiBuildMemo();
+        this.callLimits = new ConcurrentHashMap<>();
+        this.archiveIndex = new LocalArchiveIndex();
+        this.archiveLatencies = new KojiLatencies();
+        this.hedgedChunks = new LongAdder();
+        this.hedgeWins = new LongAdder();
 
         if (cacheManager != null) {
             this.buildCache = cacheManager.getCache("builds");
@@ -207,17 +247,30 @@ public class BuildFinder
     }
 
     private void addArchiveWithoutBuild(Checksum checksum, Collection<String> filenames) {
-        KojiBuild buildZero = builds.get(new BuildSystemInteger(0, BuildSystem.none));
-        buildFinderUtils.addArchiveWithoutBuild(buildZero, checksum, filenames);
+        addRpmWithoutBuild(checksum, filenames, null);
     }
 
     private void addRpmWithoutBuild(Checksum checksum, Collection<String> filenames, KojiRpmInfo rpm) {
         KojiBuild buildZero = builds.get(new BuildSystemInteger(0, BuildSystem.none));
-        buildFinderUtils.addArchiveWithoutBuild(buildZero, checksum, filenames, rpm);
+        KojiLocalArchive existingArchive = archiveIndex.getNotFound(checksum).orElse(null);
+        archiveIndex.addNotFound(
+                buildFinderUtils.addArchiveWithoutBuild(buildZero, existingArchive, checksum, filenames, rpm));
     }
 
     private void addArchiveToBuild(KojiBuild build, KojiArchiveInfo archive, Collection<String> filenames) {
-        buildFinderUtils.addArchiveToBuild(build, archive, filenames);
+        archiveIndex.add(buildFinderUtils.addArchiveToBuild(build, archive, filenames));
+    }
+
+    private void putBuild(BuildSystemInteger id, KojiBuild build) {
+        KojiBuild replacedBuild = builds.put(id, build);
+
+        if (replacedBuild != build) {
+            if (replacedBuild != null) {
+                replacedBuild.getArchives().forEach(archiveIndex::remove);
+            }
+
+            build.getArchives().forEach(archiveIndex::add);
+        }
     }
 
     private void addRpmToBuild(KojiBuild build, KojiRpmInfo rpm, Collection<String> filenames) {
@@ -245,6 +298,7 @@ public class BuildFinder
             KojiLocalArchive existingArchive = matchingArchive.get();
 
             existingArchive.getFilenames().addAll(filenames);
+            archiveIndex.add(existingArchive);
         } else {
             LOGGER.debug(
                     "Adding new rpm id {} to build id {} with filenames {}",
@@ -253,13 +307,13 @@ public class BuildFinder
                     filenames);
 
             List<KojiLocalArchive> buildArchives = build.getArchives();
+            KojiLocalArchive localArchive = new KojiLocalArchive(
+                    rpm,
+                    filenames,
+                    analyzer != null ? analyzer.getFiles().get(filenames.iterator().next()) : Collections.emptySet());
 
-            buildArchives.add(
-                    new KojiLocalArchive(
-                            rpm,
-                            filenames,
-                            analyzer != null ? analyzer.getFiles().get(filenames.iterator().next())
-                                    : Collections.emptySet()));
+            buildArchives.add(localArchive);
+            archiveIndex.add(localArchive);
 
             buildArchives.sort(Comparator.comparing(a -> a.getArchive().getFilename()));
         }
@@ -291,7 +345,7 @@ public class BuildFinder
             }
         }
 
-        Future<List<KojiRpmInfo>> futureRpmInfos = pool.submit(() -> session.getRPM(rpmBuildIdsOrNames));
+        Future<List<KojiRpmInfo>> futureRpmInfos = callAsync(GET_RPM, rpmBuildIdsOrNames, session::getRPM, pool);
         List<KojiRpmInfo> rpmInfos = futureRpmInfos.get();
         // XXX: We can't use sorted()/distinct() here because it will cause the lists to not match up with the RPM
         // entries
@@ -301,9 +355,13 @@ public class BuildFinder
                 .filter(Objects::nonNull)
                 .map(KojiIdOrName::getFor)
                 .toList();
-        Future<List<KojiBuildInfo>> futureRpmBuildInfos = pool.submit(() -> session.getBuild(rpmBuildIds));
-        Future<List<List<KojiTagInfo>>> futureRpmTagInfos = pool.submit(() -> session.listTags(rpmBuildIds));
-        Future<List<List<KojiRpmInfo>>> futureRpmRpmInfos = pool.submit(() -> session.listBuildRPMs(rpmBuildIds));
+        Future<List<KojiBuildInfo>> futureRpmBuildInfos = callAsync(GET_BUILD, rpmBuildIds, session::getBuild, pool);
+        Future<List<List<KojiTagInfo>>> futureRpmTagInfos = callAsync(LIST_TAGS, rpmBuildIds, session::listTags, pool);
+        Future<List<List<KojiRpmInfo>>> futureRpmRpmInfos = callAsync(
+                LIST_BUILD_RPMS,
+                rpmBuildIds,
+                session::listBuildRPMs,
+                pool);
         List<KojiBuildInfo> rpmBuildInfos = futureRpmBuildInfos.get();
         List<Integer> taskIds = rpmBuildInfos.stream().map(KojiBuildInfo::getTaskId).filter(Objects::nonNull).toList();
         int taskIdsSize = taskIds.size();
@@ -311,10 +369,7 @@ public class BuildFinder
         Future<List<KojiTaskInfo>> futureRpmTaskInfos = null;
 
         if (taskIdsSize > 0) {
-            Boolean[] a = new Boolean[taskIdsSize];
-            Arrays.fill(a, Boolean.TRUE);
-            List<Boolean> requests = List.of(a);
-            futureRpmTaskInfos = pool.submit(() -> session.getTaskInfo(taskIds, requests));
+            futureRpmTaskInfos = callAsync(GET_TASK_INFO, taskIds, this::getTaskInfo, pool);
         } else {
             rpmTaskInfos = Collections.emptyList();
         }
@@ -426,7 +481,7 @@ public class BuildFinder
                 }
             }
 
-            builds.put(new BuildSystemInteger(id, BuildSystem.koji), build);
+            putBuild(new BuildSystemInteger(id, BuildSystem.koji), build);
         }
     }
 
@@ -563,26 +618,21 @@ public class BuildFinder
 
         LOGGER.debug("Parent of not found file: {}", parentFilename);
 
-        for (KojiBuild build : builds.values()) {
-            List<KojiLocalArchive> as = build.getArchives();
-            Optional<KojiLocalArchive> a = as.stream()
-                    .filter(ar -> ar.getFilenames().contains(parentFilename))
-                    .findFirst();
+        Optional<KojiLocalArchive> a = archiveIndex.getArchive(parentFilename);
 
-            if (a.isPresent()) {
-                KojiLocalArchive matchedArchive = a.get();
-                KojiArchiveInfo archive = matchedArchive.getArchive();
-                matchedArchive.getUnmatchedFilenames().add(filename);
+        if (a.isPresent()) {
+            KojiLocalArchive matchedArchive = a.get();
+            KojiArchiveInfo archive = matchedArchive.getArchive();
+            matchedArchive.getUnmatchedFilenames().add(filename);
 
-                LOGGER.debug(
-                        "Archive {} ({}) contains not found file {} (built from source: {})",
-                        archive.getArchiveId(),
-                        archive.getFilename(),
-                        filename,
-                        matchedArchive.isBuiltFromSource());
+            LOGGER.debug(
+                    "Archive {} ({}) contains not found file {} (built from source: {})",
+                    archive.getArchiveId(),
+                    archive.getFilename(),
+                    filename,
+                    matchedArchive.isBuiltFromSource());
 
-                return Optional.of(parentFilename);
-            }
+            return Optional.of(parentFilename);
         }
 
         if (index == filename.length()) {
@@ -614,26 +664,21 @@ public class BuildFinder
 
         LOGGER.debug("Parent of found file: {}", parentFilename);
 
-        for (KojiBuild build : builds.values()) {
-            List<KojiLocalArchive> as = build.getArchives();
-            Optional<KojiLocalArchive> a = as.stream()
-                    .filter(ar -> ar.getFilenames().contains(parentFilename))
-                    .findFirst();
+        Optional<KojiLocalArchive> a = archiveIndex.getArchive(parentFilename);
 
-            if (a.isPresent()) {
-                KojiLocalArchive matchedArchive = a.get();
-                KojiArchiveInfo archive = matchedArchive.getArchive();
-                matchedArchive.getUnmatchedFilenames().remove(filename);
+        if (a.isPresent()) {
+            KojiLocalArchive matchedArchive = a.get();
+            KojiArchiveInfo archive = matchedArchive.getArchive();
+            matchedArchive.getUnmatchedFilenames().remove(filename);
 
-                LOGGER.debug(
-                        "Archive {} ({}) had not found file removed {} (built from source: {})",
-                        archive.getArchiveId(),
-                        archive.getFilename(),
-                        filename,
-                        matchedArchive.isBuiltFromSource());
+            LOGGER.debug(
+                    "Archive {} ({}) had not found file removed {} (built from source: {})",
+                    archive.getArchiveId(),
+                    archive.getFilename(),
+                    filename,
+                    matchedArchive.isBuiltFromSource());
 
-                return Optional.of(parentFilename);
-            }
+            return Optional.of(parentFilename);
         }
 
         if (index == filename.length()) {
@@ -657,12 +702,34 @@ public class BuildFinder
             return Collections.emptyMap();
         }
 
+        int numThreads = config.getKojiNumThreads();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+
+        LOGGER.debug("Using {} threads", green(numThreads));
+
+        try {
+            ArchiveLookup lookup = prepareLookup(checksumTable, false);
+            submitLookup(lookup, pool);
+            return resolveBuilds(lookup, pool);
+        } finally {
+            Utils.shutdownAndAwaitTermination(pool);
+        }
+    }
+
+    /**
+     * Prepares the lookup of the archives with the given checksums, which are not already cached.
+     *
+     * @param checksumTable the checksum table
+     * @param repass whether to look up the sha256 checksums of the files not found once the builds are resolved
+     * @return the lookup
+     */
+    private ArchiveLookup prepareLookup(Map<Checksum, Collection<String>> checksumTable, boolean repass) {
         Set<Entry<Checksum, Collection<String>>> entries = checksumTable.entrySet();
-        int numEntries = entries.size();
-        List<Entry<Checksum, Collection<String>>> checksums = new ArrayList<>(numEntries);
-        Collection<Entry<Checksum, Collection<String>>> cachedChecksums = new ArrayList<>(numEntries);
-        Collection<List<KojiArchiveInfo>> cachedArchiveInfos = new ArrayList<>(numEntries);
-        Collection<Entry<Checksum, Collection<String>>> rpmEntries = new ArrayList<>(numEntries);
+        ArchiveLookup lookup = new ArchiveLookup(checksumTable, repass);
+        List<Entry<Checksum, Collection<String>>> checksums = lookup.checksums;
+        Collection<Entry<Checksum, Collection<String>>> cachedChecksums = lookup.cachedChecksums;
+        Collection<List<KojiArchiveInfo>> cachedArchiveInfos = lookup.cachedArchiveInfos;
+        Collection<Entry<Checksum, Collection<String>>> rpmEntries = lookup.rpmEntries;
 
         /*
          * Determine whether the checksums to be found have been previously cached
@@ -714,47 +781,52 @@ public class BuildFinder
         }
 
         /*
-         * For any checksum that was not already in the cache, get a list of KojiArchiveInfo by submitting a list of
-         * KojiArchiveQuery with a checksum value to find.
+         * For any checksum that was not already in the cache, prepare a list of KojiArchiveQuery with a checksum value
+         * to find, in chunks of the multicall size.
          */
-        int numThreads = config.getKojiNumThreads();
-        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
-        int numChecksums = checksums.size();
-        List<List<KojiArchiveInfo>> archives = new ArrayList<>(numChecksums);
-        int chunkSize = config.getKojiMulticallSize();
-        List<List<Entry<Checksum, Collection<String>>>> chunks = ListUtils.partition(checksums, chunkSize);
-        int numChunks = chunks.size();
-        List<List<KojiArchiveQuery>> chunkQueries = new ArrayList<>(numChunks);
-
-        if (numChecksums > 0) {
-            LOGGER.info(
-                    "Looking up {} checksums in {} chunks of size {}",
-                    green(numChecksums),
-                    green(numChunks),
-                    green(chunkSize));
-            LOGGER.debug("Using {} threads", green(numThreads));
-
-            for (int i = 0; i < numChunks; i++) {
-                List<Entry<Checksum, Collection<String>>> chunk = chunks.get(i);
-                List<KojiArchiveQuery> queries = new ArrayList<>(chunk.size());
+        List<List<Entry<Checksum, Collection<String>>>> chunks = ListUtils
+                .partition(checksums, getCallLimit(LIST_ARCHIVES).getChunkSize());
 
-                for (Entry<Checksum, Collection<String>> entry : chunk) {
-                    Checksum checksum = entry.getKey();
-                    KojiArchiveQuery query = new KojiArchiveQuery().withChecksum(checksum.getValue());
+        for (List<Entry<Checksum, Collection<String>>> chunk : chunks) {
+            List<KojiArchiveQuery> queries = new ArrayList<>(chunk.size());
 
-                    LOGGER.debug("Adding query for checksum {}", checksum);
+            for (Entry<Checksum, Collection<String>> entry : chunk) {
+                Checksum checksum = entry.getKey();
+                KojiArchiveQuery query = new KojiArchiveQuery().withChecksum(checksum.getValue());
 
-                    queries.add(query);
-                }
+                LOGGER.debug("Adding query for checksum {}", checksum);
 
-                if (!queries.isEmpty()) {
-                    chunkQueries.add(queries);
-                }
+                queries.add(query);
             }
 
-            archives.addAll(queryArchivesWithRetry(chunkQueries, pool));
+            lookup.chunkQueries.add(queries);
         }
 
+        return lookup;
+    }
+
+    /**
+     * Resolves the builds of the archives found by the given lookup, waiting for the lookup to complete.
+     *
+     * @param lookup the lookup
+     * @param pool the pool the lookup was submitted to
+     * @return the map of builds
+     * @throws KojiClientException if an error occurs
+     */
+    private Map<BuildSystemInteger, KojiBuild> resolveBuilds(ArchiveLookup lookup, ExecutorService pool)
+            throws KojiClientException {
+        List<Entry<Checksum, Collection<String>>> checksums = lookup.checksums;
+        Collection<Entry<Checksum, Collection<String>>> cachedChecksums = lookup.cachedChecksums;
+        Collection<List<KojiArchiveInfo>> cachedArchiveInfos = lookup.cachedArchiveInfos;
+        Collection<Entry<Checksum, Collection<String>>> rpmEntries = lookup.rpmEntries;
+        List<List<KojiArchiveQuery>> chunkQueries = lookup.chunkQueries;
+        List<List<KojiArchiveInfo>> archives = new ArrayList<>(checksums.size());
+
+        /*
+         * For any checksum that was not already in the cache, get the list of KojiArchiveInfo found by the lookup.
+         */
+        archives.addAll(collectArchivesWithRetry(lookup.futures, chunkQueries, pool));
+
         List<KojiArchiveInfo> archivesToEnrich = archives.stream().flatMap(List::stream).toList();
 
         session.enrichArchiveTypeInfo(archivesToEnrich);
@@ -791,38 +863,13 @@ public class BuildFinder
 
         /*
          * Create a list of buildIds associated with all the KojiArchiveInfo found (either already in the cache or just
-         * queried)
+         * queried), and get their builds. The builds already loaded during this run are not loaded again, and the
+         * builds of the archives just queried have been requested as soon as the archives were found.
          */
-        Stream<Integer> archiveBuildIds = archives.stream().flatMap(List::stream).map(KojiArchiveInfo::getBuildId);
-        Stream<Integer> cachedBuildIds = cachedArchiveInfos.stream()
-                .flatMap(List::stream)
-                .map(KojiArchiveInfo::getBuildId);
-        List<Integer> buildIds = Stream.concat(archiveBuildIds, cachedBuildIds)
-                .sorted()
-                .distinct()
-                .collect(Collectors.toCollection(ArrayList::new));
-        int buildIdsSize = buildIds.size();
-
-        /*
-         * For any buildId in the list, remove the ones already present in the cache
-         */
-        if (cacheManager != null) {
-            Iterator<Integer> it = buildIds.iterator();
-
-            while (it.hasNext()) {
-                Integer id = it.next();
-                KojiBuild build = buildCache.get(id);
-
-                if (build != null) {
-                    LOGGER.debug(
-                            "Build with id {} and nvr {} has been previously cached",
-                            green(id),
-                            green(build.getBuildInfo().getNvr()));
-                    allKojiBuilds.put(id, build);
-                    it.remove();
-                }
-            }
-        }
+        Stream<KojiArchiveInfo> archiveInfos = Stream
+                .concat(archives.stream().flatMap(List::stream), cachedArchiveInfos.stream().flatMap(List::stream));
+        Map<Integer, CompletableFuture<KojiBuild>> futureBuilds = buildMemo
+                .get(getBuildIds(archiveInfos), ids -> loadBuilds(ids, pool));
 
         if (!rpmEntries.isEmpty()) {
             try {
@@ -837,105 +884,11 @@ public class BuildFinder
             }
         }
 
-        /*
-         * For any remaining buildId in the list (the ones not already in the cache): 1- find all the KojiBuildInfo by
-         * submitting a list of KojiArchiveQuery with a buildId. 2- find all the KojiTaskInfo associated with each
-         * build. 3- find all the KojiTagInfo associated with each build.
-         */
-        if (!buildIds.isEmpty()) {
-            List<KojiIdOrName> idsOrNames = buildIds.stream().map(KojiIdOrName::getFor).toList();
-            Future<List<KojiBuildInfo>> futureArchiveBuilds = pool.submit(() -> session.getBuild(idsOrNames));
-            Future<List<List<KojiTagInfo>>> futureTagInfos = pool.submit(() -> session.listTags(idsOrNames));
-            List<KojiArchiveQuery> queries = new ArrayList<>(buildIdsSize);
-
-            for (Integer buildId : buildIds) {
-                KojiArchiveQuery query = new KojiArchiveQuery().withBuildId(buildId);
-                queries.add(query);
-            }
-
-            Future<List<List<KojiArchiveInfo>>> futureArchiveInfos = pool.submit(() -> session.listArchives(queries));
-            List<KojiBuildInfo> archiveBuilds = awaitFuture(futureArchiveBuilds, pool, "getBuild");
-            List<Integer> taskIds = new ArrayList<>(archiveBuilds.size());
-
-            for (KojiBuildInfo archiveBuild : archiveBuilds) {
-                Integer taskId = archiveBuild.getTaskId();
-
-                if (taskId != null) {
-                    taskIds.add(taskId);
-                }
-            }
-
-            int taskIdsSize = taskIds.size();
-            Future<List<KojiTaskInfo>> futureTaskInfos = null;
-
-            if (taskIdsSize > 0) {
-                Boolean[] a = new Boolean[taskIdsSize];
-                Arrays.fill(a, Boolean.TRUE);
-                List<Boolean> requests = List.of(a);
-                futureTaskInfos = pool.submit(() -> session.getTaskInfo(taskIds, requests));
-            }
-
-            List<List<KojiTagInfo>> tagInfos = awaitFuture(futureTagInfos, pool, "listTags");
-            List<List<KojiArchiveInfo>> archiveInfos = awaitFuture(futureArchiveInfos, pool, "listArchives");
-            List<KojiTaskInfo> taskInfos = futureTaskInfos != null
-                    ? awaitFuture(futureTaskInfos, pool, "getTaskInfo")
-                    : Collections.emptyList();
-
-            Iterator<KojiBuildInfo> itbuilds = archiveBuilds.iterator();
-            Iterator<List<KojiTagInfo>> ittags = tagInfos.iterator();
-            Iterator<List<KojiArchiveInfo>> itArchiveInfos = archiveInfos.iterator();
-            Iterator<KojiTaskInfo> ittasks = taskInfos.iterator();
-
-            /*
-             * Link all the tags, archives, task found to the corresponding builds and add them to the cache
-             */
-            while (itbuilds.hasNext()) {
-                KojiBuildInfo buildInfo = itbuilds.next();
-                KojiBuild build = new KojiBuild(buildInfo);
-
-                build.setTags(ittags.next());
-                build.setRemoteArchives(itArchiveInfos.next());
-
-                if (build.getBuildInfo().getTaskId() != null) {
-                    build.setTaskInfo(ittasks.next());
-                }
-
-                Integer id = build.getBuildInfo().getId();
-
-                allKojiBuilds.put(id, build);
-
-                if (cacheManager != null) {
-                    KojiBuild cachedBuild = buildCache.put(id, build);
-
-                    if (cachedBuild != null) {
-                        LOGGER.warn("Build id {} was already cached, but this should never happen", red(id));
-                    }
-                }
-            }
-
-            /*
-             * Find the optional scmSourceZip, projectSourceZip and patchesZip and them to each archive
-             */
-            List<KojiArchiveInfo> archivesToUpdate = new ArrayList<>(3 * archiveBuilds.size());
-            Collection<KojiBuild> values = allKojiBuilds.values();
-
-            for (KojiBuild build : values) {
-                List<Optional<KojiArchiveInfo>> sources = Arrays
-                        .asList(build.getScmSourcesZip(), build.getProjectSourcesTgz(), build.getPatchesZip());
+        for (Entry<Integer, CompletableFuture<KojiBuild>> entry : futureBuilds.entrySet()) {
+            KojiBuild build = awaitFuture(entry.getValue(), pool, "getBuild");
 
-                for (Optional<KojiArchiveInfo> optional : sources) {
-                    if (optional.isPresent()) {
-                        KojiArchiveInfo source = optional.get();
-
-                        if (KojiLocalArchive.isMissingBuildTypeInfo(source)) {
-                            archivesToUpdate.add(source);
-                        }
-                    }
-                }
-            }
-
-            if (!archivesToUpdate.isEmpty()) {
-                session.enrichArchiveTypeInfo(archivesToUpdate);
+            if (build != null) {
+                allKojiBuilds.put(entry.getKey(), build);
             }
         }
 
@@ -1020,7 +973,7 @@ public class BuildFinder
                     build = allKojiBuilds.get(buildId);
 
                     if (build != null) {
-                        builds.put(buildSystemBuildId, build);
+                        putBuild(buildSystemBuildId, build);
 
                         if (LOGGER.isInfoEnabled()) {
                             LOGGER.info(
@@ -1087,6 +1040,7 @@ public class BuildFinder
                 if (optionalParentFilename.isPresent() && optionalParentFilename.get().contains(BANG_SLASH)) {
                     LOGGER.debug("Removing {} since we found a parent elsewhere", filename);
                     it2.remove();
+                    archiveIndex.removeFilename(localArchive, filename);
                 } else {
                     LOGGER.debug("Keeping {} since the parent is the distribution itself", filename);
                 }
@@ -1095,10 +1049,10 @@ public class BuildFinder
             if (filenames.isEmpty()) {
                 LOGGER.debug("Remove archive since filenames is empty");
                 it.remove();
+                archiveIndex.remove(localArchive);
             }
         }
 
-        Utils.shutdownAndAwaitTermination(pool);
         buildsList = new ArrayList<>(builds.values());
 
         buildsList.sort(Comparator.comparingInt(build -> build.getBuildInfo().getId()));
@@ -1108,6 +1062,205 @@ public class BuildFinder
         return Collections.unmodifiableMap(builds);
     }
 
+    private static List<Integer> getBuildIds(Stream<KojiArchiveInfo> archiveInfos) {
+        return archiveInfos.map(KojiArchiveInfo::getBuildId).sorted().distinct().toList();
+    }
+
+    /**
+     * Loads the builds with the given ids from the cache, or else from Koji. For any build not in the cache: 1- find
+     * all the KojiBuildInfo by submitting a list of KojiArchiveQuery with a buildId. 2- find all the KojiTaskInfo
+     * associated with each build. 3- find all the KojiTagInfo associated with each build. Nothing waits for the calls
+     * to Koji, which are chained on the given pool, so the builds may be loaded from a thread of the pool itself.
+     *
+     * @param ids the build ids
+     * @param pool the pool
+     * @return the builds by id
+     */
+    private CompletableFuture<Map<Integer, KojiBuild>> loadBuilds(List<Integer> ids, ExecutorService pool) {
+        Map<Integer, KojiBuild> loadedBuilds = new HashMap<>();
+        List<Integer> buildIds = new ArrayList<>(ids.size());
+
+        for (Integer id : ids) {
+            KojiBuild build = cacheManager != null ? buildCache.get(id) : null;
+
+            if (build != null) {
+                LOGGER.debug(
+                        "Build with id {} and nvr {} has been previously cached",
+                        green(id),
+                        green(build.getBuildInfo().getNvr()));
+                loadedBuilds.put(id, build);
+            } else {
+                buildIds.add(id);
+            }
+        }
+
+        if (buildIds.isEmpty()) {
+            return CompletableFuture.completedFuture(loadedBuilds);
+        }
+
+        List<KojiIdOrName> idsOrNames = buildIds.stream().map(KojiIdOrName::getFor).toList();
+        List<KojiArchiveQuery> queries = buildIds.stream()
+                .map(buildId -> new KojiArchiveQuery().withBuildId(buildId))
+                .toList();
+        CompletableFuture<List<KojiBuildInfo>> futureArchiveBuilds = callAsync(
+                GET_BUILD,
+                idsOrNames,
+                session::getBuild,
+                pool);
+        CompletableFuture<List<List<KojiTagInfo>>> futureTagInfos = callAsync(
+                LIST_TAGS,
+                idsOrNames,
+                session::listTags,
+                pool);
+        CompletableFuture<List<List<KojiArchiveInfo>>> futureArchiveInfos = callAsync(
+                LIST_BUILD_ARCHIVES,
+                queries,
+                session::listArchives,
+                pool);
+        CompletableFuture<List<KojiTaskInfo>> futureTaskInfos = futureArchiveBuilds.thenCompose(archiveBuilds -> {
+            List<Integer> taskIds = archiveBuilds.stream()
+                    .filter(Objects::nonNull)
+                    .map(KojiBuildInfo::getTaskId)
+                    .filter(Objects::nonNull)
+                    .toList();
+            return callAsync(GET_TASK_INFO, taskIds, this::getTaskInfo, pool);
+        });
+
+        return CompletableFuture.allOf(futureArchiveBuilds, futureTagInfos, futureArchiveInfos, futureTaskInfos)
+                .thenApplyAsync(ignored -> {
+                    Iterator<KojiBuildInfo> itbuilds = futureArchiveBuilds.join().iterator();
+                    Iterator<List<KojiTagInfo>> ittags = futureTagInfos.join().iterator();
+                    Iterator<List<KojiArchiveInfo>> itArchiveInfos = futureArchiveInfos.join().iterator();
+                    Iterator<KojiTaskInfo> ittasks = futureTaskInfos.join().iterator();
+
+                    /*
+                     * Link all the tags, archives, task found to the corresponding builds and add them to the cache
+                     */
+                    while (itbuilds.hasNext()) {
+                        KojiBuildInfo buildInfo = itbuilds.next();
+                        List<KojiTagInfo> tags = ittags.next();
+                        List<KojiArchiveInfo> remoteArchives = itArchiveInfos.next();
+
+                        if (buildInfo == null) {
+                            continue;
+                        }
+
+                        KojiBuild build = new KojiBuild(buildInfo);
+
+                        build.setTags(tags);
+                        build.setRemoteArchives(remoteArchives);
+
+                        if (build.getBuildInfo().getTaskId() != null) {
+                            build.setTaskInfo(ittasks.next());
+                        }
+
+                        Integer id = build.getBuildInfo().getId();
+
+                        loadedBuilds.put(id, build);
+
+                        if (cacheManager != null) {
+                            KojiBuild cachedBuild = buildCache.put(id, build);
+
+                            if (cachedBuild != null) {
+                                LOGGER.warn("Build id {} was already cached, but this should never happen", red(id));
+                            }
+                        }
+                    }
+
+                    enrichSources(loadedBuilds.values());
+
+                    return loadedBuilds;
+                }, pool);
+    }
+
+    /**
+     * Find the optional scmSourceZip, projectSourceZip and patchesZip of the given builds and add the type info to
+     * each archive.
+     *
+     * @param builds the builds
+     */
+    private void enrichSources(Collection<KojiBuild> builds) {
+        List<KojiArchiveInfo> archivesToUpdate = new ArrayList<>(3 * builds.size());
+
+        for (KojiBuild build : builds) {
+            List<Optional<KojiArchiveInfo>> sources = Arrays
+                    .asList(build.getScmSourcesZip(), build.getProjectSourcesTgz(), build.getPatchesZip());
+
+            for (Optional<KojiArchiveInfo> optional : sources) {
+                if (optional.isPresent()) {
+                    KojiArchiveInfo source = optional.get();
+
+                    if (KojiLocalArchive.isMissingBuildTypeInfo(source)) {
+                        archivesToUpdate.add(source);
+                    }
+                }
+            }
+        }
+
+        if (!archivesToUpdate.isEmpty()) {
+            try {
+                session.enrichArchiveTypeInfo(archivesToUpdate);
+            } catch (KojiClientException e) {
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Callable<T> callable, ExecutorService pool) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return callable.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+
+    private List<KojiTaskInfo> getTaskInfo(List<Integer> taskIds) throws KojiClientException {
+        return session.getTaskInfo(taskIds, Collections.nCopies(taskIds.size(), Boolean.TRUE));
+    }
+
+    /**
+     * Gets the limit of the calls of the given Koji method.
+     *
+     * @param method the Koji method
+     * @return the limit
+     */
+    private KojiCallLimit getCallLimit(String method) {
+        return callLimits.computeIfAbsent(
+                method,
+                key -> new KojiCallLimit(key, config.getKojiNumThreads(), config.getKojiMulticallSize()));
+    }
+
+    /**
+     * Calls the given Koji method on the given pool, splitting the given parameters into multicalls of the size
+     * currently allowed for the method, and concatenating their results in order.
+     *
+     * @param method the Koji method
+     * @param params the parameters, one per request
+     * @param multicall the multicall
+     * @param pool the pool
+     * @param <T> the type of the parameters
+     * @param <R> the type of the results
+     * @return the results, one per request
+     */
+    private <T, R> CompletableFuture<List<R>> callAsync(
+            String method,
+            List<T> params,
+            KojiMulticall<T, R> multicall,
+            ExecutorService pool) {
+        KojiCallLimit limit = getCallLimit(method);
+        List<List<T>> chunks = ListUtils.partition(params, limit.getChunkSize());
+        List<CompletableFuture<List<R>>> futures = new ArrayList<>(chunks.size());
+
+        for (List<T> chunk : chunks) {
+            futures.add(supplyAsync(() -> limit.call(chunk.size(), () -> multicall.call(chunk)), pool));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().flatMap(future -> future.join().stream()).toList());
+    }
+
     private <T> T awaitFuture(Future<T> future, ExecutorService pool, String context) throws KojiClientException {
         try {
             return future.get();
@@ -1121,58 +1274,98 @@ public class BuildFinder
         }
     }
 
-    private List<List<KojiArchiveInfo>> queryArchivesWithRetry(
-            List<List<KojiArchiveQuery>> chunkQueries,
-            ExecutorService pool) throws KojiClientException {
+    /**
+     * Submits the chunks of the given lookup to the given pool, so that they are looked up in the background.
+     *
+     * @param lookup the lookup
+     * @param pool the pool
+     */
+    private void submitLookup(ArchiveLookup lookup, ExecutorService pool) {
+        List<List<KojiArchiveQuery>> chunkQueries = lookup.chunkQueries;
         int numChunks = chunkQueries.size();
-        List<Future<List<List<KojiArchiveInfo>>>> futures = new ArrayList<>(numChunks);
+
+        if (numChunks == 0) {
+            return;
+        }
+
+        LOGGER.info(
+                "Looking up {} checksums in {} chunks of size {}",
+                green(lookup.checksums.size()),
+                green(numChunks),
+                green(chunkQueries.get(0).size()));
 
         for (int i = 0; i < numChunks; i++) {
             int chunkNumber = i + 1;
             List<KojiArchiveQuery> queries = chunkQueries.get(i);
-            futures.add(pool.submit(() -> {
-                LOGGER.debug("Looking up checksums for chunk {}/{}", green(chunkNumber), green(numChunks));
-                return session.listArchives(queries);
+            LOGGER.debug("Looking up checksums for chunk {}/{}", green(chunkNumber), green(numChunks));
+            lookup.futures.add(new HedgedChunk(queries, pool).submit().thenApply(archives -> {
+                // Start loading the builds of the archives found while the other chunks are still being looked up
+                buildMemo.get(getBuildIds(archives.stream().flatMap(List::stream)), ids -> loadBuilds(ids, pool));
+                return archives;
             }));
         }
+    }
 
-        List<List<KojiArchiveInfo>> archives = new ArrayList<>(numChunks);
+    /**
+     * Collects the archives of the given chunks in the order the chunks complete, so that a slow chunk does not hold up
+     * the chunks after it. A chunk which fails is looked up again after a backoff, while the other chunks are being
+     * collected.
+     *
+     * @param futures the futures of the chunks
+     * @param chunkQueries the queries of the chunks
+     * @param pool the pool the chunks were submitted to
+     * @return the archives of all the chunks, in the order of their queries
+     * @throws KojiClientException if a chunk still fails after the maximum number of attempts
+     */
+    private List<List<KojiArchiveInfo>> collectArchivesWithRetry(
+            List<CompletableFuture<List<List<KojiArchiveInfo>>>> futures,
+            List<List<KojiArchiveQuery>> chunkQueries,
+            ExecutorService pool) throws KojiClientException {
+        int numChunks = chunkQueries.size();
+        List<CompletableFuture<List<List<KojiArchiveInfo>>>> attempts = new ArrayList<>(futures);
+        List<List<List<KojiArchiveInfo>>> results = new ArrayList<>(Collections.nCopies(numChunks, null));
+        int[] numAttempts = new int[numChunks];
+        BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
 
         for (int i = 0; i < numChunks; i++) {
-            archives.addAll(collectChunkResult(futures.get(i), chunkQueries.get(i), i + 1, numChunks, pool));
-            LOGGER.info("Completed chunk {}/{}", green(i + 1), green(numChunks));
+            int index = i;
+            numAttempts[i] = 1;
+            attempts.get(i).whenComplete((archives, t) -> completed.add(index));
         }
 
-        return archives;
-    }
+        try {
+            for (int numCompleted = 0; numCompleted < numChunks;) {
+                int index = completed.take();
+                int chunkNumber = index + 1;
 
-    private List<List<KojiArchiveInfo>> collectChunkResult(
-            Future<List<List<KojiArchiveInfo>>> initialFuture,
-            List<KojiArchiveQuery> queries,
-            int chunkNumber,
-            int numChunks,
-            ExecutorService pool) throws KojiClientException {
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                Future<List<List<KojiArchiveInfo>>> future = attempt == 1
-                        ? initialFuture
-                        : pool.submit(() -> session.listArchives(queries));
-                return future.get();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                Utils.shutdownAndAwaitTermination(pool);
-                LOGGER.error("Koji archive thread interrupted: {}", boldRed(getAllErrorMessages(e)));
-                LOGGER.debug("Error", e);
-                throw new KojiClientException("Koji archive thread interrupted", e);
-            } catch (ExecutionException e) {
-                String checksumValues = queries.stream()
-                        .map(KojiArchiveQuery::getChecksum)
-                        .collect(Collectors.joining(", "));
+                try {
+                    results.set(index, attempts.get(index).get());
+                    numCompleted++;
+                    LOGGER.info("Completed chunk {}/{}", green(chunkNumber), green(numChunks));
+                } catch (ExecutionException e) {
+                    List<KojiArchiveQuery> queries = chunkQueries.get(index);
+                    String checksumValues = queries.stream()
+                            .map(KojiArchiveQuery::getChecksum)
+                            .collect(Collectors.joining(", "));
+                    int attempt = numAttempts[index];
+
+                    if (attempt >= MAX_RETRIES) {
+                        LOGGER.error(
+                                "Chunk {}/{} failed after {} attempts: {}. Checksums: [{}]",
+                                boldRed(chunkNumber),
+                                boldRed(numChunks),
+                                boldRed(MAX_RETRIES),
+                                boldRed(getAllErrorMessages(e)),
+                                checksumValues);
+                        LOGGER.debug("Error", e);
 
-                if (attempt < MAX_RETRIES) {
-                    long waitSeconds = Math.min(
-                            RETRY_INITIAL_WAIT_SECONDS << (attempt - 1),
-                            RETRY_MAX_WAIT_SECONDS);
+                        Utils.shutdownAndAwaitTermination(pool);
+                        throw new KojiClientException(
+                                "Error getting Koji archives for chunk " + chunkNumber + "/" + numChunks,
+                                e);
+                    }
+
+                    long waitSeconds = Math.min(RETRY_INITIAL_WAIT_SECONDS << (attempt - 1), RETRY_MAX_WAIT_SECONDS);
 
                     LOGGER.warn(
                             "Chunk {}/{} failed (attempt {}/{}): {}. Checksums: [{}]. Retrying in {} s...",
@@ -1184,34 +1377,24 @@ public class BuildFinder
                             checksumValues,
                             green(waitSeconds));
 
-                    try {
-                        TimeUnit.SECONDS.sleep(waitSeconds);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        Utils.shutdownAndAwaitTermination(pool);
-                        throw new KojiClientException(
-                                "Interrupted while waiting to retry chunk " + chunkNumber + "/" + numChunks,
-                                ie);
-                    }
-                } else {
-                    LOGGER.error(
-                            "Chunk {}/{} failed after {} attempts: {}. Checksums: [{}]",
-                            boldRed(chunkNumber),
-                            boldRed(numChunks),
-                            boldRed(MAX_RETRIES),
-                            boldRed(getAllErrorMessages(e)),
-                            checksumValues);
-                    LOGGER.debug("Error", e);
-
-                    Utils.shutdownAndAwaitTermination(pool);
-                    throw new KojiClientException(
-                            "Error getting Koji archives for chunk " + chunkNumber + "/" + numChunks,
-                            e);
+                    // The other chunks keep being collected while this one waits to be retried
+                    CompletableFuture<List<List<KojiArchiveInfo>>> retry = CompletableFuture
+                            .runAsync(() -> {}, CompletableFuture.delayedExecutor(waitSeconds, TimeUnit.SECONDS))
+                            .thenCompose(ignored -> new HedgedChunk(queries, pool).submit());
+                    numAttempts[index] = attempt + 1;
+                    attempts.set(index, retry);
+                    retry.whenComplete((archives, t) -> completed.add(index));
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Utils.shutdownAndAwaitTermination(pool);
+            LOGGER.error("Koji archive thread interrupted: {}", boldRed(getAllErrorMessages(e)));
+            LOGGER.debug("Error", e);
+            throw new KojiClientException("Koji archive thread interrupted", e);
         }
 
-        throw new KojiClientException("Retry loop exhausted for chunk " + chunkNumber + "/" + numChunks);
+        return results.stream().flatMap(List::stream).collect(Collectors.toCollection(ArrayList::new));
     }
 
     private void markFound(Entry<Checksum, Collection<String>> entry) {
@@ -1220,14 +1403,13 @@ public class BuildFinder
         foundChecksums.put(entry.getKey(), new ArrayList<>(entry.getValue()));
         notFoundChecksums.remove(entry.getKey());
 
-        KojiBuild buildZero = builds.get(new BuildSystemInteger(0, BuildSystem.none));
-        buildZero.getArchives()
-                .removeIf(
-                        localArchive -> localArchive.getChecksums()
-                                .stream()
-                                .anyMatch(
-                                        cksum -> cksum.getType() == entry.getKey().getType()
-                                                && cksum.getValue().equals(entry.getKey().getValue())));
+        Optional<KojiLocalArchive> notFoundArchive = archiveIndex.getNotFound(entry.getKey());
+
+        if (notFoundArchive.isPresent()) {
+            KojiBuild buildZero = builds.get(new BuildSystemInteger(0, BuildSystem.none));
+            buildZero.getArchives().remove(notFoundArchive.get());
+            archiveIndex.remove(notFoundArchive.get());
+        }
 
         // The same checksum might be associated with multiple filenames (in case of files present multiple times inside
         // the zip distribution).
@@ -1311,143 +1493,169 @@ public class BuildFinder
         JSONUtils.dumpObjectToFile(builds, outputDirectory.resolve(getBuildsFilename()));
     }
 
+    /**
+     * Gets the sha256 checksums of the files which were not found by the given checksums, in order to look them up
+     * again and find the files missed by their md5 checksums (e.g. signed binaries).
+     *
+     * @param checksumTable the checksum table which has been looked up
+     * @return the sha256 checksum table, without the checksums which have already been looked up
+     */
+    private Map<Checksum, Collection<String>> getNotFoundSha256Checksums(
+            Map<Checksum, Collection<String>> checksumTable) {
+        Map<Checksum, Collection<String>> notFoundCheckumMap = new HashMap<>(checksumTable.size());
+
+        for (Checksum checksum : checksumTable.keySet()) {
+            Collection<String> filenames = notFoundChecksums.get(checksum);
+
+            if (filenames != null) {
+                notFoundCheckumMap.put(checksum, filenames);
+            }
+        }
+
+        LOGGER.debug(
+                "Searching again in Brew the not found checksums with a SHA256-based map, to find the missed files (like the signed binaries)");
+        LOGGER.debug(
+                "Swapping the MD5-based not found checksum map to a SHA256-based checksum map for finding more builds in Brew!");
+
+        Map<Checksum, Collection<String>> sha256BasedNotFoundCheckumMap = BuildFinderUtils
+                .swapEntriesWithPreferredChecksum(notFoundCheckumMap, analyzer.getFiles(), ChecksumType.sha256);
+
+        LOGGER.debug("Original MD5-based not found checksum map: {}", notFoundCheckumMap);
+        LOGGER.debug("New SHA256-based not found checksum map: {}", sha256BasedNotFoundCheckumMap);
+
+        // In case the same checksum has already been processed, remove them from the new checksum map
+        sha256BasedNotFoundCheckumMap.keySet().removeAll(notFoundChecksums.keySet());
+
+        LOGGER.debug(
+                "New SHA256-based not found checksum map after the removal of already processed checksums: {}",
+                sha256BasedNotFoundCheckumMap);
+
+        return sha256BasedNotFoundCheckumMap;
+    }
+
     @Override
     public Map<BuildSystemInteger, KojiBuild> call() throws KojiClientException {
         Instant startTime = Instant.now();
-        MultiValuedMap<Checksum, String> localchecksumMap = new ArrayListValuedHashMap<>(CHECKSUMS_SIZE); // TODO: fix
-                                                                                                          // size
-        Collection<Checksum> checksums = Sets.newHashSetWithExpectedSize(CHECKSUMS_SIZE);
-        Checksum checksum;
-        boolean finished = false;
         Map<BuildSystemInteger, KojiBuild> allBuilds = Maps.newHashMapWithExpectedSize(ALL_BUILDS_SIZE);
+        ChecksumChannel channel = analyzer.getChannel();
+        int numThreads = config.getKojiNumThreads();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        LookupPipeline pipeline = new LookupPipeline(pool, config.getKojiMaxInFlightChunks(), allBuilds);
 
-        while (!finished) {
-            try {
-                checksum = analyzer.getQueue().take();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new KojiClientException("Error taking from queue", e);
-            }
+        LOGGER.debug("Using {} threads", green(numThreads));
 
-            if (checksum.getValue() == null) {
-                break;
-            }
+        try {
+            while (true) {
+                List<Checksum> checksums;
 
-            checksums.add(checksum);
+                // Resolve the builds of the lookups already completed before waiting for more checksums
+                pipeline.resolveCompleted();
 
-            int numElements = analyzer.getQueue().drainTo(checksums);
+                try {
+                    checksums = channel.receive();
+                } catch (IOException e) {
+                    throw new KojiClientException("Error receiving checksums", e);
+                }
+
+                if (checksums.isEmpty()) {
+                    break;
+                }
 
-            LOGGER.debug("Got {} checksums from queue", numElements + 1);
+                LOGGER.debug("Got {} checksums from channel", checksums.size());
 
-            for (Checksum cksum : checksums) {
-                String value = cksum.getValue();
+                // The lookups in flight keep the map of their batch, so each batch gets a map of its own
+                MultiValuedMap<Checksum, String> localchecksumMap = new ArrayListValuedHashMap<>(checksums.size());
 
-                if (value == null) {
-                    finished = true;
-                } else {
+                for (Checksum cksum : checksums) {
                     if (cksum.getType() == ChecksumType.md5) {
                         String filename = cksum.getFilename();
                         localchecksumMap.put(cksum, filename);
                     }
                 }
-            }
 
-            FindBuildsResult pncBuildsNew;
-            Map<BuildSystemInteger, KojiBuild> kojiBuildsNew;
-            Map<Checksum, Collection<String>> map = localchecksumMap.asMap();
+                Map<Checksum, Collection<String>> map = localchecksumMap.asMap();
 
-            if (config.getBuildSystems().contains(BuildSystem.pnc) && config.getPncURL() != null) {
-                // The preferred checksumType for PNC is sha256, so replace the original map with a preferred map
-                LOGGER.debug(
-                        "Swapping the original MD5-based checksum map to a SHA256-based checksum map (whenever possible) for finding builds in PNC!");
-                Map<Checksum, Collection<String>> sha256BasedCheckumMap = BuildFinderUtils
-                        .swapEntriesWithPreferredChecksum(map, analyzer.getFiles(), ChecksumType.sha256);
-                LOGGER.debug(
-                        "Original MD5-based checksum map: {}, new SHA256-based checksum map: {}",
-                        map,
-                        sha256BasedCheckumMap);
-                try {
-                    pncBuildsNew = pncBuildFinder.findBuildsPnc(sha256BasedCheckumMap);
-                } catch (RemoteResourceException e) {
-                    throw new KojiClientException("Pnc error", e);
-                }
+                if (config.getBuildSystems().contains(BuildSystem.pnc) && config.getPncURL() != null) {
+                    FindBuildsResult pncBuildsNew;
 
-                allBuilds.putAll(pncBuildsNew.getFoundBuilds());
-
-                if (!pncBuildsNew.getNotFoundChecksums().isEmpty()) {
+                    // The preferred checksumType for PNC is sha256, so replace the original map with a preferred map
                     LOGGER.debug(
-                            "Need to search in Brew!! Not found checksums: {}",
-                            pncBuildsNew.getNotFoundChecksums());
+                            "Swapping the original MD5-based checksum map to a SHA256-based checksum map (whenever possible) for finding builds in PNC!");
+                    Map<Checksum, Collection<String>> sha256BasedCheckumMap = BuildFinderUtils
+                            .swapEntriesWithPreferredChecksum(map, analyzer.getFiles(), ChecksumType.sha256);
                     LOGGER.debug(
-                            "Swapping back the SHA256-based checksum map to a MD5-based checksum map for finding builds in Brew!");
-
-                    Map<Checksum, Collection<String>> md5BasedNotFoundCheckumMap = BuildFinderUtils
-                            .swapEntriesWithPreferredChecksum(
-                                    pncBuildsNew.getNotFoundChecksums(),
-                                    analyzer.getFiles(),
-                                    ChecksumType.md5);
-
-                    LOGGER.debug(
-                            "Original SHA256-based not found checksum map: {}",
-                            pncBuildsNew.getNotFoundChecksums());
-                    LOGGER.debug("New MD5-based not found checksum map: {}", md5BasedNotFoundCheckumMap);
-
-                    kojiBuildsNew = findBuilds(md5BasedNotFoundCheckumMap);
-                    allBuilds.putAll(kojiBuildsNew);
-
-                    LOGGER.debug(
-                            "Searching again in Brew the not found checksums with a SHA256-based map, to find the missed files (e.g. signed binaries)");
-                    LOGGER.debug(
-                            "Swapping the MD5-based not found checksum map to a SHA256-based checksum map for finding more builds in Brew!");
+                            "Original MD5-based checksum map: {}, new SHA256-based checksum map: {}",
+                            map,
+                            sha256BasedCheckumMap);
+                    try {
+                        pncBuildsNew = pncBuildFinder.findBuildsPnc(sha256BasedCheckumMap);
+                    } catch (RemoteResourceException e) {
+                        throw new KojiClientException("Pnc error", e);
+                    }
 
-                    Map<Checksum, Collection<String>> sha256BasedNotFoundCheckumMap = BuildFinderUtils
-                            .swapEntriesWithPreferredChecksum(
-                                    notFoundChecksums,
-                                    analyzer.getFiles(),
-                                    ChecksumType.sha256);
+                    allBuilds.putAll(pncBuildsNew.getFoundBuilds());
 
-                    LOGGER.debug("Original MD5-based not found checksum map: {}", notFoundChecksums);
-                    LOGGER.debug("New SHA256-based not found checksum map: {}", sha256BasedNotFoundCheckumMap);
+                    if (!pncBuildsNew.getNotFoundChecksums().isEmpty()) {
+                        LOGGER.debug(
+                                "Need to search in Brew!! Not found checksums: {}",
+                                pncBuildsNew.getNotFoundChecksums());
+                        LOGGER.debug(
+                                "Swapping back the SHA256-based checksum map to a MD5-based checksum map for finding builds in Brew!");
 
-                    // In case the same checksum has already been processed, remove them from the new checksum map
-                    sha256BasedNotFoundCheckumMap.keySet().removeAll(notFoundChecksums.keySet());
+                        Map<Checksum, Collection<String>> md5BasedNotFoundCheckumMap = BuildFinderUtils
+                                .swapEntriesWithPreferredChecksum(
+                                        pncBuildsNew.getNotFoundChecksums(),
+                                        analyzer.getFiles(),
+                                        ChecksumType.md5);
 
-                    LOGGER.debug(
-                            "New SHA256-based not found checksum map after the removal of already processed checksums: {}",
-                            sha256BasedNotFoundCheckumMap);
+                        LOGGER.debug(
+                                "Original SHA256-based not found checksum map: {}",
+                                pncBuildsNew.getNotFoundChecksums());
+                        LOGGER.debug("New MD5-based not found checksum map: {}", md5BasedNotFoundCheckumMap);
 
-                    kojiBuildsNew = findBuilds(sha256BasedNotFoundCheckumMap);
-                    LOGGER.debug("Found more Brew builds which were missed initially: {}", kojiBuildsNew);
-                    allBuilds.putAll(kojiBuildsNew);
+                        pipeline.add(md5BasedNotFoundCheckumMap, true);
+                    }
+                } else {
+                    pipeline.add(map, true);
                 }
-            } else {
-                kojiBuildsNew = findBuilds(map);
-                allBuilds.putAll(kojiBuildsNew);
-                LOGGER.debug(
-                        "Searching again in Brew the not found checksums with a SHA256-based map, to find the missed files (like the signed binaries)");
-                LOGGER.debug(
-                        "Swapping the MD5-based not found checksum map to a SHA256-based checksum map for finding more builds in Brew!");
-
-                Map<Checksum, Collection<String>> sha256BasedNotFoundCheckumMap = BuildFinderUtils
-                        .swapEntriesWithPreferredChecksum(notFoundChecksums, analyzer.getFiles(), ChecksumType.sha256);
-
-                LOGGER.debug("Original MD5-based not found checksum map: {}", notFoundChecksums);
-                LOGGER.debug("New SHA256-based not found checksum map: {}", sha256BasedNotFoundCheckumMap);
-
-                // In case the same checksum has already been processed, remove them from the new checksum map
-                sha256BasedNotFoundCheckumMap.keySet().removeAll(notFoundChecksums.keySet());
+            }
 
-                LOGGER.debug(
-                        "New SHA256-based not found checksum map after the removal of already processed checksums: {}",
-                        sha256BasedNotFoundCheckumMap);
+            pipeline.resolveAll();
+        } finally {
+            // Never leave the analyzer waiting for checksums to be received if finding the builds failed
+            channel.cancel();
+            Utils.shutdownAndAwaitTermination(pool);
+        }
 
-                kojiBuildsNew = findBuilds(sha256BasedNotFoundCheckumMap);
-                LOGGER.debug("Found more Brew builds which were missed initially: {}", kojiBuildsNew);
-                allBuilds.putAll(kojiBuildsNew);
-            }
+        LOGGER.info(
+                "Received {} checksums in {} batches (maximum queued: {}), waited {} for checksums, analyzer waited {}",
+                green(channel.getNumChecksums()),
+                green(channel.getNumBatches()),
+                green(channel.getMaxQueued()),
+                green(channel.getReceiveWait()),
+                green(channel.getSendWait()));
+        LOGGER.info(
+                "Loaded {} Koji builds, reused {} already loaded and {} being loaded",
+                green(buildMemo.getMisses()),
+                green(buildMemo.getHits()),
+                green(buildMemo.getCoalesced()));
+
+        if (config.getKojiHedgePercentile() > 0) {
+            LOGGER.info(
+                    "Requested {} slow Koji chunks again, {} of which answered first",
+                    green(hedgedChunks.sum()),
+                    green(hedgeWins.sum()));
+        }
 
-            localchecksumMap.clear();
-            checksums.clear();
+        for (KojiCallLimit limit : callLimits.values()) {
+            LOGGER.info(
+                    "Koji {}: {} calls, {} failed, {} slow, ended with {} concurrent calls of {} requests",
+                    green(limit.getMethod()),
+                    green(limit.getNumCalls()),
+                    green(limit.getNumFailed()),
+                    green(limit.getNumSlow()),
+                    green(limit.getConcurrency()),
+                    green(limit.getChunkSize()));
         }
 
         int size = allBuilds.size();
@@ -1588,4 +1796,286 @@ public class BuildFinder
             pncBuildFinder.setListener(listener);
         }
     }
+
+    /**
+     * A multicall of a Koji method, with one request per parameter.
+     *
+     * @param <T> the type of the parameters
+     * @param <R> the type of the results
+     */
+    @FunctionalInterface
+    private interface KojiMulticall<T, R> {
+        List<R> call(List<T> params) throws KojiClientException;
+    }
+
+    /**
+     * A lookup of the archives of a chunk of queries. If hedging is enabled and the lookup takes longer than the
+     * configured percentile of the lookups so far, the same lookup is sent again, and whichever answers first is used.
+     * The chunk only fails if all of its lookups fail.
+     */
+    private final class HedgedChunk {
+        private final List<KojiArchiveQuery> queries;
+
+        private final ExecutorService pool;
+
+        private final CompletableFuture<List<List<KojiArchiveInfo>>> result;
+
+        private final AtomicInteger numPending;
+
+        private HedgedChunk(List<KojiArchiveQuery> queries, ExecutorService pool) {
+            this.queries = queries;
+            this.pool = pool;
+            this.result = new CompletableFuture<>();
+            this.numPending = new AtomicInteger(1);
+        }
+
+        private CompletableFuture<List<List<KojiArchiveInfo>>> submit() {
+            execute(false);
+            return result;
+        }
+
+        private void execute(boolean hedge) {
+            try {
+                pool.execute(() -> lookup(hedge));
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        private void lookup(boolean hedge) {
+            // A hedge which is no longer needed is skipped without waiting for the limit or counting towards it
+            if (hedge && result.isDone()) {
+                return;
+            }
+
+            try {
+                Optional<List<List<KojiArchiveInfo>>> archives = getCallLimit(LIST_ARCHIVES)
+                        .callUnless(() -> hedge && result.isDone(), queries.size(), () -> {
+                            if (!hedge) {
+                                scheduleHedge();
+                            }
+
+                            long start = System.nanoTime();
+                            List<List<KojiArchiveInfo>> found = session.listArchives(queries);
+                            archiveLatencies.record(System.nanoTime() - start);
+                            return found;
+                        });
+
+                if (archives.isPresent() && result.complete(archives.get()) && hedge) {
+                    hedgeWins.increment();
+                }
+            } catch (KojiClientException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void scheduleHedge() {
+            int percentile = config.getKojiHedgePercentile();
+
+            if (percentile <= 0) {
+                return;
+            }
+
+            OptionalLong delay = archiveLatencies.getPercentile(percentile);
+
+            if (delay.isEmpty()) {
+                return;
+            }
+
+            numPending.incrementAndGet();
+            CompletableFuture.delayedExecutor(delay.getAsLong(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+
+                LOGGER.debug(
+                        "Requesting chunk again after {} ms",
+                        green(TimeUnit.NANOSECONDS.toMillis(delay.getAsLong())));
+                hedgedChunks.increment();
+                execute(true);
+            });
+        }
+
+        private void fail(Throwable t) {
+            if (numPending.decrementAndGet() == 0) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * A lookup of the archives with a table of checksums. The checksums which are not already cached are looked up in
+     * chunks of the multicall size.
+     */
+    private static final class ArchiveLookup {
+        private final Map<Checksum, Collection<String>> checksumTable;
+
+        private final boolean repass;
+
+        private final List<Entry<Checksum, Collection<String>>> checksums;
+
+        private final Collection<Entry<Checksum, Collection<String>>> cachedChecksums;
+
+        private final Collection<List<KojiArchiveInfo>> cachedArchiveInfos;
+
+        private final Collection<Entry<Checksum, Collection<String>>> rpmEntries;
+
+        private final List<List<KojiArchiveQuery>> chunkQueries;
+
+        private final List<CompletableFuture<List<List<KojiArchiveInfo>>>> futures;
+
+        private ArchiveLookup(Map<Checksum, Collection<String>> checksumTable, boolean repass) {
+            int numEntries = checksumTable.size();
+            this.checksumTable = checksumTable;
+            this.repass = repass;
+            this.checksums = new ArrayList<>(numEntries);
+            this.cachedChecksums = new ArrayList<>(numEntries);
+            this.cachedArchiveInfos = new ArrayList<>(numEntries);
+            this.rpmEntries = new ArrayList<>(numEntries);
+            this.chunkQueries = new ArrayList<>();
+            this.futures = new ArrayList<>();
+        }
+
+        private int getNumChunks() {
+            return chunkQueries.size();
+        }
+    }
+
+    /**
+     * Looks up the checksums in Koji while more of them are being received. Each checksum table added is split into
+     * lookups of one chunk of the multicall size, which are submitted as soon as they are added, up to a maximum number
+     * of chunks in flight, and the builds are resolved from the lookups in the order they complete, so that a slow
+     * chunk does not hold up the lookups after it. The lookups in flight are not waited for until their builds are to
+     * be resolved, so that the lookups of later chunks overlap with resolving the builds of earlier ones.
+     */
+    private final class LookupPipeline {
+        private final ExecutorService pool;
+
+        private final int maxInFlightChunks;
+
+        private final Map<BuildSystemInteger, KojiBuild> allBuilds;
+
+        private final Deque<ArchiveLookup> waiting;
+
+        private final BlockingQueue<ArchiveLookup> completed;
+
+        private int numInFlight;
+
+        private int numInFlightChunks;
+
+        private LookupPipeline(
+                ExecutorService pool,
+                int maxInFlightChunks,
+                Map<BuildSystemInteger, KojiBuild> allBuilds) {
+            this.pool = pool;
+            this.maxInFlightChunks = maxInFlightChunks;
+            this.allBuilds = allBuilds;
+            this.waiting = new ArrayDeque<>();
+            this.completed = new LinkedBlockingQueue<>();
+        }
+
+        /**
+         * Adds a checksum table to look up.
+         *
+         * @param checksumTable the checksum table
+         * @param repass whether to look up the sha256 checksums of the files not found once the builds are resolved
+         * @throws KojiClientException if an error occurs while resolving the builds of earlier lookups
+         */
+        private void add(Map<Checksum, Collection<String>> checksumTable, boolean repass) throws KojiClientException {
+            enqueue(checksumTable, repass);
+            submitWaiting();
+        }
+
+        private void enqueue(Map<Checksum, Collection<String>> checksumTable, boolean repass) {
+            List<Entry<Checksum, Collection<String>>> entries = new ArrayList<>(checksumTable.entrySet());
+
+            for (List<Entry<Checksum, Collection<String>>> chunk : ListUtils
+                    .partition(entries, getCallLimit(LIST_ARCHIVES).getChunkSize())) {
+                Map<Checksum, Collection<String>> chunkTable = Maps.newLinkedHashMapWithExpectedSize(chunk.size());
+
+                for (Entry<Checksum, Collection<String>> entry : chunk) {
+                    chunkTable.put(entry.getKey(), entry.getValue());
+                }
+
+                waiting.add(prepareLookup(chunkTable, repass));
+            }
+        }
+
+        /**
+         * Resolves the builds of the lookups which have completed, without waiting for any other lookup.
+         *
+         * @throws KojiClientException if an error occurs
+         */
+        private void resolveCompleted() throws KojiClientException {
+            ArchiveLookup lookup;
+
+            while ((lookup = completed.poll()) != null) {
+                resolve(lookup);
+            }
+
+            submitWaiting();
+        }
+
+        /**
+         * Resolves the builds of all the lookups, waiting for them to complete.
+         *
+         * @throws KojiClientException if an error occurs
+         */
+        private void resolveAll() throws KojiClientException {
+            while (numInFlight > 0) {
+                resolveNext();
+                submitWaiting();
+            }
+        }
+
+        private void submitWaiting() throws KojiClientException {
+            while (!waiting.isEmpty()) {
+                int numChunks = waiting.peek().getNumChunks();
+
+                // The chunks in flight are also limited by how many lookups the hub currently keeps up with
+                int maxChunks = Math.min(maxInFlightChunks, getCallLimit(LIST_ARCHIVES).getConcurrency());
+
+                while (numInFlight > 0 && numInFlightChunks + numChunks > maxChunks) {
+                    resolveNext();
+                }
+
+                ArchiveLookup lookup = waiting.remove();
+                submitLookup(lookup, pool);
+                numInFlight++;
+                numInFlightChunks += numChunks;
+                CompletableFuture.allOf(lookup.futures.toArray(CompletableFuture[]::new))
+                        .whenComplete((ignored, t) -> completed.add(lookup));
+            }
+        }
+
+        /**
+         * Resolves the builds of whichever lookup in flight completes first, waiting for it if none has completed yet.
+         *
+         * @throws KojiClientException if an error occurs
+         */
+        private void resolveNext() throws KojiClientException {
+            try {
+                resolve(completed.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Utils.shutdownAndAwaitTermination(pool);
+                LOGGER.error("Koji archive thread interrupted: {}", boldRed(getAllErrorMessages(e)));
+                LOGGER.debug("Error", e);
+                throw new KojiClientException("Koji archive thread interrupted", e);
+            }
+        }
+
+        private void resolve(ArchiveLookup lookup) throws KojiClientException {
+            numInFlight--;
+            numInFlightChunks -= lookup.getNumChunks();
+            allBuilds.putAll(resolveBuilds(lookup, pool));
+
+            if (lookup.repass) {
+                Map<Checksum, Collection<String>> sha256BasedNotFoundCheckumMap = getNotFoundSha256Checksums(
+                        lookup.checksumTable);
+
+                enqueue(sha256BasedNotFoundCheckumMap, false);
+            }
+        }
+    }
 }
@@ -33,7 +33,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.jboss.pnc.build.finder.koji.ClientSession;
@@ -68,9 +67,9 @@ public final class BuildFinderUtils {
 
     private final DistributionAnalyzer distributionAnalyzer;
 
-    private final Map<ChecksumType, String> emptyFileDigests;
+    private final Map<ChecksumType, Digest> emptyFileDigests;
 
-    private final Map<ChecksumType, String> emptyZipDigests;
+    private final Map<ChecksumType, Digest> emptyZipDigests;
 
     public BuildFinderUtils(BuildConfig config, DistributionAnalyzer distributionAnalyzer, ClientSession session) {
         this.config = config;
@@ -85,15 +84,14 @@ public final class BuildFinderUtils {
                 .forEach(
                         checksumType -> emptyFileDigests.put(
                                 checksumType,
-                                Hex.encodeHexString(DigestUtils.getDigest(checksumType.getAlgorithm()).digest())));
+                                Digest.of(DigestUtils.getDigest(checksumType.getAlgorithm()).digest())));
 
         byte[] emptyZip = emptyZipBytes();
         config.getChecksumTypes()
                 .forEach(
                         checksumType -> emptyZipDigests.put(
                                 checksumType,
-                                Hex.encodeHexString(
-                                        DigestUtils.getDigest(checksumType.getAlgorithm()).digest(emptyZip))));
+                                Digest.of(DigestUtils.getDigest(checksumType.getAlgorithm()).digest(emptyZip))));
 
     }
 
@@ -111,11 +109,11 @@ public final class BuildFinderUtils {
     }
 
     public boolean isEmptyFileDigest(Checksum checksum) {
-        return checksum.getValue().equals(emptyFileDigests.get(checksum.getType()));
+        return checksum.getDigest().equals(emptyFileDigests.get(checksum.getType()));
     }
 
     public boolean isEmptyZipDigest(Checksum checksum) {
-        return checksum.getValue().equals(emptyZipDigests.get(checksum.getType()));
+        return checksum.getDigest().equals(emptyZipDigests.get(checksum.getType()));
     }
 
     public boolean shouldSkipChecksum(Checksum checksum, Collection<String> filenames) {
@@ -147,7 +145,7 @@ public final class BuildFinderUtils {
         return false;
     }
 
-    public void addArchiveToBuild(KojiBuild build, KojiArchiveInfo archive, Collection<String> filenames) {
+    public KojiLocalArchive addArchiveToBuild(KojiBuild build, KojiArchiveInfo archive, Collection<String> filenames) {
         LOGGER.debug(
                 "Found build id {} for file {} (checksum {}) matching local files {}",
                 build.getId(),
@@ -171,6 +169,8 @@ public final class BuildFinderUtils {
             KojiLocalArchive existingArchive = matchingArchive.get();
 
             existingArchive.getFilenames().addAll(filenames);
+
+            return existingArchive;
         } else {
             LOGGER.debug(
                     "Adding new archive id {} to build id {} with {} archives and filenames {}",
@@ -189,11 +189,16 @@ public final class BuildFinderUtils {
             buildArchives.add(localArchive);
 
             buildArchives.sort(Comparator.comparing(a -> a.getArchive().getFilename()));
+
+            return localArchive;
         }
     }
 
-    public void addArchiveWithoutBuild(KojiBuild buildZero, Checksum checksum, Collection<String> filenames) {
-        addArchiveWithoutBuild(buildZero, checksum, filenames, null);
+    public KojiLocalArchive addArchiveWithoutBuild(
+            KojiBuild buildZero,
+            Checksum checksum,
+            Collection<String> filenames) {
+        return addArchiveWithoutBuild(buildZero, checksum, filenames, null);
     }
 
     /**
@@ -206,8 +211,9 @@ public final class BuildFinderUtils {
      * @param checksum the checksum which was not found
      * @param filenames the filenames not found
      * @param rpm the rpm associated with the checksum
+     * @return the archive the checksum was added to
      */
-    public void addArchiveWithoutBuild(
+    public KojiLocalArchive addArchiveWithoutBuild(
             KojiBuild buildZero,
             Checksum checksum,
             Collection<String> filenames,
@@ -220,12 +226,31 @@ public final class BuildFinderUtils {
                                 .stream()
                                 .anyMatch(
                                         cksum -> cksum.getType() == checksum.getType()
-                                                && cksum.getValue().equals(checksum.getValue())))
+                                                && cksum.getDigest().equals(checksum.getDigest())))
                 .findFirst();
 
-        if (matchingArchive.isPresent()) {
-            KojiLocalArchive existingArchive = matchingArchive.get();
+        return addArchiveWithoutBuild(buildZero, matchingArchive.orElse(null), checksum, filenames, rpm);
+    }
 
+    /**
+     * Adds the checksum to the buildZero, given the local archive already associated with the checksum inside the
+     * buildZero, if any. This is for callers which keep track of the archives of the buildZero by checksum, and so do
+     * not need to search them.
+     *
+     * @param buildZero the build which is associated with all the not found archives
+     * @param existingArchive the local archive associated with the checksum, or null if there is none
+     * @param checksum the checksum which was not found
+     * @param filenames the filenames not found
+     * @param rpm the rpm associated with the checksum
+     * @return the archive the checksum was added to
+     */
+    KojiLocalArchive addArchiveWithoutBuild(
+            KojiBuild buildZero,
+            KojiLocalArchive existingArchive,
+            Checksum checksum,
+            Collection<String> filenames,
+            KojiRpmInfo rpm) {
+        if (existingArchive != null) {
             LOGGER.debug(
                     "Adding not-found checksum {} to existing archive id {} with filenames {}",
                     existingArchive.getArchive().getChecksum(),
@@ -245,6 +270,8 @@ public final class BuildFinderUtils {
 
                 existingArchive.setRpm(rpm);
             }
+
+            return existingArchive;
         } else {
             KojiArchiveInfo tmpArchive = new KojiArchiveInfo();
 
@@ -278,6 +305,8 @@ public final class BuildFinderUtils {
             buildZeroArchives.add(localArchive);
 
             buildZeroArchives.sort(Comparator.comparing(a -> a.getArchive().getFilename()));
+
+            return localArchive;
         }
     }
 
@@ -352,6 +381,11 @@ public final class BuildFinderUtils {
 
         skipExtensions = new HashSet<>(archiveExtensions);
         skipExtensions.add("rpm");
+
+        // The checksums of all files are looked up in PNC, so only the Koji lookup skips the other extensions
+        if (distributionAnalyzer != null && !config.getBuildSystems().contains(BuildSystem.pnc)) {
+            distributionAnalyzer.restrictExtensions(archiveExtensions);
+        }
     }
 
     public List<String> getArchiveExtensions() {
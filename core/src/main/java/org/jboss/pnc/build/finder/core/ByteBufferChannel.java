@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only {@link SeekableByteChannel} over the contents of a {@link ByteBuffer}, which may be a heap buffer or a
+ * memory-mapped region of a file. The position and limit of the buffer itself are never changed.
+ */
+final class ByteBufferChannel implements SeekableByteChannel {
+    private final ByteBuffer buffer;
+
+    private long position;
+
+    private boolean open;
+
+    ByteBufferChannel(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        open = true;
+    }
+
+    /**
+     * Returns a view of the given region of this channel which shares its contents.
+     *
+     * @param offset the offset of the region
+     * @param length the length of the region
+     * @return the region
+     */
+    ByteBuffer slice(long offset, long length) {
+        return buffer.slice(Math.toIntExact(offset), Math.toIntExact(length));
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        ensureOpen();
+
+        int size = buffer.limit();
+
+        if (position >= size) {
+            return -1;
+        }
+
+        int length = Math.min(dst.remaining(), size - (int) position);
+
+        dst.put(buffer.slice((int) position, length));
+        position += length;
+
+        return length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        ensureOpen();
+
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws ClosedChannelException {
+        ensureOpen();
+
+        if (newPosition < 0L) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+
+        position = newPosition;
+
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        ensureOpen();
+
+        return buffer.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -21,18 +21,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Strings;
 import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileName;
@@ -41,8 +52,6 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.eclipse.packager.rpm.RpmSignatureTag;
 import org.eclipse.packager.rpm.RpmTag;
 import org.eclipse.packager.rpm.coding.PayloadCoding;
-import org.eclipse.packager.rpm.parse.InputHeader;
-import org.eclipse.packager.rpm.parse.RpmInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,9 +65,23 @@ public class Checksum implements Comparable<Checksum>, Serializable {
 
     private static final int BUFFER_SIZE = 8192;
 
+    private static final String RPM_EXTENSION = "rpm";
+
+    /**
+     * Files up to this size are read into a single buffer, since mapping them into memory costs more than reading them.
+     */
+    static final int MAX_READ_SIZE = 65536;
+
+    /**
+     * Larger files are mapped into memory in chunks of at most this size.
+     */
+    static final int MAX_MAP_SIZE = 16777216;
+
+    private static final int FINGERPRINT_BLOCK_SIZE = 65536;
+
     private ChecksumType type;
 
-    private String value;
+    private Digest digest;
 
     @JsonIgnore
     private String filename;
@@ -71,17 +94,18 @@ public class Checksum implements Comparable<Checksum>, Serializable {
     }
 
     public Checksum(ChecksumType type, String value, String filename, long fileSize) {
-        this.type = type;
-        this.value = value;
-        this.filename = filename;
-        this.fileSize = fileSize;
+        this(type, value != null ? Digest.fromHex(value) : null, filename, fileSize);
     }
 
     public Checksum(ChecksumType type, String value, LocalFile localFile) {
+        this(type, value, localFile.getFilename(), localFile.getSize());
+    }
+
+    public Checksum(ChecksumType type, Digest digest, String filename, long fileSize) {
         this.type = type;
-        this.value = value;
-        this.filename = localFile.getFilename();
-        this.fileSize = localFile.getSize();
+        this.digest = digest;
+        this.filename = filename;
+        this.fileSize = fileSize;
     }
 
     public static long determineFileSize(FileContent fc) throws FileSystemException {
@@ -92,128 +116,316 @@ public class Checksum implements Comparable<Checksum>, Serializable {
         }
     }
 
+    /**
+     * Computes the checksums of the given file. Local files are read through a file channel instead of the file content
+     * of the file object.
+     *
+     * @param fo the file
+     * @param checksumTypes the checksum types
+     * @param root the root prefix to remove from the file name
+     * @return the checksums
+     * @throws IOException if an error occurs while reading the file
+     */
     public static Set<Checksum> checksum(FileObject fo, Collection<ChecksumType> checksumTypes, String root)
             throws IOException {
-        int checksumTypesSize = checksumTypes.size();
-        Set<Checksum> results = new HashSet<>(checksumTypesSize, 1.0f);
         FileName filename = fo.getName();
-        long fileSize;
 
-        if ("rpm".equals(filename.getExtension())) {
-            try (FileContent fc = fo.getContent();
-                    InputStream is = fc.getInputStream();
-                    RpmInputStream in = new RpmInputStream(is)) {
-                fileSize = determineFileSize(fc);
+        if ("file".equals(filename.getScheme()) && fo.isFile()) {
+            try (FileChannel channel = FileChannel.open(fo.getPath(), StandardOpenOption.READ)) {
+                return checksum(channel, filename, channel.size(), checksumTypes, root);
+            }
+        }
 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Got RPM: {}", filename);
+        try (FileContent fc = fo.getContent(); InputStream is = fc.getInputStream()) {
+            return checksum(is, filename, determineFileSize(fc), checksumTypes, root);
+        }
+    }
 
-                    InputHeader<RpmTag> payloadHeader = in.getPayloadHeader();
-                    Optional<Object> payloadCodingHeader = payloadHeader.getOptionalTag(RpmTag.PAYLOAD_CODING);
+    /**
+     * Computes a fingerprint of the given local file, which changes whenever its size or modification time changes, or
+     * whenever its first, middle or last block changes. Files of up to three blocks are hashed in full. Computing a
+     * fingerprint reads no more than three blocks, whatever the size of the file, so it can be used to look up the
+     * checksums of a large file in a cache before deciding to read the whole file.
+     *
+     * @param fo the file
+     * @return the fingerprint, or empty if the file is not a local file
+     * @throws IOException if an error occurs while reading the file
+     */
+    static Optional<String> fingerprint(FileObject fo) throws IOException {
+        if (!"file".equals(fo.getName().getScheme()) || !fo.isFile()) {
+            return Optional.empty();
+        }
 
-                    if (payloadCodingHeader.isPresent()) {
-                        String payloadCoding = (String) payloadCodingHeader.get();
-                        PayloadCoding coding = PayloadCoding.fromValue(payloadCoding).orElse(PayloadCoding.NONE);
+        Path path = fo.getPath();
+        long lastModified = Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+        MessageDigest md = getMessageDigests(EnumSet.of(ChecksumType.sha256)).get(ChecksumType.sha256);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] positions = size <= 3L * FINGERPRINT_BLOCK_SIZE
+                    ? new long[] { 0L }
+                    : new long[] { 0L, (size - FINGERPRINT_BLOCK_SIZE) / 2L, size - FINGERPRINT_BLOCK_SIZE };
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, 3L * FINGERPRINT_BLOCK_SIZE));
+
+            for (long position : positions) {
+                buffer.clear().limit(positions.length == 1 ? buffer.capacity() : FINGERPRINT_BLOCK_SIZE);
+                IOUtils.read(channel.position(position), buffer);
+                md.update(buffer.flip());
+            }
 
-                        LOGGER.debug(
-                                "Payload for RPM {} is compressed using: {}",
-                                in.getLead().getName(),
-                                coding.getValue());
-                    }
-                }
+            return Optional.of(size + ":" + lastModified + ":" + Hex.encodeHexString(md.digest()));
+        }
+    }
 
-                String normalizedPath = Utils.normalizePath(fo, root);
-
-                for (ChecksumType checksumType : checksumTypes) {
-                    LOGGER.debug("Handle checksum type {} for RPM {}", checksumType.getAlgorithm(), filename);
-
-                    switch (checksumType) {
-                        case md5 -> {
-                            Object md5 = in.getSignatureHeader().getTag(RpmSignatureTag.MD5);
-
-                            if (md5 instanceof byte[] md5Bytes) {
-                                results.add(
-                                        new Checksum(
-                                                checksumType,
-                                                Hex.encodeHexString(md5Bytes),
-                                                normalizedPath,
-                                                fileSize));
-                            } else {
-                                throw new IOException("Missing " + checksumType.getAlgorithm() + " for " + fo);
-                            }
-                        }
-                        case sha1 -> {
-                            Object sha1 = in.getSignatureHeader().getTag(RpmSignatureTag.SHA1HEADER);
-
-                            if (sha1 instanceof String sha1Hex) {
-                                results.add(new Checksum(checksumType, sha1Hex, normalizedPath, fileSize));
-                            } else if (sha1 instanceof byte[] sha1Bytes) {
-                                results.add(
-                                        new Checksum(
-                                                checksumType,
-                                                Hex.encodeHexString(sha1Bytes),
-                                                normalizedPath,
-                                                fileSize));
-                            } else {
-                                LOGGER.warn("Missing {} for {}", red(checksumType.getAlgorithm()), red(fo));
-                            }
-                        }
-                        case sha256 -> {
-                            Object sha256 = in.getSignatureHeader().getTag(RpmSignatureTag.SHA256HEADER);
-
-                            if (sha256 instanceof String sha256Hex) {
-                                results.add(new Checksum(checksumType, sha256Hex, normalizedPath, fileSize));
-                            } else if (sha256 instanceof byte[] sha256Bytes) {
-                                results.add(
-                                        new Checksum(
-                                                checksumType,
-                                                Hex.encodeHexString(sha256Bytes),
-                                                normalizedPath,
-                                                fileSize));
-                            } else {
-                                LOGGER.warn("Missing {} for {}", red(checksumType.getAlgorithm()), red(fo));
-                            }
-                        }
-                        default -> throw new IOException("Unrecognized checksum type: " + checksumType.getAlgorithm());
-                    }
-                }
-            }
+    /**
+     * Computes the checksums of the given file channel from its start. Small files are read into a single buffer, and
+     * larger files are mapped into memory in chunks, so that the digests are updated from the page cache without
+     * copying the file through a stream. The checksums of RPM files are read from their headers, without reading their
+     * payload.
+     *
+     * @param channel the file channel
+     * @param filename the file name
+     * @param fileSize the file size
+     * @param checksumTypes the checksum types
+     * @param root the root prefix to remove from the file name
+     * @return the checksums
+     * @throws IOException if an error occurs while reading from the file channel
+     */
+    public static Set<Checksum> checksum(
+            FileChannel channel,
+            FileName filename,
+            long fileSize,
+            Collection<ChecksumType> checksumTypes,
+            String root) throws IOException {
+        if (isRpm(filename)) {
+            return checksumRpm(
+                    RpmHeaders.read(channel.position(0L), LOGGER.isDebugEnabled()),
+                    filename,
+                    fileSize,
+                    checksumTypes,
+                    root);
+        }
+
+        Map<ChecksumType, MessageDigest> mds = getMessageDigests(checksumTypes);
+        long size = channel.size();
+
+        if (size <= MAX_READ_SIZE) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            IOUtils.read(channel.position(0L), buffer);
+            update(mds, buffer.flip());
         } else {
-            Map<ChecksumType, MessageDigest> mds = new EnumMap<>(ChecksumType.class);
+            for (long position = 0L; position < size; position += MAX_MAP_SIZE) {
+                update(mds, channel.map(MapMode.READ_ONLY, position, Math.min(size - position, MAX_MAP_SIZE)));
+            }
+        }
 
-            for (ChecksumType checksumType : checksumTypes) {
-                try {
-                    mds.put(checksumType, MessageDigest.getInstance(checksumType.getAlgorithm()));
-                } catch (NoSuchAlgorithmException e) {
-                    throw new IOException(e);
-                }
+        return getChecksums(mds, filename, fileSize, root);
+    }
+
+    /**
+     * Computes the checksums of the remaining contents of the given buffer, such as a stored zip file entry mapped into
+     * memory. The position of the buffer is not changed. The checksums of RPM files are read from their headers.
+     *
+     * @param buffer the buffer
+     * @param filename the file name
+     * @param fileSize the file size
+     * @param checksumTypes the checksum types
+     * @param root the root prefix to remove from the file name
+     * @return the checksums
+     * @throws IOException if a checksum type is not supported, or if interrupted while digesting the buffer
+     */
+    public static Set<Checksum> checksum(
+            ByteBuffer buffer,
+            FileName filename,
+            long fileSize,
+            Collection<ChecksumType> checksumTypes,
+            String root) throws IOException {
+        if (isRpm(filename)) {
+            return checksumRpm(
+                    RpmHeaders.read(buffer, LOGGER.isDebugEnabled()),
+                    filename,
+                    fileSize,
+                    checksumTypes,
+                    root);
+        }
+
+        Map<ChecksumType, MessageDigest> mds = getMessageDigests(checksumTypes);
+        update(mds, buffer);
+        return getChecksums(mds, filename, fileSize, root);
+    }
+
+    /**
+     * Computes the checksums of the given input stream, which is read to the end but not closed. This is used for
+     * files that are not read through a file object, such as the entries of a zip file. The input stream of an RPM file
+     * is only read up to the end of its headers.
+     *
+     * @param is the input stream
+     * @param filename the file name
+     * @param fileSize the file size
+     * @param checksumTypes the checksum types
+     * @param root the root prefix to remove from the file name
+     * @return the checksums
+     * @throws IOException if an error occurs while reading from the input stream
+     */
+    public static Set<Checksum> checksum(
+            InputStream is,
+            FileName filename,
+            long fileSize,
+            Collection<ChecksumType> checksumTypes,
+            String root) throws IOException {
+        if (isRpm(filename)) {
+            // Only the headers are read, so the channel does not read ahead into the payload
+            return checksumRpm(
+                    RpmHeaders.read(Channels.newChannel(is), LOGGER.isDebugEnabled()),
+                    filename,
+                    fileSize,
+                    checksumTypes,
+                    root);
+        }
+
+        Map<ChecksumType, MessageDigest> mds = getMessageDigests(checksumTypes);
+
+        if (DigestLanes.useLanes(mds.values(), fileSize)) {
+            DigestLanes.update(mds.values(), Channels.newChannel(is));
+            return getChecksums(mds, filename, fileSize, root);
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = is.read(buffer)) > 0) {
+            for (MessageDigest md : mds.values()) {
+                md.update(buffer, 0, read);
             }
+        }
 
-            try (FileContent fc = fo.getContent(); InputStream is = fc.getInputStream()) {
-                fileSize = determineFileSize(fc);
-                byte[] buffer = new byte[BUFFER_SIZE];
-                int read;
+        return getChecksums(mds, filename, fileSize, root);
+    }
 
-                while ((read = is.read(buffer)) > 0) {
-                    for (MessageDigest md : mds.values()) {
-                        md.update(buffer, 0, read);
+    private static boolean isRpm(FileName filename) {
+        return RPM_EXTENSION.equals(filename.getExtension());
+    }
+
+    private static Set<Checksum> checksumRpm(
+            RpmHeaders headers,
+            FileName filename,
+            long fileSize,
+            Collection<ChecksumType> checksumTypes,
+            String root) throws IOException {
+        int checksumTypesSize = checksumTypes.size();
+        Set<Checksum> results = new HashSet<>(checksumTypesSize, 1.0f);
+        String normalizedPath = Utils.normalizePath(filename, root);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Got RPM: {}", filename);
+
+            if (headers.getHeaderTag(RpmTag.PAYLOAD_CODING) instanceof String payloadCoding) {
+                PayloadCoding coding = PayloadCoding.fromValue(payloadCoding).orElse(PayloadCoding.NONE);
+
+                LOGGER.debug("Payload for RPM {} is compressed using: {}", headers.getName(), coding.getValue());
+            }
+        }
+
+        for (ChecksumType checksumType : checksumTypes) {
+            LOGGER.debug("Handle checksum type {} for RPM {}", checksumType.getAlgorithm(), filename);
+
+            switch (checksumType) {
+                case md5 -> {
+                    Object md5 = headers.getSignatureTag(RpmSignatureTag.MD5);
+
+                    if (md5 instanceof byte[] md5Bytes) {
+                        results.add(
+                                new Checksum(
+                                        checksumType,
+                                        Digest.of(md5Bytes),
+                                        normalizedPath,
+                                        fileSize));
+                    } else {
+                        throw new IOException("Missing " + checksumType.getAlgorithm() + " for " + filename);
+                    }
+                }
+                case sha1 -> {
+                    Object sha1 = headers.getSignatureTag(RpmSignatureTag.SHA1HEADER);
+
+                    if (sha1 instanceof String sha1Hex) {
+                        results.add(new Checksum(checksumType, sha1Hex, normalizedPath, fileSize));
+                    } else if (sha1 instanceof byte[] sha1Bytes) {
+                        results.add(
+                                new Checksum(
+                                        checksumType,
+                                        Digest.of(sha1Bytes),
+                                        normalizedPath,
+                                        fileSize));
+                    } else {
+                        LOGGER.warn("Missing {} for {}", red(checksumType.getAlgorithm()), red(filename));
                     }
                 }
+                case sha256 -> {
+                    Object sha256 = headers.getSignatureTag(RpmSignatureTag.SHA256HEADER);
+
+                    if (sha256 instanceof String sha256Hex) {
+                        results.add(new Checksum(checksumType, sha256Hex, normalizedPath, fileSize));
+                    } else if (sha256 instanceof byte[] sha256Bytes) {
+                        results.add(
+                                new Checksum(
+                                        checksumType,
+                                        Digest.of(sha256Bytes),
+                                        normalizedPath,
+                                        fileSize));
+                    } else {
+                        LOGGER.warn("Missing {} for {}", red(checksumType.getAlgorithm()), red(filename));
+                    }
+                }
+                default -> throw new IOException("Unrecognized checksum type: " + checksumType.getAlgorithm());
             }
+        }
+
+        return Collections.unmodifiableSet(results);
+    }
 
-            String normalizedPath = Utils.normalizePath(fo, root);
+    static Map<ChecksumType, MessageDigest> getMessageDigests(Collection<ChecksumType> checksumTypes)
+            throws IOException {
+        Map<ChecksumType, MessageDigest> mds = new EnumMap<>(ChecksumType.class);
 
-            for (ChecksumType checksumType : checksumTypes) {
-                MessageDigest md = mds.get(checksumType);
-                results.add(
-                        new Checksum(
-                                checksumType,
-                                Hex.encodeHexString(md.digest()),
-                                normalizedPath,
-                                fileSize));
+        for (ChecksumType checksumType : checksumTypes) {
+            try {
+                mds.put(checksumType, MessageDigest.getInstance(checksumType.getAlgorithm()));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
             }
         }
 
+        return mds;
+    }
+
+    private static void update(Map<ChecksumType, MessageDigest> mds, ByteBuffer buffer) throws IOException {
+        if (DigestLanes.useLanes(mds.values(), buffer.remaining())) {
+            DigestLanes.update(mds.values(), buffer);
+            return;
+        }
+
+        for (MessageDigest md : mds.values()) {
+            md.update(buffer.duplicate());
+        }
+    }
+
+    static Set<Checksum> getChecksums(
+            Map<ChecksumType, MessageDigest> mds,
+            FileName filename,
+            long fileSize,
+            String root) {
+        Set<Checksum> results = new HashSet<>(mds.size(), 1.0f);
+        String normalizedPath = Utils.normalizePath(filename, root);
+
+        for (Map.Entry<ChecksumType, MessageDigest> entry : mds.entrySet()) {
+            results.add(
+                    new Checksum(
+                            entry.getKey(),
+                            Digest.wrap(entry.getValue().digest()),
+                            normalizedPath,
+                            fileSize));
+        }
+
         return Collections.unmodifiableSet(results);
     }
 
@@ -230,11 +442,16 @@ public class Checksum implements Comparable<Checksum>, Serializable {
     }
 
     public String getValue() {
-        return value;
+        return digest != null ? digest.toHex() : null;
     }
 
     public void setValue(String value) {
-        this.value = value;
+        digest = value != null ? Digest.fromHex(value) : null;
+    }
+
+    @JsonIgnore
+    public Digest getDigest() {
+        return digest;
     }
 
     public String getFilename() {
@@ -265,7 +482,7 @@ public class Checksum implements Comparable<Checksum>, Serializable {
             return i;
         }
 
-        int j = Strings.CS.compare(value, o.value);
+        int j = ObjectUtils.compare(digest, o.digest);
 
         if (j != 0) {
             return j;
@@ -291,18 +508,22 @@ public class Checksum implements Comparable<Checksum>, Serializable {
         }
 
         Checksum checksum = (Checksum) o;
-        return fileSize == checksum.fileSize && type == checksum.type && Objects.equals(value, checksum.value)
+        return fileSize == checksum.fileSize && type == checksum.type && Objects.equals(digest, checksum.digest)
                 && Objects.equals(filename, checksum.filename);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, value, filename, fileSize);
+        // Not Objects.hash(), which allocates an array for every checksum looked up
+        int result = Objects.hashCode(type);
+        result = 31 * result + Objects.hashCode(digest);
+        result = 31 * result + Objects.hashCode(filename);
+        return 31 * result + Long.hashCode(fileSize);
     }
 
     @Override
     public String toString() {
-        return "Checksum{" + "type=" + type + ", value='" + value + '\'' + ", filename='" + filename + '\''
+        return "Checksum{" + "type=" + type + ", value='" + digest + '\'' + ", filename='" + filename + '\''
                 + ", fileSize=" + fileSize + '}';
     }
 }
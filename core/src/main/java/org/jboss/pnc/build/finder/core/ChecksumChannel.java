@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the checksums found by the distribution analyzer off to the build finder in batches. Checksums are collected
+ * into batches of a fixed size, and no more than a fixed number of batches are queued, so that the analyzer waits for
+ * the build finder when looking up builds is slower than computing checksums, rather than queueing all of them.
+ * <p>
+ * The build finder waits until a batch is full, and then receives everything sent so far at once, including the batch
+ * being filled. Waking it up for every checksum instead would cost more than looking up the checksums in batches saves.
+ * The end of the checksums is signalled by closing the channel, either normally or with the error that the analyzer
+ * failed with. If the build finder gives up, it cancels the channel, after which the checksums sent are dropped instead
+ * of waiting for it.
+ * <p>
+ * If the analyzer has waited for a while and nothing has ever received from the channel, it fails instead of waiting
+ * forever, since the checksums are then most likely only to be received once the analyzer has finished.
+ */
+public final class ChecksumChannel {
+    /**
+     * Time after which a sender waiting for room in the queue fails if nothing has received from the channel yet, or
+     * else logs that it is still waiting.
+     */
+    static final Duration RECEIVE_TIMEOUT = Duration.ofMinutes(1L);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumChannel.class);
+
+    private final int batchSize;
+
+    private final int maxBatches;
+
+    private final Duration receiveTimeout;
+
+    private final ReentrantLock lock;
+
+    private final Condition notFull;
+
+    private final Condition notEmpty;
+
+    private final Deque<List<Checksum>> batches;
+
+    private List<Checksum> batch;
+
+    private boolean closed;
+
+    private boolean cancelled;
+
+    private boolean receiving;
+
+    private Throwable failure;
+
+    private long numChecksums;
+
+    private long numBatches;
+
+    private int maxQueued;
+
+    private long sendWaitNanos;
+
+    private long receiveWaitNanos;
+
+    ChecksumChannel(int batchSize, int maxBatches) {
+        this(batchSize, maxBatches, RECEIVE_TIMEOUT);
+    }
+
+    ChecksumChannel(int batchSize, int maxBatches, Duration receiveTimeout) {
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.receiveTimeout = receiveTimeout;
+        lock = new ReentrantLock();
+        notFull = lock.newCondition();
+        notEmpty = lock.newCondition();
+        batches = new ArrayDeque<>(maxBatches);
+        batch = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Sends the given checksum, waiting while the maximum number of batches are queued.
+     *
+     * @param checksum the checksum
+     * @throws InterruptedIOException if interrupted while waiting
+     * @throws IOException if nothing has received from the channel once the receive timeout has passed
+     */
+    void send(Checksum checksum) throws IOException {
+        lock.lock();
+
+        try {
+            if (cancelled) {
+                return;
+            }
+
+            batch.add(checksum);
+            numChecksums++;
+
+            if (batch.size() >= batchSize) {
+                long start = System.nanoTime();
+                long nanos = receiveTimeout.toNanos();
+
+                while (batches.size() >= maxBatches && !cancelled) {
+                    if (nanos <= 0L) {
+                        if (!receiving) {
+                            throw new IOException(
+                                    "Nothing received the checksums within " + receiveTimeout.toSeconds()
+                                            + " s; they must be received while the analyzer runs, such as by a "
+                                            + "build finder");
+                        }
+
+                        LOGGER.warn(
+                                "Still waiting for the build finder to receive checksums after {} s",
+                                receiveTimeout.toSeconds());
+                        nanos = receiveTimeout.toNanos();
+                    }
+
+                    nanos = notFull.awaitNanos(nanos);
+                }
+
+                sendWaitNanos += System.nanoTime() - start;
+
+                // While waiting, the batch may have been received, or queued by another sender
+                if (batch.size() >= batchSize && !cancelled) {
+                    enqueue();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals the end of the checksums. If the analyzer failed, the given error is thrown to the build finder once it
+     * has received all checksums sent before.
+     *
+     * @param failure the error the analyzer failed with, or {@code null}
+     */
+    void close(Throwable failure) {
+        lock.lock();
+
+        try {
+            if (!batch.isEmpty() && !cancelled) {
+                enqueue();
+            }
+
+            closed = true;
+            this.failure = failure;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives all checksums sent and not yet received, waiting until a batch is full or the channel is closed.
+     *
+     * @return the checksums, or an empty list once the channel is closed and all checksums have been received
+     * @throws IOException if the analyzer failed, or if interrupted while waiting
+     */
+    public List<Checksum> receive() throws IOException {
+        lock.lock();
+
+        try {
+            receiving = true;
+            long start = System.nanoTime();
+
+            while (batches.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+
+            receiveWaitNanos += System.nanoTime() - start;
+
+            if (batches.isEmpty() && batch.isEmpty()) {
+                if (failure != null) {
+                    throw new IOException("Error computing checksums", failure);
+                }
+
+                return Collections.emptyList();
+            }
+
+            List<Checksum> checksums = new ArrayList<>((batches.size() + 1) * batchSize);
+
+            while (!batches.isEmpty()) {
+                checksums.addAll(batches.poll());
+            }
+
+            // Nothing is gained by leaving the batch being filled behind
+            checksums.addAll(batch);
+            batch.clear();
+            notFull.signalAll();
+
+            return checksums;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the channel, dropping the checksums queued and any checksums sent afterwards, so that the analyzer no
+     * longer waits for the build finder.
+     */
+    public void cancel() {
+        lock.lock();
+
+        try {
+            cancelled = true;
+            batches.clear();
+            batch.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue() {
+        batches.add(batch);
+        batch = new ArrayList<>(batchSize);
+        numBatches++;
+        maxQueued = Math.max(maxQueued, batches.size());
+        notEmpty.signal();
+    }
+
+    /**
+     * Gets the number of checksums sent.
+     *
+     * @return the number of checksums
+     */
+    public long getNumChecksums() {
+        lock.lock();
+
+        try {
+            return numChecksums;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of full batches queued, not counting the batches received before they were full.
+     *
+     * @return the number of batches
+     */
+    public long getNumBatches() {
+        lock.lock();
+
+        try {
+            return numBatches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum number of batches queued at once.
+     *
+     * @return the maximum number of batches
+     */
+    public int getMaxQueued() {
+        lock.lock();
+
+        try {
+            return maxQueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the total time the analyzer waited for the build finder to receive checksums.
+     *
+     * @return the time waited
+     */
+    public Duration getSendWait() {
+        lock.lock();
+
+        try {
+            return Duration.ofNanos(sendWaitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the total time the build finder waited for the analyzer to send checksums.
+     *
+     * @return the time waited
+     */
+    public Duration getReceiveWait() {
+        lock.lock();
+
+        try {
+            return Duration.ofNanos(receiveWaitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChecksumChannel{" + "numChecksums=" + getNumChecksums() + ", numBatches=" + getNumBatches()
+                + ", maxQueued=" + getMaxQueued() + ", sendWait=" + getSendWait() + ", receiveWait="
+                + getReceiveWait() + '}';
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.vfs2.FileName;
+
+/**
+ * An input stream which computes the checksums of everything read from the underlying input stream, so that a file can
+ * be checksummed while it is read by something else, such as an archive reader. Skipped bytes are read as well, so that
+ * the checksums always cover the whole stream.
+ */
+final class ChecksumInputStream extends FilterInputStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Map<ChecksumType, MessageDigest> mds;
+
+    ChecksumInputStream(InputStream in, Collection<ChecksumType> checksumTypes) throws IOException {
+        super(in);
+        mds = Checksum.getMessageDigests(checksumTypes);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+
+        if (b != -1) {
+            for (MessageDigest md : mds.values()) {
+                md.update((byte) b);
+            }
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+
+        if (read > 0) {
+            for (MessageDigest md : mds.values()) {
+                md.update(b, off, read);
+            }
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 0L))];
+        long skipped = 0L;
+        int read;
+
+        while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) > 0) {
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported, since the bytes read again would be checksummed twice
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Reads the rest of the underlying input stream and returns the checksums of everything read from it.
+     *
+     * @param filename the file name
+     * @param fileSize the file size
+     * @param root the root prefix to remove from the file name
+     * @return the checksums
+     * @throws IOException if an error occurs while reading from the input stream
+     */
+    Set<Checksum> finish(FileName filename, long fileSize, String root) throws IOException {
+        skip(Long.MAX_VALUE);
+
+        return Checksum.getChecksums(mds, filename, fileSize, root);
+    }
+}
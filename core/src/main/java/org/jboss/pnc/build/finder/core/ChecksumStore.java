@@ -0,0 +1,650 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.AbstractMultiValuedMap;
+import org.apache.commons.collections4.multimap.UnmodifiableMultiValuedMap;
+
+/**
+ * Stores the checksums of the files found by the distribution analyzer. Every checksum type keeps the bytes of its
+ * digests in a single array, indexed by open addressing, and refers to files by an int file id shared between all
+ * checksum types, so that neither the checksum values of a file nor the files of a checksum value are kept as objects.
+ * A file is identified by its name and size, and a checksum is only stored once for the same file. File names are kept
+ * as ids of a {@link PathDictionary}.
+ * <p>
+ * The maps returned are read-only views, which create the hex strings, local files and checksums they contain when they
+ * are read. All access to the store is synchronized, so the views may be read while checksums are still being added.
+ */
+final class ChecksumStore {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int NONE = -1;
+
+    private final Map<ChecksumType, Digests> digests;
+
+    private final Map<ChecksumType, MultiValuedMap<String, LocalFile>> checksums;
+
+    private final Map<String, Collection<Checksum>> files;
+
+    private final PathDictionary paths;
+
+    private int[] pathIds;
+
+    private long[] fileSizes;
+
+    private int[] nextWithFilename;
+
+    private int numFiles;
+
+    private int[] firstWithFilename;
+
+    private int numFilenames;
+
+    private int[] firstOfPath;
+
+    ChecksumStore(Collection<ChecksumType> checksumTypes) {
+        digests = new EnumMap<>(ChecksumType.class);
+        Map<ChecksumType, MultiValuedMap<String, LocalFile>> views = new EnumMap<>(ChecksumType.class);
+
+        for (ChecksumType checksumType : checksumTypes) {
+            digests.put(checksumType, new Digests(checksumType.getDigestLength()));
+            views.put(
+                    checksumType,
+                    UnmodifiableMultiValuedMap.unmodifiableMultiValuedMap(new LocalFilesMultiValuedMap(checksumType)));
+        }
+
+        checksums = Collections.unmodifiableMap(views);
+        files = new FilesMap();
+        paths = new PathDictionary();
+        pathIds = new int[INITIAL_CAPACITY];
+        fileSizes = new long[INITIAL_CAPACITY];
+        nextWithFilename = new int[INITIAL_CAPACITY];
+        firstWithFilename = new int[INITIAL_CAPACITY];
+        firstOfPath = newIndex(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the checksum of the given type and digest to the file of the given name and size.
+     *
+     * @param checksumType the checksum type
+     * @param digest the digest
+     * @param filename the file name
+     * @param fileSize the file size
+     * @return whether the checksum was added, rather than already stored for the file
+     * @throws IllegalArgumentException if the checksum type is not stored or the digest is not of that type
+     */
+    synchronized boolean add(ChecksumType checksumType, Digest digest, String filename, long fileSize) {
+        return getDigests(checksumType, digest).add(digest, getFileId(filename, fileSize));
+    }
+
+    /**
+     * Adds the given checksum to its file, and returns the id of the file.
+     *
+     * @param checksum the checksum
+     * @return the file id
+     * @throws IllegalArgumentException if the checksum type is not stored or the digest is not of that type
+     */
+    synchronized int addChecksum(Checksum checksum) {
+        Digests typeDigests = getDigests(checksum.getType(), checksum.getDigest());
+        int fileId = getFileId(checksum.getFilename(), checksum.getFileSize());
+        typeDigests.add(checksum.getDigest(), fileId);
+        return fileId;
+    }
+
+    /**
+     * Returns the checksums of the file with the given id.
+     *
+     * @param fileId the file id
+     * @return the checksums
+     */
+    synchronized List<Checksum> getChecksums(int fileId) {
+        List<Checksum> fileChecksums = new ArrayList<>(digests.size());
+        addChecksums(fileId, paths.get(pathIds[fileId]), fileChecksums);
+        return fileChecksums;
+    }
+
+    private Digests getDigests(ChecksumType checksumType, Digest digest) {
+        Digests typeDigests = digests.get(checksumType);
+
+        if (typeDigests == null) {
+            throw new IllegalArgumentException("Checksum type " + checksumType + " is not stored");
+        }
+
+        if (digest.length() != checksumType.getDigestLength()) {
+            throw new IllegalArgumentException("Invalid " + checksumType + " checksum value: " + digest);
+        }
+
+        return typeDigests;
+    }
+
+    /**
+     * Adds the given checksums, taking the lock of the store only once.
+     *
+     * @param checksums the checksums
+     * @throws IllegalArgumentException if the type of a checksum is not stored or its digest is not of that type
+     */
+    synchronized void addAll(Collection<Checksum> checksums) {
+        for (Checksum checksum : checksums) {
+            add(checksum.getType(), checksum.getDigest(), checksum.getFilename(), checksum.getFileSize());
+        }
+    }
+
+    /**
+     * Returns the number of checksums of the given type, which is the number of files with that checksum type.
+     *
+     * @param checksumType the checksum type
+     * @return the number of checksums
+     */
+    synchronized int size(ChecksumType checksumType) {
+        return digests.get(checksumType).numRecords;
+    }
+
+    /**
+     * Returns a read-only view of the checksums stored. For each checksum type (key), the checksum values of the files.
+     *
+     * @return the checksums
+     */
+    Map<ChecksumType, MultiValuedMap<String, LocalFile>> getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Returns a read-only view of the files stored. For each file name (key), the checksums of the files of that name.
+     *
+     * @return the files
+     */
+    Map<String, Collection<Checksum>> getFiles() {
+        return files;
+    }
+
+    private int getFileId(String filename, long fileSize) {
+        int pathId = paths.add(filename);
+
+        if (pathId >= firstOfPath.length) {
+            int length = firstOfPath.length;
+            firstOfPath = Arrays.copyOf(firstOfPath, Math.max(length * 2, pathId + 1));
+            Arrays.fill(firstOfPath, length, firstOfPath.length, NONE);
+        }
+
+        int last = NONE;
+
+        for (int fileId = firstOfPath[pathId]; fileId != NONE; fileId = nextWithFilename[fileId]) {
+            if (fileSizes[fileId] == fileSize) {
+                return fileId;
+            }
+
+            last = fileId;
+        }
+
+        if (numFiles == pathIds.length) {
+            int capacity = numFiles * 2;
+            pathIds = Arrays.copyOf(pathIds, capacity);
+            fileSizes = Arrays.copyOf(fileSizes, capacity);
+            nextWithFilename = Arrays.copyOf(nextWithFilename, capacity);
+        }
+
+        int fileId = numFiles++;
+        pathIds[fileId] = pathId;
+        fileSizes[fileId] = fileSize;
+        nextWithFilename[fileId] = NONE;
+
+        if (last != NONE) {
+            nextWithFilename[last] = fileId;
+            return fileId;
+        }
+
+        firstOfPath[pathId] = fileId;
+
+        if (numFilenames == firstWithFilename.length) {
+            firstWithFilename = Arrays.copyOf(firstWithFilename, numFilenames * 2);
+        }
+
+        firstWithFilename[numFilenames++] = fileId;
+
+        return fileId;
+    }
+
+    private int findFirstWithFilename(String filename) {
+        int pathId = paths.find(filename);
+        return pathId != PathDictionary.NONE && pathId < firstOfPath.length ? firstOfPath[pathId] : NONE;
+    }
+
+    private synchronized List<Checksum> getChecksums(String filename) {
+        int first = findFirstWithFilename(filename);
+
+        if (first == NONE) {
+            return null;
+        }
+
+        List<Checksum> fileChecksums = new ArrayList<>();
+
+        for (int fileId = first; fileId != NONE; fileId = nextWithFilename[fileId]) {
+            addChecksums(fileId, filename, fileChecksums);
+        }
+
+        return fileChecksums;
+    }
+
+    private void addChecksums(int fileId, String filename, List<Checksum> fileChecksums) {
+        for (Map.Entry<ChecksumType, Digests> entry : digests.entrySet()) {
+            Digests typeDigests = entry.getValue();
+
+            int record = fileId < typeDigests.firstOfFile.length ? typeDigests.firstOfFile[fileId] : NONE;
+
+            while (record != NONE) {
+                fileChecksums
+                        .add(new Checksum(entry.getKey(), typeDigests.digest(record), filename, fileSizes[fileId]));
+                record = typeDigests.nextOfFile[record];
+            }
+        }
+    }
+
+    private static Digest decode(ChecksumType checksumType, Object value) {
+        if (!(value instanceof String) || ((String) value).length() != checksumType.getDigestLength() * 2) {
+            return null;
+        }
+
+        try {
+            return Digest.fromHex((String) value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int[] newIndex(int size) {
+        int[] index = new int[size];
+        Arrays.fill(index, NONE);
+        return index;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * The digests of a single checksum type. Every file with a checksum of this type has a record, holding its digest
+     * and file id. Records with the same digest, as well as records of the same file, are linked to one another.
+     */
+    private static final class Digests {
+        private final int width;
+
+        private byte[] values;
+
+        private int[] fileIds;
+
+        private int[] nextWithValue;
+
+        private int[] nextOfFile;
+
+        private int numRecords;
+
+        private int[] firstWithValue;
+
+        private int numValues;
+
+        private int[] valueIndex;
+
+        private int[] firstOfFile;
+
+        private Digests(int width) {
+            this.width = width;
+            values = new byte[INITIAL_CAPACITY * width];
+            fileIds = new int[INITIAL_CAPACITY];
+            nextWithValue = new int[INITIAL_CAPACITY];
+            nextOfFile = new int[INITIAL_CAPACITY];
+            firstWithValue = new int[INITIAL_CAPACITY];
+            valueIndex = newIndex(INITIAL_CAPACITY * 2);
+            firstOfFile = newIndex(INITIAL_CAPACITY);
+        }
+
+        private boolean add(Digest digest, int fileId) {
+            int slot = findValue(digest.hashCode(), digest);
+            int first = valueIndex[slot];
+            int last = NONE;
+
+            for (int record = first; record != NONE; record = nextWithValue[record]) {
+                if (fileIds[record] == fileId) {
+                    return false;
+                }
+
+                last = record;
+            }
+
+            if (numRecords == fileIds.length) {
+                int capacity = numRecords * 2;
+                values = Arrays.copyOf(values, capacity * width);
+                fileIds = Arrays.copyOf(fileIds, capacity);
+                nextWithValue = Arrays.copyOf(nextWithValue, capacity);
+                nextOfFile = Arrays.copyOf(nextOfFile, capacity);
+            }
+
+            int record = numRecords++;
+            digest.copyTo(values, record * width);
+            fileIds[record] = fileId;
+            nextWithValue[record] = NONE;
+            nextOfFile[record] = NONE;
+
+            if (last != NONE) {
+                nextWithValue[last] = record;
+            } else {
+                addValue(slot, record);
+            }
+
+            if (fileId >= firstOfFile.length) {
+                int length = firstOfFile.length;
+                firstOfFile = Arrays.copyOf(firstOfFile, Math.max(length * 2, fileId + 1));
+                Arrays.fill(firstOfFile, length, firstOfFile.length, NONE);
+            }
+
+            if (firstOfFile[fileId] == NONE) {
+                firstOfFile[fileId] = record;
+            } else {
+                int previous = firstOfFile[fileId];
+
+                while (nextOfFile[previous] != NONE) {
+                    previous = nextOfFile[previous];
+                }
+
+                nextOfFile[previous] = record;
+            }
+
+            return true;
+        }
+
+        private void addValue(int slot, int record) {
+            valueIndex[slot] = record;
+
+            if (numValues == firstWithValue.length) {
+                firstWithValue = Arrays.copyOf(firstWithValue, numValues * 2);
+            }
+
+            firstWithValue[numValues++] = record;
+
+            if (numValues * 2 > valueIndex.length) {
+                valueIndex = newIndex(valueIndex.length * 2);
+
+                for (int i = 0; i < numValues; i++) {
+                    int first = firstWithValue[i];
+                    valueIndex[findValue(Digest.hash(values, first * width, width), null)] = first;
+                }
+            }
+        }
+
+        /**
+         * Returns the slot of the digest with the given hash code, which holds either the first record with that digest
+         * or {@code NONE}. If the given digest is {@code null}, the digest is known not to be indexed.
+         */
+        private int findValue(int hash, Digest digest) {
+            int mask = valueIndex.length - 1;
+            int slot = mix(hash) & mask;
+
+            while (valueIndex[slot] != NONE && (digest == null || !digest.equals(values, valueIndex[slot] * width))) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        private int find(Digest digest) {
+            return digest != null ? valueIndex[findValue(digest.hashCode(), digest)] : NONE;
+        }
+
+        private Digest digest(int record) {
+            return Digest.wrap(Arrays.copyOfRange(values, record * width, (record + 1) * width));
+        }
+    }
+
+    /**
+     * The local files of a single checksum value, in the order they were added.
+     */
+    private final class LocalFiles extends AbstractCollection<LocalFile> {
+        private final Digests typeDigests;
+
+        private final int first;
+
+        private LocalFiles(Digests typeDigests, int first) {
+            this.typeDigests = typeDigests;
+            this.first = first;
+        }
+
+        @Override
+        public Iterator<LocalFile> iterator() {
+            return new Iterator<>() {
+                private int record = first;
+
+                @Override
+                public boolean hasNext() {
+                    return record != NONE;
+                }
+
+                @Override
+                public LocalFile next() {
+                    if (record == NONE) {
+                        throw new NoSuchElementException();
+                    }
+
+                    synchronized (ChecksumStore.this) {
+                        int fileId = typeDigests.fileIds[record];
+                        record = typeDigests.nextWithValue[record];
+                        return new LocalFile(paths.get(pathIds[fileId]), fileSizes[fileId]);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            synchronized (ChecksumStore.this) {
+                int size = 0;
+
+                for (int record = first; record != NONE; record = typeDigests.nextWithValue[record]) {
+                    size++;
+                }
+
+                return size;
+            }
+        }
+    }
+
+    /**
+     * The checksum values of a single checksum type (key) and the local files with each checksum value.
+     */
+    private final class LocalFilesMap extends AbstractMap<String, Collection<LocalFile>> {
+        private final ChecksumType checksumType;
+
+        private final Digests typeDigests;
+
+        private LocalFilesMap(ChecksumType checksumType) {
+            this.checksumType = checksumType;
+            typeDigests = digests.get(checksumType);
+        }
+
+        @Override
+        public Collection<LocalFile> get(Object key) {
+            synchronized (ChecksumStore.this) {
+                int first = typeDigests.find(decode(checksumType, key));
+                return first != NONE ? new LocalFiles(typeDigests, first) : null;
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            synchronized (ChecksumStore.this) {
+                return typeDigests.numValues;
+            }
+        }
+
+        @Override
+        public Set<Entry<String, Collection<LocalFile>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Collection<LocalFile>>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size();
+                        }
+
+                        @Override
+                        public Entry<String, Collection<LocalFile>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            synchronized (ChecksumStore.this) {
+                                int first = typeDigests.firstWithValue[index++];
+                                return new SimpleImmutableEntry<>(
+                                        typeDigests.digest(first).toHex(),
+                                        new LocalFiles(typeDigests, first));
+                            }
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return LocalFilesMap.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * The checksum values of a single checksum type as a multi-valued map, as returned by the distribution analyzer.
+     */
+    private final class LocalFilesMultiValuedMap extends AbstractMultiValuedMap<String, LocalFile> {
+        private final ChecksumType checksumType;
+
+        private LocalFilesMultiValuedMap(ChecksumType checksumType) {
+            super(new LocalFilesMap(checksumType));
+            this.checksumType = checksumType;
+        }
+
+        @Override
+        protected Collection<LocalFile> createCollection() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int size() {
+            return ChecksumStore.this.size(checksumType);
+        }
+    }
+
+    /**
+     * The file names (key) and the checksums of the files with each name.
+     */
+    private final class FilesMap extends AbstractMap<String, Collection<Checksum>> {
+        @Override
+        public Collection<Checksum> get(Object key) {
+            if (!(key instanceof String) || !containsKey(key)) {
+                return null;
+            }
+
+            String filename = (String) key;
+
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Checksum> iterator() {
+                    return Collections.unmodifiableList(getChecksums(filename)).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return getChecksums(filename).size();
+                }
+            };
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+
+            synchronized (ChecksumStore.this) {
+                return findFirstWithFilename((String) key) != NONE;
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (ChecksumStore.this) {
+                return numFilenames;
+            }
+        }
+
+        @Override
+        public Set<Entry<String, Collection<Checksum>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Collection<Checksum>>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size();
+                        }
+
+                        @Override
+                        public Entry<String, Collection<Checksum>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            String filename;
+
+                            synchronized (ChecksumStore.this) {
+                                filename = paths.get(pathIds[firstWithFilename[index++]]);
+                            }
+
+                            return new SimpleImmutableEntry<>(filename, get(filename));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return FilesMap.this.size();
+                }
+            };
+        }
+    }
+}
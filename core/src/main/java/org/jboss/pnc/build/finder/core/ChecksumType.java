@@ -16,15 +16,18 @@
 package org.jboss.pnc.build.finder.core;
 
 public enum ChecksumType {
-    md5(0, "MD5"), sha1(1, "SHA-1"), sha256(2, "SHA-256");
+    md5(0, "MD5", 16), sha1(1, "SHA-1", 20), sha256(2, "SHA-256", 32);
 
     private final Integer value;
 
     private final String algorithm;
 
-    ChecksumType(int value, String algorithm) {
+    private final int digestLength;
+
+    ChecksumType(int value, String algorithm, int digestLength) {
         this.value = value;
         this.algorithm = algorithm;
+        this.digestLength = digestLength;
     }
 
     public static ChecksumType fromInteger(Integer value) {
@@ -44,4 +47,8 @@ public enum ChecksumType {
     public String getAlgorithm() {
         return algorithm;
     }
+
+    public int getDigestLength() {
+        return digestLength;
+    }
 }
@@ -26,6 +26,7 @@ import java.util.regex.Pattern;
 
 public abstract class ConfigDefaults {
     private static final Path USER_HOME = Utils.getUserHome();
+    public static final Integer ANALYZER_NUM_THREADS = Runtime.getRuntime().availableProcessors() * 2;
     public static final List<String> ARCHIVE_TYPES = List.of("jar", "xml", "pom", "so", "dll", "dylib");
     public static final List<String> ARCHIVE_EXTENSIONS = List.of(
             "dll",
@@ -42,6 +43,7 @@ public abstract class ConfigDefaults {
             "so",
             "war",
             "xml");
+    public static final Long ARCHIVE_MEMORY_THRESHOLD = 16L * 1024L * 1024L;
     public static final List<BuildSystem> BUILD_SYSTEMS = List.of(BuildSystem.pnc, BuildSystem.koji);
     public static final Long CACHE_LIFESPAN = TimeUnit.HOURS.toMillis(1L);
     public static final Long CACHE_MAX_IDLE = TimeUnit.HOURS.toMillis(1L);
@@ -53,8 +55,10 @@ public abstract class ConfigDefaults {
     public static final Path CONFIG = CONFIG_PATH.resolve(CONFIG_FILE);
     public static final Boolean DISABLE_CACHE = Boolean.FALSE;
     public static final Path CACHE_LOCATION = CONFIG_PATH.resolve("cache");
+    public static final Boolean DISABLE_NATIVE_ZIP = Boolean.FALSE;
     public static final Boolean DISABLE_RECURSION = Boolean.FALSE;
     public static final List<Pattern> EXCLUDES = List.of(Pattern.compile("^(?!.*/pom\\.xml$).*/.*\\.xml$"));
+    public static final Integer KOJI_HEDGE_PERCENTILE = 0;
     public static final URL KOJI_HUB_URL = null;
     public static final Integer KOJI_MULTICALL_SIZE = 150;
     public static final Integer KOJI_NUM_THREADS = 12;
@@ -67,6 +71,7 @@ public abstract class ConfigDefaults {
     public static final URL PNC_URL = null;
     public static final Boolean USE_BUILDS_FILE = Boolean.FALSE;
     public static final Boolean USE_CHECKSUMS_FILE = Boolean.FALSE;
+    public static final Boolean VERIFY = Boolean.FALSE;
 
     private ConfigDefaults() {
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * The binary value of a checksum. Digests are hashed and compared without allocating, and without converting them to
+ * hex, which is only done when a digest is output or passed to a build system. Digests are ordered like their hex
+ * strings.
+ */
+public final class Digest implements Comparable<Digest>, Serializable {
+    @Serial
+    private static final long serialVersionUID = 2954286452245513874L;
+
+    private final byte[] bytes;
+
+    private final int hash;
+
+    private Digest(byte[] bytes) {
+        this.bytes = bytes;
+        hash = hash(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the digest with the given bytes.
+     *
+     * @param bytes the bytes, which are copied
+     * @return the digest
+     */
+    public static Digest of(byte[] bytes) {
+        return new Digest(bytes.clone());
+    }
+
+    /**
+     * Returns the digest with the given bytes, which must not be modified afterwards, such as those just returned by a
+     * message digest.
+     *
+     * @param bytes the bytes
+     * @return the digest
+     */
+    static Digest wrap(byte[] bytes) {
+        return new Digest(bytes);
+    }
+
+    /**
+     * Returns the digest with the given hex value.
+     *
+     * @param value the hex value
+     * @return the digest
+     * @throws IllegalArgumentException if the value is not a hex string
+     */
+    public static Digest fromHex(String value) {
+        try {
+            return new Digest(Hex.decodeHex(value));
+        } catch (DecoderException e) {
+            throw new IllegalArgumentException("Invalid checksum value: " + value, e);
+        }
+    }
+
+    /**
+     * Returns the hash code of the digest with the given bytes in the given array, which is the same as the hash code
+     * of the digest itself. Since digests are uniformly distributed, their first bytes are as good a hash code as any.
+     *
+     * @param array the array
+     * @param offset the offset of the digest in the array
+     * @param length the length of the digest
+     * @return the hash code
+     */
+    static int hash(byte[] array, int offset, int length) {
+        int h = 0;
+
+        for (int i = offset; i < offset + Math.min(length, Integer.BYTES); i++) {
+            h = h << Byte.SIZE | array[i] & 0xFF;
+        }
+
+        return h;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    void copyTo(byte[] array, int offset) {
+        System.arraycopy(bytes, 0, array, offset, bytes.length);
+    }
+
+    boolean equals(byte[] array, int offset) {
+        return Arrays.equals(bytes, 0, bytes.length, array, offset, offset + bytes.length);
+    }
+
+    public String toHex() {
+        return Hex.encodeHexString(bytes);
+    }
+
+    @Override
+    public int compareTo(Digest o) {
+        return Arrays.compareUnsigned(bytes, o.bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        Digest digest = (Digest) o;
+        return hash == digest.hash && Arrays.equals(bytes, digest.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
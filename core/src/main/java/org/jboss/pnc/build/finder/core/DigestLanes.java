@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Updates the message digests of several checksum types in parallel, one lane per digest, so that checksumming a large
+ * file takes as long as its slowest algorithm rather than all of them together. The calling thread is the first lane,
+ * and the other lanes run on threads of their own rather than on the threads of the distribution analyzer, since the
+ * calling thread waits for them.
+ * <p>
+ * A stream is read by the calling thread into a small ring of reusable buffers, each of which is consumed by every
+ * lane and then reused once all of them are done with it.
+ */
+final class DigestLanes {
+    /**
+     * Files smaller than this are digested on the calling thread only, since starting the lanes costs more than they
+     * save.
+     */
+    static final long MIN_SIZE = 4194304L;
+
+    private static final int BUFFER_SIZE = 1048576;
+
+    private static final int NUM_BUFFERS = 4;
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final ExecutorService LANES = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "digest-lane-" + THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DigestLanes() {
+        throw new IllegalArgumentException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Returns whether the given digests should be updated in parallel for a file of the given size.
+     *
+     * @param mds the message digests
+     * @param size the file size, or -1 if unknown
+     * @return whether to use lanes
+     */
+    static boolean useLanes(Collection<MessageDigest> mds, long size) {
+        return mds.size() > 1 && size >= MIN_SIZE;
+    }
+
+    /**
+     * Updates every digest with the remaining contents of the given buffer in parallel. The position of the buffer is
+     * not changed.
+     *
+     * @param mds the message digests
+     * @param buffer the buffer
+     * @throws IOException if the thread is interrupted while waiting for the lanes
+     */
+    static void update(Collection<MessageDigest> mds, ByteBuffer buffer) throws IOException {
+        Iterator<MessageDigest> it = mds.iterator();
+        MessageDigest first = it.next();
+        List<Future<?>> lanes = new ArrayList<>(mds.size() - 1);
+
+        while (it.hasNext()) {
+            MessageDigest md = it.next();
+            lanes.add(LANES.submit(() -> md.update(buffer.duplicate())));
+        }
+
+        first.update(buffer.duplicate());
+        await(lanes);
+    }
+
+    /**
+     * Reads the given channel to the end and updates every digest with its contents in parallel.
+     *
+     * @param mds the message digests
+     * @param channel the channel
+     * @throws IOException if an error occurs while reading from the channel
+     */
+    static void update(Collection<MessageDigest> mds, ReadableByteChannel channel) throws IOException {
+        BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(NUM_BUFFERS);
+        Iterator<MessageDigest> it = mds.iterator();
+        MessageDigest first = it.next();
+        List<BlockingQueue<ByteBuffer>> queues = new ArrayList<>(mds.size() - 1);
+        List<Future<?>> lanes = new ArrayList<>(mds.size() - 1);
+        AtomicInteger[] references = new AtomicInteger[NUM_BUFFERS];
+
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            // The array offset identifies the buffer, so that its reference count can be found
+            free.add(ByteBuffer.wrap(new byte[BUFFER_SIZE * NUM_BUFFERS], BUFFER_SIZE * i, BUFFER_SIZE).slice());
+            references[i] = new AtomicInteger();
+        }
+
+        while (it.hasNext()) {
+            MessageDigest md = it.next();
+            // There can be no more than all buffers and the end of the stream in the queue, so adding never blocks
+            BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+            queues.add(queue);
+            lanes.add(LANES.submit(() -> {
+                ByteBuffer buffer;
+
+                while ((buffer = queue.take()) != END) {
+                    md.update(buffer.duplicate());
+                    release(buffer, references, free);
+                }
+
+                return null;
+            }));
+        }
+
+        try {
+            ByteBuffer buffer;
+
+            do {
+                buffer = free.take();
+                buffer.clear();
+                IOUtils.read(channel, buffer);
+                buffer.flip();
+
+                if (buffer.hasRemaining()) {
+                    references[buffer.arrayOffset() / BUFFER_SIZE].set(mds.size());
+
+                    for (BlockingQueue<ByteBuffer> queue : queues) {
+                        queue.add(buffer);
+                    }
+
+                    first.update(buffer.duplicate());
+                    release(buffer, references, free);
+                }
+            } while (buffer.limit() == BUFFER_SIZE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            for (BlockingQueue<ByteBuffer> queue : queues) {
+                queue.add(END);
+            }
+        }
+
+        await(lanes);
+    }
+
+    private static void release(ByteBuffer buffer, AtomicInteger[] references, BlockingQueue<ByteBuffer> free) {
+        if (references[buffer.arrayOffset() / BUFFER_SIZE].decrementAndGet() == 0) {
+            free.add(buffer);
+        }
+    }
+
+    private static void await(List<Future<?>> lanes) throws IOException {
+        try {
+            for (Future<?> lane : lanes) {
+                lane.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -18,7 +18,6 @@ package org.jboss.pnc.build.finder.core;
 import static java.util.Comparator.reverseOrder;
 import static java.util.Map.Entry.comparingByValue;
 import static java.util.function.Function.identity;
-import static java.util.function.Predicate.not;
 import static java.util.stream.Collectors.counting;
 import static java.util.stream.Collectors.groupingBy;
 import static org.jboss.pnc.build.finder.core.AnsiUtils.boldRed;
@@ -29,6 +28,7 @@ import static org.jboss.pnc.build.finder.core.LicenseUtils.getFirstNonBlankStrin
 import static org.jboss.pnc.build.finder.core.LicenseUtils.isManifestMfFileName;
 import static org.jboss.pnc.build.finder.core.LicenseUtils.isUrl;
 import static org.jboss.pnc.build.finder.core.MavenUtils.getLicenses;
+import static org.jboss.pnc.build.finder.core.MavenUtils.getMavenProject;
 import static org.jboss.pnc.build.finder.core.MavenUtils.isPom;
 import static org.jboss.pnc.build.finder.core.MavenUtils.isPomXml;
 import static org.jboss.pnc.build.finder.core.SpdxLicenseUtils.NOASSERTION;
@@ -43,53 +43,94 @@ import static org.jboss.pnc.build.finder.core.Utils.getAllErrorMessages;
 import static org.jboss.pnc.build.finder.core.Utils.normalizePath;
 import static org.jboss.pnc.build.finder.core.Utils.shutdownAndAwaitTermination;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
 
 import org.apache.commons.collections4.MultiValuedMap;
 import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
+import org.apache.commons.compress.archivers.EntryStreamOffsets;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
 import org.apache.commons.vfs2.FileContent;
-import org.apache.commons.vfs2.FileExtensionSelector;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelectInfo;
+import org.apache.commons.vfs2.FileSelector;
 import org.apache.commons.vfs2.FileSystem;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.InvertIncludeFileSelector;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.impl.DecoratedFileObject;
+import org.apache.commons.vfs2.impl.DefaultFileReplicator;
 import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.apache.commons.vfs2.provider.LayeredFileName;
+import org.apache.commons.vfs2.provider.UriParser;
 import org.apache.commons.vfs2.provider.http5.Http5FileProvider;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.interpolation.InterpolationException;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.infinispan.commons.api.BasicCache;
@@ -113,6 +154,33 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
     private static final List<String> JAR_EXTENSIONS = List
             .of("jar", "war", "rar", "ear", "sar", "kar", "jdocbook", "jdocbook-style", "plugin");
 
+    /**
+     * Archives with these extensions are read directly as zip files, without creating a Commons VFS file system for
+     * them.
+     */
+    private static final List<String> ZIP_EXTENSIONS = Stream.concat(JAR_EXTENSIONS.stream(), Stream.of("zip"))
+            .toList();
+
+    /**
+     * Tar archives with these extensions are read in a single pass, without creating a Commons VFS file system for
+     * them. This includes tar archives compressed as a whole, whose Commons VFS file systems are tar file systems as
+     * well.
+     */
+    private static final List<String> TAR_EXTENSIONS = List.of("tar", "tgz", "tbz2");
+
+    /**
+     * Compressed files with these extensions are read as a file system containing a single file by Commons VFS. If that
+     * file is a tar archive, then both are read in a single pass instead.
+     */
+    private static final List<String> COMPRESSED_FILE_EXTENSIONS = List.of("gz", "bz2");
+
+    /**
+     * Characters that Commons VFS encodes in the names of zip and tar file entries.
+     */
+    private static final char[] ARCHIVE_ENTRY_RESERVED_CHARS = { '!' };
+
+    private static final String TEMP_FILE_PREFIX = "build-finder-";
+
     private static final String[] JARS_TO_IGNORE = {
             "-sources.jar" + BANG_SLASH,
             "-javadoc.jar" + BANG_SLASH,
@@ -126,16 +194,51 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
 
     private static final int FILE_ERRORS_SIZE = 2;
 
-    private static final int LOCAL_FILES_SIZE = 44515;
+    /**
+     * Maximum number of non-POM files held back while traversing an archive so that POM files found nearby are handled
+     * first.
+     */
+    private static final int DEFERRED_FILES_SIZE = 256;
 
-    private final List<String> inputs;
+    /**
+     * Maximum number of checksum tasks of a single archive run at the same time per thread of the pool. The other tasks
+     * of the archive wait until one of them is done, so that the buffers they hold stay bounded.
+     */
+    static final int PENDING_CHECKSUM_TASKS_PER_THREAD = 4;
+
+    /**
+     * Maximum number of batches of checksums queued for the build finder before the analyzer waits for it.
+     */
+    static final int MAX_QUEUED_BATCHES = 16;
+
+    /**
+     * Number of checksums collected by a stripe of results before they are added to the store and sent to the channel.
+     */
+    private static final int RESULTS_SIZE = 256;
 
-    private final MultiValuedMap<String, Checksum> inverseMap;
+    /**
+     * Number of checksums collected by a stripe of results before it waits for another thread to finish adding its
+     * results, rather than going on collecting them.
+     */
+    private static final int MAX_RESULTS_SIZE = RESULTS_SIZE * 32;
+
+    /**
+     * Time in nanoseconds after which the checksums collected by a stripe of results are added to the store and sent to
+     * the channel, even if there are fewer of them than {@link #RESULTS_SIZE}, so that the build finder receives them
+     * soon.
+     */
+    private static final long MAX_RESULTS_AGE = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    private final List<String> inputs;
 
     private final BuildConfig config;
 
     private final Map<ChecksumType, BasicCache<String, MultiValuedMapProtobufWrapper<String, LocalFile>>> fileCaches;
 
+    private final Map<ChecksumType, BasicCache<String, String>> entryCaches;
+
+    private final Map<ChecksumType, BasicCache<String, String>> fingerprintCaches;
+
     private final BasicCacheContainer cacheManager;
 
     private final ExecutorService pool;
@@ -144,14 +247,52 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
 
     private final List<FileError> fileErrors;
 
-    private Map<ChecksumType, MultiValuedMap<String, LocalFile>> map;
+    private ChecksumStore checksumStore;
 
     private final Map<String, Collection<LicenseInfo>> licensesMap;
 
-    private String root;
+    private final LongAdder bytesSpilled;
+
+    private final LongAdder bytesAvoided;
+
+    private final Map<Integer, QueueStatistics> queueStatistics;
+
+    private final Map<String, ArchiveListing> listedArchives;
+
+    private final Map<String, ArchiveListing> recordingArchives;
+
+    private final Map<String, String> archiveKeys;
+
+    private final LongAdder archivesReplayed;
+
+    private final LongAdder entriesCached;
+
+    private final LongAdder filesSkipped;
+
+    private final LongAdder bytesSkipped;
+
+    private final FilePrefilter configPrefilter;
+
+    private volatile FilePrefilter prefilter;
+
+    private volatile boolean started;
+
+    private final ChecksumChannel channel;
 
     private BlockingQueue<Checksum> queue;
 
+    private final Results[] results;
+
+    private final AtomicInteger nextResults;
+
+    private final ThreadLocal<Results> threadResults;
+
+    private final ReentrantLock resultsLock;
+
+    private volatile boolean sendingChecksums;
+
+    private FileSystemManagers managers;
+
     private DistributionAnalyzerListener listener;
 
     public DistributionAnalyzer(List<String> inputs, BuildConfig config) {
@@ -171,8 +312,8 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
         this.inputs = inputs;
         this.config = config;
         checksumTypesToCheck = EnumSet.copyOf(config.getChecksumTypes());
-        map = new EnumMap<>(ChecksumType.class);
-        licensesMap = new TreeMap<>();
+        checksumStore = new ChecksumStore(checksumTypesToCheck);
+        licensesMap = new ConcurrentSkipListMap<>();
         String licenseListVersion = getSPDXLicenseListVersion();
         int licenseListSize = getNumberOfSPDXLicenses();
         LOGGER.info(
@@ -180,156 +321,356 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
                 green(licenseListVersion),
                 green(licenseListSize));
 
-        for (ChecksumType checksumType : checksumTypesToCheck) {
-            map.put(checksumType, new HashSetValuedHashMap<>()); // TODO: size
-        }
-
-        inverseMap = new HashSetValuedHashMap<>(); // TODO: size
-
         this.cacheManager = cacheManager;
 
         fileCaches = new EnumMap<>(ChecksumType.class);
+        entryCaches = new EnumMap<>(ChecksumType.class);
+        fingerprintCaches = new EnumMap<>(ChecksumType.class);
 
         if (cacheManager != null) {
             for (ChecksumType checksumType : checksumTypesToCheck) {
                 fileCaches.put(checksumType, cacheManager.getCache("files-" + checksumType));
+                entryCaches.put(checksumType, cacheManager.getCache("entries-" + checksumType));
+                fingerprintCaches.put(checksumType, cacheManager.getCache("fingerprints-" + checksumType));
             }
         }
 
-        pool = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors() * 2);
+        // Tasks forked by a worker are run last in first out, so nested archives are finished before new ones start
+        pool = new ForkJoinPool(config.getAnalyzerNumThreads());
         fileErrors = new CopyOnWriteArrayList<>();
+        bytesSpilled = new LongAdder();
+        bytesAvoided = new LongAdder();
+        queueStatistics = new ConcurrentSkipListMap<>();
+        listedArchives = new ConcurrentHashMap<>();
+        recordingArchives = new ConcurrentHashMap<>();
+        archiveKeys = new ConcurrentHashMap<>();
+        archivesReplayed = new LongAdder();
+        entriesCached = new LongAdder();
+        filesSkipped = new LongAdder();
+        bytesSkipped = new LongAdder();
+        configPrefilter = new FilePrefilter(config.getArchiveExtensions(), config.getExcludes());
+        prefilter = configPrefilter;
+        // Created here rather than in call(), so that the build finder can start receiving before the analyzer starts
+        channel = new ChecksumChannel(config.getKojiMulticallSize(), MAX_QUEUED_BATCHES);
+        // Every thread is given the next stripe in turn, and there are enough stripes that the threads rarely share one
+        results = new Results[Integer.highestOneBit(config.getAnalyzerNumThreads() * 4) * 2];
+        nextResults = new AtomicInteger();
+        threadResults = ThreadLocal.withInitial(() -> results[nextResults.getAndIncrement() & results.length - 1]);
+        resultsLock = new ReentrantLock();
+
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new Results();
+        }
     }
 
-    private static boolean isJavaArchive(FileObject fo) {
-        return FilenameUtils.isExtension(fo.getName().getBaseName(), JAR_EXTENSIONS);
+    private static boolean isJavaArchive(FileName fileName) {
+        return FilenameUtils.isExtension(fileName.getBaseName(), JAR_EXTENSIONS);
     }
 
-    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> checksumFiles() throws IOException {
-        Instant startTime = Instant.now();
+    private static boolean isZipArchive(FileName fileName) {
+        return FilenameUtils.isExtension(fileName.getBaseName(), ZIP_EXTENSIONS);
+    }
 
-        try (FileSystemManager manager = createManager()) {
-            for (String input : inputs) {
-                try (FileObject fo = getFileObjectOfFile(manager, input)) {
-                    if (LOGGER.isDebugEnabled()) {
-                        try (FileContent fc = fo.getContent()) {
-                            LOGGER.debug("Will checksum file {}, size: {}", fo, fc.getSize());
-                        }
-                    }
+    private static boolean isCompressedTarArchive(FileName fileName) {
+        return COMPRESSED_FILE_EXTENSIONS.contains(fileName.getExtension())
+                && "tar".equals(FilenameUtils.getExtension(FilenameUtils.removeExtension(fileName.getBaseName())));
+    }
 
-                    root = fo.getName()
-                            .getFriendlyURI()
-                            .substring(0, fo.getName().getFriendlyURI().indexOf(fo.getName().getBaseName()));
-                    Set<Checksum> fileChecksums = cacheManager != null
-                            ? Checksum.checksum(fo, checksumTypesToCheck, root)
-                            : null;
-
-                    if (fileChecksums != null) {
-                        Iterator<ChecksumType> it = checksumTypesToCheck.iterator();
-
-                        while (it.hasNext()) {
-                            ChecksumType checksumType = it.next();
-                            String value = Checksum.findByType(fileChecksums, checksumType)
-                                    .map(Checksum::getValue)
-                                    .orElse(null);
-
-                            if (value != null) {
-                                MultiValuedMap<String, LocalFile> localMap = fileCaches.get(checksumType).get(value);
-
-                                if (localMap != null) {
-                                    map.get(checksumType).putAll(localMap);
-
-                                    Collection<Entry<String, LocalFile>> entries = localMap.entries();
-                                    try {
-                                        for (Entry<String, LocalFile> entry : entries) {
-                                            inverseMap.put(
-                                                    entry.getValue().getFilename(),
-                                                    new Checksum(checksumType, entry.getKey(), entry.getValue()));
-                                        }
-                                    } catch (ClassCastException e) {
-                                        if (LOGGER.isErrorEnabled()) {
-                                            LOGGER.error(
-                                                    "Error loading cache {}: {}. The cache format has changed"
-                                                            + " and you will have to manually delete the existing cache",
-                                                    boldRed(ConfigDefaults.CACHE_LOCATION),
-                                                    boldRed(getAllErrorMessages(e)));
-                                        }
-
-                                        throw e;
-                                    }
-
-                                    if (queue != null && checksumType == ChecksumType.md5) {
-                                        for (Entry<String, LocalFile> entry : entries) {
-                                            try {
-                                                Checksum checksum = new Checksum(
-                                                        checksumType,
-                                                        entry.getKey(),
-                                                        entry.getValue());
-                                                queue.put(checksum);
-                                            } catch (InterruptedException e) {
-                                                Thread.currentThread().interrupt();
-                                                throw new IOException(e);
-                                            }
-                                        }
-                                    }
-
-                                    it.remove();
-
-                                    int size = localMap.size();
-
-                                    if (listener != null) {
-                                        listener.checksumsComputed(new ChecksumsComputedEvent(size));
-                                    }
-                                    if (LOGGER.isInfoEnabled()) {
-                                        LOGGER.info(
-                                                "Loaded {} checksums for file: {} (checksum: {}) from cache",
-                                                green(size),
-                                                green(normalizePath(fo, root)),
-                                                green(value));
-                                    }
-                                } else {
-                                    if (LOGGER.isInfoEnabled()) {
-                                        LOGGER.info(
-                                                "File: {} (checksum: {}) not found in cache",
-                                                green(normalizePath(fo, root)),
-                                                green(value));
-                                    }
-                                }
-                            }
-                        }
-                    }
+    private void addFileError(FileError fileError) {
+        record(fileError.getFilename(), listing -> listing.fileErrors.add(fileError));
+        fileErrors.add(fileError);
+    }
 
-                    if (!checksumTypesToCheck.isEmpty()) {
-                        if (LOGGER.isInfoEnabled()) {
-                            LOGGER.info(
-                                    "Finding checksums: {} for file: {}",
-                                    green(
-                                            String.join(
-                                                    ", ",
-                                                    checksumTypesToCheck.stream()
-                                                            .map(String::valueOf)
-                                                            .collect(Collectors.toUnmodifiableSet()))),
-                                    green(normalizePath(fo, root)));
-                        }
+    /**
+     * Lists the given nested archive unless an identical archive has been listed in this run already, in which case
+     * the files found in that archive are replayed with the path of this archive instead of reading them again. The
+     * archives are identical if they have the same size and the same checksum of the strongest type computed. If the
+     * identical archive is still being listed, then this archive waits for it. If it could not be listed, then this
+     * archive is listed as usual.
+     *
+     * @param input the input containing the archive
+     * @param name the archive name
+     * @param checksums the checksums of the archive, or an empty set to always list it
+     * @param listing lists the archive
+     * @return a future completing once the archive has been listed or replayed
+     */
+    private CompletableFuture<Void> listArchiveOnce(
+            Input input,
+            FileName name,
+            Set<Checksum> checksums,
+            Supplier<CompletableFuture<Void>> listing) {
+        Optional<Checksum> strongest = checksums.stream().max(Comparator.comparing(Checksum::getType));
+
+        if (strongest.isEmpty()) {
+            return listing.get();
+        }
 
-                        listChildren(fo, 0);
+        Checksum checksum = strongest.get();
+        String path = normalizePath(name, input.root);
+        String key = checksum.getType() + ":" + checksum.getValue() + ":" + checksum.getFileSize();
+        ArchiveListing archiveListing = new ArchiveListing(path);
+        ArchiveListing existing = listedArchives.putIfAbsent(key, archiveListing);
 
-                        if (fileChecksums != null) {
-                            for (ChecksumType checksumType : checksumTypesToCheck) {
-                                Optional<Checksum> cksum = Checksum.findByType(fileChecksums, checksumType);
+        if (existing != null) {
+            return existing.listed.handle((ignored, t) -> {
+                if (t != null) {
+                    return listing.get();
+                }
 
-                                if (cksum.isPresent()) {
-                                    fileCaches.get(checksumType)
-                                            .put(
-                                                    cksum.get().getValue(),
-                                                    new MultiValuedMapProtobufWrapper<>(map.get(checksumType)));
-                                } else {
-                                    throw new IOException("Checksum type " + checksumType + " not found");
-                                }
-                            }
-                        }
-                    } else {
-                        listChildren(fo, 0);
-                    }
+                try {
+                    replay(input, existing, path);
+                } catch (IOException e) {
+                    return CompletableFuture.<Void> failedFuture(e);
+                }
+
+                return CompletableFuture.<Void> completedFuture(null);
+            }).thenCompose(identity());
+        }
+
+        recordingArchives.put(path, archiveListing);
+
+        archiveKeys.put(path, key);
+
+        return listing.get().whenComplete((ignored, t) -> {
+            archiveKeys.remove(path);
+            Throwable failure = t;
+
+            if (failure == null) {
+                try {
+                    // The files of the archive still collected by the stripes are stored, so that they can be replayed,
+                    // and sent, so that the build finder does not wait for the stripes to fill up
+                    flushResults();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+
+            recordingArchives.remove(path);
+
+            if (failure != null) {
+                archiveListing.listed.completeExceptionally(failure);
+            } else {
+                archiveListing.listed.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Computes the checksums of the given input file for looking it up in the file cache. Unless verification is
+     * requested, the checksums of a local file are looked up by its fingerprint first, so that the file is only read in
+     * full if it is not found. When verifying, checksums which differ from those found by the fingerprint are logged.
+     * The checksums are kept with the input, so that the input is not read again to checksum it when it is listed.
+     *
+     * @param input the input
+     * @return the checksums
+     * @throws IOException if an error occurs while reading the file
+     */
+    private Set<Checksum> checksumInput(Input input) throws IOException {
+        if (input.inputChecksums != null) {
+            return input.inputChecksums;
+        }
+
+        FileObject fo = input.fo;
+        Optional<String> fingerprint = Checksum.fingerprint(fo);
+        Map<ChecksumType, String> cachedValues = new EnumMap<>(ChecksumType.class);
+
+        if (fingerprint.isPresent()) {
+            for (ChecksumType checksumType : input.checksumTypes) {
+                String value = fingerprintCaches.get(checksumType).get(fingerprint.get());
+
+                if (value != null) {
+                    cachedValues.put(checksumType, value);
+                }
+            }
+        }
+
+        if (cachedValues.size() == input.checksumTypes.size() && !config.getVerify()) {
+            Set<Checksum> checksums = new HashSet<>(cachedValues.size(), 1.0f);
+
+            try (FileContent fc = fo.getContent()) {
+                long size = Checksum.determineFileSize(fc);
+
+                for (Entry<ChecksumType, String> entry : cachedValues.entrySet()) {
+                    checksums.add(new Checksum(entry.getKey(), entry.getValue(), input.path, size));
+                }
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                        "Found checksums of file {} by fingerprint {}",
+                        green(input.path),
+                        green(fingerprint.get()));
+            }
+
+            input.inputChecksums = Collections.unmodifiableSet(checksums);
+            return input.inputChecksums;
+        }
+
+        Set<Checksum> checksums = Checksum.checksum(fo, input.checksumTypes, input.root);
+
+        if (fingerprint.isPresent()) {
+            for (Checksum checksum : checksums) {
+                String cachedValue = cachedValues.get(checksum.getType());
+
+                if (cachedValue != null && !cachedValue.equals(checksum.getValue()) && LOGGER.isWarnEnabled()) {
+                    LOGGER.warn(
+                            "File {} has {} checksum {}, but {} was cached for the same fingerprint",
+                            boldRed(checksum.getFilename()),
+                            checksum.getType(),
+                            boldRed(checksum.getValue()),
+                            boldRed(cachedValue));
+                }
+
+                fingerprintCaches.get(checksum.getType()).put(fingerprint.get(), checksum.getValue());
+            }
+        }
+
+        input.inputChecksums = checksums;
+        return checksums;
+    }
+
+    /**
+     * Gets the checksums of a zip entry from the entry cache.
+     *
+     * @param input the input containing the entry
+     * @param key the entry cache key
+     * @param name the entry name
+     * @param size the entry size
+     * @return the checksums, or null unless the checksums of all types are cached
+     */
+    private Set<Checksum> getCachedChecksums(Input input, String key, FileName name, long size) {
+        Set<Checksum> checksums = new HashSet<>(input.checksumTypes.size(), 1.0f);
+        String path = normalizePath(name, input.root);
+
+        for (ChecksumType checksumType : input.checksumTypes) {
+            String value = entryCaches.get(checksumType).get(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            checksums.add(new Checksum(checksumType, value, path, size));
+        }
+
+        entriesCached.increment();
+
+        return Collections.unmodifiableSet(checksums);
+    }
+
+    private void putCachedChecksums(String key, Set<Checksum> checksums) {
+        for (Checksum checksum : checksums) {
+            entryCaches.get(checksum.getType()).put(key, checksum.getValue());
+        }
+    }
+
+    /**
+     * Adds a result for the given file to the listings of the archives being listed which contain the file, or which
+     * are the file itself.
+     *
+     * @param filename the normalized file name
+     * @param action adds the result to a listing
+     */
+    private void record(String filename, Consumer<ArchiveListing> action) {
+        if (recordingArchives.isEmpty()) {
+            return;
+        }
+
+        int index = filename.indexOf(BANG_SLASH);
+
+        while (index != -1) {
+            ArchiveListing listing = recordingArchives.get(filename.substring(0, index));
+
+            if (listing != null) {
+                action.accept(listing);
+            }
+
+            index = filename.indexOf(BANG_SLASH, index + BANG_SLASH.length());
+        }
+
+        ArchiveListing listing = recordingArchives.get(filename);
+
+        if (listing != null) {
+            action.accept(listing);
+        }
+    }
+
+    private void replay(Input input, ArchiveListing listing, String path) throws IOException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Replaying files of identical archive {} for: {}", listing.path, path);
+        }
+
+        for (int i = 0; i < listing.numFileIds; i++) {
+            List<Checksum> checksums = checksumStore.getChecksums(listing.fileIds[i]);
+            Set<Checksum> replayed = new HashSet<>(checksums.size(), 1.0f);
+
+            for (Checksum checksum : checksums) {
+                replayed.add(
+                        new Checksum(
+                                checksum.getType(),
+                                checksum.getDigest(),
+                                listing.rebase(checksum.getFilename(), path),
+                                checksum.getFileSize()));
+            }
+
+            handleChecksumResult(input, Collections.unmodifiableSet(replayed));
+        }
+
+        for (Entry<String, Collection<LicenseInfo>> licenses : listing.licenses) {
+            putLicenses(listing.rebase(licenses.getKey(), path), licenses.getValue());
+        }
+
+        for (FileError fileError : listing.fileErrors) {
+            addFileError(new FileError(listing.rebase(fileError.getFilename(), path), fileError.getMessage()));
+        }
+
+        archivesReplayed.increment();
+    }
+
+    /**
+     * Returns whether the given archive is a tar archive, or a compressed file containing one, which can be read in a
+     * single pass. With recursion disabled, an archive at the root of a tar archive at level 1 is only listed if it is
+     * the only file there, which is not known until the whole tar archive has been read, so such a tar archive is read
+     * using Commons VFS instead. Likewise, a compressed file containing a tar archive is only read in a single pass if
+     * the tar archive is listed as well.
+     *
+     * @param fileName the archive name
+     * @param level the archive level
+     * @return whether the archive can be read in a single pass
+     */
+    private boolean isStreamableTarArchive(FileName fileName, int level) {
+        if (!Boolean.FALSE.equals(config.getDisableNativeZip())) {
+            return false;
+        }
+
+        boolean recursion = Boolean.FALSE.equals(config.getDisableRecursion());
+
+        if (TAR_EXTENSIONS.contains(fileName.getExtension())) {
+            return recursion || level != 1;
+        }
+
+        return isCompressedTarArchive(fileName) && (recursion || level == 1);
+    }
+
+    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> checksumFiles() throws IOException {
+        Instant startTime = Instant.now();
+
+        started = true;
+
+        // The spool files are deleted last, once nothing reads from them anymore
+        try (DownloadSpool spool = new DownloadSpool();
+                FileSystemManager manager = createManager();
+                FileSystemManagers fileSystemManagers = new FileSystemManagers(Utils.getVfsCache().orElse(null))) {
+            managers = fileSystemManagers;
+
+            // Remote inputs are added once they have been downloaded
+            Queue<Input> openedInputs = new ConcurrentLinkedQueue<>();
+
+            try {
+                await(analyzeInputs(manager, spool, openedInputs));
+                flushResults();
+            } finally {
+                for (Input input : openedInputs) {
+                    input.fo.close();
                 }
             }
         } finally {
@@ -359,7 +700,7 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
             shutdownAndAwaitTermination(pool);
         }
 
-        int numChecksums = map.values().iterator().next().size();
+        int numChecksums = checksumStore.size(checksumTypesToCheck.iterator().next());
 
         if (LOGGER.isInfoEnabled()) {
             List<String> totalLicenses = licensesMap.values()
@@ -386,120 +727,723 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
                     green(numChecksums),
                     green(duration),
                     green((double) numChecksums > 0.0D ? duration.dividedBy(numChecksums) : 0.0D));
+            LOGGER.info(
+                    "Nested archives read in memory: {}, copied to temporary files: {}, replayed: {}",
+                    green(byteCountToDisplaySize(bytesAvoided.sum())),
+                    green(byteCountToDisplaySize(bytesSpilled.sum())),
+                    green(archivesReplayed.sum()));
 
+            if (cacheManager != null) {
+                LOGGER.info("Zip entries found in the entry cache: {}", green(entriesCached.sum()));
+            }
+
+            LOGGER.info(
+                    "Files not checksummed since they are never looked up: {} ({})",
+                    green(filesSkipped.sum()),
+                    green(byteCountToDisplaySize(bytesSkipped.sum())));
+
+            for (QueueStatistics statistics : queueStatistics.values()) {
+                LOGGER.info(
+                        "Depth {}: {} tasks, maximum queued: {}, average wait: {}",
+                        green(statistics.getDepth()),
+                        green(statistics.getNumTasks()),
+                        green(statistics.getMaxQueued()),
+                        green(statistics.getAverageWait()));
+            }
         }
 
         if (listener != null) {
             listener.checksumsComputed(new ChecksumsComputedEvent(numChecksums));
         }
 
-        return Collections.unmodifiableMap(map);
+        return checksumStore.getChecksums();
     }
 
-    private static FileSystemManager createManager() throws FileSystemException {
-        StandardFileSystemManager sfs = new StandardFileSystemManager();
-
-        sfs.init();
-
-        if (!sfs.hasProvider("http")) {
-            sfs.addProvider("http", new Http5FileProvider());
+    /**
+     * Analyzes the inputs at the same time, sharing the pool, but no more of them at once than there are analyzer
+     * threads. Inputs with the same name are analyzed one after another, since their files have the same paths.
+     * <p>
+     * Local inputs are opened up front, so that a missing input fails before anything is analyzed. Remote inputs are
+     * downloaded by their own analysis instead, so that they are downloaded at the same time as each other and as the
+     * other inputs are analyzed.
+     *
+     * @param manager the file system manager
+     * @param spool the spool to download remote inputs into
+     * @param openedInputs the queue to add the inputs to once they are opened
+     * @return a future completing once all inputs have been analyzed
+     * @throws IOException if a local input cannot be opened
+     */
+    private CompletableFuture<Void> analyzeInputs(
+            FileSystemManager manager,
+            DownloadSpool spool,
+            Queue<Input> openedInputs) throws IOException {
+        List<Callable<Input>> openers = new ArrayList<>(inputs.size());
+        List<String> paths = new ArrayList<>(inputs.size());
+
+        for (String input : inputs) {
+            if (DownloadSpool.isRemote(input)) {
+                URI uri = URI.create(input);
+                openers.add(() -> {
+                    Input downloaded = downloadInput(manager, spool, uri);
+                    openedInputs.add(downloaded);
+                    return downloaded;
+                });
+                paths.add(DownloadSpool.getFilename(uri));
+            } else {
+                Input local = createInput(manager, input);
+                openedInputs.add(local);
+                openers.add(() -> local);
+                paths.add(local.path);
+            }
         }
 
-        if (!sfs.hasProvider("https")) {
-            sfs.addProvider("https", new Http5FileProvider());
-        }
+        List<CompletableFuture<Void>> analyses = new ArrayList<>(inputs.size());
+        Map<String, CompletableFuture<Void>> lastAnalyses = new HashMap<>();
+        int maxAnalyses = config.getAnalyzerNumThreads();
+
+        for (int i = 0; i < openers.size(); i++) {
+            Callable<Input> opener = openers.get(i);
+            String path = paths.get(i);
+            int numAnalyses = analyses.size();
+            CompletableFuture<Void> previous = CompletableFuture.allOf(
+                    numAnalyses >= maxAnalyses
+                            ? analyses.get(numAnalyses - maxAnalyses)
+                            : CompletableFuture.completedFuture(null),
+                    lastAnalyses.getOrDefault(path, CompletableFuture.completedFuture(null)));
+            // An input is analyzed even if the analysis of a previous input failed
+            CompletableFuture<Void> analysis = previous.handle((ignored, t) -> null).thenComposeAsync(ignored -> {
+                try {
+                    return analyze(opener.call());
+                } catch (Exception e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }, pool).thenApply(ignored -> {
+                // The checksums of the input still collected by the stripes are sent, rather than waiting for more
+                try {
+                    flushResults();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
 
-        if (LOGGER.isInfoEnabled()) {
-            LOGGER.info(
-                    "Initialized file system manager {} with schemes: {}",
-                    green(sfs.getClass().getSimpleName()),
-                    green(String.join(", ", sfs.getSchemes())));
+                return null;
+            });
+            analyses.add(analysis);
+            lastAnalyses.put(path, analysis);
         }
 
-        return sfs;
+        return CompletableFuture.allOf(analyses.toArray(new CompletableFuture<?>[0]));
     }
 
-    private static FileObject getFileObjectOfFile(FileSystemManager manager, String input) throws IOException {
-        FileObject fo;
-
-        try {
-            URI uri = URI.create(input);
-            fo = manager.resolveFile(uri);
-        } catch (IllegalArgumentException | FileSystemException e) {
-            Path path = Path.of(input);
+    /**
+     * Analyzes the given input. The files of an input found in the file cache are loaded from there, in which case the
+     * input is still listed for licenses, but none of its files are checksummed.
+     *
+     * @param input the input
+     * @return a future completing once the input has been analyzed
+     * @throws IOException if an error occurs reading the input
+     */
+    private CompletableFuture<Void> analyze(Input input) throws IOException {
+        FileObject fo = input.fo;
 
-            if (!Files.exists(path) || !Files.isRegularFile(path) || !Files.isReadable(path)) {
-                throw new IOException("Input path " + path + " does not exist, is not a file, or is not readable");
+        if (LOGGER.isDebugEnabled() && fo.isFile()) {
+            try (FileContent fc = fo.getContent()) {
+                LOGGER.debug("Will checksum file {}, size: {}", fo, fc.getSize());
             }
+        }
 
-            fo = manager.resolveFile(path.toUri());
+        Set<Checksum> fileChecksums = input.results != null ? checksumInput(input) : null;
+
+        if (fileChecksums != null) {
+            loadCachedFiles(input, fileChecksums);
         }
 
-        if (LOGGER.isInfoEnabled()) {
-            String filename = fo.getPublicURIString();
+        if (input.checksumTypes.isEmpty()) {
+            return listChildren(input, fo, 0);
+        }
 
-            if (fo.isFile()) {
-                LOGGER.info("Analyzing: {} ({})", green(filename), green(byteCountToDisplaySize(fo)));
-            } else {
-                LOGGER.info("Analyzing: {}", green(filename));
-            }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Finding checksums: {} for file: {}",
+                    green(
+                            String.join(
+                                    ", ",
+                                    input.checksumTypes.stream()
+                                            .map(String::valueOf)
+                                            .collect(Collectors.toUnmodifiableSet()))),
+                    green(input.path));
         }
 
-        return fo;
+        return listChildren(input, fo, 0).thenRun(() -> {
+            if (fileChecksums != null) {
+                try {
+                    cacheFiles(input, fileChecksums);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        });
     }
 
-    private static boolean isArchive(FileObject fo) {
-        FileSystemManager manager = fo.getFileSystem().getFileSystemManager();
+    /**
+     * Loads the files of the given input from the file cache, for every checksum type of the input found there. These
+     * checksum types are removed from the checksum types of the input.
+     *
+     * @param input the input
+     * @param fileChecksums the checksums of the input
+     * @throws IOException if interrupted while sending the checksums
+     */
+    private void loadCachedFiles(Input input, Set<Checksum> fileChecksums) throws IOException {
+        Iterator<ChecksumType> it = input.checksumTypes.iterator();
 
-        return !NON_ARCHIVE_SCHEMES.contains(fo.getName().getExtension())
-                && Stream.of(manager.getSchemes()).anyMatch(s -> s.equals(fo.getName().getExtension()));
-    }
+        while (it.hasNext()) {
+            ChecksumType checksumType = it.next();
+            String value = Checksum.findByType(fileChecksums, checksumType).map(Checksum::getValue).orElse(null);
 
-    private boolean isDistributionArchive(FileObject fo, int level) {
-        return level == 1 && !isJavaArchive(fo);
-    }
+            if (value != null) {
+                MultiValuedMap<String, LocalFile> localMap = fileCaches.get(checksumType).get(value);
 
-    private boolean isTarArchive(FileObject fo, int level) throws FileSystemException {
-        FileObject parent = fo.getParent();
+                if (localMap != null) {
+                    List<Checksum> checksums = new ArrayList<>(localMap.size());
 
-        return level == 2 && parent.isFolder() && parent.getName().getFriendlyURI().endsWith(BANG_SLASH)
+                    try {
+                        for (Entry<String, LocalFile> entry : localMap.entries()) {
+                            checksums.add(new Checksum(checksumType, entry.getKey(), entry.getValue()));
+                        }
+                    } catch (ClassCastException e) {
+                        if (LOGGER.isErrorEnabled()) {
+                            LOGGER.error(
+                                    "Error loading cache {}: {}. The cache format has changed"
+                                            + " and you will have to manually delete the existing cache",
+                                    boldRed(ConfigDefaults.CACHE_LOCATION),
+                                    boldRed(getAllErrorMessages(e)));
+                        }
+
+                        throw e;
+                    }
+
+                    // Too many to go through a stripe of results, so these are added to the store at once
+                    addResults(checksums, true);
+
+                    it.remove();
+
+                    int size = localMap.size();
+
+                    if (listener != null) {
+                        listener.checksumsComputed(new ChecksumsComputedEvent(size));
+                    }
+                    if (LOGGER.isInfoEnabled()) {
+                        LOGGER.info(
+                                "Loaded {} checksums for file: {} (checksum: {}) from cache",
+                                green(size),
+                                green(input.path),
+                                green(value));
+                    }
+                } else {
+                    if (LOGGER.isInfoEnabled()) {
+                        LOGGER.info("File: {} (checksum: {}) not found in cache", green(input.path), green(value));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the files of the given input to the file cache, for every checksum type of the input.
+     *
+     * @param input the input
+     * @param fileChecksums the checksums of the input
+     * @throws IOException if the checksum of a checksum type of the input is missing
+     */
+    private void cacheFiles(Input input, Set<Checksum> fileChecksums) throws IOException {
+        for (ChecksumType checksumType : input.checksumTypes) {
+            Optional<Checksum> cksum = Checksum.findByType(fileChecksums, checksumType);
+
+            if (cksum.isPresent()) {
+                fileCaches.get(checksumType)
+                        .put(
+                                cksum.get().getValue(),
+                                new MultiValuedMapProtobufWrapper<>(input.getLocalFiles(checksumType)));
+            } else {
+                throw new IOException("Checksum type " + checksumType + " not found");
+            }
+        }
+    }
+
+    private static FileSystemManager createManager() throws FileSystemException {
+        StandardFileSystemManager sfs = initManager(new StandardFileSystemManager());
+
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Initialized file system manager {} with schemes: {}",
+                    green(sfs.getClass().getSimpleName()),
+                    green(String.join(", ", sfs.getSchemes())));
+        }
+
+        return sfs;
+    }
+
+    /**
+     * Creates a file system manager which replicates files into the given directory instead of the shared Commons VFS
+     * cache directory.
+     *
+     * @param replicatorDirectory the directory to replicate files into
+     * @return the file system manager
+     * @throws FileSystemException if an error occurs initializing the file system manager
+     */
+    private static FileSystemManager createManager(Path replicatorDirectory) throws FileSystemException {
+        StandardFileSystemManager sfs = new StandardFileSystemManager() {
+            @Override
+            protected DefaultFileReplicator createDefaultFileReplicator() {
+                return new DefaultFileReplicator(replicatorDirectory.toFile());
+            }
+        };
+
+        // The configuration is otherwise looked up relative to the anonymous subclass
+        sfs.setConfiguration(StandardFileSystemManager.class.getResource("providers.xml"));
+
+        return initManager(sfs);
+    }
+
+    private static StandardFileSystemManager initManager(StandardFileSystemManager sfs) throws FileSystemException {
+        sfs.init();
+
+        if (!sfs.hasProvider("http")) {
+            sfs.addProvider("http", new Http5FileProvider());
+        }
+
+        if (!sfs.hasProvider("https")) {
+            sfs.addProvider("https", new Http5FileProvider());
+        }
+
+        return sfs;
+    }
+
+    /**
+     * Creates the given local input.
+     *
+     * @param manager the file system manager
+     * @param input the input
+     * @return the input
+     * @throws IOException if an error occurs while resolving the input
+     */
+    private Input createInput(FileSystemManager manager, String input) throws IOException {
+        FileObject fo = getFileObjectOfFile(manager, input);
+        // A directory is not looked up in the file cache, since it has no checksum of its own
+        return new Input(fo, checksumTypesToCheck, cacheManager != null && fo.isFile(), null);
+    }
+
+    /**
+     * Creates the given remote input. The input is downloaded into a spool file first, which is analyzed instead, so
+     * that the input is only fetched once. Since the spool file has the same name as the input, the paths of its files
+     * are the same as if the input had been read remotely.
+     *
+     * @param manager the file system manager
+     * @param spool the spool to download the input into
+     * @param uri the URI of the input
+     * @return the input
+     * @throws IOException if an error occurs while downloading or resolving the input
+     */
+    private Input downloadInput(FileSystemManager manager, DownloadSpool spool, URI uri) throws IOException {
+        Instant start = Instant.now();
+        DownloadSpool.Download download = spool.download(uri, checksumTypesToCheck);
+
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Downloaded: {} ({}) in {}",
+                    green(uri),
+                    green(byteCountToDisplaySize(download.getSize())),
+                    green(Duration.between(start, Instant.now())));
+        }
+
+        return new Input(
+                manager.resolveFile(download.getPath().toUri()),
+                checksumTypesToCheck,
+                cacheManager != null,
+                download);
+    }
+
+    private static FileObject getFileObjectOfFile(FileSystemManager manager, String input) throws IOException {
+        FileObject fo;
+
+        try {
+            URI uri = URI.create(input);
+            fo = manager.resolveFile(uri);
+        } catch (IllegalArgumentException | FileSystemException e) {
+            Path path = Path.of(input);
+
+            if (!Files.exists(path) || !Files.isRegularFile(path) || !Files.isReadable(path)) {
+                throw new IOException("Input path " + path + " does not exist, is not a file, or is not readable");
+            }
+
+            fo = manager.resolveFile(path.toUri());
+        }
+
+        if (LOGGER.isInfoEnabled()) {
+            String filename = fo.getPublicURIString();
+
+            if (fo.isFile()) {
+                LOGGER.info("Analyzing: {} ({})", green(filename), green(byteCountToDisplaySize(fo)));
+            } else {
+                LOGGER.info("Analyzing: {}", green(filename));
+            }
+        }
+
+        return fo;
+    }
+
+    private static boolean isArchive(FileObject fo) {
+        return isArchive(fo.getFileSystem().getFileSystemManager(), fo.getName());
+    }
+
+    private static boolean isArchive(FileSystemManager manager, FileName fileName) {
+        String extension = fileName.getExtension();
+
+        return !NON_ARCHIVE_SCHEMES.contains(extension) && Stream.of(manager.getSchemes()).anyMatch(extension::equals);
+    }
+
+    private boolean isDistributionArchive(FileName fileName, int level) {
+        return level == 1 && !isJavaArchive(fileName);
+    }
+
+    private boolean isTarArchive(FileObject fo, int level) throws FileSystemException {
+        FileObject parent = fo.getParent();
+
+        return level == 2 && parent.isFolder() && parent.getName().getFriendlyURI().endsWith(BANG_SLASH)
                 && parent.getChildren().length == 1;
     }
 
     private boolean shouldListArchive(FileObject fo, int level) throws FileSystemException {
-        return Boolean.FALSE.equals(config.getDisableRecursion()) || isDistributionArchive(fo, level)
-                || isTarArchive(fo, level);
+        return shouldListArchive(fo.getName(), level) || isTarArchive(fo, level);
+    }
+
+    private boolean shouldListArchive(FileName fileName, int level) {
+        return Boolean.FALSE.equals(config.getDisableRecursion()) || isDistributionArchive(fileName, level);
+    }
+
+    private CompletableFuture<Void> listArchive(Input input, FileObject fo, int level) {
+        if (Boolean.FALSE.equals(config.getDisableNativeZip()) && isZipArchive(fo.getName())) {
+            return listZipArchive(input, fo, level)
+                    .thenCompose(
+                            listed -> listed
+                                    ? CompletableFuture.completedFuture(null)
+                                    : listVfsArchive(input, fo, level));
+        }
+
+        return listVfsArchive(input, fo, level);
     }
 
-    private void listArchive(FileObject fo, int level) {
+    private CompletableFuture<Void> listVfsArchive(Input input, FileObject fo, int level) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Creating file system for: {}", normalizePath(fo, root));
+            LOGGER.debug("Creating file system for: {}", normalizePath(fo, input.root));
         }
 
-        FileSystem fileSystem = fo.getFileSystem();
-        FileSystemManager manager = fileSystem.getFileSystemManager();
+        FileSystemManager manager;
         FileObject layered;
-        FileSystem fs = null;
 
         try {
+            // Use the manager of the current thread, since a manager creates file systems one at a time
+            manager = managers.get();
+
             synchronized (manager) {
                 layered = manager.createFileSystem(fo.getName().getExtension(), fo);
-                fs = layered.getFileSystem();
+            }
+        } catch (FileSystemException e) {
+            addArchiveError(input, fo.getName(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        FileSystem fs = layered.getFileSystem();
+
+        return listChildren(input, layered, level).handle((ignored, t) -> {
+            if (t != null) {
+                addArchiveError(input, fo.getName(), t);
+            }
+
+            // Closed by whichever thread completes the listing, while the thread of the manager may be creating another
+            synchronized (manager) {
+                manager.closeFileSystem(fs);
             }
 
-            listChildren(layered, level);
+            return null;
+        });
+    }
+
+    private void addArchiveError(Input input, FileName fileName, Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        String filename = normalizePath(fileName, input.root);
+        String message = getMessage(cause);
+        addFileError(new FileError(filename, message));
+        LOGGER.warn("Unable to process archive/compressed file: {}: {}", red(filename), red(message));
+        LOGGER.debug("Error", cause);
+    }
+
+    /**
+     * Lists the given zip archive without creating a Commons VFS file system for it. Local files are read in place,
+     * whereas other files are read in memory if they are not larger than the archive memory threshold, or are first
+     * copied to a temporary file otherwise.
+     *
+     * @param input the input containing the zip archive
+     * @param fo the zip archive
+     * @param level the archive level
+     * @return a future completing with whether the archive was listed, or false if it has to be listed using Commons
+     *         VFS instead
+     */
+    private CompletableFuture<Boolean> listZipArchive(Input input, FileObject fo, int level) {
+        FileSystemManager manager = fo.getFileSystem().getFileSystemManager();
+        FileName fileName = fo.getName();
+
+        if ("file".equals(fileName.getScheme())) {
+            return listZipArchive(input, manager, fileName, fo.getPath(), level);
+        }
+
+        Path path = null;
+
+        try {
+            long size;
+
+            try (FileContent fc = fo.getContent()) {
+                size = fc.getSize();
+
+                if (size <= config.getArchiveMemoryThreshold()) {
+                    byte[] bytes;
+
+                    try (InputStream in = fc.getInputStream()) {
+                        bytes = in.readAllBytes();
+                    }
+
+                    return listZipArchive(
+                            input,
+                            manager,
+                            fileName,
+                            new ByteBufferChannel(ByteBuffer.wrap(bytes)),
+                            level)
+                            .thenApply(listed -> {
+                                if (listed) {
+                                    bytesAvoided.add(bytes.length);
+                                }
+
+                                return listed;
+                            });
+                }
+
+                path = Files.createTempFile(TEMP_FILE_PREFIX, "." + fileName.getExtension());
+
+                try (InputStream in = fc.getInputStream()) {
+                    Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            bytesSpilled.add(size);
+            Path tempFile = path;
+            path = null;
+
+            return listZipArchive(input, manager, fileName, tempFile, level)
+                    .whenComplete((listed, t) -> deleteTempFile(tempFile));
         } catch (IOException e) {
-            String filename = normalizePath(fo, root);
-            String message = getMessage(e);
-            fileErrors.add(new FileError(filename, message));
-            LOGGER.warn("Unable to process archive/compressed file: {}: {}", red(filename), red(message));
-            LOGGER.debug("Error", e);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Unable to read {}: {}", normalizePath(fo, input.root), getMessage(e));
+            }
+
+            return CompletableFuture.completedFuture(false);
         } finally {
-            if (fs != null) {
-                synchronized (manager) {
-                    manager.closeFileSystem(fs);
+            deleteTempFile(path);
+        }
+    }
+
+    private CompletableFuture<Boolean> listZipArchive(
+            Input input,
+            FileSystemManager manager,
+            FileName fileName,
+            Path path,
+            int level) {
+        FileChannel channel;
+
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Unable to open {}: {}", normalizePath(fileName, input.root), getMessage(e));
+            }
+
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return listZipArchive(input, manager, fileName, channel, level);
+    }
+
+    /**
+     * Lists the zip archive read from the given channel, which is closed once the archive has been listed.
+     *
+     * @param input the input containing the zip archive
+     * @param manager the file system manager
+     * @param fileName the name of the zip archive
+     * @param channel the channel to read the zip archive from
+     * @param level the archive level
+     * @return a future completing with whether the archive was listed, or false if it has to be listed using Commons
+     *         VFS instead
+     */
+    private CompletableFuture<Boolean> listZipArchive(
+            Input input,
+            FileSystemManager manager,
+            FileName fileName,
+            SeekableByteChannel channel,
+            int level) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Reading zip file: {}", normalizePath(fileName, input.root));
+        }
+
+        ZipFile zipFile;
+
+        try {
+            zipFile = ZipFile.builder().setSeekableByteChannel(channel).get();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(channel);
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                        "Unable to read {} as a zip file, falling back to Commons VFS: {}",
+                        normalizePath(fileName, input.root),
+                        getMessage(e));
+            }
+
+            return CompletableFuture.completedFuture(false);
+        }
+
+        ZipVisitor visitor;
+
+        try {
+            visitor = new ZipVisitor(input, manager, fileName, zipFile, channel, level);
+        } catch (FileSystemException e) {
+            IOUtils.closeQuietly(zipFile);
+            addArchiveError(input, fileName, e);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        if (!visitor.canList()) {
+            IOUtils.closeQuietly(zipFile);
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                        "Zip file {} contains other archive types, falling back to Commons VFS",
+                        normalizePath(fileName, input.root));
+            }
+
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return visitor.visit().handle((ignored, t) -> {
+            IOUtils.closeQuietly(zipFile);
+
+            if (t != null) {
+                addArchiveError(input, fileName, t);
+            }
+
+            return true;
+        });
+    }
+
+    /**
+     * Lists a nested archive read in memory, directly if it is a zip archive and using Commons VFS otherwise.
+     */
+    private CompletableFuture<Void> listNestedArchive(
+            Input input,
+            FileSystemManager manager,
+            FileName name,
+            ByteBuffer buffer,
+            int level) {
+        if (!Boolean.FALSE.equals(config.getDisableNativeZip()) || !isZipArchive(name)) {
+            return listVfsArchive(input, name, buffer, level);
+        }
+
+        return listZipArchive(input, manager, name, new ByteBufferChannel(buffer), level).thenCompose(listed -> {
+            if (listed) {
+                bytesAvoided.add(buffer.remaining());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return listVfsArchive(input, name, buffer, level);
+        });
+    }
+
+    /**
+     * Lists a nested archive copied to a temporary file, directly if it is a zip archive and using Commons VFS
+     * otherwise.
+     */
+    private CompletableFuture<Void> listNestedArchive(
+            Input input,
+            FileSystemManager manager,
+            FileName name,
+            Path path,
+            int level) {
+        if (!Boolean.FALSE.equals(config.getDisableNativeZip()) || !isZipArchive(name)) {
+            return listVfsArchive(input, name, path, level);
+        }
+
+        return listZipArchive(input, manager, name, path, level)
+                .thenCompose(
+                        listed -> listed
+                                ? CompletableFuture.<Void> completedFuture(null)
+                                : listVfsArchive(input, name, path, level));
+    }
+
+    /**
+     * Lists a nested archive read in memory using Commons VFS, which requires copying it to a temporary file.
+     */
+    private CompletableFuture<Void> listVfsArchive(Input input, FileName name, ByteBuffer buffer, int level) {
+        Path path;
+
+        try {
+            path = Files.createTempFile(TEMP_FILE_PREFIX, "." + name.getExtension());
+
+            try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ByteBuffer src = buffer.duplicate();
+
+                while (src.hasRemaining()) {
+                    out.write(src);
                 }
             }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        bytesSpilled.add(buffer.remaining());
+
+        return listVfsArchive(input, name, path, level).whenComplete((ignored, t) -> deleteTempFile(path));
+    }
+
+    /**
+     * Lists a nested archive using Commons VFS. The file object for the temporary file is given the name of the
+     * archive so that the layered file system on top of it produces the right paths.
+     */
+    private CompletableFuture<Void> listVfsArchive(Input input, FileName name, Path path, int level) {
+        FileObject file;
+
+        try {
+            file = managers.get().resolveFile(path.toUri());
+        } catch (FileSystemException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return listVfsArchive(input, new NamedFileObject(file, name), level).whenComplete((ignored, t) -> {
+            try {
+                file.close();
+            } catch (FileSystemException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static void deleteTempFile(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Unable to delete temporary file {}: {}", red(path), red(getMessage(e)));
+            }
         }
     }
 
@@ -522,461 +1466,1903 @@ public class DistributionAnalyzer implements Callable<Map<ChecksumType, MultiVal
         return sb.toString();
     }
 
-    private boolean includeFile(FileObject fo) {
-        boolean excludeExtension = !config.getArchiveExtensions().isEmpty()
-                && config.getArchiveExtensions().stream().noneMatch(x -> x.equals(fo.getName().getExtension()))
-                && !"rpm".equals(fo.getName().getExtension());
-        boolean excludeFile = false;
-
-        if (!excludeExtension) {
-            String friendlyURI = fo.getName().getFriendlyURI();
-            excludeFile = !config.getExcludes().isEmpty()
-                    && config.getExcludes().stream().map(Pattern::pattern).anyMatch(friendlyURI::matches);
+    /**
+     * Restricts the files checksummed to those with one of the given extensions, such as the extensions of the archive
+     * types looked up in Koji, since the checksums of other files are never looked up. The files of inputs added to the
+     * file cache are still checksummed, so that the file cache does not depend on the archive types. The extensions
+     * are ignored once the analysis has started, so that the same files are checksummed for the whole run.
+     *
+     * @param extensions the extensions
+     */
+    public void restrictExtensions(Collection<String> extensions) {
+        if (started) {
+            LOGGER.warn("Analysis has already started; checksumming files of all configured archive extensions");
+            return;
         }
 
-        return !excludeFile && !excludeExtension;
+        prefilter = configPrefilter.restrict(extensions);
+        LOGGER.debug("Restricted files checksummed to {}", prefilter);
     }
 
-    private Callable<Set<Checksum>> checksumTask(FileObject fo) {
-        return () -> Checksum.checksum(fo, checksumTypesToCheck, root);
-    }
+    private boolean includeFile(Input input, FileName fileName, long size) {
+        FilePrefilter filter = input.results != null ? configPrefilter : prefilter;
+
+        if (filter.includes(fileName)) {
+            return true;
+        }
+
+        filesSkipped.increment();
 
-    private synchronized void handleChecksumResult(Set<Checksum> checksums) throws IOException {
-        for (ChecksumType checksumType : checksumTypesToCheck) {
-            Optional<Checksum> optionalChecksum = Checksum.findByType(checksums, checksumType);
-            optionalChecksum.ifPresent(
-                    checksum -> map.get(checksumType)
-                            .put(
-                                    checksum.getValue(),
-                                    new LocalFile(checksum.getFilename(), checksum.getFileSize())));
+        if (size > 0L) {
+            bytesSkipped.add(size);
         }
 
-        for (Checksum checksum : checksums) {
-            inverseMap.put(checksum.getFilename(), checksum);
+        return false;
+    }
+
+    /**
+     * Runs the given task in the pool. A task returns a future of its own, so that it can start further tasks and
+     * complete once they are done without any thread waiting for them.
+     *
+     * @param depth the archive depth of the file that the task is for
+     * @param task the task
+     * @return a future completing with the result of the future returned by the task
+     * @param <T> the type of the result
+     */
+    private <T> CompletableFuture<T> submit(int depth, Callable<CompletableFuture<T>> task) {
+        QueueStatistics statistics = queueStatistics.computeIfAbsent(depth, QueueStatistics::new);
+        long queuedTime = System.nanoTime();
+        statistics.taskQueued();
+
+        return CompletableFuture.supplyAsync(() -> {
+            statistics.taskStarted(System.nanoTime() - queuedTime);
+
+            try {
+                return task.call();
+            } catch (Exception e) {
+                return CompletableFuture.<T> failedFuture(e);
+            }
+        }, pool).thenCompose(identity());
+    }
+
+    private static void await(CompletableFuture<?> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    private CompletableFuture<Set<Checksum>> checksumTask(Input input, FileObject fo, int depth) {
+        return submit(depth, () -> CompletableFuture.completedFuture(checksum(input, fo)));
+    }
+
+    private CompletableFuture<Set<Checksum>> archiveTask(Input input, FileObject fo, int depth, boolean checksum) {
+        if (isStreamableTarArchive(fo.getName(), depth)) {
+            return submit(depth, () -> new TarVisitor(input, fo, depth).visit(checksum));
+        }
+
+        return submit(depth, () -> {
+            // The archive is checksummed first, so that an identical archive listed already can be replayed instead
+            Set<Checksum> checksums = checksum ? checksum(input, fo) : Collections.emptySet();
+            return listArchiveOnce(input, fo.getName(), checksums, () -> listArchive(input, fo, depth))
+                    .thenApply(ignored -> checksums);
+        });
+    }
+
+    private Set<Checksum> checksum(Input input, FileObject fo) {
+        if (input.inputChecksums != null && fo.getName().equals(input.fo.getName())) {
+            return input.getInputChecksums();
+        }
+
+        try {
+            return Checksum.checksum(fo, input.checksumTypes, input.root);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Handles the checksums of a file. They are collected by the stripe of results given to the current thread, so that
+     * the threads do not wait for each other to record them.
+     *
+     * @param input the input containing the file
+     * @param checksums the checksums
+     * @throws IOException if interrupted while sending the checksums
+     */
+    private void handleChecksumResult(Input input, Set<Checksum> checksums) throws IOException {
+        if (input.results != null) {
+            input.results.add(checksums);
+        }
+
+        threadResults.get().add(checksums);
+    }
+
+    /**
+     * Adds the given checksums to the store and sends the md5 checksums to the channel, unless another thread is adding
+     * its results and waiting for it is not requested. Checksums are only sent once they have been stored, so that the
+     * build finder finds the checksums of the other types of the files it receives.
+     *
+     * @param checksums the checksums
+     * @param wait whether to wait for another thread adding its results
+     * @return whether the checksums were added
+     * @throws IOException if interrupted while sending the checksums
+     */
+    private boolean addResults(Collection<Checksum> checksums, boolean wait) throws IOException {
+        if (wait) {
+            resultsLock.lock();
+        } else if (!resultsLock.tryLock()) {
+            return false;
+        }
+
+        try {
+            if (recordingArchives.isEmpty()) {
+                checksumStore.addAll(checksums);
+            } else {
+                int lastFileId = -1;
+
+                for (Checksum checksum : checksums) {
+                    int fileId = checksumStore.addChecksum(checksum);
+
+                    // The checksums of a file are added one after another
+                    if (fileId != lastFileId) {
+                        record(checksum.getFilename(), listing -> listing.addFileId(fileId));
+                        lastFileId = fileId;
+                    }
+                }
+            }
+
+            if (sendingChecksums) {
+                for (Checksum checksum : checksums) {
+                    if (checksum.getType() == ChecksumType.md5) {
+                        channel.send(checksum);
+                    }
+                }
+            }
+        } finally {
+            resultsLock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the checksums still collected by the stripes of results, once an input or a nested archive has been
+     * analyzed.
+     *
+     * @throws IOException if interrupted while sending the checksums
+     */
+    private void flushResults() throws IOException {
+        for (Results stripe : results) {
+            stripe.flush();
+        }
+    }
+
+    private CompletableFuture<Void> listChildren(Input input, FileObject fo, int level) {
+        try {
+            return new ChildVisitor(input, fo, level).visit();
+        } catch (FileSystemException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static boolean isMainJar(FileName fileName) {
+        String name = fileName.getFriendlyURI();
+        return name.endsWith(JAR_URI) && !Strings.CS.endsWithAny(name, JARS_TO_IGNORE);
+    }
+
+    private List<LicenseInfo> addLicensesFromJar(Input input, FileObject jar, FileObject localFile) {
+        List<LicenseInfo> licenseInfos;
+
+        try {
+            if (isPomXml(localFile)) {
+                licenseInfos = addLicensesFromPom(input, localFile);
+            } else if (isManifestMfFileName(localFile)) {
+                licenseInfos = addLicensesFromBundleLicense(localFile);
+            } else if (isLicenseFile(localFile)) {
+                licenseInfos = addLicenseFromTextFile(jar, localFile);
+            } else {
+                licenseInfos = Collections.emptyList();
+            }
+        } catch (IOException e) {
+            licenseInfos = Collections.emptyList();
+        }
+
+        licenseInfos.stream()
+                .filter(licenseInfo -> NOASSERTION.equals(licenseInfo.getSpdxLicenseId()))
+                .forEach(licenseInfo -> handleRelativeURL(input, jar, localFile, licenseInfo));
+
+        if (LOGGER.isWarnEnabled()) {
+            licenseInfos.stream()
+                    .filter(licenseInfo -> NOASSERTION.equals(licenseInfo.getSpdxLicenseId()))
+                    .forEach(licenseInfo -> checkMissingMapping(input, localFile.getName(), licenseInfo));
+        }
+
+        return Collections.unmodifiableList(licenseInfos);
+    }
+
+    private static List<LicenseInfo> addLicenseFromTextFile(FileObject jar, FileObject licenseFile) throws IOException {
+        LicenseInfo licenseInfo = new LicenseInfo(
+                licenseFile,
+                jar.getName().getRelativeName(licenseFile.getName()));
+        return Collections.singletonList(licenseInfo);
+    }
+
+    private static List<LicenseInfo> addLicensesFromBundleLicense(FileObject fileObject) throws IOException {
+        return addLicensesFromBundleLicense(fileObject.getName(), getBundleLicenseFromManifest(fileObject));
+    }
+
+    private static List<LicenseInfo> addLicensesFromBundleLicense(
+            FileName fileName,
+            List<BundleLicense> bundlesLicenses) {
+        List<LicenseInfo> licenses = new ArrayList<>(3);
+
+        for (BundleLicense bundleLicense : bundlesLicenses) {
+            String licenseIdentifier = bundleLicense.getLicenseIdentifier();
+            String description = bundleLicense.getDescription();
+            String name = getFirstNonBlankString(licenseIdentifier, description);
+            String url = bundleLicense.getLink();
+            LicenseInfo licenseInfo = new LicenseInfo(fileName, name, url);
+            licenses.add(licenseInfo);
+        }
+
+        return Collections.unmodifiableList(licenses);
+    }
+
+    private List<LicenseInfo> addLicensesFromPom(Input input, FileObject fileObject) throws IOException {
+        try {
+            Map<String, List<LicenseInfo>> map = getLicenses(input.root, fileObject);
+            Entry<String, List<LicenseInfo>> entry = map.entrySet().iterator().next();
+            return addLicensesFromPom(entry.getKey(), entry.getValue());
+        } catch (XmlPullParserException | InterpolationException e) {
+            if (LOGGER.isErrorEnabled()) {
+                LOGGER.error(
+                        "Unable to read licenses from file {}: {}",
+                        boldRed(fileObject),
+                        boldRed(getAllErrorMessages(e)));
+            }
+
+            throw new IOException(e);
+        }
+    }
+
+    private List<LicenseInfo> addLicensesFromPom(Input input, FileName pomFile, InputStream in) throws IOException {
+        try {
+            MavenProject project = getMavenProject(in);
+            List<LicenseInfo> licenseInfos = getLicenses(pomFile, project);
+            return addLicensesFromPom(normalizePath(pomFile, input.root), licenseInfos);
+        } catch (XmlPullParserException | InterpolationException e) {
+            if (LOGGER.isErrorEnabled()) {
+                LOGGER.error(
+                        "Unable to read licenses from file {}: {}",
+                        boldRed(pomFile),
+                        boldRed(getAllErrorMessages(e)));
+            }
+
+            throw new IOException(e);
+        }
+    }
+
+    private static List<LicenseInfo> addLicensesFromPom(String pomOrJarFile, List<LicenseInfo> licenseInfos) {
+        if (licenseInfos.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                    "Found {} SPDX licenses for {}: {}",
+                    licenseInfos.size(),
+                    pomOrJarFile,
+                    String.join(
+                            ", ",
+                            licenseInfos.stream()
+                                    .map(LicenseInfo::getSpdxLicenseId)
+                                    .collect(Collectors.toUnmodifiableSet())));
+        }
+
+        return Collections.unmodifiableList(licenseInfos);
+    }
+
+    private void checkMissingMapping(Input input, FileName localFile, LicenseInfo licenseInfo) {
+        String name = licenseInfo.getName();
+        String url = licenseInfo.getUrl();
+
+        if (name == null && url == null) {
+            return;
+        }
+
+        if (isLicenseFileName(name)) {
+            return;
+        }
+
+        if (isLicenseFileName(url)) {
+            return;
+        }
+
+        if (LOGGER.isWarnEnabled()) {
+            LOGGER.warn(
+                    "Missing SPDX license mapping for name: {}, URL: {}, filename: {}",
+                    red(name),
+                    red(url),
+                    red(normalizePath(localFile, input.root)));
+        }
+    }
+
+    private void handleRelativeURL(Input input, FileObject jar, FileObject localFile, LicenseInfo licenseInfo) {
+        String name = licenseInfo.getName();
+        String url = licenseInfo.getUrl();
+
+        if (name == null && url == null) {
+            return;
+        }
+
+        // URL is not relative, ignore
+        if (isUrl(url)) {
+            return;
+        }
+
+        if (name == null) {
+            name = url;
+        }
+
+        try {
+            // If the URL is absent, consider the possibility that the name refers to a file inside the JAR
+            FileObject licenseFile = jar.resolveFile(name);
+
+            if (!isLicenseFile(licenseFile)) {
+                return;
+            }
+
+            if (licenseFile.isFolder()) {
+                return;
+            }
+
+            if (!licenseFile.isReadable()) {
+                if (LOGGER.isWarnEnabled()) {
+                    LOGGER.warn(
+                            "License file {} from {} is not a file or is not readable",
+                            red(name),
+                            red(normalizePath(localFile, input.root)));
+                }
+
+                return;
+            }
+
+            List<LicenseInfo> licenseInfos = addLicenseFromTextFile(jar, licenseFile);
+
+            if (licenseInfos.isEmpty()) {
+                if (LOGGER.isWarnEnabled()) {
+                    LOGGER.warn(
+                            "Failed to add licenses from file {} located in JAR {}",
+                            red(normalizePath(licenseFile, input.root)),
+                            red(normalizePath(jar, input.root)));
+                }
+
+                return;
+            }
+
+            // XXX: Currently, the API returns either 0 or 1 licenses, which we rely on here
+            LicenseInfo licenseInfo2 = licenseInfos.get(0);
+            String spdxLicenseId = licenseInfo2.getSpdxLicenseId();
+            licenseInfo.setSpdxLicense(spdxLicenseId);
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled()) {
+                LOGGER.error(
+                        "Error adding relative license URL name {} for {}: {}",
+                        boldRed(name),
+                        boldRed(normalizePath(jar, input.root)),
+                        boldRed(getAllErrorMessages(e)));
+            }
+        }
+    }
+
+    private void putLicenses(String pomOrJarFile, Collection<LicenseInfo> licenseInfos) {
+        record(pomOrJarFile, listing -> listing.licenses.add(Map.entry(pomOrJarFile, licenseInfos)));
+        licensesMap.merge(
+                pomOrJarFile,
+                Collections.unmodifiableCollection(licenseInfos),
+                (existingLicenses, newLicenses) -> {
+                    List<LicenseInfo> newLicenseInfos = new ArrayList<>(existingLicenses);
+                    newLicenseInfos.addAll(newLicenses);
+                    return Collections.unmodifiableCollection(newLicenseInfos);
+                });
+    }
+
+    /**
+     * Gets the number of bytes of nested archives that were copied to temporary files in order to list them.
+     *
+     * @return the number of bytes copied to temporary files
+     */
+    public long getBytesSpilled() {
+        return bytesSpilled.sum();
+    }
+
+    /**
+     * Gets the number of bytes of nested archives that were listed in memory, or from a memory-mapped region of their
+     * parent archive, instead of being copied to temporary files.
+     *
+     * @return the number of bytes not copied to temporary files
+     */
+    public long getBytesAvoided() {
+        return bytesAvoided.sum();
+    }
+
+    /**
+     * Gets the number of nested archives whose files were not read, since an identical archive had been listed
+     * already.
+     *
+     * @return the number of replayed archives
+     */
+    public long getArchivesReplayed() {
+        return archivesReplayed.sum();
+    }
+
+    /**
+     * Gets the number of zip entries whose checksums were found in the entry cache instead of being computed.
+     *
+     * @return the number of cached entries
+     */
+    public long getEntriesCached() {
+        return entriesCached.sum();
+    }
+
+    /**
+     * Gets the number of files that were not checksummed, since their extension is not looked up or they are excluded.
+     *
+     * @return the number of skipped files
+     */
+    public long getFilesSkipped() {
+        return filesSkipped.sum();
+    }
+
+    /**
+     * Gets the number of bytes of the files that were not checksummed. Decompressed tar archives are not counted, since
+     * their size is not known before reading them.
+     *
+     * @return the number of bytes of skipped files
+     */
+    public long getBytesSkipped() {
+        return bytesSkipped.sum();
+    }
+
+    /**
+     * Gets the statistics about the tasks queued for the files at each archive depth, ordered by depth.
+     *
+     * @return the queue statistics
+     */
+    public List<QueueStatistics> getQueueStatistics() {
+        return List.copyOf(queueStatistics.values());
+    }
+
+    public List<String> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    public Path getChecksumFile(ChecksumType checksumType) {
+        return Path.of(config.getOutputDirectory(), CHECKSUMS_FILENAME_BASENAME + checksumType + ".json");
+    }
+
+    public Path getLicensesFile() {
+        return Path.of(config.getOutputDirectory(), LICENSES_FILENAME_BASENAME + ".json");
+    }
+
+    public Map<String, Collection<LicenseInfo>> getLicensesMap() {
+        return Collections.unmodifiableMap(licensesMap);
+    }
+
+    public void outputToFile(ChecksumType checksumType) throws IOException {
+        JSONUtils.dumpObjectToFile(getChecksums(checksumType), getChecksumFile(checksumType));
+    }
+
+    public void outputLicensesToFile() throws IOException {
+        JSONUtils.dumpObjectToFile(getLicensesMap(), getLicensesFile());
+    }
+
+    public Map<String, Collection<Checksum>> getFiles() {
+        return checksumStore.getFiles();
+    }
+
+    public void setChecksums(Map<ChecksumType, MultiValuedMap<String, LocalFile>> map) {
+        ChecksumStore store = new ChecksumStore(map.keySet());
+
+        for (Entry<ChecksumType, MultiValuedMap<String, LocalFile>> entry : map.entrySet()) {
+            for (Entry<String, LocalFile> localFile : entry.getValue().entries()) {
+                store.add(
+                        entry.getKey(),
+                        Digest.fromHex(localFile.getKey()),
+                        localFile.getValue().getFilename(),
+                        localFile.getValue().getSize());
+            }
+        }
+
+        checksumStore = store;
+    }
+
+    public Map<String, Collection<LocalFile>> getChecksums(ChecksumType checksumType) {
+        return checksumStore.getChecksums().get(checksumType).asMap();
+    }
+
+    public Collection<FileError> getFileErrors() {
+        return Collections.unmodifiableList(fileErrors);
+    }
+
+    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> getChecksums() {
+        return checksumStore.getChecksums();
+    }
+
+    /**
+     * Computes the checksums of the files, sending the md5 checksums to the channel as they are found. Since the
+     * analyzer waits once {@value #MAX_QUEUED_BATCHES} batches of checksums are queued, the checksums must be received
+     * from the channel at the same time, such as by a {@link BuildFinder}. To only compute the checksums, use
+     * {@link #checksumFiles()} instead.
+     *
+     * @return for each checksum type (key), the checksum values of the files
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> call() throws IOException {
+        sendingChecksums = true;
+
+        try {
+            checksumFiles();
+        } catch (IOException | RuntimeException | Error e) {
+            channel.close(e);
+            throw e;
+        }
+
+        channel.close(null);
+
+        return checksumStore.getChecksums();
+    }
+
+    /**
+     * Provide a Supplier version of the Callable. This is useful when using the DistributionAnalyzer to obtain a
+     * CompletableFuture (via {@link java.util.concurrent.CompletableFuture#supplyAsync(Supplier)})
+     *
+     * @throws CompletionException if an IO exception is thrown
+     *
+     * @return For each checksum type (key), the checksum values of the files
+     */
+    @Override
+    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> get() {
+        try {
+            return call();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Gets the channel which the checksums are sent to by {@link #call()}.
+     *
+     * @return the channel
+     */
+    public ChecksumChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets a queue of the md5 checksums sent to the channel by {@link #call()}, followed by an empty checksum once all
+     * of them have been sent. The checksums are moved from the channel to the queue by a thread of their own, so the
+     * queue is not bounded, and the analyzer does not wait for the checksums to be taken from the queue.
+     *
+     * @return the queue
+     * @deprecated Use {@link #getChannel()}, which makes the analyzer wait when the checksums are not received fast
+     *             enough.
+     */
+    @Deprecated(since = "2.7.0", forRemoval = true)
+    public synchronized BlockingQueue<Checksum> getQueue() {
+        if (queue == null) {
+            BlockingQueue<Checksum> checksums = new LinkedBlockingQueue<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    List<Checksum> received;
+
+                    while (!(received = channel.receive()).isEmpty()) {
+                        checksums.addAll(received);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Error receiving checksums: {}", boldRed(getMessage(e)));
+                    LOGGER.debug("Error", e);
+                } finally {
+                    checksums.add(new Checksum());
+                }
+            }, "checksum-queue");
+            thread.setDaemon(true);
+            thread.start();
+            queue = checksums;
+        }
+
+        return queue;
+    }
+
+    public void setListener(DistributionAnalyzerListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Visits the files below an archive in a single pass and hands each one off to the checksum and license workers as
+     * soon as it is found, instead of listing the whole archive up front. POM files are handled immediately, whereas
+     * other files are held back in a small side buffer so that the POM files found nearby still come first.
+     * <p>
+     * Each visited file is closed as soon as its tasks are done, so that no file is held until the whole folder has
+     * been visited. The files of an archive file system are only closed once all of their tasks are done, since closing
+     * a zip file object closes the whole zip file system that the other tasks are still reading from, but the archive
+     * file system holds all of its files until then anyway. Nothing waits for these tasks, instead the future returned
+     * by {@link #visit()} completes once they are done.
+     */
+    private final class ChildVisitor implements FileSelector {
+        private final Input input;
+
+        private final FileObject fo;
+
+        private final int level;
+
+        private final boolean isTarFileSystem;
+
+        private final List<LicenseInfo> jarLicenseInfos;
+
+        private final List<FileObject> deferredFiles;
+
+        private final PendingChecksums pendingChecksums;
+
+        private final List<FileObject> archiveFiles;
+
+        private ChildVisitor(Input input, FileObject fo, int level) throws FileSystemException {
+            this.input = input;
+            this.fo = fo;
+            this.level = level;
+            isTarFileSystem = TAR_EXTENSIONS.contains(fo.getName().getScheme());
+            jarLicenseInfos = isMainJar(fo.getName()) ? new ArrayList<>() : null;
+            deferredFiles = new ArrayList<>(DEFERRED_FILES_SIZE);
+            pendingChecksums = new PendingChecksums(input);
+            archiveFiles = fo.getFileSystem().getParentLayer() != null ? new ArrayList<>() : null;
+        }
+
+        @Override
+        public boolean includeFile(FileSelectInfo fileInfo) throws IOException {
+            FileObject file = fileInfo.getFile();
+
+            if (archiveFiles != null) {
+                archiveFiles.add(file);
+            }
+
+            if (!file.isFile()) {
+                // The files are visited depth first, so the files of a folder have all been visited by now
+                if (archiveFiles == null && !file.equals(fo)) {
+                    file.close();
+                }
+
+                return false;
+            }
+
+            if (isPom(file)) {
+                visitFile(file);
+            } else {
+                deferredFiles.add(file);
+
+                if (deferredFiles.size() >= DEFERRED_FILES_SIZE) {
+                    flushDeferredFiles();
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean traverseDescendents(FileSelectInfo fileInfo) {
+            return true;
+        }
+
+        private void visitFile(FileObject file) throws IOException {
+            int archiveDepth = level + 1;
+            boolean willListArchive = isArchive(file) && shouldListArchive(file, archiveDepth);
+            boolean checksumFile = !input.checksumTypes.isEmpty()
+                    && DistributionAnalyzer.this.includeFile(input, file.getName(), file.getContent().getSize());
+
+            if (jarLicenseInfos != null) {
+                jarLicenseInfos.addAll(addLicensesFromJar(input, fo, file));
+            }
+
+            if (checksumFile && TAR_EXTENSIONS.contains(file.getName().getScheme())) {
+                Set<Checksum> checksums = Checksum.checksum(file, input.checksumTypes, input.root);
+                handleChecksumResult(input, checksums);
+                checksumFile = false;
+            }
+
+            if (isPom(file) || isPomXml(file)) {
+                List<LicenseInfo> licenseInfos = addLicensesFromPom(input, file);
+
+                try {
+                    Map<String, List<LicenseInfo>> map = getLicenses(input.root, file);
+                    putLicenses(map.keySet().iterator().next(), licenseInfos);
+                } catch (XmlPullParserException | InterpolationException e) {
+                    if (LOGGER.isErrorEnabled()) {
+                        LOGGER.error(
+                                "Error parsing POM file {}: {}",
+                                boldRed(file),
+                                boldRed(getAllErrorMessages(e)));
+                    }
+                }
+            }
+
+            if (willListArchive && !isTarFileSystem) {
+                boolean checksumArchive = checksumFile;
+                // The archive itself is checksummed only after it has been listed
+                pendingChecksums
+                        .add(() -> closeWhenDone(file, archiveTask(input, file, archiveDepth, checksumArchive)));
+            } else {
+                if (willListArchive) {
+                    // The archive is opened in place, but its files are still handled by other tasks
+                    pendingChecksums.add(
+                            () -> listArchive(input, file, archiveDepth).thenApply(ignored -> Collections.emptySet()));
+                }
+
+                if (checksumFile) {
+                    pendingChecksums.add(() -> closeWhenDone(file, checksumTask(input, file, archiveDepth)));
+                } else if (archiveFiles == null && !willListArchive) {
+                    file.close();
+                }
+            }
+        }
+
+        private CompletableFuture<Set<Checksum>> closeWhenDone(
+                FileObject file,
+                CompletableFuture<Set<Checksum>> future) {
+            if (archiveFiles != null) {
+                return future;
+            }
+
+            return future.whenComplete((checksums, t) -> {
+                try {
+                    file.close();
+                } catch (FileSystemException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+
+        private void flushDeferredFiles() throws IOException {
+            Iterator<FileObject> it = deferredFiles.iterator();
+
+            while (it.hasNext()) {
+                FileObject file = it.next();
+                it.remove();
+                visitFile(file);
+            }
+        }
+
+        private CompletableFuture<Void> visit() {
+            CompletableFuture<Void> traversal;
+
+            try {
+                fo.findFiles(this, true, Collections.emptyList());
+                flushDeferredFiles();
+                traversal = CompletableFuture.completedFuture(null);
+            } catch (IOException | RuntimeException e) {
+                traversal = CompletableFuture.failedFuture(e);
+            }
+
+            return pendingChecksums.finish(traversal).whenComplete((ignored, t) -> closeArchiveFiles()).thenRun(() -> {
+                if (jarLicenseInfos != null) {
+                    putLicenses(normalizePath(fo, input.root), jarLicenseInfos);
+                }
+            });
+        }
+
+        private void closeArchiveFiles() {
+            if (archiveFiles == null) {
+                return;
+            }
+
+            try {
+                for (FileObject file : archiveFiles) {
+                    file.close();
+                }
+            } catch (FileSystemException e) {
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    /**
+     * Visits the files of a zip archive which is read directly instead of through a Commons VFS file system. The file
+     * names are resolved the same way as the zip file system of Commons VFS resolves them, so that both produce the
+     * same paths, and POM files are visited before all other files.
+     * <p>
+     * Nested zip archives are visited the same way. They are read from a memory-mapped region of this archive if they
+     * are stored without compression, read in memory if they are not larger than the archive memory threshold, and
+     * copied to a temporary file while their checksum is computed otherwise. Since other archive types can only be
+     * read through Commons VFS, a zip archive which contains any of them is not visited at all and is listed by Commons
+     * VFS instead.
+     */
+    private final class ZipVisitor {
+        private final Input input;
+
+        private final FileSystemManager manager;
+
+        private final ZipFile zipFile;
+
+        private final SeekableByteChannel channel;
+
+        private final FileName rootName;
+
+        private final int level;
+
+        private final List<Entry<FileName, ZipArchiveEntry>> files;
+
+        private final int numRootChildren;
+
+        private final List<LicenseInfo> jarLicenseInfos;
+
+        private final PendingChecksums pendingChecksums;
+
+        private final String archiveKey;
+
+        private ZipVisitor(
+                Input input,
+                FileSystemManager manager,
+                FileName fileName,
+                ZipFile zipFile,
+                SeekableByteChannel channel,
+                int level) throws FileSystemException {
+            this.input = input;
+            this.manager = manager;
+            this.zipFile = zipFile;
+            this.channel = channel;
+            this.level = level;
+            rootName = new LayeredFileName(fileName.getExtension(), fileName, FileName.ROOT_PATH, FileType.FOLDER);
+            files = new ArrayList<>();
+            Set<String> rootChildren = new TreeSet<>();
+            Iterator<ZipArchiveEntry> it = zipFile.getEntries().asIterator();
+
+            while (it.hasNext()) {
+                ZipArchiveEntry entry = it.next();
+                FileName name = manager
+                        .resolveName(rootName, UriParser.encode(entry.getName(), ARCHIVE_ENTRY_RESERVED_CHARS));
+
+                if (name.getDepth() == 0) {
+                    continue;
+                }
+
+                rootChildren.add(StringUtils.substringBefore(name.getPath().substring(1), FileName.SEPARATOR));
+
+                if (!entry.isDirectory()) {
+                    files.add(Map.entry(name, entry));
+                }
+            }
+
+            numRootChildren = rootChildren.size();
+            jarLicenseInfos = isMainJar(rootName) ? new ArrayList<>() : null;
+            pendingChecksums = new PendingChecksums(input);
+            archiveKey = entryCaches.isEmpty() ? null : archiveKeys.get(normalizePath(fileName, input.root));
+        }
+
+        /**
+         * Returns whether this zip archive can be visited, which is the case unless it contains an archive that would
+         * be listed and can only be read through Commons VFS.
+         *
+         * @return whether this zip archive can be visited
+         */
+        private boolean canList() {
+            return files.stream()
+                    .map(Entry::getKey)
+                    .noneMatch(file -> isArchive(manager, file) && !isZipArchive(file) && shouldListArchive(file));
+        }
+
+        private boolean shouldListArchive(FileName file) {
+            int archiveDepth = level + 1;
+
+            return DistributionAnalyzer.this.shouldListArchive(file, archiveDepth)
+                    || archiveDepth == 2 && file.getDepth() == 1 && numRootChildren == 1;
+        }
+
+        private CompletableFuture<Void> visit() {
+            CompletableFuture<Void> traversal;
+
+            try {
+                for (Entry<FileName, ZipArchiveEntry> file : files) {
+                    if (isPom(file.getKey())) {
+                        visitFile(file);
+                    }
+                }
+
+                for (Entry<FileName, ZipArchiveEntry> file : files) {
+                    if (!isPom(file.getKey())) {
+                        visitFile(file);
+                    }
+                }
+
+                traversal = CompletableFuture.completedFuture(null);
+            } catch (IOException | RuntimeException e) {
+                traversal = CompletableFuture.failedFuture(e);
+            }
+
+            return pendingChecksums.finish(traversal).thenRun(() -> {
+                if (jarLicenseInfos != null) {
+                    putLicenses(normalizePath(rootName, input.root), jarLicenseInfos);
+                }
+            });
+        }
+
+        private void visitFile(Entry<FileName, ZipArchiveEntry> file) throws IOException {
+            FileName name = file.getKey();
+            ZipArchiveEntry entry = file.getValue();
+            int archiveDepth = level + 1;
+            boolean willListArchive = isArchive(manager, name) && shouldListArchive(name);
+            boolean checksumFile = !input.checksumTypes.isEmpty() && includeFile(input, name, entry.getSize());
+
+            if (jarLicenseInfos != null) {
+                jarLicenseInfos.addAll(addLicensesFromJar(file));
+            }
+
+            if (isPom(name) || isPomXml(name)) {
+                putLicenses(normalizePath(name, input.root), addLicensesFromPom(file));
+            }
+
+            if (willListArchive) {
+                // The archive is checksummed while it is read for listing
+                pendingChecksums
+                        .add(() -> submit(archiveDepth, () -> listArchive(name, entry, archiveDepth, checksumFile)));
+            } else if (checksumFile) {
+                String key = getEntryCacheKey(entry);
+                Set<Checksum> cachedChecksums = key != null
+                        ? getCachedChecksums(input, key, name, entry.getSize())
+                        : null;
+
+                if (cachedChecksums != null) {
+                    handleChecksumResult(input, cachedChecksums);
+                } else {
+                    pendingChecksums.add(() -> submit(archiveDepth, () -> {
+                        Set<Checksum> checksums = checksumEntry(name, entry);
+
+                        if (key != null) {
+                            putCachedChecksums(key, checksums);
+                        }
+
+                        return CompletableFuture.completedFuture(checksums);
+                    }));
+                }
+            }
+        }
+
+        private Set<Checksum> checksumEntry(FileName name, ZipArchiveEntry entry) throws IOException {
+            // Mapping a small entry from the archive file costs more than reading it
+            boolean useStoredData = entry.getSize() > Checksum.MAX_READ_SIZE || channel instanceof ByteBufferChannel;
+            ByteBuffer buffer = useStoredData ? getStoredData(entry) : null;
+
+            if (buffer != null) {
+                return Checksum.checksum(buffer, name, entry.getSize(), input.checksumTypes, input.root);
+            }
+
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                return Checksum.checksum(in, name, entry.getSize(), input.checksumTypes, input.root);
+            }
+        }
+
+        /**
+         * Returns the key of the given entry in the entry cache, which consists of the key of this archive, which
+         * includes its checksum, and the name, size and CRC-32 of the entry from the central directory.
+         *
+         * @param entry the entry
+         * @return the key, or null if the entry cache is not used for this archive
+         */
+        private String getEntryCacheKey(ZipArchiveEntry entry) {
+            if (archiveKey == null || entry.getSize() < 0L || entry.getCrc() < 0L) {
+                return null;
+            }
+
+            return archiveKey + BANG_SLASH + entry.getName() + ":" + entry.getSize() + ":"
+                    + Long.toHexString(entry.getCrc());
+        }
+
+        private CompletableFuture<Set<Checksum>> listArchive(
+                FileName name,
+                ZipArchiveEntry entry,
+                int archiveDepth,
+                boolean checksum) throws IOException {
+            ByteBuffer buffer = readInMemory(entry);
+
+            if (buffer == null) {
+                return listSpilledArchive(name, entry, archiveDepth, checksum);
+            }
+
+            Set<Checksum> checksums = checksum
+                    ? Checksum.checksum(buffer, name, entry.getSize(), input.checksumTypes, input.root)
+                    : Collections.emptySet();
+
+            return listArchiveOnce(
+                    input,
+                    name,
+                    checksums,
+                    () -> listNestedArchive(input, manager, name, buffer, archiveDepth))
+                    .thenApply(ignored -> checksums);
+        }
+
+        /**
+         * Returns the contents of the given entry if it can be listed without copying it to a temporary file. This is
+         * the case if the entry is stored without compression, so that its contents can be mapped from this archive,
+         * or if it is not larger than the archive memory threshold.
+         *
+         * @param entry the entry
+         * @return the contents of the entry, or null if it has to be copied to a temporary file
+         * @throws IOException if an error occurs reading the entry
+         */
+        private ByteBuffer readInMemory(ZipArchiveEntry entry) throws IOException {
+            long size = entry.getSize();
+
+            if (size < 0L) {
+                return null;
+            }
+
+            ByteBuffer buffer = getStoredData(entry);
+
+            if (buffer != null) {
+                return buffer;
+            }
+
+            if (size <= Math.min(config.getArchiveMemoryThreshold(), Integer.MAX_VALUE)) {
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    return ByteBuffer.wrap(IOUtils.toByteArray(in, (int) size));
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the contents of the given entry without reading it if the entry is stored without compression, by
+         * mapping it from the archive file or by sharing it with the archive read in memory.
+         *
+         * @param entry the entry
+         * @return the contents of the entry, or null if it has to be read
+         * @throws IOException if an error occurs mapping the entry
+         */
+        private ByteBuffer getStoredData(ZipArchiveEntry entry) throws IOException {
+            long size = entry.getSize();
+            long offset = entry.getDataOffset();
+
+            if (entry.getMethod() != ZipEntry.STORED || size < 0L || size > Integer.MAX_VALUE
+                    || offset == EntryStreamOffsets.OFFSET_UNKNOWN || !zipFile.canReadEntryData(entry)) {
+                return null;
+            }
+
+            if (channel instanceof FileChannel fileChannel) {
+                return fileChannel.map(MapMode.READ_ONLY, offset, size);
+            }
+
+            if (channel instanceof ByteBufferChannel bufferChannel) {
+                return bufferChannel.slice(offset, size);
+            }
+
+            return null;
+        }
+
+        private CompletableFuture<Set<Checksum>> listSpilledArchive(
+                FileName name,
+                ZipArchiveEntry entry,
+                int archiveDepth,
+                boolean checksum) throws IOException {
+            Path path = Files.createTempFile(TEMP_FILE_PREFIX, "." + name.getExtension());
+            Set<Checksum> checksums;
+
+            try (InputStream in = zipFile.getInputStream(entry); OutputStream out = Files.newOutputStream(path)) {
+                if (checksum) {
+                    checksums = Checksum.checksum(
+                            new TeeInputStream(in, out),
+                            name,
+                            entry.getSize(),
+                            input.checksumTypes,
+                            input.root);
+                } else {
+                    in.transferTo(out);
+                    checksums = Collections.emptySet();
+                }
+            } catch (IOException e) {
+                deleteTempFile(path);
+                throw e;
+            }
+
+            bytesSpilled.add(entry.getSize());
+
+            return listArchiveOnce(
+                    input,
+                    name,
+                    checksums,
+                    () -> listNestedArchive(input, manager, name, path, archiveDepth))
+                    .whenComplete((ignored, t) -> deleteTempFile(path))
+                    .thenApply(ignored -> checksums);
+        }
+
+        private InputStream getInputStream(Entry<FileName, ZipArchiveEntry> file) throws IOException {
+            return zipFile.getInputStream(file.getValue());
+        }
+
+        private List<LicenseInfo> addLicensesFromJar(Entry<FileName, ZipArchiveEntry> file) {
+            FileName localFile = file.getKey();
+            List<LicenseInfo> licenseInfos;
+
+            try {
+                if (isPomXml(localFile)) {
+                    licenseInfos = addLicensesFromPom(file);
+                } else if (isManifestMfFileName(localFile)) {
+                    try (InputStream in = getInputStream(file)) {
+                        licenseInfos = addLicensesFromBundleLicense(localFile, getBundleLicenseFromManifest(in));
+                    }
+                } else if (isLicenseFileName(localFile.getPath())) {
+                    licenseInfos = addLicenseFromTextFile(file);
+                } else {
+                    licenseInfos = Collections.emptyList();
+                }
+            } catch (IOException e) {
+                licenseInfos = Collections.emptyList();
+            }
+
+            licenseInfos.stream()
+                    .filter(licenseInfo -> NOASSERTION.equals(licenseInfo.getSpdxLicenseId()))
+                    .forEach(this::handleRelativeURL);
+
+            if (LOGGER.isWarnEnabled()) {
+                licenseInfos.stream()
+                        .filter(licenseInfo -> NOASSERTION.equals(licenseInfo.getSpdxLicenseId()))
+                        .forEach(licenseInfo -> checkMissingMapping(input, localFile, licenseInfo));
+            }
+
+            return Collections.unmodifiableList(licenseInfos);
+        }
+
+        private List<LicenseInfo> addLicenseFromTextFile(Entry<FileName, ZipArchiveEntry> file) throws IOException {
+            FileName licenseFile = file.getKey();
+
+            try (InputStream in = getInputStream(file)) {
+                LicenseInfo licenseInfo = new LicenseInfo(licenseFile, rootName.getRelativeName(licenseFile), in);
+                return Collections.singletonList(licenseInfo);
+            }
+        }
+
+        private List<LicenseInfo> addLicensesFromPom(Entry<FileName, ZipArchiveEntry> file) throws IOException {
+            try (InputStream in = getInputStream(file)) {
+                return DistributionAnalyzer.this.addLicensesFromPom(input, file.getKey(), in);
+            }
+        }
+
+        private void handleRelativeURL(LicenseInfo licenseInfo) {
+            String name = licenseInfo.getName();
+            String url = licenseInfo.getUrl();
+
+            if (name == null && url == null) {
+                return;
+            }
+
+            // URL is not relative, ignore
+            if (isUrl(url)) {
+                return;
+            }
+
+            if (name == null) {
+                name = url;
+            }
+
+            try {
+                // If the URL is absent, consider the possibility that the name refers to a file inside the JAR
+                FileName licenseFile = manager.resolveName(rootName, name);
+                ZipArchiveEntry entry = zipFile.getEntry(licenseFile.getPathDecoded().substring(1));
+
+                if (entry == null || entry.isDirectory() || !isLicenseFileName(licenseFile.getPath())) {
+                    return;
+                }
+
+                // XXX: Currently, the API returns either 0 or 1 licenses, which we rely on here
+                LicenseInfo licenseInfo2 = addLicenseFromTextFile(Map.entry(licenseFile, entry)).get(0);
+                String spdxLicenseId = licenseInfo2.getSpdxLicenseId();
+                licenseInfo.setSpdxLicense(spdxLicenseId);
+            } catch (IOException e) {
+                if (LOGGER.isErrorEnabled()) {
+                    LOGGER.error(
+                            "Error adding relative license URL name {} for {}: {}",
+                            boldRed(name),
+                            boldRed(normalizePath(rootName, input.root)),
+                            boldRed(getAllErrorMessages(e)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the files of a tar archive, which may be compressed as a whole or be the only file in a compressed file,
+     * in a single pass. Commons VFS reads the whole archive again for every nested archive it creates a file system
+     * for, which means decompressing it again, so instead the archive is decompressed once and every file is
+     * checksummed while it is read, and so are the archive itself and the compressed file containing it. The file names
+     * are resolved the same way as the tar file system of Commons VFS resolves them, so that both produce the same
+     * paths.
+     * <p>
+     * Nested archives are read in memory if they are not larger than the archive memory threshold, and copied to a
+     * temporary file while their checksum is computed otherwise, and are then listed by other tasks while the tar
+     * archive is read further. Since the nested archives are read ahead, at most as many of them as there are analyzer
+     * threads may be pending, after which reading stops and is resumed by another task once the oldest one is done,
+     * so that no thread is blocked. The checksums of other files are held back in a small side buffer so that the POM
+     * files found nearby still come first.
+     */
+    private final class TarVisitor {
+        private final Input input;
+
+        private final FileSystemManager manager;
+
+        private final FileObject fo;
+
+        private final int level;
+
+        private final PendingChecksums pendingChecksums;
+
+        private final Deque<CompletableFuture<Set<Checksum>>> pendingArchives;
+
+        private final List<Set<Checksum>> deferredChecksums;
+
+        private final CompletableFuture<Set<Checksum>> traversal;
+
+        private FileContent fc;
+
+        private InputStream in;
+
+        private ChecksumInputStream checksumIn;
+
+        private InputStream decompressed;
+
+        private FileName tarName;
+
+        private ChecksumInputStream tarChecksumIn;
+
+        private TarArchiveInputStream tar;
+
+        private FileName rootName;
+
+        private int archiveDepth;
+
+        private TarVisitor(Input input, FileObject fo, int level) {
+            this.input = input;
+            manager = fo.getFileSystem().getFileSystemManager();
+            this.fo = fo;
+            this.level = level;
+            pendingChecksums = new PendingChecksums(input);
+            pendingArchives = new ArrayDeque<>();
+            deferredChecksums = new ArrayList<>(DEFERRED_FILES_SIZE);
+            traversal = new CompletableFuture<>();
+        }
+
+        private CompletableFuture<Set<Checksum>> visit(boolean checksum) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Reading tar archive in a single pass: {}", normalizePath(fo, input.root));
+            }
+
+            try {
+                open(checksum);
+                read();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+
+            // Reading may be resumed by other tasks, which add to the pending checksums until the traversal is done
+            return traversal.handle((checksums, t) -> null)
+                    .thenCompose(ignored -> pendingChecksums.finish(CompletableFuture.allOf(traversal)))
+                    .handle((ignored, t) -> {
+                        if (t == null) {
+                            return traversal.join();
+                        }
+
+                        addArchiveError(input, fo.getName(), t);
+
+                        return checksum ? checksum(input, fo) : Collections.emptySet();
+                    });
+        }
+
+        private void open(boolean checksum) throws IOException {
+            FileName fileName = fo.getName();
+            String extension = fileName.getExtension();
+
+            fc = fo.getContent();
+            in = fc.getInputStream();
+
+            if (checksum) {
+                checksumIn = new ChecksumInputStream(in, input.checksumTypes);
+            }
+
+            decompressed = decompress(extension, CloseShieldInputStream.wrap(checksum ? checksumIn : in));
+
+            if (!isCompressedTarArchive(fileName)) {
+                tar = new TarArchiveInputStream(decompressed);
+                rootName = new LayeredFileName(extension, fileName, FileName.ROOT_PATH, FileType.FOLDER);
+                archiveDepth = level + 1;
+                return;
+            }
+
+            FileName compressedRoot = new LayeredFileName(extension, fileName, FileName.ROOT_PATH, FileType.FOLDER);
+            tarName = manager.resolveName(
+                    compressedRoot,
+                    "./" + FilenameUtils.removeExtension(fileName.getBaseName()),
+                    NameScope.CHILD);
+
+            if (!input.checksumTypes.isEmpty() && includeFile(input, tarName, -1L)) {
+                tarChecksumIn = new ChecksumInputStream(decompressed, input.checksumTypes);
+            }
+
+            tar = new TarArchiveInputStream(tarChecksumIn != null ? tarChecksumIn : decompressed);
+            rootName = new LayeredFileName("tar", tarName, FileName.ROOT_PATH, FileType.FOLDER);
+            archiveDepth = level + 2;
+        }
+
+        /**
+         * Reads the files of the tar archive until either its end or the limit of pending nested archives is reached,
+         * in which case reading is resumed by another task once the oldest nested archive is done.
+         */
+        private void read() {
+            try {
+                TarArchiveEntry entry;
+
+                while ((entry = tar.getNextEntry()) != null) {
+                    if (!entry.isDirectory()) {
+                        FileName name = manager
+                                .resolveName(rootName, UriParser.encode(entry.getName(), ARCHIVE_ENTRY_RESERVED_CHARS));
+                        visitFile(tar, name, entry.getSize());
+                    }
+
+                    CompletableFuture<Set<Checksum>> oldest = removeDoneArchives();
+
+                    if (oldest != null) {
+                        // Errors are handled along with the other pending checksums
+                        oldest.handle((checksums, t) -> null).thenRunAsync(this::read, pool);
+                        return;
+                    }
+                }
+
+                flushDeferredChecksums();
+
+                if (tarChecksumIn != null) {
+                    // Commons VFS does not know the size of the file in a compressed file
+                    handleChecksumResult(input, tarChecksumIn.finish(tarName, -1L, input.root));
+                }
+
+                Set<Checksum> checksums = checksumIn != null
+                        ? checksumIn.finish(fo.getName(), Checksum.determineFileSize(fc), input.root)
+                        : Collections.emptySet();
+
+                IOUtils.close(decompressed, in, fc);
+                traversal.complete(checksums);
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable t) {
+            IOUtils.closeQuietly(decompressed, in, fc);
+            traversal.completeExceptionally(t);
+        }
+
+        private void visitFile(InputStream in, FileName name, long size) throws IOException {
+            boolean willListArchive = isArchive(manager, name) && shouldListArchive(name, archiveDepth);
+            boolean checksumFile = !input.checksumTypes.isEmpty() && includeFile(input, name, size);
+
+            if (isPom(name) || isPomXml(name)) {
+                byte[] pom = in.readAllBytes();
+
+                if (checksumFile) {
+                    handleChecksumResult(
+                            input,
+                            Checksum.checksum(
+                                    new ByteArrayInputStream(pom),
+                                    name,
+                                    size,
+                                    input.checksumTypes,
+                                    input.root));
+                }
+
+                putLicenses(
+                        normalizePath(name, input.root),
+                        addLicensesFromPom(input, name, new ByteArrayInputStream(pom)));
+            } else if (willListArchive) {
+                CompletableFuture<Set<Checksum>> future = listArchive(in, name, size, checksumFile);
+                pendingChecksums.add(future);
+                pendingArchives.addLast(future);
+            } else if (checksumFile) {
+                deferredChecksums.add(Checksum.checksum(in, name, size, input.checksumTypes, input.root));
+
+                if (deferredChecksums.size() >= DEFERRED_FILES_SIZE) {
+                    flushDeferredChecksums();
+                }
+            }
+        }
+
+        private CompletableFuture<Set<Checksum>> listArchive(InputStream in, FileName name, long size, boolean checksum)
+                throws IOException {
+            int depth = archiveDepth;
+
+            if (size <= Math.min(config.getArchiveMemoryThreshold(), Integer.MAX_VALUE)) {
+                byte[] bytes = IOUtils.toByteArray(in, (int) size);
+                Set<Checksum> checksums = checksum
+                        ? Checksum.checksum(
+                                new ByteArrayInputStream(bytes),
+                                name,
+                                size,
+                                input.checksumTypes,
+                                input.root)
+                        : Collections.emptySet();
+
+                return submit(
+                        depth,
+                        () -> listArchiveOnce(
+                                input,
+                                name,
+                                checksums,
+                                () -> listNestedArchive(input, manager, name, ByteBuffer.wrap(bytes), depth)))
+                        .thenApply(ignored -> checksums);
+            }
+
+            Path path = Files.createTempFile(TEMP_FILE_PREFIX, "." + name.getExtension());
+            Set<Checksum> checksums;
+
+            try (OutputStream out = Files.newOutputStream(path)) {
+                if (checksum) {
+                    checksums = Checksum
+                            .checksum(new TeeInputStream(in, out), name, size, input.checksumTypes, input.root);
+                } else {
+                    in.transferTo(out);
+                    checksums = Collections.emptySet();
+                }
+            } catch (IOException e) {
+                deleteTempFile(path);
+                throw e;
+            }
+
+            bytesSpilled.add(size);
+
+            return submit(
+                    depth,
+                    () -> listArchiveOnce(
+                            input,
+                            name,
+                            checksums,
+                            () -> listNestedArchive(input, manager, name, path, depth)))
+                    .whenComplete((ignored, t) -> deleteTempFile(path))
+                    .thenApply(ignored -> checksums);
+        }
+
+        /**
+         * Forgets the nested archives which are done, and returns the oldest one which is not if too many are pending.
+         */
+        private CompletableFuture<Set<Checksum>> removeDoneArchives() {
+            while (!pendingArchives.isEmpty() && pendingArchives.peekFirst().isDone()) {
+                pendingArchives.removeFirst();
+            }
+
+            return pendingArchives.size() > config.getAnalyzerNumThreads() ? pendingArchives.removeFirst() : null;
+        }
+
+        private void flushDeferredChecksums() throws IOException {
+            for (Set<Checksum> checksums : deferredChecksums) {
+                handleChecksumResult(input, checksums);
+            }
+
+            deferredChecksums.clear();
+        }
+    }
+
+    /**
+     * Returns a stream decompressing the given input stream according to the extension of a tar archive or compressed
+     * file, in the same way as Commons VFS decompresses it.
+     */
+    private static InputStream decompress(String extension, InputStream in) throws IOException {
+        return switch (extension) {
+            case "gz", "tgz" -> new GZIPInputStream(in);
+            case "bz2", "tbz2" -> new BZip2CompressorInputStream(in);
+            default -> in;
+        };
+    }
+
+    /**
+     * The results for the files of a nested archive, which are recorded while it is listed so that they can be
+     * replayed for identical archives with other paths. The results for the archive itself are recorded by the archive
+     * containing it instead, except for errors. The checksums are not copied, instead the ids of the files in the
+     * checksum store are recorded as they are stored, and their checksums are read back from the store when replayed.
+     */
+    private static final class ArchiveListing {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final String path;
+
+        private final CompletableFuture<Void> listed;
+
+        // Only added to while holding the results lock, and only read once the archive has been listed
+        private int[] fileIds;
+
+        private int numFileIds;
+
+        private final Queue<Entry<String, Collection<LicenseInfo>>> licenses;
+
+        private final Queue<FileError> fileErrors;
+
+        private ArchiveListing(String path) {
+            this.path = path;
+            listed = new CompletableFuture<>();
+            fileIds = new int[INITIAL_CAPACITY];
+            licenses = new ConcurrentLinkedQueue<>();
+            fileErrors = new ConcurrentLinkedQueue<>();
         }
 
-        if (queue != null && config.getChecksumTypes().contains(ChecksumType.md5)) {
-            try {
-                for (Checksum checksum : checksums) {
-                    if (checksum.getType() == ChecksumType.md5) {
-                        queue.put(checksum);
-                    }
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException(e);
+        private void addFileId(int fileId) {
+            if (numFileIds == fileIds.length) {
+                fileIds = Arrays.copyOf(fileIds, numFileIds * 2);
             }
+
+            fileIds[numFileIds++] = fileId;
         }
-    }
 
-    private void handleFutureChecksum(Future<Set<Checksum>> future) throws IOException {
-        try {
-            handleChecksumResult(future.get());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException(e);
-        } catch (ExecutionException e) {
-            throw new IOException(e);
+        private String rebase(String filename, String newPath) {
+            return newPath + filename.substring(path.length());
         }
     }
 
-    private void listChildren(FileObject fo, int level) throws IOException {
-        List<FileObject> pomFiles = new ArrayList<>(LOCAL_FILES_SIZE);
-        List<FileObject> localFiles = new ArrayList<>(LOCAL_FILES_SIZE);
+    /**
+     * The checksum tasks of a single archive. At most {@link #PENDING_CHECKSUM_TASKS_PER_THREAD} tasks per thread of
+     * the pool are run at the same time, and the other tasks wait until one of them is done. Their results are handled
+     * as soon as they complete, and the tasks are forgotten once they are done, so that only their number is kept. The
+     * archive is done once all of them and the traversal of its files have completed.
+     */
+    private final class PendingChecksums {
+        private final Input input;
 
-        try {
-            FileExtensionSelector pomSelector = new FileExtensionSelector("pom");
-            fo.findFiles(pomSelector, true, pomFiles);
-            fo.findFiles(new InvertIncludeFileSelector(pomSelector), true, localFiles);
-            pomFiles.addAll(localFiles);
-            List<Callable<Set<Checksum>>> checksumTasks = new ArrayList<>(pomFiles.size());
-            List<Future<?>> archiveFutures = new ArrayList<>();
+        private final int maxRunningTasks;
 
-            if (isMainJar(fo)) {
-                List<LicenseInfo> licenseInfos = addLicensesFromJar(fo, pomFiles);
-                putLicenses(Utils.normalizePath(fo, root), licenseInfos);
-            }
+        private final Queue<Supplier<CompletableFuture<Set<Checksum>>>> waitingTasks;
 
-            boolean isTarFileSystem = "tar".equals(fo.getName().getScheme());
-            List<FileObject> deferredChecksumFiles = new ArrayList<>();
+        private final CompletableFuture<Void> done;
 
-            for (FileObject file : pomFiles) {
-                if (file.isFile()) {
-                    boolean willListArchive = false;
-                    int archiveDepth = level + 1;
+        private final ReentrantLock lock;
 
-                    if (isArchive(file)) {
-                        willListArchive = shouldListArchive(file, archiveDepth);
-                    }
+        private int numTasks;
 
-                    if (!checksumTypesToCheck.isEmpty()) {
-                        if (includeFile(file)) {
-                            if ("tar".equals(file.getName().getScheme())) {
-                                Set<Checksum> checksums = Checksum.checksum(file, checksumTypesToCheck, root);
-                                handleChecksumResult(checksums);
-                            } else if (willListArchive) {
-                                deferredChecksumFiles.add(file);
-                            } else {
-                                checksumTasks.add(checksumTask(file));
-                            }
-                        }
-                    }
+        private int numRunningTasks;
 
-                    boolean pom = isPom(file);
-                    boolean pomXml = isPomXml(file);
-
-                    if (pom || pomXml) {
-                        List<LicenseInfo> licenseInfos = addLicensesFromPom(file);
-
-                        try {
-                            Map<String, List<LicenseInfo>> map = getLicenses(root, file);
-                            putLicenses(map.keySet().iterator().next(), licenseInfos);
-                        } catch (XmlPullParserException | InterpolationException e) {
-                            if (LOGGER.isErrorEnabled()) {
-                                LOGGER.error(
-                                        "Error parsing POM file {}: {}",
-                                        boldRed(file),
-                                        boldRed(getAllErrorMessages(e)));
-                            }
-                        }
-                    }
+        private int numPendingTasks;
 
-                    if (willListArchive) {
-                        if (isTarFileSystem) {
-                            listArchive(file, archiveDepth);
-                        } else {
-                            archiveFutures.add(pool.submit(() -> {
-                                listArchive(file, archiveDepth);
-                                return null;
-                            }));
-                        }
-                    }
-                }
-            }
+        private boolean traversed;
 
-            for (Future<?> future : archiveFutures) {
-                try {
-                    future.get();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException(e);
-                } catch (ExecutionException e) {
-                    throw new IOException(e);
-                }
-            }
+        private Throwable failure;
 
-            for (FileObject file : deferredChecksumFiles) {
-                checksumTasks.add(checksumTask(file));
-            }
+        private PendingChecksums(Input input) {
+            this.input = input;
+            maxRunningTasks = config.getAnalyzerNumThreads() * PENDING_CHECKSUM_TASKS_PER_THREAD;
+            waitingTasks = new ArrayDeque<>();
+            done = new CompletableFuture<>();
+            lock = new ReentrantLock();
+        }
 
-            if (!checksumTasks.isEmpty()) {
-                LOGGER.debug("Number of checksum tasks: {}", checksumTasks.size());
+        /**
+         * Adds a task which is already running, such as a nested archive which has to be read from the stream of this
+         * archive right away.
+         *
+         * @param future the future of the task
+         */
+        private void add(CompletableFuture<Set<Checksum>> future) {
+            lock.lock();
 
-                try {
-                    for (Future<Set<Checksum>> future : pool.invokeAll(checksumTasks)) {
-                        handleFutureChecksum(future);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException(e);
-                }
-            }
-        } finally {
-            for (FileObject file : localFiles) {
-                file.close();
+            try {
+                numTasks++;
+                numRunningTasks++;
+                numPendingTasks++;
+            } finally {
+                lock.unlock();
             }
+
+            handle(future);
         }
-    }
 
-    private static boolean isMainJar(FileObject fo) {
-        String name = fo.getPublicURIString();
-        return name.endsWith(JAR_URI) && !Strings.CS.endsWithAny(name, JARS_TO_IGNORE);
-    }
+        /**
+         * Adds a task which is started once fewer than the maximum number of tasks of this archive are running.
+         *
+         * @param task the task
+         */
+        private void add(Supplier<CompletableFuture<Set<Checksum>>> task) {
+            boolean start;
 
-    private List<LicenseInfo> addLicensesFromJar(FileObject jar, List<FileObject> localFiles) {
-        return localFiles.parallelStream()
-                .map(localFile -> addLicensesFromJar(jar, localFile))
-                .filter(not(Collection::isEmpty))
-                .flatMap(Collection::stream)
-                .toList();
-    }
+            lock.lock();
 
-    private List<LicenseInfo> addLicensesFromJar(FileObject jar, FileObject localFile) {
-        List<LicenseInfo> licenseInfos;
+            try {
+                numTasks++;
+                numPendingTasks++;
+                start = numRunningTasks < maxRunningTasks;
 
-        try {
-            if (isPomXml(localFile)) {
-                licenseInfos = addLicensesFromPom(localFile);
-            } else if (isManifestMfFileName(localFile)) {
-                licenseInfos = addLicensesFromBundleLicense(localFile);
-            } else if (isLicenseFile(localFile)) {
-                licenseInfos = addLicenseFromTextFile(jar, localFile);
-            } else {
-                licenseInfos = Collections.emptyList();
+                if (start) {
+                    numRunningTasks++;
+                } else {
+                    waitingTasks.add(task);
+                }
+            } finally {
+                lock.unlock();
             }
-        } catch (IOException e) {
-            licenseInfos = Collections.emptyList();
-        }
 
-        licenseInfos.stream()
-                .filter(licenseInfo -> NOASSERTION.equals(licenseInfo.getSpdxLicenseId()))
-                .forEach(licenseInfo -> handleRelativeURL(jar, localFile, licenseInfo));
+            if (start) {
+                handle(start(task));
+            }
+        }
 
-        if (LOGGER.isWarnEnabled()) {
-            licenseInfos.stream()
-                    .filter(licenseInfo -> NOASSERTION.equals(licenseInfo.getSpdxLicenseId()))
-                    .forEach(licenseInfo -> checkMissingMapping(localFile, licenseInfo));
+        private CompletableFuture<Set<Checksum>> start(Supplier<CompletableFuture<Set<Checksum>>> task) {
+            try {
+                return task.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
 
-        return Collections.unmodifiableList(licenseInfos);
-    }
+        private void handle(CompletableFuture<Set<Checksum>> future) {
+            future.thenAccept(checksums -> {
+                try {
+                    handleChecksumResult(input, checksums);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }).whenComplete((ignored, t) -> taskDone(t));
+        }
 
-    private static List<LicenseInfo> addLicenseFromTextFile(FileObject jar, FileObject licenseFile) throws IOException {
-        LicenseInfo licenseInfo = new LicenseInfo(
-                licenseFile,
-                jar.getName().getRelativeName(licenseFile.getName()));
-        return Collections.singletonList(licenseInfo);
-    }
+        private void taskDone(Throwable t) {
+            Supplier<CompletableFuture<Set<Checksum>>> next;
+            boolean isDone;
 
-    private static List<LicenseInfo> addLicensesFromBundleLicense(FileObject fileObject) throws IOException {
-        List<LicenseInfo> licenses = new ArrayList<>(3);
-        List<BundleLicense> bundlesLicenses = getBundleLicenseFromManifest(fileObject);
+            lock.lock();
 
-        for (BundleLicense bundleLicense : bundlesLicenses) {
-            String licenseIdentifier = bundleLicense.getLicenseIdentifier();
-            String description = bundleLicense.getDescription();
-            String name = getFirstNonBlankString(licenseIdentifier, description);
-            String url = bundleLicense.getLink();
-            LicenseInfo licenseInfo = new LicenseInfo(fileObject, name, url);
-            licenses.add(licenseInfo);
-        }
+            try {
+                if (t != null && failure == null) {
+                    failure = t;
+                }
 
-        return Collections.unmodifiableList(licenses);
-    }
+                // The running task is replaced by the next waiting one, if any
+                next = waitingTasks.poll();
 
-    private List<LicenseInfo> addLicensesFromPom(FileObject fileObject) throws IOException {
-        try {
-            Map<String, List<LicenseInfo>> map = getLicenses(root, fileObject);
-            Entry<String, List<LicenseInfo>> entry = map.entrySet().iterator().next();
-            String pomOrJarFile = entry.getKey();
-            List<LicenseInfo> licenseInfos = entry.getValue();
+                if (next == null) {
+                    numRunningTasks--;
+                }
 
-            if (licenseInfos.isEmpty()) {
-                return Collections.emptyList();
+                numPendingTasks--;
+                isDone = traversed && numPendingTasks == 0;
+            } finally {
+                lock.unlock();
             }
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug(
-                        "Found {} SPDX licenses for {}: {}",
-                        licenseInfos.size(),
-                        pomOrJarFile,
-                        String.join(
-                                ", ",
-                                licenseInfos.stream()
-                                        .map(LicenseInfo::getSpdxLicenseId)
-                                        .collect(Collectors.toUnmodifiableSet())));
+            if (next != null) {
+                // Started by the pool, since a task which is done right away would otherwise start the next one here
+                pool.execute(() -> handle(start(next)));
+            } else if (isDone) {
+                complete();
             }
+        }
 
-            return Collections.unmodifiableList(licenseInfos);
-        } catch (XmlPullParserException | InterpolationException e) {
-            if (LOGGER.isErrorEnabled()) {
-                LOGGER.error(
-                        "Unable to read licenses from file {}: {}",
-                        boldRed(fileObject),
-                        boldRed(getAllErrorMessages(e)));
-            }
+        private CompletableFuture<Void> finish(CompletableFuture<Void> traversal) {
+            traversal.whenComplete((ignored, t) -> {
+                boolean isDone;
 
-            throw new IOException(e);
-        }
-    }
+                lock.lock();
 
-    private void checkMissingMapping(FileObject localFile, LicenseInfo licenseInfo) {
-        String name = licenseInfo.getName();
-        String url = licenseInfo.getUrl();
+                try {
+                    LOGGER.debug("Number of checksum tasks: {}", numTasks);
 
-        if (name == null && url == null) {
-            return;
-        }
+                    if (t != null && failure == null) {
+                        failure = t;
+                    }
 
-        if (isLicenseFileName(name)) {
-            return;
-        }
+                    traversed = true;
+                    isDone = numPendingTasks == 0;
+                } finally {
+                    lock.unlock();
+                }
 
-        if (isLicenseFileName(url)) {
-            return;
+                if (isDone) {
+                    complete();
+                }
+            });
+
+            return done;
         }
 
-        if (LOGGER.isWarnEnabled()) {
-            LOGGER.warn(
-                    "Missing SPDX license mapping for name: {}, URL: {}, filename: {}",
-                    red(name),
-                    red(url),
-                    red(normalizePath(localFile, root)));
+        private void complete() {
+            if (failure != null) {
+                done.completeExceptionally(failure);
+            } else {
+                done.complete(null);
+            }
         }
     }
 
-    private void handleRelativeURL(FileObject jar, FileObject localFile, LicenseInfo licenseInfo) {
-        String name = licenseInfo.getName();
-        String url = licenseInfo.getUrl();
+    /**
+     * A single input, which is analyzed at the same time as other inputs. The files found in all inputs are added to
+     * the same store, so only what differs between inputs is kept here, as well as the checksums found in this input if
+     * they are to be added to the file cache.
+     */
+    private static final class Input {
+        private final FileObject fo;
 
-        if (name == null && url == null) {
-            return;
-        }
+        private final String root;
 
-        // URL is not relative, ignore
-        if (isUrl(url)) {
-            return;
-        }
+        private final String path;
 
-        if (name == null) {
-            name = url;
-        }
+        private final Set<ChecksumType> checksumTypes;
 
-        try {
-            // If the URL is absent, consider the possibility that the name refers to a file inside the JAR
-            FileObject licenseFile = jar.resolveFile(name);
+        private final Queue<Set<Checksum>> results;
 
-            if (!isLicenseFile(licenseFile)) {
-                return;
-            }
+        // Computed while downloading the input, or else before it is listed if it is looked up in the file cache
+        private Set<Checksum> inputChecksums;
 
-            if (licenseFile.isFolder()) {
-                return;
+        private Input(
+                FileObject fo,
+                Set<ChecksumType> checksumTypes,
+                boolean cacheFiles,
+                DownloadSpool.Download download) {
+            this.fo = fo;
+            String friendlyURI = fo.getName().getFriendlyURI();
+            root = friendlyURI.substring(0, friendlyURI.indexOf(fo.getName().getBaseName()));
+            path = normalizePath(fo, root);
+            // The checksum types found in the file cache for this input are removed
+            this.checksumTypes = EnumSet.copyOf(checksumTypes);
+            results = cacheFiles ? new ConcurrentLinkedQueue<>() : null;
+
+            if (download != null) {
+                Set<Checksum> checksums = new HashSet<>(download.getDigests().size(), 1.0f);
+                download.getDigests()
+                        .forEach(
+                                (checksumType, digest) -> checksums
+                                        .add(new Checksum(checksumType, digest, path, download.getSize())));
+                inputChecksums = Collections.unmodifiableSet(checksums);
             }
+        }
 
-            if (!licenseFile.isReadable()) {
-                if (LOGGER.isWarnEnabled()) {
-                    LOGGER.warn(
-                            "License file {} from {} is not a file or is not readable",
-                            red(name),
-                            red(normalizePath(localFile, root)));
+        /**
+         * Gets the checksums of this input computed already, of the checksum types still to be computed.
+         *
+         * @return the checksums
+         */
+        private Set<Checksum> getInputChecksums() {
+            Set<Checksum> checksums = new HashSet<>(checksumTypes.size(), 1.0f);
+
+            for (Checksum checksum : inputChecksums) {
+                if (checksumTypes.contains(checksum.getType())) {
+                    checksums.add(checksum);
                 }
-
-                return;
             }
 
-            List<LicenseInfo> licenseInfos = addLicenseFromTextFile(jar, licenseFile);
+            return Collections.unmodifiableSet(checksums);
+        }
 
-            if (licenseInfos.isEmpty()) {
-                if (LOGGER.isWarnEnabled()) {
-                    LOGGER.warn(
-                            "Failed to add licenses from file {} located in JAR {}",
-                            red(normalizePath(licenseFile, root)),
-                            red(normalizePath(jar, root)));
-                }
+        /**
+         * Gets the files found in this input with checksums of the given type, once the input has been analyzed.
+         *
+         * @param checksumType the checksum type
+         * @return the files
+         */
+        private MultiValuedMap<String, LocalFile> getLocalFiles(ChecksumType checksumType) {
+            MultiValuedMap<String, LocalFile> localFiles = new HashSetValuedHashMap<>();
 
-                return;
+            for (Set<Checksum> checksums : results) {
+                for (Checksum checksum : checksums) {
+                    if (checksum.getType() == checksumType) {
+                        localFiles.put(
+                                checksum.getValue(),
+                                new LocalFile(checksum.getFilename(), checksum.getFileSize()));
+                    }
+                }
             }
 
-            // XXX: Currently, the API returns either 0 or 1 licenses, which we rely on here
-            LicenseInfo licenseInfo2 = licenseInfos.get(0);
-            String spdxLicenseId = licenseInfo2.getSpdxLicenseId();
-            licenseInfo.setSpdxLicense(spdxLicenseId);
-        } catch (IOException e) {
-            if (LOGGER.isErrorEnabled()) {
-                LOGGER.error(
-                        "Error adding relative license URL name {} for {}: {}",
-                        boldRed(name),
-                        boldRed(normalizePath(jar, root)),
-                        boldRed(getAllErrorMessages(e)));
-            }
+            return localFiles;
         }
     }
 
-    private synchronized void putLicenses(String pomOrJarFile, Collection<LicenseInfo> licenseInfos) {
-        Collection<LicenseInfo> existingLicenses = licensesMap.get(pomOrJarFile);
+    /**
+     * A stripe of the results of the analyzer threads. The checksums of the files are collected here and added to the
+     * store and sent to the channel in bulk, so that the threads do not contend for the store and the channel for every
+     * file. Most of the time, a stripe is only used by a single thread. The checksums are added once the stripe has
+     * collected enough of them, or once the oldest of them has been collected for a while. If another thread is adding
+     * its results, the stripe goes on collecting checksums instead of waiting for it, unless it has collected too many.
+     * Since the channel may make the thread adding results wait for the build finder, the analyzer threads then wait as
+     * well.
+     */
+    private final class Results {
+        private final List<Checksum> checksums;
+
+        private long oldest;
 
-        if (existingLicenses != null) {
-            List<LicenseInfo> newLicenseInfos = new ArrayList<>(existingLicenses);
-            newLicenseInfos.addAll(licenseInfos);
-            licensesMap.put(pomOrJarFile, Collections.unmodifiableCollection(newLicenseInfos));
-        } else {
-            licensesMap.put(pomOrJarFile, Collections.unmodifiableCollection(licenseInfos));
+        private Results() {
+            checksums = new ArrayList<>(RESULTS_SIZE);
         }
-    }
 
-    public List<String> getInputs() {
-        return Collections.unmodifiableList(inputs);
-    }
+        private synchronized void add(Set<Checksum> newChecksums) throws IOException {
+            if (checksums.isEmpty()) {
+                oldest = System.nanoTime();
+            }
 
-    public Path getChecksumFile(ChecksumType checksumType) {
-        return Path.of(config.getOutputDirectory(), CHECKSUMS_FILENAME_BASENAME + checksumType + ".json");
-    }
+            checksums.addAll(newChecksums);
 
-    public Path getLicensesFile() {
-        return Path.of(config.getOutputDirectory(), LICENSES_FILENAME_BASENAME + ".json");
-    }
+            if ((checksums.size() >= RESULTS_SIZE || System.nanoTime() - oldest >= MAX_RESULTS_AGE)
+                    && addResults(checksums, checksums.size() >= MAX_RESULTS_SIZE)) {
+                checksums.clear();
+            }
+        }
 
-    public Map<String, Collection<LicenseInfo>> getLicensesMap() {
-        return Collections.unmodifiableMap(licensesMap);
+        private synchronized void flush() throws IOException {
+            if (!checksums.isEmpty()) {
+                addResults(checksums, true);
+                checksums.clear();
+            }
+        }
     }
 
-    public void outputToFile(ChecksumType checksumType) throws IOException {
-        JSONUtils.dumpObjectToFile(getChecksums(checksumType), getChecksumFile(checksumType));
-    }
+    /**
+     * Provides every thread with its own file system manager for creating the layered file systems of archives. The
+     * providers of a manager create file systems one at a time, so sharing a single manager would serialize the listing
+     * of archives by all threads. Since the names of replicated files are only unique per manager, every manager
+     * replicates files into its own directory. The file systems created by a thread may be closed by another, so a
+     * manager is locked while it creates or closes a file system.
+     */
+    private static final class FileSystemManagers implements AutoCloseable {
+        private final Path vfsCache;
 
-    public void outputLicensesToFile() throws IOException {
-        JSONUtils.dumpObjectToFile(getLicensesMap(), getLicensesFile());
-    }
+        private final ThreadLocal<FileSystemManager> threadManagers;
 
-    public Map<String, Collection<Checksum>> getFiles() {
-        return Collections.unmodifiableMap(inverseMap.asMap());
-    }
+        private final Queue<FileSystemManager> allManagers;
 
-    public void setChecksums(Map<ChecksumType, MultiValuedMap<String, LocalFile>> map) {
-        this.map = map;
-    }
+        private FileSystemManagers(Path vfsCache) {
+            this.vfsCache = vfsCache;
+            threadManagers = new ThreadLocal<>();
+            allManagers = new ConcurrentLinkedQueue<>();
+        }
 
-    public Map<String, Collection<LocalFile>> getChecksums(ChecksumType checksumType) {
-        return Collections.unmodifiableMap(map.get(checksumType).asMap());
-    }
+        private FileSystemManager get() throws FileSystemException {
+            FileSystemManager manager = threadManagers.get();
 
-    public Collection<FileError> getFileErrors() {
-        return Collections.unmodifiableList(fileErrors);
-    }
+            if (manager == null) {
+                manager = vfsCache != null ? createManager(createReplicatorDirectory()) : createManager();
+                threadManagers.set(manager);
+                allManagers.add(manager);
+            }
 
-    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> getChecksums() {
-        return Collections.unmodifiableMap(map);
-    }
+            return manager;
+        }
 
-    @Override
-    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> call() throws IOException {
-        queue = new LinkedBlockingQueue<>();
+        private Path createReplicatorDirectory() throws FileSystemException {
+            try {
+                return Files.createTempDirectory(Files.createDirectories(vfsCache), TEMP_FILE_PREFIX);
+            } catch (IOException e) {
+                throw new FileSystemException(e);
+            }
+        }
 
-        checksumFiles();
+        @Override
+        public void close() {
+            LOGGER.debug("Closing {} file system managers", allManagers.size());
 
-        try {
-            queue.put(new Checksum());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException(e);
-        }
+            FileSystemManager manager;
 
-        return Collections.unmodifiableMap(map);
+            while ((manager = allManagers.poll()) != null) {
+                manager.close();
+            }
+        }
     }
 
     /**
-     * Provide a Supplier version of the Callable. This is useful when using the DistributionAnalyzer to obtain a
-     * CompletableFuture (via {@link java.util.concurrent.CompletableFuture#supplyAsync(Supplier)})
-     *
-     * @throws CompletionException if an IO exception is thrown
-     *
-     * @return For each checksum type (key), the checksum values of the files
+     * A file object with a different name than the file object it decorates.
      */
-    @Override
-    public Map<ChecksumType, MultiValuedMap<String, LocalFile>> get() {
-        try {
-            return call();
-        } catch (IOException e) {
-            throw new CompletionException(e);
-        }
-    }
+    private static final class NamedFileObject extends DecoratedFileObject {
+        private final FileName name;
 
-    public BlockingQueue<Checksum> getQueue() {
-        return queue;
-    }
+        private NamedFileObject(FileObject fileObject, FileName name) {
+            super(fileObject);
+            this.name = name;
+        }
 
-    public void setListener(DistributionAnalyzerListener listener) {
-        this.listener = listener;
+        @Override
+        public FileName getName() {
+            return name;
+        }
     }
 }
@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Downloads remote inputs into local spool files, so that each input is only fetched once and its files are then read
+ * from disk. The checksums of an input are computed while it is downloaded. If the server accepts range requests, a
+ * large input is downloaded in chunks over several connections at once. The chunks are written and digested in order,
+ * so no more than a fixed number of chunks are held in memory, however slow the first of them is. Each range request is
+ * sent with the validator of the input, so that an input which changes while its chunks are downloaded fails instead
+ * of being spliced together from different versions of it. A download which stalls fails once the request timeout has
+ * passed without the next chunk, or without more of the body of an input downloaded in one piece.
+ */
+final class DownloadSpool implements Closeable {
+    /**
+     * Inputs are downloaded in chunks of this size if the server accepts range requests.
+     */
+    static final int CHUNK_SIZE = 8388608;
+
+    /**
+     * Maximum number of chunks of an input downloaded at once.
+     */
+    static final int MAX_CONNECTIONS = 4;
+
+    /**
+     * Maximum time to wait for a connection to the server.
+     */
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30L);
+
+    /**
+     * Maximum time to wait for the response to a request, for the next chunk of an input, or for more of the body of an
+     * input downloaded in one piece.
+     */
+    static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5L);
+
+    private static final String TEMP_FILE_PREFIX = "build-finder-";
+
+    private static final String DEFAULT_FILENAME = "input";
+
+    private final int chunkSize;
+
+    private final int maxConnections;
+
+    private final Duration requestTimeout;
+
+    private final HttpClient client;
+
+    private final AtomicInteger numDownloads;
+
+    private final LongAdder rangeRequests;
+
+    private Path directory;
+
+    DownloadSpool() {
+        this(CHUNK_SIZE, MAX_CONNECTIONS, REQUEST_TIMEOUT);
+    }
+
+    DownloadSpool(int chunkSize, int maxConnections, Duration requestTimeout) {
+        this.chunkSize = chunkSize;
+        this.maxConnections = maxConnections;
+        this.requestTimeout = requestTimeout;
+        client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+        numDownloads = new AtomicInteger();
+        rangeRequests = new LongAdder();
+    }
+
+    /**
+     * Returns whether the given input is a remote input, which is to be downloaded.
+     *
+     * @param input the input
+     * @return whether the input is a remote input
+     */
+    static boolean isRemote(String input) {
+        return input.startsWith("http://") || input.startsWith("https://");
+    }
+
+    /**
+     * Gets the name of the spool file of the given input.
+     *
+     * @param uri the URI of the input
+     * @return the name of the spool file
+     */
+    static String getFilename(URI uri) {
+        String filename = FilenameUtils.getName(uri.getPath());
+        return filename.isEmpty() ? DEFAULT_FILENAME : filename;
+    }
+
+    /**
+     * Downloads the given input into a new spool file, which has the same name as the input.
+     *
+     * @param uri the URI of the input
+     * @param checksumTypes the checksum types to compute while downloading
+     * @return the download
+     * @throws IOException if an error occurs while downloading the input
+     */
+    Download download(URI uri, Collection<ChecksumType> checksumTypes) throws IOException {
+        Path path = createSpoolFile(uri);
+        Map<ChecksumType, MessageDigest> mds = Checksum.getMessageDigests(checksumTypes);
+        long size;
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            Ranges ranges = getRanges(uri);
+            size = ranges != null && ranges.length > chunkSize
+                    ? downloadRanges(uri, ranges, mds, out)
+                    : downloadStream(uri, mds, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+
+        Map<ChecksumType, Digest> digests = new EnumMap<>(ChecksumType.class);
+
+        for (Entry<ChecksumType, MessageDigest> entry : mds.entrySet()) {
+            digests.put(entry.getKey(), Digest.of(entry.getValue().digest()));
+        }
+
+        return new Download(path, size, digests);
+    }
+
+    private synchronized Path createSpoolFile(URI uri) throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory(TEMP_FILE_PREFIX);
+        }
+
+        // Inputs with the same name are downloaded into directories of their own
+        Path parent = Files.createDirectory(directory.resolve(String.valueOf(numDownloads.incrementAndGet())));
+        return Files.createFile(parent.resolve(getFilename(uri)));
+    }
+
+    /**
+     * Gets the length and the validator of the given input if the server accepts range requests for it. The validator
+     * is the strong entity tag of the input if it has one, or its modification time otherwise.
+     *
+     * @param uri the URI of the input
+     * @return the length and the validator, or null if the server does not accept range requests, or the length or the
+     *         validator is not known
+     * @throws IOException if an error occurs while sending the request
+     */
+    private Ranges getRanges(URI uri) throws IOException {
+        HttpRequest request = newRequest(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+        HttpResponse<Void> response = send(request, BodyHandlers.discarding());
+
+        if (response.statusCode() != 200
+                || !response.headers().firstValue("Accept-Ranges").filter("bytes"::equalsIgnoreCase).isPresent()) {
+            return null;
+        }
+
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+        // A weak entity tag cannot be used to resume a download
+        String validator = response.headers()
+                .firstValue("ETag")
+                .filter(etag -> !etag.startsWith("W/"))
+                .or(() -> response.headers().firstValue("Last-Modified"))
+                .orElse(null);
+
+        return length >= 0L && validator != null ? new Ranges(length, validator) : null;
+    }
+
+    private HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(requestTimeout);
+    }
+
+    private long downloadRanges(URI uri, Ranges ranges, Map<ChecksumType, MessageDigest> mds, FileChannel out)
+            throws IOException {
+        Deque<CompletableFuture<byte[]>> chunks = new ArrayDeque<>(maxConnections);
+        long length = ranges.length;
+        long next = 0L;
+
+        try {
+            for (long position = 0L; position < length;) {
+                while (chunks.size() < maxConnections && next < length) {
+                    long end = Math.min(next + chunkSize, length);
+                    chunks.add(downloadRange(uri, ranges.validator, next, end));
+                    next = end;
+                }
+
+                ByteBuffer chunk = ByteBuffer.wrap(chunks.poll().get(requestTimeout.toNanos(), TimeUnit.NANOSECONDS));
+
+                for (MessageDigest md : mds.values()) {
+                    md.update(chunk.duplicate());
+                }
+
+                while (chunk.hasRemaining()) {
+                    position += out.write(chunk);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + uri);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+
+            throw new IOException("Error downloading " + uri, e.getCause());
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("Timed out waiting for a chunk of " + uri);
+        } finally {
+            chunks.forEach(chunk -> chunk.cancel(true));
+        }
+
+        return length;
+    }
+
+    private CompletableFuture<byte[]> downloadRange(URI uri, String validator, long start, long end) {
+        HttpRequest request = newRequest(uri).header("Range", "bytes=" + start + "-" + (end - 1L))
+                .header("If-Range", validator)
+                .build();
+        rangeRequests.increment();
+
+        // The whole input is sent instead of the range if it has changed, which is not read
+        return client.sendAsync(
+                request,
+                responseInfo -> responseInfo.statusCode() == 206 ? BodySubscribers.ofByteArray()
+                        : BodySubscribers.replacing(null))
+                .thenApply(response -> {
+                    if (response.statusCode() == 200) {
+                        throw new CompletionException(
+                                new IOException(uri + " changed while it was downloaded"));
+                    }
+
+                    if (response.statusCode() != 206 || response.body().length != end - start) {
+                        throw new CompletionException(
+                                new IOException(
+                                        "Error downloading bytes " + start + "-" + (end - 1L) + " of " + uri
+                                                + ": HTTP status " + response.statusCode() + ", "
+                                                + (response.body() != null ? response.body().length : 0) + " bytes"));
+                    }
+
+                    return response.body();
+                });
+    }
+
+    private long downloadStream(URI uri, Map<ChecksumType, MessageDigest> mds, FileChannel out) throws IOException {
+        HttpResponse<Flow.Publisher<List<ByteBuffer>>> response = send(
+                newRequest(uri).build(),
+                BodyHandlers.ofPublisher());
+        long size = 0L;
+
+        try (BodyReader body = new BodyReader(uri, requestTimeout)) {
+            response.body().subscribe(body);
+
+            if (response.statusCode() != 200) {
+                throw new IOException("Error downloading " + uri + ": HTTP status " + response.statusCode());
+            }
+
+            List<ByteBuffer> buffers;
+
+            while ((buffers = body.read()) != null) {
+                for (ByteBuffer buffer : buffers) {
+                    for (MessageDigest md : mds.values()) {
+                        md.update(buffer.duplicate());
+                    }
+
+                    while (buffer.hasRemaining()) {
+                        size += out.write(buffer);
+                    }
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        try {
+            return client.send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + request.uri());
+        }
+    }
+
+    /**
+     * Gets the number of range requests sent.
+     *
+     * @return the number of range requests
+     */
+    long getRangeRequests() {
+        return rangeRequests.sum();
+    }
+
+    /**
+     * Deletes all spool files.
+     *
+     * @throws IOException if an error occurs while deleting the spool files
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (directory != null) {
+            FileUtils.deleteDirectory(directory.toFile());
+            directory = null;
+        }
+    }
+
+    /**
+     * Reads the body of a response as it is received, waiting no longer than the timeout for more of it. Unlike the
+     * input stream of a response, a read which does not complete in time fails instead of blocking forever. No more of
+     * the body is requested until the part read last has been written, so at most one part of it is held in memory.
+     */
+    private static final class BodyReader implements Flow.Subscriber<List<ByteBuffer>>, Closeable {
+        // Compared by identity, so that it cannot be mistaken for a part of the body
+        private static final List<ByteBuffer> END = List.of(ByteBuffer.allocate(0));
+
+        private final URI uri;
+
+        private final Duration timeout;
+
+        private final BlockingQueue<List<ByteBuffer>> parts;
+
+        private final CompletableFuture<Flow.Subscription> subscription;
+
+        private volatile Throwable failure;
+
+        private boolean done;
+
+        private BodyReader(URI uri, Duration timeout) {
+            this.uri = uri;
+            this.timeout = timeout;
+            parts = new LinkedBlockingQueue<>();
+            subscription = new CompletableFuture<>();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.complete(subscription);
+            subscription.request(1L);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            parts.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+            parts.add(END);
+        }
+
+        @Override
+        public void onComplete() {
+            parts.add(END);
+        }
+
+        /**
+         * Reads the next part of the body.
+         *
+         * @return the next part, or null once the whole body has been read
+         * @throws IOException if the body could not be received, or no more of it was received before the timeout
+         */
+        private List<ByteBuffer> read() throws IOException {
+            if (done) {
+                return null;
+            }
+
+            List<ByteBuffer> part;
+
+            try {
+                part = parts.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + uri);
+            }
+
+            if (part == null) {
+                throw new HttpTimeoutException("Timed out reading " + uri);
+            }
+
+            if (part == END) {
+                done = true;
+
+                if (failure != null) {
+                    throw failure instanceof IOException ioe ? ioe
+                            : new IOException("Error downloading " + uri, failure);
+                }
+
+                return null;
+            }
+
+            subscription.join().request(1L);
+            return part;
+        }
+
+        /**
+         * Cancels receiving the rest of the body, if it has not been read in full.
+         */
+        @Override
+        public void close() {
+            if (!done) {
+                subscription.thenAccept(Flow.Subscription::cancel);
+            }
+        }
+    }
+
+    /**
+     * The length and the validator of an input which the server accepts range requests for.
+     */
+    private static final class Ranges {
+        private final long length;
+
+        private final String validator;
+
+        private Ranges(long length, String validator) {
+            this.length = length;
+            this.validator = validator;
+        }
+    }
+
+    /**
+     * A downloaded input.
+     */
+    static final class Download {
+        private final Path path;
+
+        private final long size;
+
+        private final Map<ChecksumType, Digest> digests;
+
+        private Download(Path path, long size, Map<ChecksumType, Digest> digests) {
+            this.path = path;
+            this.size = size;
+            this.digests = Collections.unmodifiableMap(digests);
+        }
+
+        /**
+         * Gets the spool file the input was downloaded into.
+         *
+         * @return the spool file
+         */
+        Path getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the size of the input.
+         *
+         * @return the size
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the digests of the input computed while downloading it.
+         *
+         * @return the digests
+         */
+        Map<ChecksumType, Digest> getDigests() {
+            return digests;
+        }
+    }
+}
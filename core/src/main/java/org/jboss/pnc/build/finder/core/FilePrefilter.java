@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.vfs2.FileName;
+
+/**
+ * Decides which files are checksummed, before they are opened. A file is checksummed if it has one of the extensions
+ * of the archives looked up, or is an RPM, and its URI does not match any of the excludes. The extensions are kept in a
+ * hash set and the excludes are the patterns compiled once by the configuration, so the prefilter costs about the same
+ * for every file no matter how many extensions there are.
+ */
+final class FilePrefilter {
+    private static final String RPM_EXTENSION = "rpm";
+
+    private final Set<String> extensions;
+
+    private final List<Pattern> excludes;
+
+    /**
+     * Creates a prefilter.
+     *
+     * @param extensions the extensions of the files to checksum, or an empty collection to checksum files with any
+     *        extension
+     * @param excludes the patterns of the URIs of the files not to checksum
+     */
+    FilePrefilter(Collection<String> extensions, List<Pattern> excludes) {
+        this.extensions = extensions.isEmpty() ? null : toSet(extensions);
+        this.excludes = List.copyOf(excludes);
+    }
+
+    private FilePrefilter(Set<String> extensions, List<Pattern> excludes) {
+        this.extensions = extensions;
+        this.excludes = excludes;
+    }
+
+    private static Set<String> toSet(Collection<String> extensions) {
+        Set<String> set = new HashSet<>(extensions);
+        set.add(RPM_EXTENSION);
+        return set;
+    }
+
+    /**
+     * Returns a prefilter which only checksums the files with both one of the extensions of this prefilter and one of
+     * the given extensions.
+     *
+     * @param newExtensions the extensions
+     * @return the prefilter
+     */
+    FilePrefilter restrict(Collection<String> newExtensions) {
+        Set<String> set = toSet(newExtensions);
+
+        if (extensions != null) {
+            set.retainAll(extensions);
+        }
+
+        return new FilePrefilter(set, excludes);
+    }
+
+    /**
+     * Returns whether the file with the given name is to be checksummed.
+     *
+     * @param fileName the file name
+     * @return whether the file is to be checksummed
+     */
+    boolean includes(FileName fileName) {
+        if (extensions != null && !extensions.contains(fileName.getExtension())) {
+            return false;
+        }
+
+        if (excludes.isEmpty()) {
+            return true;
+        }
+
+        String friendlyURI = fileName.getFriendlyURI();
+
+        for (Pattern exclude : excludes) {
+            if (exclude.matcher(friendlyURI).matches()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "FilePrefilter{" + "extensions=" + extensions + ", excludes=" + excludes + '}';
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.jboss.pnc.build.finder.koji.KojiBuild;
+
+import com.google.common.collect.Maps;
+
+/**
+ * The builds loaded from Koji during a run, by build id. Most archives found in a distribution belong to a few builds,
+ * so the same builds are found again and again by the lookups of different checksums. Each build is only loaded once,
+ * and a build which is still being loaded when it is asked for again is shared with the request loading it, rather than
+ * being loaded a second time.
+ * <p>
+ * A build which fails to load is forgotten, so that it is loaded again the next time it is asked for.
+ */
+final class KojiBuildMemo {
+    private final ConcurrentMap<Integer, CompletableFuture<KojiBuild>> builds;
+
+    private final LongAdder hits;
+
+    private final LongAdder misses;
+
+    private final LongAdder coalesced;
+
+    KojiBuildMemo() {
+        builds = new ConcurrentHashMap<>();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        coalesced = new LongAdder();
+    }
+
+    /**
+     * Gets the builds with the given ids. The builds which have not been asked for before are loaded with a single call
+     * to the given loader.
+     *
+     * @param ids the build ids
+     * @param loader the loader, which loads the builds with the given ids, leaving out the ids of builds which do not
+     *        exist
+     * @return the builds by id, which complete with {@code null} for builds which do not exist
+     */
+    Map<Integer, CompletableFuture<KojiBuild>> get(
+            Collection<Integer> ids,
+            Function<List<Integer>, CompletableFuture<Map<Integer, KojiBuild>>> loader) {
+        Map<Integer, CompletableFuture<KojiBuild>> futures = Maps.newLinkedHashMapWithExpectedSize(ids.size());
+        Map<Integer, CompletableFuture<KojiBuild>> loading = Maps.newLinkedHashMapWithExpectedSize(ids.size());
+
+        for (Integer id : ids) {
+            if (futures.containsKey(id)) {
+                continue;
+            }
+
+            CompletableFuture<KojiBuild> created = new CompletableFuture<>();
+            CompletableFuture<KojiBuild> future = builds.putIfAbsent(id, created);
+
+            if (future == null) {
+                misses.increment();
+                loading.put(id, created);
+                future = created;
+            } else if (future.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+
+            futures.put(id, future);
+        }
+
+        if (!loading.isEmpty()) {
+            CompletableFuture<Map<Integer, KojiBuild>> loaded;
+
+            try {
+                loaded = loader.apply(List.copyOf(loading.keySet()));
+            } catch (RuntimeException e) {
+                loaded = CompletableFuture.failedFuture(e);
+            }
+
+            loaded.whenComplete((loadedBuilds, t) -> loading.forEach((id, future) -> {
+                if (t != null) {
+                    builds.remove(id, future);
+                    future.completeExceptionally(t);
+                } else {
+                    future.complete(loadedBuilds.get(id));
+                }
+            }));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Gets the number of builds asked for which had already been loaded.
+     *
+     * @return the number of hits
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of builds asked for which had to be loaded.
+     *
+     * @return the number of misses
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of builds asked for which were still being loaded, and so were shared with the request loading
+     * them.
+     *
+     * @return the number of coalesced requests
+     */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+}
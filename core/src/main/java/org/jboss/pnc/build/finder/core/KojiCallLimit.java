@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.redhat.red.build.koji.KojiClientException;
+
+/**
+ * Adapts the number of concurrent calls of a Koji method, and the number of requests in each multicall, to how fast the
+ * hub answers. Both start at their configured maximums, and are halved whenever a call fails or takes longer than the
+ * target latency, which is when the hub is overloaded or the multicalls are too large for it. Each run of as many fast
+ * calls as are allowed at once adds one more concurrent call, and an eighth of the maximum to the multicall size, until
+ * they are back at their maximums (additive increase, multiplicative decrease).
+ * <p>
+ * The target latency is that of a multicall of the maximum size. A multicall of fewer requests is expected to answer
+ * proportionally faster, but is always allowed an eighth of the target latency, since every call has a fixed cost.
+ * Methods whose requests differ much in the size of their responses are given limits of their own.
+ * <p>
+ * The calls in flight when the limits are halved were started under the previous limits, so their failures are not
+ * counted against the new limits, which would otherwise be halved once for each of them. Calls which are skipped once
+ * they may be made are not counted at all, since they say nothing about how fast the hub answers.
+ */
+final class KojiCallLimit {
+    /**
+     * Multicalls of the maximum size which take longer than this are taken as a sign that the hub is overloaded.
+     */
+    static final Duration TARGET_LATENCY = Duration.ofSeconds(10L);
+
+    private static final int CHUNK_SIZE_STEPS = 8;
+
+    private final String method;
+
+    private final int maxConcurrency;
+
+    private final int maxChunkSize;
+
+    private final long targetLatencyNanos;
+
+    private final ReentrantLock lock;
+
+    private final Condition available;
+
+    private int concurrency;
+
+    private int chunkSize;
+
+    private int inFlight;
+
+    private int fastCalls;
+
+    private long epoch;
+
+    private long numCalls;
+
+    private long numFailed;
+
+    private long numSlow;
+
+    KojiCallLimit(String method, int maxConcurrency, int maxChunkSize) {
+        this(method, maxConcurrency, maxChunkSize, TARGET_LATENCY);
+    }
+
+    KojiCallLimit(String method, int maxConcurrency, int maxChunkSize, Duration targetLatency) {
+        this.method = method;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxChunkSize = Math.max(1, maxChunkSize);
+        targetLatencyNanos = targetLatency.toNanos();
+        lock = new ReentrantLock();
+        available = lock.newCondition();
+        concurrency = this.maxConcurrency;
+        chunkSize = this.maxChunkSize;
+    }
+
+    /**
+     * Calls the Koji method as a multicall of the maximum size, waiting while the maximum number of calls are in
+     * flight.
+     *
+     * @param call the call
+     * @param <T> the type of the result
+     * @return the result
+     * @throws KojiClientException if the call fails, or if interrupted while waiting
+     */
+    <T> T call(KojiCall<T> call) throws KojiClientException {
+        return call(maxChunkSize, call);
+    }
+
+    /**
+     * Calls the Koji method, waiting while the maximum number of calls are in flight.
+     *
+     * @param numRequests the number of requests in the multicall
+     * @param call the call
+     * @param <T> the type of the result
+     * @return the result
+     * @throws KojiClientException if the call fails, or if interrupted while waiting
+     */
+    <T> T call(int numRequests, KojiCall<T> call) throws KojiClientException {
+        return call(acquire(), numRequests, call);
+    }
+
+    /**
+     * Calls the Koji method, waiting while the maximum number of calls are in flight, unless the call is no longer
+     * needed once it may be made. A skipped call is not counted.
+     *
+     * @param skip whether to skip the call, which is checked once the call may be made
+     * @param numRequests the number of requests in the multicall
+     * @param call the call
+     * @param <T> the type of the result
+     * @return the result, or empty if the call was skipped
+     * @throws KojiClientException if the call fails, or if interrupted while waiting
+     */
+    <T> Optional<T> callUnless(BooleanSupplier skip, int numRequests, KojiCall<T> call) throws KojiClientException {
+        long callEpoch = acquire();
+
+        if (skip.getAsBoolean()) {
+            skip();
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(call(callEpoch, numRequests, call));
+    }
+
+    private <T> T call(long callEpoch, int numRequests, KojiCall<T> call) throws KojiClientException {
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            release(callEpoch, System.nanoTime() - start > getTargetLatencyNanos(numRequests), failed);
+        }
+    }
+
+    /**
+     * Gets the latency above which a multicall of the given number of requests is slow.
+     *
+     * @param numRequests the number of requests
+     * @return the latency in nanoseconds
+     */
+    private long getTargetLatencyNanos(int numRequests) {
+        return Math.max(targetLatencyNanos / CHUNK_SIZE_STEPS, targetLatencyNanos * numRequests / maxChunkSize);
+    }
+
+    private long acquire() throws KojiClientException {
+        lock.lock();
+
+        try {
+            while (inFlight >= concurrency) {
+                available.await();
+            }
+
+            inFlight++;
+            return epoch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KojiClientException("Interrupted while waiting to call " + method, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void skip() {
+        lock.lock();
+
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long callEpoch, boolean tooSlow, boolean failed) {
+        lock.lock();
+
+        try {
+            inFlight--;
+            numCalls++;
+
+            boolean slow = !failed && tooSlow;
+
+            if (failed) {
+                numFailed++;
+            } else if (slow) {
+                numSlow++;
+            }
+
+            if (failed || slow) {
+                if (callEpoch == epoch) {
+                    concurrency = Math.max(1, concurrency / 2);
+                    chunkSize = Math.max(1, chunkSize / 2);
+                    fastCalls = 0;
+                    epoch++;
+                }
+            } else if (++fastCalls >= concurrency) {
+                concurrency = Math.min(maxConcurrency, concurrency + 1);
+                chunkSize = Math.min(maxChunkSize, chunkSize + Math.max(1, maxChunkSize / CHUNK_SIZE_STEPS));
+                fastCalls = 0;
+            }
+
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the Koji method.
+     *
+     * @return the method
+     */
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the number of concurrent calls currently allowed.
+     *
+     * @return the concurrency
+     */
+    int getConcurrency() {
+        lock.lock();
+
+        try {
+            return concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests currently allowed in each multicall.
+     *
+     * @return the chunk size
+     */
+    int getChunkSize() {
+        lock.lock();
+
+        try {
+            return chunkSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls made.
+     *
+     * @return the number of calls
+     */
+    long getNumCalls() {
+        lock.lock();
+
+        try {
+            return numCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls which failed.
+     *
+     * @return the number of failed calls
+     */
+    long getNumFailed() {
+        lock.lock();
+
+        try {
+            return numFailed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls which took longer than the target latency for their number of requests.
+     *
+     * @return the number of slow calls
+     */
+    long getNumSlow() {
+        lock.lock();
+
+        try {
+            return numSlow;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+
+        try {
+            return "KojiCallLimit{" + "method='" + method + '\'' + ", concurrency=" + concurrency + ", chunkSize="
+                    + chunkSize + ", numCalls=" + numCalls + ", numFailed=" + numFailed + ", numSlow=" + numSlow + '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A call of a Koji method.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    interface KojiCall<T> {
+        T call() throws KojiClientException;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The latencies of the most recent calls of a Koji method during a run, from which a percentile is taken to tell the
+ * calls which are unusually slow. No percentile is taken until enough calls have been made for it to mean anything.
+ */
+final class KojiLatencies {
+    /**
+     * Number of most recent latencies kept.
+     */
+    static final int MAX_SAMPLES = 1024;
+
+    /**
+     * Number of latencies needed before a percentile is taken.
+     */
+    static final int MIN_SAMPLES = 16;
+
+    private final long[] samples;
+
+    private final ReentrantLock lock;
+
+    private int numSamples;
+
+    private int next;
+
+    KojiLatencies() {
+        samples = new long[MAX_SAMPLES];
+        lock = new ReentrantLock();
+    }
+
+    /**
+     * Records the latency of a call.
+     *
+     * @param latencyNanos the latency in nanoseconds
+     */
+    void record(long latencyNanos) {
+        lock.lock();
+
+        try {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            numSamples = Math.min(numSamples + 1, samples.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the given percentile of the latencies recorded, using the nearest rank.
+     *
+     * @param percentile the percentile, between 1 and 100
+     * @return the latency in nanoseconds, or empty if too few latencies have been recorded
+     */
+    OptionalLong getPercentile(int percentile) {
+        long[] sorted;
+
+        lock.lock();
+
+        try {
+            if (numSamples < MIN_SAMPLES) {
+                return OptionalLong.empty();
+            }
+
+            sorted = Arrays.copyOf(samples, numSamples);
+        } finally {
+            lock.unlock();
+        }
+
+        Arrays.sort(sorted);
+
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+
+        return OptionalLong.of(sorted[Math.min(Math.max(rank, 1), sorted.length) - 1]);
+    }
+
+    /**
+     * Gets the number of latencies recorded, up to the maximum number kept.
+     *
+     * @return the number of latencies
+     */
+    int getNumSamples() {
+        lock.lock();
+
+        try {
+            return numSamples;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
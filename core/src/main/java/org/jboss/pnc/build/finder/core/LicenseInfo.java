@@ -19,9 +19,11 @@ import static org.jboss.pnc.build.finder.core.SpdxLicenseUtils.NOASSERTION;
 import static org.jboss.pnc.build.finder.core.SpdxLicenseUtils.findFirstSeeAlsoUrl;
 import static org.jboss.pnc.build.finder.core.SpdxLicenseUtils.getMatchingLicense;
 
+import java.io.InputStream;
 import java.util.Objects;
 
 import org.apache.commons.lang3.Strings;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.maven.model.License;
 
@@ -45,12 +47,22 @@ public class LicenseInfo implements Comparable<LicenseInfo> {
      * @param license the Maven licenses from the POM file
      */
     public LicenseInfo(FileObject fileObject, License license) {
+        this(fileObject.getName(), license);
+    }
+
+    /**
+     * Creates a new license from the given Maven POM file.
+     *
+     * @param fileName the name of the Maven POM file
+     * @param license the Maven licenses from the POM file
+     */
+    public LicenseInfo(FileName fileName, License license) {
         comments = license.getComments();
         distribution = license.getDistribution();
         name = license.getName();
         url = license.getUrl();
         this.spdxLicenseId = SpdxLicenseUtils.getSPDXLicenseId(name, url);
-        sourceUrl = relativize(fileObject);
+        sourceUrl = relativize(fileName);
     }
 
     /**
@@ -62,12 +74,24 @@ public class LicenseInfo implements Comparable<LicenseInfo> {
      * @param url the bundle link, if any
      */
     public LicenseInfo(FileObject fileObject, String name, String url) {
+        this(fileObject.getName(), name, url);
+    }
+
+    /**
+     * Creates a new license from the given name and URL which come from the JAR {@code META/MANIFEST.MF} OSGI bundle
+     * information.
+     *
+     * @param fileName the name of the JAR {@code META-INF/MANIFEST.MF}
+     * @param name the bundle identifier, or description (the first non-null, if any)
+     * @param url the bundle link, if any
+     */
+    public LicenseInfo(FileName fileName, String name, String url) {
         comments = null;
         distribution = null;
         this.name = name;
         this.url = url;
         this.spdxLicenseId = SpdxLicenseUtils.getSPDXLicenseId(name, url);
-        sourceUrl = relativize(fileObject);
+        sourceUrl = relativize(fileName);
     }
 
     /**
@@ -79,21 +103,37 @@ public class LicenseInfo implements Comparable<LicenseInfo> {
      * @param name the relative file name of the license text file, which may contain the SPDX license identifier
      */
     public LicenseInfo(FileObject fileObject, String name) {
+        this(name, fileObject.getName(), getMatchingLicense(fileObject));
+    }
+
+    /**
+     * Creates a new license from the given name, which is the relative path to the license text file.
+     * <p>
+     * The license URL will be set to the first valid {@code seeAlso} for the SPDX license identifier, if any.
+     *
+     * @param fileName the name of the license text file
+     * @param name the relative file name of the license text file, which may contain the SPDX license identifier
+     * @param in the license text input stream, which is not closed
+     */
+    public LicenseInfo(FileName fileName, String name, InputStream in) {
+        this(name, fileName, getMatchingLicense(fileName, in));
+    }
+
+    private LicenseInfo(String name, FileName fileName, String licenseId) {
         comments = null;
         distribution = null;
         this.name = name;
-        String licenseId = getMatchingLicense(fileObject);
         this.spdxLicenseId = !NOASSERTION.equals(licenseId) ? licenseId : SpdxLicenseUtils.getSPDXLicenseId(name, null);
         this.url = findFirstSeeAlsoUrl(spdxLicenseId).orElse(null);
-        sourceUrl = relativize(fileObject);
+        sourceUrl = relativize(fileName);
     }
 
-    private static String relativize(FileObject fileObject) {
-        String friendlyURI = fileObject.getName().getFriendlyURI();
+    private static String relativize(FileName fileName) {
+        String friendlyURI = fileName.getFriendlyURI();
         int index = friendlyURI.lastIndexOf("!/");
 
         if (index == -1) {
-            return fileObject.getName().getBaseName();
+            return fileName.getBaseName();
         }
 
         return friendlyURI.substring(index + 2);
@@ -41,6 +41,7 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
 import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 
 /**
@@ -164,7 +165,17 @@ public final class LicenseUtils {
      * @return whether the given file object is <code>META-INF/MANIFEST.MF</code>
      */
     public static boolean isManifestMfFileName(FileObject fileObject) {
-        return MANIFEST_MF_PATTERN.matcher(fileObject.getName().getPath()).matches();
+        return isManifestMfFileName(fileObject.getName());
+    }
+
+    /**
+     * Returns whether the given file name is <code>META-INF/MANIFEST.MF</code>.
+     *
+     * @param fileName the file name
+     * @return whether the given file name is <code>META-INF/MANIFEST.MF</code>
+     */
+    public static boolean isManifestMfFileName(FileName fileName) {
+        return MANIFEST_MF_PATTERN.matcher(fileName.getPath()).matches();
     }
 
     /**
@@ -207,13 +218,25 @@ public final class LicenseUtils {
      */
     public static List<BundleLicense> getBundleLicenseFromManifest(FileObject manifestFileObject) throws IOException {
         try (FileContent fc = manifestFileObject.getContent(); InputStream in = fc.getInputStream()) {
-            Manifest manifest = new Manifest(in);
-            Attributes mainAttributes = manifest.getMainAttributes();
-            String bundleLicense = mainAttributes.getValue(BUNDLE_LICENSE);
-            return getBundleLicenseFromManifest(bundleLicense);
+            return getBundleLicenseFromManifest(in);
         }
     }
 
+    /**
+     * Returns the list of licenses from the <code>Bundle-License</code> manifest header, if any. The stream is not
+     * closed.
+     *
+     * @param in the manifest input stream
+     * @return the list of licenses from the <code>Bundle-License</code> manifest header, if any
+     * @throws IOException if an error occurs while reading from the input stream
+     */
+    public static List<BundleLicense> getBundleLicenseFromManifest(InputStream in) throws IOException {
+        Manifest manifest = new Manifest(in);
+        Attributes mainAttributes = manifest.getMainAttributes();
+        String bundleLicense = mainAttributes.getValue(BUNDLE_LICENSE);
+        return getBundleLicenseFromManifest(bundleLicense);
+    }
+
     /**
      * Gets the first non-blank string.
      *
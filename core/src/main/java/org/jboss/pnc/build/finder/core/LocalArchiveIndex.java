@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.jboss.pnc.build.finder.koji.KojiLocalArchive;
+
+/**
+ * Indexes the local archives of the builds found by filename, and the archives which were not found by checksum, so
+ * that the archive containing a file, or the archive not found with a checksum, is looked up without going through the
+ * archives of every build. The index does not watch the archives, so it must be told about every archive added to or
+ * removed from a build, and about every filename removed from an archive.
+ * <p>
+ * A filename normally belongs to a single archive. If it belongs to more than one, the archive it was first added to is
+ * the one looked up, until that archive no longer contains it.
+ */
+final class LocalArchiveIndex {
+    private final Map<String, List<KojiLocalArchive>> archivesByFilename;
+
+    private final Map<ChecksumType, Map<Digest, KojiLocalArchive>> notFoundByDigest;
+
+    LocalArchiveIndex() {
+        archivesByFilename = new HashMap<>();
+        notFoundByDigest = new EnumMap<>(ChecksumType.class);
+    }
+
+    /**
+     * Adds the given archive, or the filenames added to it since it was last added.
+     *
+     * @param archive the archive
+     */
+    void add(KojiLocalArchive archive) {
+        for (String filename : archive.getFilenames()) {
+            List<KojiLocalArchive> archives = archivesByFilename.computeIfAbsent(filename, key -> new ArrayList<>(1));
+
+            if (!archives.contains(archive)) {
+                archives.add(archive);
+            }
+        }
+    }
+
+    /**
+     * Adds the given archive which was not found, or the filenames added to it since it was last added. The archive is
+     * indexed by each of its checksums.
+     *
+     * @param archive the archive which was not found
+     */
+    void addNotFound(KojiLocalArchive archive) {
+        add(archive);
+
+        for (Checksum checksum : archive.getChecksums()) {
+            if (checksum.getDigest() != null) {
+                notFoundByDigest.computeIfAbsent(checksum.getType(), key -> new HashMap<>())
+                        .putIfAbsent(checksum.getDigest(), archive);
+            }
+        }
+    }
+
+    /**
+     * Removes the given archive.
+     *
+     * @param archive the archive
+     */
+    void remove(KojiLocalArchive archive) {
+        for (String filename : archive.getFilenames()) {
+            removeFilename(archive, filename);
+        }
+
+        for (Checksum checksum : archive.getChecksums()) {
+            Map<Digest, KojiLocalArchive> archives = notFoundByDigest.get(checksum.getType());
+
+            if (archives != null && checksum.getDigest() != null) {
+                archives.remove(checksum.getDigest(), archive);
+            }
+        }
+    }
+
+    /**
+     * Removes the given filename of the given archive.
+     *
+     * @param archive the archive
+     * @param filename the filename
+     */
+    void removeFilename(KojiLocalArchive archive, String filename) {
+        List<KojiLocalArchive> archives = archivesByFilename.get(filename);
+
+        if (archives != null) {
+            archives.remove(archive);
+
+            if (archives.isEmpty()) {
+                archivesByFilename.remove(filename);
+            }
+        }
+    }
+
+    /**
+     * Gets the archive containing the given filename.
+     *
+     * @param filename the filename
+     * @return the archive, or empty if no archive contains the filename
+     */
+    Optional<KojiLocalArchive> getArchive(String filename) {
+        List<KojiLocalArchive> archives = archivesByFilename.get(filename);
+        return archives != null ? Optional.of(archives.get(0)) : Optional.empty();
+    }
+
+    /**
+     * Gets the archive which was not found with a checksum of the same type and value as the given checksum.
+     *
+     * @param checksum the checksum
+     * @return the archive, or empty if there is none
+     */
+    Optional<KojiLocalArchive> getNotFound(Checksum checksum) {
+        Map<Digest, KojiLocalArchive> archives = notFoundByDigest.get(checksum.getType());
+        return archives != null ? Optional.ofNullable(archives.get(checksum.getDigest())) : Optional.empty();
+    }
+}
@@ -27,6 +27,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.maven.model.License;
 import org.apache.maven.model.Model;
@@ -62,7 +63,17 @@ public final class MavenUtils {
      * @return true if the file object is a POM file and false otherwise
      */
     public static boolean isPom(FileObject fileObject) {
-        return POM_EXTENSION.equals(fileObject.getName().getExtension());
+        return isPom(fileObject.getName());
+    }
+
+    /**
+     * Determines whether the given file name is a POM file. A pom file is a file that has extension <code>pom</code>.
+     *
+     * @param fileName the file name
+     * @return true if the file name is a POM file and false otherwise
+     */
+    public static boolean isPom(FileName fileName) {
+        return POM_EXTENSION.equals(fileName.getExtension());
     }
 
     /**
@@ -73,7 +84,18 @@ public final class MavenUtils {
      * @return true if the file object is a POM file and false otherwise
      */
     public static boolean isPomXml(FileObject fileObject) {
-        String path = fileObject.getName().getPath();
+        return isPomXml(fileObject.getName());
+    }
+
+    /**
+     * Determines whether the given file name is a POM file inside a JAR file. This method returns <code>true</code> for
+     * a file inside a jar named <code>pom.xml</code> if it is inside the <code>META-INF/maven</code> directory.
+     *
+     * @param fileName the file name
+     * @return true if the file name is a POM file and false otherwise
+     */
+    public static boolean isPomXml(FileName fileName) {
+        String path = fileName.getPath();
         Matcher matcher = POM_XML_PATTERN.matcher(path);
         return matcher.matches();
     }
@@ -110,29 +132,41 @@ public final class MavenUtils {
     public static MavenProject getMavenProject(FileObject pomFileObject)
             throws InterpolationException, IOException, XmlPullParserException {
         try (FileContent content = pomFileObject.getContent(); InputStream in = content.getInputStream()) {
-            MavenXpp3Reader reader = new MavenXpp3Reader();
-
-            try {
-                Model model = reader.read(in);
-                String groupId = model.getGroupId();
-                String artifactId = model.getArtifactId();
-                String version = model.getVersion();
-                model.setGroupId(interpolateString(model, groupId));
-                model.setArtifactId(interpolateString(model, artifactId));
-                model.setVersion(interpolateString(model, version));
-                List<License> licenses = model.getLicenses();
-
-                for (License license : licenses) {
-                    license.setName(interpolateString(model, license.getName()));
-                    license.setUrl(interpolateString(model, license.getUrl()));
-                    license.setDistribution(interpolateString(model, license.getDistribution()));
-                    license.setComments(interpolateString(model, license.getComments()));
-                }
-
-                return new MavenProject(model);
-            } catch (IOException e) {
-                throw new XmlPullParserException(e.getMessage());
+            return getMavenProject(in);
+        }
+    }
+
+    /**
+     * Gets the Maven project from the given POM input stream. The stream is not closed.
+     *
+     * @param in the POM input stream
+     * @return the Maven project
+     * @throws InterpolationException if an error occurs while interpolating the Maven properties
+     * @throws XmlPullParserException if an error occurs when reading or parsing the POM file
+     */
+    public static MavenProject getMavenProject(InputStream in) throws InterpolationException, XmlPullParserException {
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        try {
+            Model model = reader.read(in);
+            String groupId = model.getGroupId();
+            String artifactId = model.getArtifactId();
+            String version = model.getVersion();
+            model.setGroupId(interpolateString(model, groupId));
+            model.setArtifactId(interpolateString(model, artifactId));
+            model.setVersion(interpolateString(model, version));
+            List<License> licenses = model.getLicenses();
+
+            for (License license : licenses) {
+                license.setName(interpolateString(model, license.getName()));
+                license.setUrl(interpolateString(model, license.getUrl()));
+                license.setDistribution(interpolateString(model, license.getDistribution()));
+                license.setComments(interpolateString(model, license.getComments()));
             }
+
+            return new MavenProject(model);
+        } catch (IOException e) {
+            throw new XmlPullParserException(e.getMessage());
         }
     }
 
@@ -158,7 +192,19 @@ public final class MavenUtils {
      * @return the list of Maven projects (which may be empty)
      */
     public static List<LicenseInfo> getLicenses(FileObject pomFileObject, MavenProject project) {
-        return project.getLicenses().stream().map(license -> new LicenseInfo(pomFileObject, license)).toList();
+        return getLicenses(pomFileObject.getName(), project);
+    }
+
+    /**
+     * Converts the Maven licenses of the given project (if any) into <code>MavenLicense</code> JSON serializable
+     * objects.
+     *
+     * @param pomFileName the name of the Maven POM file
+     * @param project the Maven project
+     * @return the list of Maven projects (which may be empty)
+     */
+    public static List<LicenseInfo> getLicenses(FileName pomFileName, MavenProject project) {
+        return project.getLicenses().stream().map(license -> new LicenseInfo(pomFileName, license)).toList();
     }
 
     /**
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.util.Arrays;
+
+/**
+ * Hands out compact ids for paths such as {@code dist.zip!/lib/a.jar!/META-INF/MANIFEST.MF}. Paths are split into
+ * segments at every {@code /}, which includes the {@code !/} between an archive and its entries, and stored as a trie,
+ * so that the files in the same directory share the path of that directory, and segments such as {@code META-INF} are
+ * only kept once. A path is only turned back into a string when it is output.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class PathDictionary {
+    /**
+     * The id of the empty path, which is the parent of all other paths.
+     */
+    static final int ROOT = 0;
+
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final char SEPARATOR = '/';
+
+    private int[] parents;
+
+    private int[] segmentIds;
+
+    private int[] lengths;
+
+    private int numPaths;
+
+    private int[] pathIndex;
+
+    private String[] segments;
+
+    private int numSegments;
+
+    private int[] segmentIndex;
+
+    PathDictionary() {
+        parents = new int[INITIAL_CAPACITY];
+        segmentIds = new int[INITIAL_CAPACITY];
+        lengths = new int[INITIAL_CAPACITY];
+        pathIndex = newIndex(INITIAL_CAPACITY * 2);
+        segments = new String[INITIAL_CAPACITY];
+        segmentIndex = newIndex(INITIAL_CAPACITY * 2);
+        parents[ROOT] = NONE;
+        segmentIds[ROOT] = NONE;
+        numPaths = 1;
+    }
+
+    /**
+     * Returns the id of the given path, adding it if needed.
+     *
+     * @param path the path
+     * @return the id
+     */
+    int add(String path) {
+        return lookup(path, true);
+    }
+
+    /**
+     * Returns the id of the given path without adding it.
+     *
+     * @param path the path
+     * @return the id, or {@link #NONE} if the path was never added
+     */
+    int find(String path) {
+        return lookup(path, false);
+    }
+
+    /**
+     * Returns the path with the given id.
+     *
+     * @param id the id
+     * @return the path
+     */
+    String get(int id) {
+        if (id == ROOT) {
+            return "";
+        }
+
+        char[] chars = new char[lengths[id]];
+        int end = chars.length;
+
+        for (int i = id; i != ROOT; i = parents[i]) {
+            String segment = segments[segmentIds[i]];
+            end -= segment.length();
+            segment.getChars(0, segment.length(), chars, end);
+
+            if (end > 0) {
+                chars[--end] = SEPARATOR;
+            }
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns the number of ids handed out, including those of the parents of the paths added.
+     *
+     * @return the number of ids
+     */
+    int size() {
+        return numPaths;
+    }
+
+    private int lookup(String path, boolean add) {
+        int id = ROOT;
+        int start = 0;
+
+        while (true) {
+            int end = path.indexOf(SEPARATOR, start);
+
+            if (end == -1) {
+                end = path.length();
+            }
+
+            int segmentId = lookupSegment(path, start, end, add);
+
+            if (segmentId == NONE) {
+                return NONE;
+            }
+
+            id = lookupChild(id, segmentId, add);
+
+            if (id == NONE || end == path.length()) {
+                return id;
+            }
+
+            start = end + 1;
+        }
+    }
+
+    private int lookupSegment(String path, int start, int end, boolean add) {
+        int length = end - start;
+        int hash = 0;
+
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+
+        int mask = segmentIndex.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (segmentIndex[slot] != NONE) {
+            String segment = segments[segmentIndex[slot]];
+
+            if (segment.length() == length && path.regionMatches(start, segment, 0, length)) {
+                return segmentIndex[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (!add) {
+            return NONE;
+        }
+
+        if (numSegments == segments.length) {
+            segments = Arrays.copyOf(segments, numSegments * 2);
+        }
+
+        int segmentId = numSegments++;
+        segments[segmentId] = path.substring(start, end);
+        segmentIndex[slot] = segmentId;
+
+        if (numSegments * 2 > segmentIndex.length) {
+            segmentIndex = newIndex(segmentIndex.length * 2);
+
+            for (int i = 0; i < numSegments; i++) {
+                segmentIndex[findEmpty(segmentIndex, segments[i].hashCode())] = i;
+            }
+        }
+
+        return segmentId;
+    }
+
+    private int lookupChild(int parent, int segmentId, boolean add) {
+        int mask = pathIndex.length - 1;
+        int slot = mix(childHash(parent, segmentId)) & mask;
+
+        while (pathIndex[slot] != NONE) {
+            int id = pathIndex[slot];
+
+            if (parents[id] == parent && segmentIds[id] == segmentId) {
+                return id;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (!add) {
+            return NONE;
+        }
+
+        if (numPaths == parents.length) {
+            int capacity = numPaths * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            segmentIds = Arrays.copyOf(segmentIds, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        int id = numPaths++;
+        parents[id] = parent;
+        segmentIds[id] = segmentId;
+        lengths[id] = (parent != ROOT ? lengths[parent] + 1 : 0) + segments[segmentId].length();
+        pathIndex[slot] = id;
+
+        if (numPaths * 2 > pathIndex.length) {
+            pathIndex = newIndex(pathIndex.length * 2);
+
+            for (int i = ROOT + 1; i < numPaths; i++) {
+                pathIndex[findEmpty(pathIndex, childHash(parents[i], segmentIds[i]))] = i;
+            }
+        }
+
+        return id;
+    }
+
+    private static int childHash(int parent, int segmentId) {
+        return 31 * parent + segmentId;
+    }
+
+    private static int findEmpty(int[] index, int hash) {
+        int mask = index.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (index[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private static int[] newIndex(int size) {
+        int[] index = new int[size];
+        Arrays.fill(index, NONE);
+        return index;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about the tasks that the distribution analyzer queued for the files at a single archive depth, where
+ * depth 1 holds the files of the inputs themselves.
+ */
+public class QueueStatistics {
+    private final int depth;
+
+    private final LongAdder numTasks;
+
+    private final AtomicInteger queued;
+
+    private final AtomicInteger maxQueued;
+
+    private final LongAdder totalWaitNanos;
+
+    QueueStatistics(int depth) {
+        this.depth = depth;
+        numTasks = new LongAdder();
+        queued = new AtomicInteger();
+        maxQueued = new AtomicInteger();
+        totalWaitNanos = new LongAdder();
+    }
+
+    void taskQueued() {
+        numTasks.increment();
+        maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+    }
+
+    void taskStarted(long waitNanos) {
+        queued.decrementAndGet();
+        totalWaitNanos.add(waitNanos);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNumTasks() {
+        return numTasks.sum();
+    }
+
+    public int getMaxQueued() {
+        return maxQueued.get();
+    }
+
+    public Duration getAverageWait() {
+        long n = numTasks.sum();
+        return n > 0L ? Duration.ofNanos(totalWaitNanos.sum() / n) : Duration.ZERO;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueStatistics{" + "depth=" + depth + ", numTasks=" + numTasks + ", maxQueued=" + maxQueued
+                + ", averageWait=" + getAverageWait() + '}';
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.packager.rpm.RpmBaseTag;
+
+/**
+ * The headers of an RPM file, read without reading its payload. The checksums of an RPM are digests stored in its
+ * signature header, so only the lead and the signature header need to be read, each with a read of a known size. The
+ * main header follows the signature header and is only read if asked for.
+ * <p>
+ * Only string and binary tags are decoded, since the digests are stored as such.
+ */
+final class RpmHeaders {
+    private static final int LEAD_SIZE = 96;
+
+    private static final int LEAD_MAGIC = 0xEDABEEDB;
+
+    private static final int NAME_OFFSET = 10;
+
+    private static final int NAME_SIZE = 66;
+
+    private static final int HEADER_MAGIC = 0x8EADE801;
+
+    private static final int INTRO_SIZE = 16;
+
+    private static final int ENTRY_SIZE = 16;
+
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * The limits that rpm itself puts on a header, so that a corrupt header is not read into memory.
+     */
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private static final int MAX_DATA_SIZE = 0x0FFFFFFF;
+
+    private static final int STRING_TYPE = 6;
+
+    private static final int BIN_TYPE = 7;
+
+    private final String name;
+
+    private final Header signatureHeader;
+
+    private final Header header;
+
+    private RpmHeaders(String name, Header signatureHeader, Header header) {
+        this.name = name;
+        this.signatureHeader = signatureHeader;
+        this.header = header;
+    }
+
+    /**
+     * Reads the headers of the RPM file at the current position of the given channel. The channel is left positioned
+     * after the last header read.
+     *
+     * @param channel the channel
+     * @param readHeader whether to read the main header as well as the signature header
+     * @return the headers
+     * @throws IOException if an error occurs while reading from the channel, or if the file is not an RPM file
+     */
+    static RpmHeaders read(ReadableByteChannel channel, boolean readHeader) throws IOException {
+        return read(size -> {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            IOUtils.readFully(channel, buffer);
+            return buffer.flip();
+        }, readHeader);
+    }
+
+    /**
+     * Reads the headers of the RPM file in the remaining contents of the given buffer, such as a stored zip file entry
+     * mapped into memory. The headers are read from slices of the buffer instead of being copied, and the position of
+     * the buffer is not changed.
+     *
+     * @param buffer the buffer
+     * @param readHeader whether to read the main header as well as the signature header
+     * @return the headers
+     * @throws IOException if the buffer does not contain an RPM file
+     */
+    static RpmHeaders read(ByteBuffer buffer, boolean readHeader) throws IOException {
+        ByteBuffer remaining = buffer.slice();
+
+        return read(size -> {
+            if (size > remaining.remaining()) {
+                throw new EOFException("Truncated RPM file");
+            }
+
+            ByteBuffer slice = remaining.slice().limit(size);
+            remaining.position(remaining.position() + size);
+            return slice;
+        }, readHeader);
+    }
+
+    private static RpmHeaders read(Source source, boolean readHeader) throws IOException {
+        ByteBuffer lead = source.read(LEAD_SIZE);
+
+        if (lead.getInt(0) != LEAD_MAGIC) {
+            throw new IOException("Not an RPM file");
+        }
+
+        String name = toString(lead, NAME_OFFSET, NAME_SIZE);
+        Header signatureHeader = Header.read(source);
+
+        if (!readHeader) {
+            return new RpmHeaders(name, signatureHeader, null);
+        }
+
+        // Unlike the main header, the signature header is padded to a multiple of 8 bytes
+        int padding = (ALIGNMENT - signatureHeader.dataSize % ALIGNMENT) % ALIGNMENT;
+
+        if (padding > 0) {
+            source.read(padding);
+        }
+
+        return new RpmHeaders(name, signatureHeader, Header.read(source));
+    }
+
+    private static String toString(ByteBuffer buffer, int offset, int maxLength) {
+        int length = 0;
+
+        while (length < maxLength && buffer.get(offset + length) != 0) {
+            length++;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Gets the name of the RPM from its lead.
+     *
+     * @return the name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the value of the given tag of the signature header.
+     *
+     * @param tag the tag
+     * @return the value, which is a string or a byte array, or {@code null} if there is no such tag of either type
+     * @throws IOException if the entry of the tag is invalid
+     */
+    Object getSignatureTag(RpmBaseTag tag) throws IOException {
+        return signatureHeader.getTag(tag.getValue());
+    }
+
+    /**
+     * Gets the value of the given tag of the main header.
+     *
+     * @param tag the tag
+     * @return the value, which is a string or a byte array, or {@code null} if there is no such tag of either type or
+     *         the main header was not read
+     * @throws IOException if the entry of the tag is invalid
+     */
+    Object getHeaderTag(RpmBaseTag tag) throws IOException {
+        return header != null ? header.getTag(tag.getValue()) : null;
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        ByteBuffer read(int size) throws IOException;
+    }
+
+    /**
+     * A header, which is an index of entries followed by the data they point into.
+     */
+    private static final class Header {
+        private final int numEntries;
+
+        private final int dataSize;
+
+        private final ByteBuffer bytes;
+
+        private Header(int numEntries, int dataSize, ByteBuffer bytes) {
+            this.numEntries = numEntries;
+            this.dataSize = dataSize;
+            this.bytes = bytes;
+        }
+
+        private static Header read(Source source) throws IOException {
+            ByteBuffer intro = source.read(INTRO_SIZE);
+
+            if (intro.getInt(0) != HEADER_MAGIC) {
+                throw new IOException("Invalid RPM header");
+            }
+
+            int numEntries = intro.getInt(8);
+            int dataSize = intro.getInt(12);
+
+            if (numEntries < 0 || numEntries > MAX_ENTRIES || dataSize < 0 || dataSize > MAX_DATA_SIZE) {
+                throw new IOException("Invalid RPM header with " + numEntries + " entries of " + dataSize + " bytes");
+            }
+
+            return new Header(numEntries, dataSize, source.read(numEntries * ENTRY_SIZE + dataSize));
+        }
+
+        private Object getTag(int tag) throws IOException {
+            int dataStart = numEntries * ENTRY_SIZE;
+
+            for (int i = 0; i < dataStart; i += ENTRY_SIZE) {
+                if (bytes.getInt(i) != tag) {
+                    continue;
+                }
+
+                int type = bytes.getInt(i + 4);
+                int offset = bytes.getInt(i + 8);
+                int count = bytes.getInt(i + 12);
+
+                if (offset < 0 || offset >= dataSize || count < 0 || count > dataSize - offset) {
+                    throw new IOException("Invalid entry for tag " + tag + " in RPM header");
+                }
+
+                if (type == BIN_TYPE) {
+                    byte[] value = new byte[count];
+                    bytes.get(dataStart + offset, value);
+                    return value;
+                }
+
+                if (type == STRING_TYPE) {
+                    return RpmHeaders.toString(bytes, dataStart + offset, dataSize - offset);
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -39,6 +39,7 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
 import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.spdx.core.DefaultStoreNotInitializedException;
@@ -258,18 +259,44 @@ public final class SpdxLicenseUtils {
         }
 
         try (FileContent fc = licenseFileObject.getContent(); InputStream in = fc.getInputStream()) {
-            String licenseText = new String(in.readAllBytes(), UTF_8);
-            return LICENSE_IDS_TEXT_LIST.stream()
-                    .map(id -> LICENSE_IDS_MAP.get(id))
-                    .map(license -> findMatchingSPDXLicenseIdentifier(license, licenseText))
-                    .flatMap(Optional::stream)
-                    .findAny()
-                    .or(() -> findMatchingSPDXLicenseIdentifierOrLicense(licenseText));
+            return findMatchingLicenseText(in);
         } catch (IOException e) {
             return Optional.empty();
         }
     }
 
+    /**
+     * Finds a matching SPDX license identifier for the text in the given license text file, if any. The stream is only
+     * read if the file name does not already match, and is not closed.
+     *
+     * @param licenseFileName the name of the license text file
+     * @param in the license text input stream
+     * @return the matching license identifier, if any
+     */
+    public static Optional<String> findMatchingLicense(FileName licenseFileName, InputStream in) {
+        Optional<String> optionalId = findSPDXIdentifierFromFileName(licenseFileName);
+
+        if (optionalId.isPresent()) {
+            return optionalId;
+        }
+
+        try {
+            return findMatchingLicenseText(in);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<String> findMatchingLicenseText(InputStream in) throws IOException {
+        String licenseText = new String(in.readAllBytes(), UTF_8);
+        return LICENSE_IDS_TEXT_LIST.stream()
+                .map(id -> LICENSE_IDS_MAP.get(id))
+                .map(license -> findMatchingSPDXLicenseIdentifier(license, licenseText))
+                .flatMap(Optional::stream)
+                .findAny()
+                .or(() -> findMatchingSPDXLicenseIdentifierOrLicense(licenseText));
+    }
+
     /**
      * Returns whether this SPDX license identifier is known.
      *
@@ -413,7 +440,11 @@ public final class SpdxLicenseUtils {
             return Optional.empty();
         }
 
-        String path = fileObject.getName().getPath();
+        return findSPDXIdentifierFromFileName(fileObject.getName());
+    }
+
+    static Optional<String> findSPDXIdentifierFromFileName(FileName fileName) {
+        String path = fileName.getPath();
         String name = FilenameUtils.getName(path);
         String baseName = FilenameUtils.removeExtension(name);
 
@@ -461,6 +492,18 @@ public final class SpdxLicenseUtils {
         return findMatchingLicense(licenseFileObject).orElse(NOASSERTION);
     }
 
+    /**
+     * Gets the matching SPDX license identifier for the text in the given license text file, or
+     * <code></code>NOASSERTION</code>.
+     *
+     * @param licenseFileName the name of the license text file
+     * @param in the license text input stream
+     * @return the matching license identifier or <code>NOASSERTION</code> if no match
+     */
+    public static String getMatchingLicense(FileName licenseFileName, InputStream in) {
+        return findMatchingLicense(licenseFileName, in).orElse(NOASSERTION);
+    }
+
     /**
      * Finds the license from the SPDX-License-Identifier token, if any
      *
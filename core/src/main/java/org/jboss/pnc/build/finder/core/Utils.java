@@ -40,6 +40,7 @@ import java.util.stream.Stream;
 
 import org.apache.commons.lang3.SystemProperties;
 import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.slf4j.Logger;
@@ -79,7 +80,11 @@ public final class Utils {
     }
 
     public static String normalizePath(FileObject fo, String root) {
-        String friendlyURI = fo.getName().getFriendlyURI();
+        return normalizePath(fo.getName(), root);
+    }
+
+    public static String normalizePath(FileName fileName, String root) {
+        String friendlyURI = fileName.getFriendlyURI();
         return friendlyURI.substring(friendlyURI.indexOf(root) + root.length());
     }
 
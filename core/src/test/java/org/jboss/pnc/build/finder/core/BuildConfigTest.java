@@ -82,16 +82,21 @@ class BuildConfigTest {
 
         LOGGER.debug("Default configuration: {}", s);
 
+        assertThat(bc.getAnalyzerNumThreads()).isEqualTo(ConfigDefaults.ANALYZER_NUM_THREADS);
         assertThat(bc.getArchiveTypes()).isEqualTo(ConfigDefaults.ARCHIVE_TYPES);
         assertThat(bc.getArchiveExtensions()).isEqualTo(ConfigDefaults.ARCHIVE_EXTENSIONS);
+        assertThat(bc.getArchiveMemoryThreshold()).isEqualTo(ConfigDefaults.ARCHIVE_MEMORY_THRESHOLD);
         assertThat(bc.getBuildSystems()).isEqualTo(ConfigDefaults.BUILD_SYSTEMS);
         assertThat(bc.getCacheLifespan()).isEqualTo(ConfigDefaults.CACHE_LIFESPAN);
         assertThat(bc.getChecksumOnly()).isEqualTo(ConfigDefaults.CHECKSUM_ONLY);
         assertThat(bc.getChecksumTypes()).isEqualTo(ConfigDefaults.CHECKSUM_TYPES);
         assertThat(bc.getDisableCache()).isEqualTo(ConfigDefaults.DISABLE_CACHE);
+        assertThat(bc.getDisableNativeZip()).isEqualTo(ConfigDefaults.DISABLE_NATIVE_ZIP);
         assertThat(bc.getDisableRecursion()).isEqualTo(ConfigDefaults.DISABLE_RECURSION);
         assertThat(bc.getExcludes()).isEqualTo(ConfigDefaults.EXCLUDES);
+        assertThat(bc.getKojiHedgePercentile()).isEqualTo(ConfigDefaults.KOJI_HEDGE_PERCENTILE);
         assertThat(bc.getKojiHubURL()).isEqualTo(ConfigDefaults.KOJI_HUB_URL);
+        assertThat(bc.getKojiMaxInFlightChunks()).isEqualTo(ConfigDefaults.KOJI_NUM_THREADS);
         assertThat(bc.getKojiMulticallSize()).isEqualTo(ConfigDefaults.KOJI_MULTICALL_SIZE);
         assertThat(bc.getKojiNumThreads()).isEqualTo(ConfigDefaults.KOJI_NUM_THREADS);
         assertThat(bc.getKojiWebURL()).isEqualTo(ConfigDefaults.KOJI_WEB_URL);
@@ -101,6 +106,7 @@ class BuildConfigTest {
         assertThat(bc.getPncURL()).isEqualTo(ConfigDefaults.PNC_URL);
         assertThat(bc.getUseBuildsFile()).isEqualTo(ConfigDefaults.USE_BUILDS_FILE);
         assertThat(bc.getUseChecksumsFile()).isEqualTo(ConfigDefaults.USE_CHECKSUMS_FILE);
+        assertThat(bc.getVerify()).isEqualTo(ConfigDefaults.VERIFY);
     }
 
     @Test
@@ -128,6 +134,17 @@ class BuildConfigTest {
         assertThat(bc.getKojiWebURL().toExternalForm()).isEqualTo("https://my.url.com/web");
     }
 
+    @Test
+    void testKojiMaxInFlightChunksDefaultsToKojiNumThreads() throws IOException {
+        BuildConfig bc = BuildConfig.load("{\"koji-num-threads\":20}");
+
+        assertThat(bc.getKojiMaxInFlightChunks()).isEqualTo(20);
+
+        bc.setKojiMaxInFlightChunks(4);
+
+        assertThat(bc.getKojiMaxInFlightChunks()).isEqualTo(4);
+    }
+
     @Test
     void testIgnoreUnknownProperties() throws IOException {
         String json = "{\"foo\":\"bar\"}";
@@ -15,21 +15,49 @@
  */
 package org.jboss.pnc.build.finder.core;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import org.apache.commons.collections4.MultiValuedMap;
+import org.jboss.pnc.build.finder.koji.ClientSession;
+import org.jboss.pnc.build.finder.koji.KojiBuild;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Maps;
+import com.redhat.red.build.koji.KojiClientException;
+import com.redhat.red.build.koji.model.xmlrpc.KojiArchiveInfo;
+import com.redhat.red.build.koji.model.xmlrpc.KojiArchiveQuery;
+import com.redhat.red.build.koji.model.xmlrpc.KojiArchiveType;
+import com.redhat.red.build.koji.model.xmlrpc.KojiBuildInfo;
+import com.redhat.red.build.koji.model.xmlrpc.KojiIdOrName;
 
 class BuildFinderTest {
     private static List<String> files;
@@ -47,6 +75,64 @@ class BuildFinderTest {
         files = Collections.singletonList(target.toAbsolutePath().toString());
     }
 
+    /**
+     * Creates a configuration which only looks up POM files, one checksum per multicall.
+     */
+    private static BuildConfig createPomConfig() {
+        BuildConfig config = new BuildConfig();
+
+        config.setArchiveTypes(List.of("pom"));
+        config.setArchiveExtensions(List.of("pom"));
+        config.setKojiMulticallSize(1);
+
+        return config;
+    }
+
+    /**
+     * Creates a mock Koji session which only knows the POM archive type.
+     */
+    private static ClientSession createPomSession() throws KojiClientException {
+        ClientSession session = Mockito.mock(ClientSession.class);
+
+        when(session.getArchiveTypeMap())
+                .thenReturn(Map.of("pom", new KojiArchiveType("pom", List.of("pom"), 1, "Maven POM")));
+
+        return session;
+    }
+
+    /**
+     * Writes the given number of distinct POM files to the given folder.
+     */
+    private static void writePomFiles(Path folder, int numFiles) throws IOException {
+        for (int i = 0; i < numFiles; i++) {
+            Files.writeString(
+                    folder.resolve(i + ".pom"),
+                    "<project><artifactId>artifact-" + i + "</artifactId></project>",
+                    UTF_8);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testKojiExtensionsOnlyRestrictFilesWithoutPnc(boolean pnc, @TempDir Path folder)
+            throws IOException, KojiClientException {
+        BuildConfig config = createPomConfig();
+
+        config.setArchiveExtensions(List.of("pom", "txt"));
+        config.setBuildSystems(pnc ? List.of(BuildSystem.pnc, BuildSystem.koji) : List.of(BuildSystem.koji));
+
+        writePomFiles(folder, 1);
+        Files.writeString(folder.resolve("a.txt"), "text", UTF_8);
+
+        DistributionAnalyzer da = new DistributionAnalyzer(Collections.singletonList(folder.toString()), config);
+        new BuildFinder(createPomSession(), config, da);
+        da.checksumFiles();
+
+        // PNC looks up the checksums of all files, whereas Koji only knows the POM archive type
+        assertThat(da.getFiles().keySet().stream().anyMatch(filename -> filename.endsWith("a.txt"))).isEqualTo(pnc);
+        assertThat(da.getFilesSkipped()).isEqualTo(pnc ? 0L : 1L);
+    }
+
     @Test
     void testDirectory(@TempDir Path folder) throws IOException {
         ChecksumType checksumType = ChecksumType.sha1;
@@ -83,4 +169,241 @@ class BuildFinderTest {
 
         assertThat(checksums).hasSize(1);
     }
+
+    @Test
+    void testLookupsArePipelined(@TempDir Path folder) throws Exception {
+        int numFiles = 8;
+        int maxInFlightChunks = 2;
+        BuildConfig config = createPomConfig();
+
+        config.setChecksumTypes(EnumSet.allOf(ChecksumType.class));
+        config.setKojiMaxInFlightChunks(maxInFlightChunks);
+
+        writePomFiles(folder, numFiles);
+
+        List<String> queried = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ClientSession session = createPomSession();
+
+        when(session.listArchives(anyList())).thenAnswer(invocation -> {
+            List<KojiArchiveQuery> queries = invocation.getArgument(0);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try {
+                queries.forEach(query -> queried.add(query.getChecksum()));
+                TimeUnit.MILLISECONDS.sleep(100L);
+                List<List<KojiArchiveInfo>> archives = new ArrayList<>(queries.size());
+                queries.forEach(query -> archives.add(Collections.emptyList()));
+                return archives;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        DistributionAnalyzer da = new DistributionAnalyzer(List.of(folder.toString()), config);
+        BuildFinder finder = new BuildFinder(session, config, da);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool.submit(da);
+            Future<Map<BuildSystemInteger, KojiBuild>> futureBuilds = pool.submit(finder);
+
+            futureChecksum.get();
+
+            assertThat(futureBuilds.get()).containsOnlyKeys(new BuildSystemInteger(0));
+        } finally {
+            Utils.shutdownAndAwaitTermination(pool);
+        }
+
+        // Each md5 checksum is looked up once, and then the sha256 checksum of each file not found
+        assertThat(queried).hasSize(2 * numFiles).doesNotHaveDuplicates();
+        assertThat(finder.getNotFoundChecksums()).hasSize(2 * numFiles);
+        assertThat(maxInFlight).hasValue(maxInFlightChunks);
+    }
+
+    @Test
+    void testSlowLookupDoesNotHoldUpLaterLookups(@TempDir Path folder) throws Exception {
+        int numFiles = 8;
+        BuildConfig config = createPomConfig();
+
+        config.setChecksumTypes(EnumSet.of(ChecksumType.md5));
+        config.setKojiMaxInFlightChunks(2);
+
+        writePomFiles(folder, numFiles);
+
+        AtomicBoolean first = new AtomicBoolean(true);
+        CountDownLatch laterLookups = new CountDownLatch(numFiles - 1);
+        AtomicBoolean heldUp = new AtomicBoolean();
+        ClientSession session = createPomSession();
+
+        when(session.listArchives(anyList())).thenAnswer(invocation -> {
+            List<KojiArchiveQuery> queries = invocation.getArgument(0);
+
+            // The first lookup only completes once all the lookups after it have been made
+            if (first.getAndSet(false)) {
+                heldUp.set(!laterLookups.await(10L, TimeUnit.SECONDS));
+            } else {
+                laterLookups.countDown();
+            }
+
+            List<List<KojiArchiveInfo>> archives = new ArrayList<>(queries.size());
+            queries.forEach(query -> archives.add(Collections.emptyList()));
+            return archives;
+        });
+
+        DistributionAnalyzer da = new DistributionAnalyzer(List.of(folder.toString()), config);
+        BuildFinder finder = new BuildFinder(session, config, da);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool.submit(da);
+            Future<Map<BuildSystemInteger, KojiBuild>> futureBuilds = pool.submit(finder);
+
+            futureChecksum.get();
+
+            assertThat(futureBuilds.get()).containsOnlyKeys(new BuildSystemInteger(0));
+        } finally {
+            Utils.shutdownAndAwaitTermination(pool);
+        }
+
+        assertThat(heldUp).isFalse();
+        assertThat(finder.getNotFoundChecksums()).hasSize(numFiles);
+    }
+
+    @Test
+    void testBuildsAreLoadedOnce() throws Exception {
+        int numChecksums = 8;
+        int buildId = 42;
+        BuildConfig config = createPomConfig();
+        ClientSession session = createPomSession();
+
+        when(session.listArchives(anyList())).thenAnswer(invocation -> {
+            List<KojiArchiveQuery> queries = invocation.getArgument(0);
+            List<List<KojiArchiveInfo>> archives = new ArrayList<>(queries.size());
+
+            for (KojiArchiveQuery query : queries) {
+                KojiArchiveInfo archive = new KojiArchiveInfo();
+                archive.setArchiveId(archives.size());
+                archive.setBuildId(buildId);
+                archive.setChecksum(query.getChecksum());
+                archive.setFilename("artifact.pom");
+                archives.add(query.getChecksum() != null ? List.of(archive) : Collections.emptyList());
+            }
+
+            return archives;
+        });
+        when(session.getBuild(anyList())).thenAnswer(invocation -> {
+            List<KojiIdOrName> idsOrNames = invocation.getArgument(0);
+            return idsOrNames.stream().map(idOrName -> {
+                KojiBuildInfo buildInfo = new KojiBuildInfo();
+                buildInfo.setId(idOrName.getId());
+                buildInfo.setNvr("artifact-1.0-1");
+                return buildInfo;
+            }).toList();
+        });
+        when(session.listTags(anyList())).thenAnswer(
+                invocation -> Collections.nCopies(invocation.<List<?>> getArgument(0).size(), Collections.emptyList()));
+
+        BuildFinder finder = new BuildFinder(session, config);
+
+        // The build is found by every chunk of every batch, but only loaded by the first
+        for (int batch = 0; batch < 2; batch++) {
+            Map<Checksum, Collection<String>> checksumTable = Maps.newHashMapWithExpectedSize(numChecksums);
+
+            for (int i = 0; i < numChecksums; i++) {
+                String filename = batch + "-" + i + ".pom";
+                String md5 = String.format("%032x", batch * numChecksums + i + 1);
+                checksumTable.put(new Checksum(ChecksumType.md5, md5, filename, 1L), List.of(filename));
+            }
+
+            assertThat(finder.findBuilds(checksumTable))
+                    .containsKey(new BuildSystemInteger(buildId, BuildSystem.koji));
+        }
+
+        assertThat(finder.getFoundChecksums()).hasSize(2 * numChecksums);
+        verify(session, times(1)).getBuild(anyList());
+    }
+
+    @Test
+    void testSlowChunksAreRequestedAgain() throws Exception {
+        int numChecksums = 2 * KojiLatencies.MIN_SAMPLES;
+        String slowMd5 = String.format("%032x", numChecksums + 1);
+        BuildConfig config = createPomConfig();
+
+        config.setKojiHedgePercentile(50);
+
+        Map<String, AtomicInteger> queried = new ConcurrentHashMap<>();
+        CountDownLatch hedged = new CountDownLatch(1);
+        ClientSession session = createPomSession();
+
+        when(session.listArchives(anyList())).thenAnswer(invocation -> {
+            List<KojiArchiveQuery> queries = invocation.getArgument(0);
+
+            for (KojiArchiveQuery query : queries) {
+                int numQueries = queried.computeIfAbsent(query.getChecksum(), key -> new AtomicInteger())
+                        .incrementAndGet();
+
+                // The first request for the slow checksum only answers once it has been requested again
+                if (query.getChecksum().equals(slowMd5)) {
+                    if (numQueries == 1) {
+                        hedged.await(10L, TimeUnit.SECONDS);
+                    } else {
+                        hedged.countDown();
+                    }
+                }
+            }
+
+            return Collections.nCopies(queries.size(), Collections.emptyList());
+        });
+
+        BuildFinder finder = new BuildFinder(session, config);
+        Map<Checksum, Collection<String>> checksumTable = Maps.newHashMapWithExpectedSize(numChecksums);
+
+        for (int i = 0; i < numChecksums; i++) {
+            String filename = i + ".pom";
+            String md5 = String.format("%032x", i + 1);
+            checksumTable.put(new Checksum(ChecksumType.md5, md5, filename, 1L), List.of(filename));
+        }
+
+        finder.findBuilds(checksumTable);
+
+        String filename = "slow.pom";
+        finder.findBuilds(Map.of(new Checksum(ChecksumType.md5, slowMd5, filename, 1L), List.of(filename)));
+
+        assertThat(queried.get(slowMd5)).hasValue(2);
+        assertThat(finder.getNotFoundChecksums()).hasSize(numChecksums + 1);
+    }
+
+    @Test
+    void testChecksumsAreReceivedWhileAnalyzing(@TempDir Path folder) throws Exception {
+        // Many more batches of one checksum than the channel holds, so the analyzer waits for the finder
+        int numFiles = 4 * DistributionAnalyzer.MAX_QUEUED_BATCHES;
+        BuildConfig config = createPomConfig();
+        ClientSession session = createPomSession();
+
+        config.setChecksumTypes(EnumSet.of(ChecksumType.md5));
+        writePomFiles(folder, numFiles);
+        when(session.listArchives(anyList())).thenAnswer(
+                invocation -> Collections.nCopies(invocation.<List<?>> getArgument(0).size(), Collections.emptyList()));
+
+        DistributionAnalyzer da = new DistributionAnalyzer(List.of(folder.toString()), config);
+        BuildFinder finder = new BuildFinder(session, config, da);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            // In the same order as the command line: the finder is submitted before waiting for the checksums
+            Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> futureChecksum = pool.submit(da);
+            Future<Map<BuildSystemInteger, KojiBuild>> futureBuilds = pool.submit(finder);
+
+            assertThat(futureChecksum.get(30L, TimeUnit.SECONDS).get(ChecksumType.md5).keySet()).hasSize(numFiles);
+            assertThat(futureBuilds.get(30L, TimeUnit.SECONDS)).containsOnlyKeys(new BuildSystemInteger(0));
+        } finally {
+            Utils.shutdownAndAwaitTermination(pool);
+        }
+
+        assertThat(da.getChannel().getNumChecksums()).isEqualTo(numFiles);
+        assertThat(da.getChannel().getNumBatches()).isGreaterThan(DistributionAnalyzer.MAX_QUEUED_BATCHES);
+        assertThat(finder.getNotFoundChecksums()).hasSize(numFiles);
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class ChecksumChannelTest {
+    private static final int BATCH_SIZE = 10;
+
+    private static final int MAX_BATCHES = 2;
+
+    private static Checksum checksum(int i) {
+        return new Checksum(ChecksumType.md5, String.format("%032x", i), i + ".jar", i);
+    }
+
+    @Test
+    void testReceiveAllSent() throws IOException {
+        ChecksumChannel channel = new ChecksumChannel(BATCH_SIZE, MAX_BATCHES);
+
+        for (int i = 0; i < BATCH_SIZE + 3; i++) {
+            channel.send(checksum(i));
+        }
+
+        // The batch being filled is received along with the full batch
+        assertThat(channel.receive()).hasSize(BATCH_SIZE + 3).startsWith(checksum(0)).endsWith(checksum(12));
+
+        channel.send(checksum(13));
+        channel.close(null);
+
+        assertThat(channel.receive()).containsExactly(checksum(13));
+        assertThat(channel.receive()).isEmpty();
+        assertThat(channel.receive()).isEmpty();
+        assertThat(channel.getNumChecksums()).isEqualTo(BATCH_SIZE + 4L);
+        assertThat(channel.getNumBatches()).isEqualTo(2L);
+        assertThat(channel.getMaxQueued()).isEqualTo(1);
+    }
+
+    @Test
+    @Timeout(value = 10L, unit = TimeUnit.SECONDS)
+    void testSendWaitsWhileFull() throws Exception {
+        ChecksumChannel channel = new ChecksumChannel(BATCH_SIZE, MAX_BATCHES);
+        int numChecksums = BATCH_SIZE * (MAX_BATCHES + 1);
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < numChecksums; i++) {
+                    channel.send(checksum(i));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        while (channel.getNumChecksums() < numChecksums) {
+            Thread.sleep(10L);
+        }
+
+        // The last batch is full, but there is no room to queue it
+        assertThat(producer).isNotDone();
+        assertThat(channel.getNumBatches()).isEqualTo(MAX_BATCHES);
+
+        // The full batch of the waiting sender is received as well, so it must not queue it once more
+        List<Checksum> received = new ArrayList<>(channel.receive());
+        producer.get();
+        assertThat(channel.getNumBatches()).isEqualTo(MAX_BATCHES);
+        channel.send(checksum(numChecksums));
+        channel.close(null);
+        received.addAll(channel.receive());
+
+        assertThat(received).hasSize(numChecksums + 1).endsWith(checksum(numChecksums));
+        assertThat(channel.receive()).isEmpty();
+        assertThat(channel.getMaxQueued()).isEqualTo(MAX_BATCHES);
+        assertThat(channel.getSendWait()).isPositive();
+    }
+
+    @Test
+    void testFailure() throws IOException {
+        ChecksumChannel channel = new ChecksumChannel(BATCH_SIZE, MAX_BATCHES);
+        channel.send(checksum(0));
+        channel.close(new IOException("Disk full"));
+
+        // Checksums sent before the failure are still received
+        assertThat(channel.receive()).containsExactly(checksum(0));
+        assertThatThrownBy(channel::receive).isExactlyInstanceOf(IOException.class)
+                .hasRootCauseMessage("Disk full");
+    }
+
+    @Test
+    @Timeout(value = 10L, unit = TimeUnit.SECONDS)
+    void testCancelReleasesSender() throws Exception {
+        ChecksumChannel channel = new ChecksumChannel(1, 1);
+        channel.send(checksum(0));
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                channel.send(checksum(1));
+                channel.send(checksum(2));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        while (channel.getNumChecksums() < 2L) {
+            Thread.sleep(10L);
+        }
+
+        assertThat(producer).isNotDone();
+
+        channel.cancel();
+        producer.get();
+        channel.close(null);
+
+        assertThat(channel.receive()).isEmpty();
+    }
+
+    @Test
+    @Timeout(value = 10L, unit = TimeUnit.SECONDS)
+    void testSendFailsIfNothingReceives() throws IOException {
+        ChecksumChannel channel = new ChecksumChannel(1, 1, Duration.ofMillis(100L));
+        channel.send(checksum(0));
+
+        assertThatThrownBy(() -> channel.send(checksum(1))).isExactlyInstanceOf(IOException.class)
+                .hasMessageStartingWith("Nothing received the checksums");
+    }
+
+    @Test
+    @Timeout(value = 10L, unit = TimeUnit.SECONDS)
+    void testSendWaitsForSlowReceiver() throws Exception {
+        ChecksumChannel channel = new ChecksumChannel(1, 1, Duration.ofMillis(100L));
+        channel.send(checksum(0));
+
+        assertThat(channel.receive()).containsExactly(checksum(0));
+
+        channel.send(checksum(1));
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                channel.send(checksum(2));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // The sender keeps waiting past the timeout, since the channel has been received from before
+        Thread.sleep(500L);
+
+        assertThat(producer).isNotDone();
+        assertThat(channel.receive()).containsExactly(checksum(1), checksum(2));
+
+        producer.get();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jboss.pnc.build.finder.core.ChecksumType.md5;
+import static org.jboss.pnc.build.finder.core.ChecksumType.sha1;
+import static org.jboss.pnc.build.finder.core.ChecksumType.sha256;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
+import org.junit.jupiter.api.Test;
+
+class ChecksumStoreTest {
+    private static final int NUM_FILES = 5000;
+
+    @Test
+    void testViewsMatchMaps() {
+        Set<ChecksumType> checksumTypes = EnumSet.allOf(ChecksumType.class);
+        ChecksumStore store = new ChecksumStore(checksumTypes);
+        Map<ChecksumType, MultiValuedMap<String, String>> expectedChecksums = new HashMap<>();
+        MultiValuedMap<String, Checksum> expectedFiles = new HashSetValuedHashMap<>();
+        Random random = new Random(NUM_FILES);
+
+        for (ChecksumType checksumType : checksumTypes) {
+            expectedChecksums.put(checksumType, new HashSetValuedHashMap<>());
+        }
+
+        for (int i = 0; i < NUM_FILES; i++) {
+            // Some files have the same name or the same content as another file, and some are added twice
+            String filename = "dist.zip!/lib/" + random.nextInt(NUM_FILES / 2) + ".jar";
+            long size = random.nextInt(4);
+            byte[] content = new byte[] { (byte) random.nextInt(NUM_FILES / 10), (byte) random.nextInt(8) };
+
+            for (ChecksumType checksumType : checksumTypes) {
+                Digest digest = Digest.of(new DigestUtils(checksumType.getAlgorithm()).digest(content));
+                String value = digest.toHex();
+                boolean added = expectedFiles.put(filename, new Checksum(checksumType, value, filename, size));
+                assertThat(store.add(checksumType, digest, filename, size)).isEqualTo(added);
+
+                if (added) {
+                    expectedChecksums.get(checksumType).put(value, filename + ":" + size);
+                }
+            }
+        }
+
+        assertThat(store.getChecksums()).containsOnlyKeys(checksumTypes);
+        assertThat(store.getFiles()).hasSameSizeAs(expectedFiles.keySet()).isEqualTo(expectedFiles.asMap());
+
+        for (Entry<ChecksumType, MultiValuedMap<String, LocalFile>> entry : store.getChecksums().entrySet()) {
+            MultiValuedMap<String, LocalFile> localFiles = entry.getValue();
+            MultiValuedMap<String, String> expected = expectedChecksums.get(entry.getKey());
+            assertThat(localFiles.size()).isEqualTo(expected.size()).isEqualTo(store.size(entry.getKey()));
+            assertThat(localFiles.keySet()).isEqualTo(expected.keySet());
+
+            for (Entry<String, Collection<LocalFile>> localFile : localFiles.asMap().entrySet()) {
+                Set<String> files = new HashSet<>();
+                localFile.getValue().forEach(file -> files.add(file.getFilename() + ":" + file.getSize()));
+                assertThat(localFile.getValue()).hasSameSizeAs(files);
+                assertThat(files).isEqualTo(expected.get(localFile.getKey()));
+                assertThat(localFiles.get(localFile.getKey())).hasSameSizeAs(files);
+            }
+        }
+    }
+
+    @Test
+    void testViewsAreReadOnly() {
+        ChecksumStore store = new ChecksumStore(EnumSet.of(md5));
+        String value = "d41d8cd98f00b204e9800998ecf8427e";
+        store.add(md5, Digest.fromHex(value), "a.jar", 0L);
+
+        assertThat(store.getChecksums().get(md5).containsKey(value)).isTrue();
+        assertThat(store.getChecksums().get(md5).containsKey(value.toUpperCase())).isTrue();
+        assertThat(store.getChecksums().get(md5).containsKey("not a checksum")).isFalse();
+        assertThat(store.getChecksums().get(md5).get("not a checksum")).isEmpty();
+        assertThat(store.getFiles().get("b.jar")).isNull();
+        assertThatThrownBy(() -> store.getChecksums().get(md5).put(value, new LocalFile("b.jar", 0L)))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> store.getFiles().remove("a.jar")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void testAddAll() {
+        ChecksumStore store = new ChecksumStore(EnumSet.of(md5, sha1));
+        Checksum md5Checksum = new Checksum(md5, "d41d8cd98f00b204e9800998ecf8427e", "a.jar", 0L);
+        Checksum sha1Checksum = new Checksum(sha1, "da39a3ee5e6b4b0d3255bfef95601890afd80709", "a.jar", 0L);
+        store.addAll(List.of(md5Checksum, sha1Checksum, md5Checksum));
+
+        assertThat(store.size(md5)).isEqualTo(1);
+        assertThat(store.size(sha1)).isEqualTo(1);
+        assertThat(store.getFiles().get("a.jar")).containsExactlyInAnyOrder(md5Checksum, sha1Checksum);
+    }
+
+    @Test
+    void testGetChecksumsByFileId() {
+        ChecksumStore store = new ChecksumStore(EnumSet.of(md5, sha1));
+        Checksum md5Checksum = new Checksum(md5, "d41d8cd98f00b204e9800998ecf8427e", "a.jar", 0L);
+        Checksum sha1Checksum = new Checksum(sha1, "da39a3ee5e6b4b0d3255bfef95601890afd80709", "a.jar", 0L);
+        Checksum otherChecksum = new Checksum(md5, "d41d8cd98f00b204e9800998ecf8427e", "b.jar", 0L);
+        int fileId = store.addChecksum(md5Checksum);
+
+        assertThat(store.addChecksum(sha1Checksum)).isEqualTo(fileId);
+        assertThat(store.addChecksum(otherChecksum)).isNotEqualTo(fileId);
+        assertThat(store.getChecksums(fileId)).containsExactlyInAnyOrder(md5Checksum, sha1Checksum);
+    }
+
+    @Test
+    void testInvalidDigest() {
+        ChecksumStore store = new ChecksumStore(EnumSet.of(md5, sha1));
+        Digest sha1Digest = Digest.fromHex("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+
+        assertThatThrownBy(() -> store.add(md5, sha1Digest, "a.jar", 0L))
+                .isExactlyInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("md5");
+        assertThatThrownBy(() -> store.add(sha256, sha1Digest, "a.jar", 0L))
+                .isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThat(store.add(sha1, sha1Digest, "a.jar", 0L)).isTrue();
+    }
+}
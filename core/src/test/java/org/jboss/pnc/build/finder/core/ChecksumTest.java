@@ -20,10 +20,20 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.jboss.pnc.build.finder.core.ChecksumType.md5;
 import static org.jboss.pnc.build.finder.core.ChecksumType.sha1;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileObject;
@@ -31,6 +41,8 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.VFS;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class ChecksumTest {
     @Test
@@ -43,6 +55,78 @@ class ChecksumTest {
         }).isExactlyInstanceOf(FileSystemException.class).hasMessageMatching(".*Does file.*exist.*");
     }
 
+    @ParameterizedTest
+    @ValueSource(
+            ints = { 0, 1, Checksum.MAX_READ_SIZE, Checksum.MAX_READ_SIZE + 1, Checksum.MAX_MAP_SIZE + 1 })
+    void testLocalFileMatchesStream(int size, @TempDir Path folder) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path path = Files.write(folder.resolve("file.bin"), content);
+        Set<ChecksumType> checksumTypes = EnumSet.allOf(ChecksumType.class);
+        String root = folder.toUri().toString();
+
+        try (FileObject fo = VFS.getManager().resolveFile(path.toUri()); InputStream in = Files.newInputStream(path)) {
+            Set<Checksum> checksums = Checksum.checksum(fo, checksumTypes, root);
+            assertThat(checksums).hasSize(checksumTypes.size())
+                    .isEqualTo(Checksum.checksum(in, fo.getName(), size, checksumTypes, root));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = { DigestLanes.MIN_SIZE - 1L, DigestLanes.MIN_SIZE, 2L * DigestLanes.MIN_SIZE + 1L })
+    void testLanesMatchSingleDigests(long size, @TempDir Path folder) throws IOException {
+        byte[] content = new byte[(int) size];
+        new Random(size).nextBytes(content);
+        Path path = Files.write(folder.resolve("file.bin"), content);
+        Set<ChecksumType> checksumTypes = EnumSet.allOf(ChecksumType.class);
+        String root = folder.toUri().toString();
+
+        try (FileObject fo = VFS.getManager().resolveFile(path.toUri())) {
+            Set<Checksum> expected = new HashSet<>();
+
+            for (ChecksumType checksumType : checksumTypes) {
+                expected.addAll(Checksum.checksum(fo, EnumSet.of(checksumType), root));
+            }
+
+            try (InputStream in = Files.newInputStream(path)) {
+                assertThat(Checksum.checksum(in, fo.getName(), size, checksumTypes, root)).isEqualTo(expected);
+            }
+
+            assertThat(Checksum.checksum(fo, checksumTypes, root)).isEqualTo(expected);
+            assertThat(Checksum.checksum(ByteBuffer.wrap(content), fo.getName(), size, checksumTypes, root))
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testFingerprint(@TempDir Path folder) throws IOException {
+        byte[] content = new byte[1048576];
+        new Random(content.length).nextBytes(content);
+        Path path = Files.write(folder.resolve("file.bin"), content);
+        FileTime lastModified = Files.getLastModifiedTime(path);
+
+        try (FileObject fo = VFS.getManager().resolveFile(path.toUri())) {
+            Optional<String> fingerprint = Checksum.fingerprint(fo);
+            assertThat(fingerprint).isPresent();
+
+            // A change outside the first, middle and last blocks is not noticed
+            content[content.length / 4]++;
+            Files.setLastModifiedTime(Files.write(path, content), lastModified);
+            assertThat(Checksum.fingerprint(fo)).isEqualTo(fingerprint);
+
+            content[content.length / 2]++;
+            Files.setLastModifiedTime(Files.write(path, content), lastModified);
+            assertThat(Checksum.fingerprint(fo)).isPresent().isNotEqualTo(fingerprint);
+
+            content[content.length / 2]--;
+            Files.setLastModifiedTime(Files.write(path, content), lastModified);
+            assertThat(Checksum.fingerprint(fo)).isEqualTo(fingerprint);
+
+            Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified.toMillis() + 1000L));
+            assertThat(Checksum.fingerprint(fo)).isPresent().isNotEqualTo(fingerprint);
+        }
+    }
+
     @Test
     void testSort() {
         Checksum c1 = new Checksum(md5, "7215ee9c7d9dc229d2921a40e899ec5f", "c.txt", 2L);
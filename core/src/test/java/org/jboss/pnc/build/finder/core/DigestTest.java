@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DigestTest {
+    private static final int NUM_DIGESTS = 1000;
+
+    @Test
+    void testHex() {
+        String value = "d41d8cd98f00b204e9800998ecf8427e";
+        Digest digest = Digest.fromHex(value);
+
+        assertThat(digest.length()).isEqualTo(ChecksumType.md5.getDigestLength());
+        assertThat(digest.toHex()).isEqualTo(value).isEqualTo(digest.toString());
+        assertThat(Digest.fromHex(value.toUpperCase())).isEqualTo(digest).hasSameHashCodeAs(digest);
+        assertThat(Digest.of(digest.getBytes())).isEqualTo(digest).hasSameHashCodeAs(digest);
+        assertThatThrownBy(() -> Digest.fromHex("not a checksum")).isExactlyInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not a checksum");
+    }
+
+    @Test
+    void testOrderedLikeHex() {
+        Random random = new Random(NUM_DIGESTS);
+        List<Digest> digests = new ArrayList<>(NUM_DIGESTS);
+
+        for (int i = 0; i < NUM_DIGESTS; i++) {
+            byte[] bytes = new byte[ChecksumType.sha1.getDigestLength()];
+            random.nextBytes(bytes);
+            digests.add(Digest.of(bytes));
+        }
+
+        List<String> values = digests.stream().map(Digest::toHex).sorted(Comparator.naturalOrder()).toList();
+
+        assertThat(digests.stream().sorted().map(Digest::toHex)).containsExactlyElementsOf(values);
+    }
+
+    @Test
+    void testHashInArray() {
+        byte[] bytes = Digest.fromHex("da39a3ee5e6b4b0d3255bfef95601890afd80709").getBytes();
+        byte[] array = new byte[bytes.length + 3];
+        Digest digest = Digest.of(bytes);
+        digest.copyTo(array, 3);
+
+        assertThat(Digest.hash(array, 3, bytes.length)).isEqualTo(digest.hashCode());
+        assertThat(digest.equals(array, 3)).isTrue();
+        assertThat(digest.equals(array, 2)).isFalse();
+    }
+}
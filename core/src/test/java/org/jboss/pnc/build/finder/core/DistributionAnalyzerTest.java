@@ -15,45 +15,83 @@
  */
 package org.jboss.pnc.build.finder.core;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.assertj.core.api.Assertions.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.jboss.pnc.build.finder.core.ChecksumType.md5;
 import static org.jboss.pnc.build.finder.core.ChecksumType.sha1;
 import static org.jboss.pnc.build.finder.core.ChecksumType.sha256;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.eclipse.packager.rpm.RpmSignatureTag;
+import org.infinispan.commons.api.BasicCache;
+import org.infinispan.commons.api.BasicCacheContainer;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
 import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.junitpioneer.jupiter.Issue;
 import org.junitpioneer.jupiter.StdIo;
 import org.junitpioneer.jupiter.StdOut;
 
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
 class DistributionAnalyzerTest {
     private static final long ONE_GB = 1073741824L;
 
     private static final String MODE = "rw";
 
+    @RegisterExtension
+    private static final WireMockExtension WIRE_MOCK_EXTENSION = WireMockExtension.newInstance()
+            .options(WireMockConfiguration.wireMockConfig().dynamicPort())
+            .build();
+
     @Test
     void testEmptyList() throws IOException {
         List<String> af = Collections.emptyList();
@@ -164,6 +202,78 @@ class DistributionAnalyzerTest {
         Map<ChecksumType, MultiValuedMap<String, LocalFile>> checksums = da.call();
 
         assertThat(checksums.get(md5).size()).isEqualTo(25);
+
+        List<Checksum> received = new ArrayList<>();
+        List<Checksum> batch;
+
+        while (!(batch = da.getChannel().receive()).isEmpty()) {
+            received.addAll(batch);
+        }
+
+        assertThat(received).hasSize(25).allMatch(checksum -> checksum.getType() == md5);
+        assertThat(da.getChannel().getNumChecksums()).isEqualTo(25L);
+    }
+
+    @Test
+    void testChecksumsAreSentOnceTheirInputIsAnalyzed(@TempDir Path folder) throws Exception {
+        Path file = Files.writeString(folder.resolve("a.txt"), "a");
+        WIRE_MOCK_EXTENSION
+                .stubFor(any(urlEqualTo("/b.txt")).willReturn(aResponse().withBody("b").withFixedDelay(2000)));
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setChecksumTypes(EnumSet.of(md5));
+        config.setKojiMulticallSize(1);
+        DistributionAnalyzer da = new DistributionAnalyzer(
+                List.of(file.toString(), WIRE_MOCK_EXTENSION.url("/b.txt")),
+                config);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Map<ChecksumType, MultiValuedMap<String, LocalFile>>> future = pool.submit(da);
+
+            // The checksum of the local input is received while the remote input is still being downloaded
+            assertThat(da.getChannel().receive()).hasSize(1);
+            assertThat(future).isNotDone();
+            assertThat(future.get().get(md5).size()).isEqualTo(2);
+        } finally {
+            Utils.shutdownAndAwaitTermination(pool);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("removal")
+    void testQueueReceivesChecksums() throws Exception {
+        List<String> target = Collections.singletonList(TestUtils.loadFile("nested.zip").toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        DistributionAnalyzer da = new DistributionAnalyzer(target, config);
+        BlockingQueue<Checksum> queue = da.getQueue();
+
+        // The analyzer does not wait for the checksums to be taken from the queue
+        da.call();
+
+        List<Checksum> received = new ArrayList<>();
+        Checksum checksum;
+
+        while ((checksum = queue.take()).getValue() != null) {
+            received.add(checksum);
+        }
+
+        assertThat(received).hasSize(25).allMatch(c -> c.getType() == md5);
+    }
+
+    @Test
+    void testLoadNestedZipSingleThread() throws IOException {
+        List<String> target = Collections.singletonList(TestUtils.loadFile("nested.zip").toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setAnalyzerNumThreads(1);
+        DistributionAnalyzer da = new DistributionAnalyzer(target, config);
+        Map<ChecksumType, MultiValuedMap<String, LocalFile>> checksums = da.checksumFiles();
+
+        assertThat(checksums.get(md5).size()).isEqualTo(25);
+        assertThat(da.getQueueStatistics()).extracting(QueueStatistics::getDepth).startsWith(1).isSorted();
+        assertThat(da.getQueueStatistics()).allSatisfy(statistics -> assertThat(statistics.getNumTasks()).isPositive());
     }
 
     @Test
@@ -222,6 +332,552 @@ class DistributionAnalyzerTest {
         assertThat(checksums.get(md5).size()).isEqualTo(numChecksums);
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = { "nested.zip", "nested2.zip", "nested.war", "nested.tar.gz", "symbolic.zip" })
+    void testNativeZipMatchesVfs(String filename) throws IOException {
+        assertNativeZipMatchesVfs(TestUtils.loadFile(filename));
+    }
+
+    @Test
+    void testNativeZipMatchesVfsWithLicenses(@TempDir Path folder) throws IOException {
+        byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+                + "<version>1.0</version><licenses><license><name>MIT</name></license></licenses></project>")
+                .getBytes(UTF_8);
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putEntry(out, "dist/lib/a-1.0.pom", pom);
+            putEntry(out, "dist/lib/a b.jar", createJar(pom, false));
+            putEntry(out, "dist/lib/c.jar", createJar(pom, true));
+            putEntry(out, "dist/x!y 100%.txt", "x!y");
+        }
+
+        assertNativeZipMatchesVfs(zip);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testIdenticalArchivesAreReplayed(boolean disableNativeZip, @TempDir Path folder) throws IOException {
+        byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+                + "<version>1.0</version><licenses><license><name>MIT</name></license></licenses></project>")
+                .getBytes(UTF_8);
+        byte[] jar = createJar(pom, true);
+        ByteArrayOutputStream war = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(war)) {
+            putEntry(out, "WEB-INF/lib/a.jar", jar);
+        }
+
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putEntry(out, "dist/lib/a.jar", jar);
+            putEntry(out, "dist/one.war", war.toByteArray());
+            putEntry(out, "dist/two.war", war.toByteArray());
+        }
+
+        List<String> target = Collections.singletonList(zip.toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setDisableNativeZip(disableNativeZip);
+        DistributionAnalyzer da = new DistributionAnalyzer(target, config);
+        da.checksumFiles();
+        Map<String, Collection<Checksum>> files = da.getFiles();
+        Map<String, Collection<LicenseInfo>> licenses = da.getLicensesMap();
+
+        // Either the jar in one of the wars or the other jar is listed first, and two.war is a copy of one.war
+        assertThat(da.getArchivesReplayed()).isEqualTo(2L);
+
+        String jarPath = "dist.zip!/dist/lib/a.jar";
+
+        for (String copyPath : List.of(
+                "dist.zip!/dist/one.war!/WEB-INF/lib/a.jar",
+                "dist.zip!/dist/two.war!/WEB-INF/lib/a.jar")) {
+            for (Entry<String, Collection<Checksum>> entry : files.entrySet()) {
+                if (entry.getKey().startsWith(jarPath + "!/")) {
+                    assertThat(files.get(copyPath + entry.getKey().substring(jarPath.length())))
+                            .containsExactlyInAnyOrderElementsOf(
+                                    entry.getValue()
+                                            .stream()
+                                            .map(
+                                                    checksum -> new Checksum(
+                                                            checksum.getType(),
+                                                            checksum.getValue(),
+                                                            copyPath + checksum.getFilename().substring(jarPath.length()),
+                                                            checksum.getFileSize()))
+                                            .toList());
+                }
+            }
+
+            assertThat(licenses.get(copyPath + "!/META-INF/maven/g/a/pom.xml")).isNotEmpty()
+                    .containsExactlyElementsOf(licenses.get(jarPath + "!/META-INF/maven/g/a/pom.xml"));
+        }
+
+        // Every file in the three jars, the jars themselves, the wars and the distribution
+        assertThat(files).hasSize(3 * 6 + 3 + 2 + 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = { 0L, ONE_GB })
+    void testNativeZipReadsNestedArchivesInMemory(long archiveMemoryThreshold, @TempDir Path folder)
+            throws IOException {
+        byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+                + "<version>1.0</version></project>").getBytes(UTF_8);
+        byte[] storedJar = createJar(pom, false);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            putEntry(out, "META-INF/maven/g/a/pom.xml", pom);
+            putStoredEntry(out, "lib/inner.jar", storedJar);
+        }
+
+        byte[] deflatedJar = bytes.toByteArray();
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putStoredEntry(out, "dist/lib/stored.jar", storedJar);
+            putEntry(out, "dist/lib/deflated.jar", deflatedJar);
+        }
+
+        DistributionAnalyzer da = assertNativeZipMatchesVfs(zip, archiveMemoryThreshold);
+
+        // The stored jar in the deflated jar is identical to the other one, so it is replayed instead of read
+        assertThat(da.getArchivesReplayed()).isEqualTo(1L);
+
+        if (archiveMemoryThreshold == 0L) {
+            assertThat(da.getBytesSpilled()).isEqualTo(deflatedJar.length);
+            assertThat(da.getBytesAvoided()).isEqualTo(storedJar.length);
+        } else {
+            assertThat(da.getBytesSpilled()).isZero();
+            assertThat(da.getBytesAvoided()).isEqualTo(storedJar.length + deflatedJar.length);
+        }
+    }
+
+    @Test
+    void testNativeZipChecksumsStoredEntries(@TempDir Path folder) throws IOException {
+        Random random = new Random(Checksum.MAX_READ_SIZE);
+        byte[] small = new byte[Checksum.MAX_READ_SIZE];
+        byte[] large = new byte[Checksum.MAX_READ_SIZE + 1];
+        random.nextBytes(small);
+        random.nextBytes(large);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            putStoredEntry(out, "small.bin", small);
+            putStoredEntry(out, "large.bin", large);
+        }
+
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putStoredEntry(out, "dist/small.bin", small);
+            putStoredEntry(out, "dist/large.bin", large);
+            putStoredEntry(out, "dist/lib/stored.jar", bytes.toByteArray());
+        }
+
+        assertNativeZipMatchesVfs(zip);
+    }
+
+    @Test
+    void testRpmChecksumsAreReadFromHeaders(@TempDir Path folder) throws IOException {
+        Path rpms = Files.createDirectory(folder.resolve("rpms"));
+        Map<String, String> md5s = new HashMap<>();
+        List<Path> paths = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            Path rpm = RpmHeadersTest.createRpm(rpms, "package" + i, i);
+            paths.add(rpm);
+
+            try (FileChannel channel = FileChannel.open(rpm, StandardOpenOption.READ)) {
+                byte[] md5 = (byte[]) RpmHeaders.read(channel, false).getSignatureTag(RpmSignatureTag.MD5);
+                md5s.put("rpms/" + rpm.getFileName(), Digest.of(md5).toHex());
+            }
+        }
+
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setAnalyzerNumThreads(4);
+        DistributionAnalyzer da = new DistributionAnalyzer(List.of(rpms.toAbsolutePath().toString()), config);
+        da.checksumFiles();
+        Map<String, Collection<Checksum>> files = da.getFiles();
+
+        assertThat(files).hasSameSizeAs(md5s);
+        md5s.forEach(
+                (filename, value) -> assertThat(Checksum.findByType(files.get(filename), md5).map(Checksum::getValue))
+                        .contains(value));
+
+        // A large RPM stored in a zip is read from memory, and its checksums must still be read from its headers
+        byte[] rpm = Files.readAllBytes(paths.get(0));
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putStoredEntry(out, "dist/stored.rpm", rpm);
+            putEntry(out, "dist/deflated.rpm", rpm);
+        }
+
+        Map<String, Collection<Checksum>> zipFiles = assertNativeZipMatchesVfs(
+                zip,
+                ConfigDefaults.ARCHIVE_MEMORY_THRESHOLD).getFiles();
+
+        for (String filename : List.of("dist.zip!/dist/stored.rpm", "dist.zip!/dist/deflated.rpm")) {
+            assertThat(Checksum.findByType(zipFiles.get(filename), md5).map(Checksum::getValue))
+                    .contains(md5s.get("rpms/" + paths.get(0).getFileName()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testFilesNeverLookedUpAreSkipped(boolean disableNativeZip, @TempDir Path folder) throws IOException {
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putStoredEntry(out, "dist/a.jar", new byte[10]);
+            putStoredEntry(out, "dist/b.txt", new byte[20]);
+            putStoredEntry(out, "dist/c.xml", new byte[30]);
+            putStoredEntry(out, "dist/pom.xml", new byte[40]);
+        }
+
+        List<String> target = Collections.singletonList(zip.toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(List.of("jar", "txt", "xml", "zip"));
+        config.setDisableNativeZip(disableNativeZip);
+        DistributionAnalyzer da = new DistributionAnalyzer(target, config);
+        da.restrictExtensions(List.of("jar", "xml", "zip", "tar"));
+        da.checksumFiles();
+
+        // b.txt is never looked up, and c.xml is excluded by default
+        assertThat(da.getFiles()).containsOnlyKeys("dist.zip", "dist.zip!/dist/a.jar", "dist.zip!/dist/pom.xml");
+        assertThat(da.getFilesSkipped()).isEqualTo(2L);
+        assertThat(da.getBytesSkipped()).isEqualTo(50L);
+    }
+
+    @Test
+    void testExtensionsAreNotRestrictedOnceStarted(@TempDir Path folder) throws IOException {
+        Path txt = Files.write(folder.resolve("a.txt"), new byte[10]);
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(List.of("jar", "txt"));
+        DistributionAnalyzer da = new DistributionAnalyzer(Collections.singletonList(txt.toString()), config);
+        da.checksumFiles();
+
+        da.restrictExtensions(List.of("jar"));
+
+        assertThat(da.getFiles()).containsOnlyKeys("a.txt");
+        assertThat(da.getFilesSkipped()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testChecksumTasksOfArchiveAreBounded(boolean disableNativeZip, @TempDir Path folder) throws IOException {
+        Path zip = folder.resolve("dist.zip");
+        int numFiles = 100;
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (int i = 0; i < numFiles; i++) {
+                putStoredEntry(out, "dist/" + i + ".txt", new byte[i + 1]);
+            }
+        }
+
+        List<String> target = Collections.singletonList(zip.toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setDisableNativeZip(disableNativeZip);
+        config.setAnalyzerNumThreads(1);
+        DistributionAnalyzer da = new DistributionAnalyzer(target, config);
+        da.checksumFiles();
+
+        assertThat(da.getFiles()).hasSize(numFiles + 1);
+        assertThat(da.getQueueStatistics()).filteredOn(statistics -> statistics.getDepth() > 0)
+                .allSatisfy(
+                        statistics -> assertThat(statistics.getMaxQueued())
+                                .isLessThanOrEqualTo(DistributionAnalyzer.PENDING_CHECKSUM_TASKS_PER_THREAD));
+    }
+
+    @Test
+    void testNativeZipUsesEntryCache(@TempDir Path folder) throws IOException {
+        byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+                + "<version>1.0</version></project>").getBytes(UTF_8);
+        byte[] jar = createJar(pom, false);
+        BasicCacheContainer cacheManager = createCacheContainer();
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        Map<String, Collection<Checksum>> files = null;
+
+        for (String version : List.of("1.0", "1.1")) {
+            Path zip = Files.createDirectories(folder.resolve(version)).resolve("dist.zip");
+
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+                putEntry(out, "dist/lib/a.jar", jar);
+                putEntry(out, "dist/version.txt", version);
+            }
+
+            List<String> target = Collections.singletonList(zip.toAbsolutePath().toString());
+            DistributionAnalyzer da = new DistributionAnalyzer(target, config, cacheManager);
+            da.checksumFiles();
+            files = da.getFiles();
+
+            // The distribution changed, but the jar in it did not, so the files in the jar are found in the cache
+            assertThat(da.getEntriesCached()).isEqualTo(version.equals("1.0") ? 0L : 4L);
+        }
+
+        DistributionAnalyzer da = new DistributionAnalyzer(
+                Collections.singletonList(folder.resolve("1.1").resolve("dist.zip").toAbsolutePath().toString()),
+                config);
+        da.checksumFiles();
+
+        assertThat(files).isEqualTo(da.getFiles());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void testInputFingerprintIsTrustedUnlessVerifying(boolean verify, @TempDir Path folder) throws IOException {
+        Path zip = folder.resolve("dist.zip");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            putEntry(out, "dist/version.txt", "1.0");
+        }
+
+        BasicCacheContainer cacheManager = createCacheContainer();
+        List<String> target = Collections.singletonList(zip.toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setChecksumTypes(EnumSet.of(md5));
+        config.setVerify(verify);
+        new DistributionAnalyzer(target, config, cacheManager).checksumFiles();
+
+        BasicCache<String, String> fingerprints = cacheManager.getCache("fingerprints-md5");
+        assertThat(fingerprints).hasSize(1);
+        String value = fingerprints.values().iterator().next();
+        BasicCache<String, ?> files = cacheManager.getCache("files-md5");
+        assertThat(files).containsOnlyKeys(value);
+
+        // The input is looked up by the value cached for its fingerprint, which is only checked when verifying
+        String bogus = "00000000000000000000000000000000";
+        fingerprints.replaceAll((fingerprint, ignored) -> bogus);
+        files.clear();
+        DistributionAnalyzer da = new DistributionAnalyzer(target, config, cacheManager);
+        da.checksumFiles();
+
+        assertThat(files).containsOnlyKeys(verify ? value : bogus);
+        assertThat(da.getFiles()).hasSize(2);
+    }
+
+    @Test
+    void testInputsAreAnalyzedAtOnce(@TempDir Path folder) throws IOException {
+        byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+                + "<version>1.0</version><licenses><license><name>MIT</name></license></licenses></project>")
+                .getBytes(UTF_8);
+        List<String> inputs = new ArrayList<>();
+
+        // Two of the inputs have the same name
+        for (String name : List.of("one/server.zip", "one/sources.zip", "two/server.zip", "docs.zip")) {
+            Path zip = folder.resolve(name);
+            Files.createDirectories(zip.getParent());
+
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+                putEntry(out, "dist/lib/a.jar", createJar(pom, true));
+                putEntry(out, "dist/name.txt", name);
+            }
+
+            inputs.add(zip.toAbsolutePath().toString());
+        }
+
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setAnalyzerNumThreads(2);
+        Map<String, Set<Checksum>> expectedFiles = new TreeMap<>();
+        Map<String, Set<LicenseInfo>> expectedLicenses = new TreeMap<>();
+
+        for (String input : inputs) {
+            DistributionAnalyzer da = new DistributionAnalyzer(List.of(input), config);
+            da.checksumFiles();
+            da.getFiles()
+                    .forEach((key, value) -> expectedFiles.computeIfAbsent(key, k -> new HashSet<>()).addAll(value));
+            da.getLicensesMap()
+                    .forEach((key, value) -> expectedLicenses.computeIfAbsent(key, k -> new HashSet<>()).addAll(value));
+        }
+
+        BasicCacheContainer cacheManager = createCacheContainer();
+        DistributionAnalyzer da = new DistributionAnalyzer(inputs, config, cacheManager);
+        da.checksumFiles();
+        Map<String, Set<Checksum>> files = new TreeMap<>();
+        Map<String, Set<LicenseInfo>> licenses = new TreeMap<>();
+        da.getFiles().forEach((key, value) -> files.put(key, new HashSet<>(value)));
+        da.getLicensesMap().forEach((key, value) -> licenses.put(key, new HashSet<>(value)));
+
+        assertThat(files).isEqualTo(expectedFiles);
+        assertThat(licenses).isNotEmpty().isEqualTo(expectedLicenses);
+        assertThat(da.getFileErrors()).isEmpty();
+
+        // Every input is cached with its own files only
+        BasicCache<String, MultiValuedMap<String, LocalFile>> fileCache = cacheManager.getCache("files-sha256");
+        assertThat(fileCache).hasSize(inputs.size());
+
+        for (MultiValuedMap<String, LocalFile> localFiles : fileCache.values()) {
+            String input = localFiles.values()
+                    .stream()
+                    .map(LocalFile::getFilename)
+                    .filter(filename -> !filename.contains("!/"))
+                    .findFirst()
+                    .orElseThrow();
+            assertThat(localFiles.values()).extracting(LocalFile::getFilename)
+                    .hasSize(9)
+                    .allMatch(filename -> filename.equals(input) || filename.startsWith(input + "!/"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "dist.tar", "dist.tgz", "dist.tar.gz", "dist.tbz2", "dist.tar.bz2" })
+    void testNativeTarMatchesVfs(String filename, @TempDir Path folder) throws IOException {
+        byte[] pom = ("<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+                + "<version>1.0</version><licenses><license><name>MIT</name></license></licenses></project>")
+                .getBytes(UTF_8);
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(new GZIPOutputStream(nested))) {
+            putTarEntry(out, "lib/c.jar", createJar(pom, false));
+        }
+
+        Path tar = folder.resolve(filename);
+
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(compress(filename, Files.newOutputStream(tar)))) {
+            out.putArchiveEntry(new TarArchiveEntry("dist/"));
+            out.closeArchiveEntry();
+            putTarEntry(out, "dist/lib/a-1.0.pom", pom);
+            putTarEntry(out, "dist/lib/a b.jar", createJar(pom, true));
+            putTarEntry(out, "dist/lib/nested.tar.gz", nested.toByteArray());
+            putTarEntry(out, "dist/x!y 100%.txt", "x!y".getBytes(UTF_8));
+        }
+
+        assertNativeZipMatchesVfs(tar, 0L);
+        assertNativeZipMatchesVfs(tar);
+    }
+
+    private static byte[] createJar(byte[] pom, boolean withCompressedFile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            putEntry(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nBundle-License: LICENSE.txt\r\n\r\n");
+            putEntry(out, "META-INF/maven/g/a/pom.xml", pom);
+            putEntry(out, "LICENSE.txt", "Apache License, Version 2.0");
+            putEntry(out, "org/example/Example.class", "class");
+
+            if (withCompressedFile) {
+                putEntry(out, "docs/readme.gz", gzip("readme"));
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void assertNativeZipMatchesVfs(Path path) throws IOException {
+        assertNativeZipMatchesVfs(path, ConfigDefaults.ARCHIVE_MEMORY_THRESHOLD);
+    }
+
+    private static DistributionAnalyzer assertNativeZipMatchesVfs(Path path, long archiveMemoryThreshold)
+            throws IOException {
+        List<String> target = Collections.singletonList(path.toAbsolutePath().toString());
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setArchiveMemoryThreshold(archiveMemoryThreshold);
+        DistributionAnalyzer nativeZip = new DistributionAnalyzer(target, config);
+        nativeZip.checksumFiles();
+        BuildConfig vfsConfig = new BuildConfig();
+        vfsConfig.setArchiveExtensions(Collections.emptyList());
+        vfsConfig.setDisableNativeZip(true);
+        DistributionAnalyzer vfs = new DistributionAnalyzer(target, vfsConfig);
+        vfs.checksumFiles();
+
+        assertThat(nativeZip.getFiles()).isNotEmpty().isEqualTo(vfs.getFiles());
+        assertThat(sortLicenses(nativeZip.getLicensesMap())).isEqualTo(sortLicenses(vfs.getLicensesMap()));
+        assertThat(nativeZip.getFileErrors()).hasSameSizeAs(vfs.getFileErrors());
+
+        return nativeZip;
+    }
+
+    private static Map<String, List<LicenseInfo>> sortLicenses(Map<String, Collection<LicenseInfo>> licensesMap) {
+        Map<String, List<LicenseInfo>> map = new TreeMap<>();
+        licensesMap.forEach((key, value) -> map.put(key, value.stream().sorted().toList()));
+        return map;
+    }
+
+    private static BasicCacheContainer createCacheContainer() {
+        Map<String, Map<Object, Object>> caches = new ConcurrentHashMap<>();
+
+        return (BasicCacheContainer) Proxy.newProxyInstance(
+                BasicCacheContainer.class.getClassLoader(),
+                new Class<?>[] { BasicCacheContainer.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getCache") && args != null && args.length == 1) {
+                        return createCache(caches.computeIfAbsent((String) args[0], k -> new ConcurrentHashMap<>()));
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static BasicCache<?, ?> createCache(Map<Object, Object> map) {
+        // Only the map methods of the cache are used by the distribution analyzer
+        return (BasicCache<?, ?>) Proxy.newProxyInstance(
+                BasicCache.class.getClassLoader(),
+                new Class<?>[] { BasicCache.class },
+                (proxy, method, args) -> ConcurrentHashMap.class
+                        .getMethod(method.getName(), method.getParameterTypes())
+                        .invoke(map, args));
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, String content) throws IOException {
+        putEntry(out, name, content.getBytes(UTF_8));
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static void putStoredEntry(ZipOutputStream out, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static void putTarEntry(TarArchiveOutputStream out, String name, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        out.putArchiveEntry(entry);
+        out.write(content);
+        out.closeArchiveEntry();
+    }
+
+    private static OutputStream compress(String filename, OutputStream out) throws IOException {
+        if (filename.endsWith("gz")) {
+            return new GZIPOutputStream(out);
+        }
+
+        if (filename.endsWith("bz2")) {
+            return new BZip2CompressorOutputStream(out);
+        }
+
+        return out;
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(UTF_8));
+        }
+
+        return bytes.toByteArray();
+    }
+
     @Test
     @Issue("NCL-9035")
     void testGetLicensesMap() throws IOException {
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+class DownloadSpoolTest {
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final int NUM_CHUNKS = 10;
+
+    private static final String ETAG = "\"1\"";
+
+    @RegisterExtension
+    private static final WireMockExtension WIRE_MOCK_EXTENSION = WireMockExtension.newInstance()
+            .options(WireMockConfiguration.wireMockConfig().dynamicPort())
+            .build();
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private static void stubRanges(String url, byte[] content) {
+        WIRE_MOCK_EXTENSION.stubFor(
+                head(urlEqualTo(url)).willReturn(
+                        aResponse().withHeader("Accept-Ranges", "bytes")
+                                .withHeader("Content-Length", String.valueOf(content.length))
+                                .withHeader("ETag", ETAG)));
+
+        for (int start = 0; start < content.length; start += CHUNK_SIZE) {
+            int end = Math.min(start + CHUNK_SIZE, content.length) - 1;
+            String range = start + "-" + end;
+            WIRE_MOCK_EXTENSION.stubFor(
+                    get(urlEqualTo(url)).withHeader("Range", equalTo("bytes=" + range))
+                            .withHeader("If-Range", equalTo(ETAG))
+                            .willReturn(
+                                    aResponse().withStatus(206)
+                                            .withHeader("Content-Range", "bytes " + range + "/" + content.length)
+                                            .withBody(Arrays.copyOfRange(content, start, end + 1))));
+        }
+    }
+
+    @Test
+    void testDownloadRanges() throws IOException {
+        byte[] content = content(CHUNK_SIZE * NUM_CHUNKS - 1);
+        stubRanges("/dist/dist.zip", content);
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, DownloadSpool.REQUEST_TIMEOUT)) {
+            DownloadSpool.Download download = spool.download(
+                    URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/dist/dist.zip"),
+                    EnumSet.allOf(ChecksumType.class));
+
+            assertThat(download.getPath()).hasFileName("dist.zip").hasBinaryContent(content);
+            assertThat(download.getSize()).isEqualTo(content.length);
+            assertThat(download.getDigests()).containsOnlyKeys(EnumSet.allOf(ChecksumType.class));
+            assertThat(download.getDigests().get(ChecksumType.md5)).isEqualTo(Digest.of(DigestUtils.md5(content)));
+            assertThat(download.getDigests().get(ChecksumType.sha256))
+                    .isEqualTo(Digest.of(DigestUtils.sha256(content)));
+            assertThat(spool.getRangeRequests()).isEqualTo(NUM_CHUNKS);
+        }
+    }
+
+    @Test
+    void testDownloadWithoutRanges() throws IOException {
+        byte[] content = content(CHUNK_SIZE * NUM_CHUNKS);
+        WIRE_MOCK_EXTENSION.stubFor(head(urlEqualTo("/dist.zip")).willReturn(aResponse()));
+        WIRE_MOCK_EXTENSION.stubFor(get(urlEqualTo("/dist.zip")).willReturn(aResponse().withBody(content)));
+        Path path;
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, DownloadSpool.REQUEST_TIMEOUT)) {
+            DownloadSpool.Download download = spool.download(
+                    URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/dist.zip"),
+                    EnumSet.of(ChecksumType.sha1));
+            path = download.getPath();
+
+            assertThat(path).hasBinaryContent(content);
+            assertThat(download.getDigests()).containsExactly(
+                    entry(ChecksumType.sha1, Digest.of(DigestUtils.sha1(content))));
+            assertThat(spool.getRangeRequests()).isZero();
+        }
+
+        assertThat(path).doesNotExist();
+        WIRE_MOCK_EXTENSION.verify(1, getRequestedFor(urlEqualTo("/dist.zip")));
+    }
+
+    @Test
+    void testDownloadWithoutValidator() throws IOException {
+        byte[] content = content(CHUNK_SIZE * NUM_CHUNKS);
+        WIRE_MOCK_EXTENSION.stubFor(
+                head(urlEqualTo("/unversioned.zip")).willReturn(
+                        aResponse().withHeader("Accept-Ranges", "bytes")
+                                .withHeader("Content-Length", String.valueOf(content.length))));
+        WIRE_MOCK_EXTENSION.stubFor(get(urlEqualTo("/unversioned.zip")).willReturn(aResponse().withBody(content)));
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, DownloadSpool.REQUEST_TIMEOUT)) {
+            DownloadSpool.Download download = spool.download(
+                    URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/unversioned.zip"),
+                    EnumSet.of(ChecksumType.md5));
+
+            // Chunks could come from different versions of the input, so it is downloaded at once
+            assertThat(download.getPath()).hasBinaryContent(content);
+            assertThat(spool.getRangeRequests()).isZero();
+        }
+    }
+
+    @Test
+    void testChangedInputFails() throws IOException {
+        byte[] content = content(CHUNK_SIZE * NUM_CHUNKS);
+        stubRanges("/changed.zip", content);
+        // The input has changed since the ranges were stubbed, so the whole new input is sent instead of each range
+        WIRE_MOCK_EXTENSION.stubFor(
+                head(urlEqualTo("/changed.zip")).willReturn(
+                        aResponse().withHeader("Accept-Ranges", "bytes")
+                                .withHeader("Content-Length", String.valueOf(content.length))
+                                .withHeader("ETag", "\"0\"")));
+        WIRE_MOCK_EXTENSION.stubFor(
+                get(urlEqualTo("/changed.zip")).atPriority(10).willReturn(aResponse().withBody(content(CHUNK_SIZE))));
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, DownloadSpool.REQUEST_TIMEOUT)) {
+            URI uri = URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/changed.zip");
+
+            assertThatThrownBy(() -> spool.download(uri, EnumSet.of(ChecksumType.md5))).isInstanceOf(IOException.class)
+                    .hasMessageContaining("changed");
+        }
+    }
+
+    @Test
+    void testDownloadTimeout() throws IOException {
+        WIRE_MOCK_EXTENSION.stubFor(
+                get(urlEqualTo("/slow.zip"))
+                        .willReturn(aResponse().withBody(content(CHUNK_SIZE)).withFixedDelay(5000)));
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, Duration.ofMillis(100L))) {
+            URI uri = URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/slow.zip");
+
+            assertThatThrownBy(() -> spool.download(uri, EnumSet.of(ChecksumType.md5)))
+                    .isInstanceOf(HttpTimeoutException.class);
+        }
+    }
+
+    @Test
+    void testDownloadStalledBody() throws IOException {
+        WIRE_MOCK_EXTENSION.stubFor(
+                get(urlEqualTo("/stalled.zip"))
+                        .willReturn(aResponse().withBody(content(CHUNK_SIZE)).withChunkedDribbleDelay(2, 5000)));
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, Duration.ofMillis(500L))) {
+            URI uri = URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/stalled.zip");
+
+            assertThatThrownBy(() -> spool.download(uri, EnumSet.of(ChecksumType.md5)))
+                    .isInstanceOf(HttpTimeoutException.class);
+        }
+    }
+
+    @Test
+    void testDownloadStalledChunk() throws IOException {
+        byte[] content = content(CHUNK_SIZE * 2);
+        String range = "0-" + (CHUNK_SIZE - 1);
+        stubRanges("/stalled/dist.zip", content);
+        // The headers of the first chunk are sent at once, but not its body
+        WIRE_MOCK_EXTENSION.stubFor(
+                get(urlEqualTo("/stalled/dist.zip")).withHeader("Range", equalTo("bytes=" + range))
+                        .willReturn(
+                                aResponse().withStatus(206)
+                                        .withHeader("Content-Range", "bytes " + range + "/" + content.length)
+                                        .withBody(Arrays.copyOf(content, CHUNK_SIZE))
+                                        .withChunkedDribbleDelay(2, 5000)));
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, Duration.ofMillis(500L))) {
+            URI uri = URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/stalled/dist.zip");
+
+            assertThatThrownBy(() -> spool.download(uri, EnumSet.of(ChecksumType.md5)))
+                    .isInstanceOf(HttpTimeoutException.class);
+        }
+    }
+
+    @Test
+    void testDownloadError() throws IOException {
+        WIRE_MOCK_EXTENSION.stubFor(get(urlEqualTo("/missing.zip")).willReturn(aResponse().withStatus(404)));
+
+        try (DownloadSpool spool = new DownloadSpool(CHUNK_SIZE, 3, DownloadSpool.REQUEST_TIMEOUT)) {
+            URI uri = URI.create(WIRE_MOCK_EXTENSION.baseUrl() + "/missing.zip");
+
+            assertThatThrownBy(() -> spool.download(uri, EnumSet.of(ChecksumType.md5))).isInstanceOf(IOException.class)
+                    .hasMessageContaining("404");
+        }
+    }
+
+    @Test
+    void testRemoteInputIsDownloadedOnce() throws IOException {
+        byte[] content = Files.readAllBytes(TestUtils.loadFile("nested.zip"));
+        String url = "/remote/nested.zip";
+        WIRE_MOCK_EXTENSION.stubFor(
+                head(urlEqualTo(url)).willReturn(
+                        aResponse().withHeader("Accept-Ranges", "bytes")
+                                .withHeader("Content-Length", String.valueOf(content.length))));
+        WIRE_MOCK_EXTENSION.stubFor(get(urlEqualTo(url)).willReturn(aResponse().withBody(content)));
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setChecksumTypes(EnumSet.allOf(ChecksumType.class));
+        DistributionAnalyzer remote = new DistributionAnalyzer(
+                List.of(WIRE_MOCK_EXTENSION.baseUrl() + url),
+                config);
+        remote.checksumFiles();
+        DistributionAnalyzer local = new DistributionAnalyzer(
+                List.of(TestUtils.loadFile("nested.zip").toAbsolutePath().toString()),
+                config);
+        local.checksumFiles();
+
+        assertThat(remote.getFiles()).isNotEmpty().isEqualTo(local.getFiles());
+        // The input is smaller than a chunk, so it is downloaded with a single request
+        WIRE_MOCK_EXTENSION.verify(1, getRequestedFor(urlEqualTo(url)));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.VFS;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class FilePrefilterTest {
+    private static FileSystemManager manager;
+
+    @BeforeAll
+    static void setManager() throws FileSystemException {
+        manager = VFS.getManager();
+    }
+
+    private static FileName name(String path) throws FileSystemException {
+        return manager.resolveURI("file:///dist" + path);
+    }
+
+    @Test
+    void testAnyExtension() throws FileSystemException {
+        FilePrefilter prefilter = new FilePrefilter(Collections.emptyList(), Collections.emptyList());
+
+        assertThat(prefilter.includes(name("/a.jar"))).isTrue();
+        assertThat(prefilter.includes(name("/a.txt"))).isTrue();
+        assertThat(prefilter.includes(name("/README"))).isTrue();
+    }
+
+    @Test
+    void testExtensions() throws FileSystemException {
+        FilePrefilter prefilter = new FilePrefilter(List.of("jar", "pom"), Collections.emptyList());
+
+        assertThat(prefilter.includes(name("/a.jar"))).isTrue();
+        assertThat(prefilter.includes(name("/a.pom"))).isTrue();
+        assertThat(prefilter.includes(name("/a.rpm"))).isTrue();
+        assertThat(prefilter.includes(name("/a.txt"))).isFalse();
+        assertThat(prefilter.includes(name("/a.jar.sha1"))).isFalse();
+    }
+
+    @Test
+    void testExcludes() throws FileSystemException {
+        FilePrefilter prefilter = new FilePrefilter(Collections.emptyList(), ConfigDefaults.EXCLUDES);
+
+        assertThat(prefilter.includes(name("/pom.xml"))).isTrue();
+        assertThat(prefilter.includes(name("/a/pom.xml"))).isTrue();
+        assertThat(prefilter.includes(name("/a/b.xml"))).isFalse();
+        assertThat(prefilter.includes(name("/a/b.jar"))).isTrue();
+    }
+
+    @Test
+    void testRestrict() throws FileSystemException {
+        FilePrefilter prefilter = new FilePrefilter(List.of("jar", "txt"), ConfigDefaults.EXCLUDES);
+        FilePrefilter restricted = prefilter.restrict(List.of("jar", "xml"));
+
+        assertThat(restricted.includes(name("/a.jar"))).isTrue();
+        assertThat(restricted.includes(name("/a.rpm"))).isTrue();
+        assertThat(restricted.includes(name("/a.txt"))).isFalse();
+        assertThat(restricted.includes(name("/pom.xml"))).isFalse();
+        assertThat(prefilter.includes(name("/a.txt"))).isTrue();
+        assertThat(new FilePrefilter(Collections.emptyList(), ConfigDefaults.EXCLUDES).restrict(List.of("xml"))
+                .includes(name("/a/b.xml"))).isFalse();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.jboss.pnc.build.finder.koji.KojiBuild;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Maps;
+import com.redhat.red.build.koji.KojiClientException;
+import com.redhat.red.build.koji.model.xmlrpc.KojiBuildInfo;
+
+class KojiBuildMemoTest {
+    private static KojiBuild build(int id) {
+        KojiBuildInfo buildInfo = new KojiBuildInfo();
+        buildInfo.setId(id);
+        return new KojiBuild(buildInfo);
+    }
+
+    @Test
+    void testBuildsAreLoadedOnce() {
+        KojiBuildMemo memo = new KojiBuildMemo();
+        List<List<Integer>> loads = new ArrayList<>();
+        Function<List<Integer>, CompletableFuture<Map<Integer, KojiBuild>>> loader = ids -> {
+            loads.add(ids);
+            Map<Integer, KojiBuild> builds = Maps.newHashMapWithExpectedSize(ids.size());
+            ids.stream().filter(id -> id > 0).forEach(id -> builds.put(id, build(id)));
+            return CompletableFuture.completedFuture(builds);
+        };
+
+        Map<Integer, CompletableFuture<KojiBuild>> first = memo.get(List.of(1, 2, 2, 0), loader);
+        Map<Integer, CompletableFuture<KojiBuild>> second = memo.get(List.of(2, 3), loader);
+
+        assertThat(loads).containsExactly(List.of(1, 2, 0), List.of(3));
+        assertThat(first).containsOnlyKeys(1, 2, 0);
+        assertThat(first.get(1).join().getBuildInfo().getId()).isEqualTo(1);
+        // A build which does not exist is not loaded again either
+        assertThat(first.get(0).join()).isNull();
+        assertThat(second.get(2)).isSameAs(first.get(2));
+        assertThat(memo.getMisses()).isEqualTo(4L);
+        assertThat(memo.getHits()).isEqualTo(1L);
+        assertThat(memo.getCoalesced()).isZero();
+    }
+
+    @Test
+    void testBuildsBeingLoadedAreShared() {
+        KojiBuildMemo memo = new KojiBuildMemo();
+        CompletableFuture<Map<Integer, KojiBuild>> loading = new CompletableFuture<>();
+        List<List<Integer>> loads = new ArrayList<>();
+
+        Map<Integer, CompletableFuture<KojiBuild>> first = memo.get(List.of(1, 2), ids -> {
+            loads.add(ids);
+            return loading;
+        });
+        Map<Integer, CompletableFuture<KojiBuild>> second = memo.get(List.of(2), ids -> {
+            loads.add(ids);
+            return CompletableFuture.completedFuture(Map.of());
+        });
+
+        assertThat(second.get(2)).isSameAs(first.get(2)).isNotDone();
+        assertThat(memo.getCoalesced()).isEqualTo(1L);
+
+        loading.complete(Map.of(1, build(1), 2, build(2)));
+
+        assertThat(loads).containsExactly(List.of(1, 2));
+        assertThat(second.get(2).join().getBuildInfo().getId()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailedBuildsAreLoadedAgain() {
+        KojiBuildMemo memo = new KojiBuildMemo();
+
+        Map<Integer, CompletableFuture<KojiBuild>> failed = memo
+                .get(List.of(1), ids -> CompletableFuture.failedFuture(new KojiClientException("Error")));
+
+        assertThat(failed.get(1)).isCompletedExceptionally();
+
+        Map<Integer, CompletableFuture<KojiBuild>> loaded = memo
+                .get(List.of(1), ids -> CompletableFuture.completedFuture(Map.of(1, build(1))));
+
+        assertThat(loaded.get(1).join().getBuildInfo().getId()).isEqualTo(1);
+        assertThat(memo.getMisses()).isEqualTo(2L);
+        assertThat(memo.getHits()).isZero();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import com.redhat.red.build.koji.KojiClientException;
+
+class KojiCallLimitTest {
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+
+        return null;
+    }
+
+    private static void fail(KojiCallLimit limit) {
+        assertThatThrownBy(() -> limit.call(() -> {
+            throw new KojiClientException("Error");
+        })).isInstanceOf(KojiClientException.class);
+    }
+
+    @Test
+    void testLimitsStartAtMaximums() throws KojiClientException {
+        KojiCallLimit limit = new KojiCallLimit("listArchives", 4, 16);
+
+        assertThat(limit.call(() -> "result")).isEqualTo("result");
+        assertThat(limit.getConcurrency()).isEqualTo(4);
+        assertThat(limit.getChunkSize()).isEqualTo(16);
+        assertThat(limit.getNumCalls()).isEqualTo(1L);
+    }
+
+    @Test
+    void testLimitsAreHalvedOnFailure() {
+        KojiCallLimit limit = new KojiCallLimit("listArchives", 4, 16);
+
+        fail(limit);
+
+        assertThat(limit.getConcurrency()).isEqualTo(2);
+        assertThat(limit.getChunkSize()).isEqualTo(8);
+
+        fail(limit);
+        fail(limit);
+        fail(limit);
+        fail(limit);
+
+        assertThat(limit.getConcurrency()).isEqualTo(1);
+        assertThat(limit.getChunkSize()).isEqualTo(1);
+        assertThat(limit.getNumFailed()).isEqualTo(5L);
+    }
+
+    @Test
+    void testLimitsAreHalvedOnSlowCalls() throws KojiClientException {
+        // Any call is slower than no time at all
+        KojiCallLimit limit = new KojiCallLimit("getBuild", 4, 16, Duration.ZERO);
+
+        limit.call(() -> null);
+
+        assertThat(limit.getConcurrency()).isEqualTo(2);
+        assertThat(limit.getChunkSize()).isEqualTo(8);
+        assertThat(limit.getNumSlow()).isEqualTo(1L);
+        assertThat(limit.getNumFailed()).isZero();
+    }
+
+    @Test
+    void testTargetLatencyIsScaledByNumberOfRequests() throws KojiClientException {
+        KojiCallLimit limit = new KojiCallLimit("listArchives", 4, 16, Duration.ofMillis(800L));
+
+        // A multicall of the maximum size is allowed the whole target latency
+        limit.call(16, () -> sleep(200L));
+
+        assertThat(limit.getNumSlow()).isZero();
+
+        // A multicall of a single request is allowed an eighth of it
+        limit.call(1, () -> sleep(200L));
+
+        assertThat(limit.getNumSlow()).isEqualTo(1L);
+        assertThat(limit.getConcurrency()).isEqualTo(2);
+    }
+
+    @Test
+    void testLimitsGrowBackAfterFastCalls() throws KojiClientException {
+        KojiCallLimit limit = new KojiCallLimit("listTags", 4, 16);
+
+        fail(limit);
+        fail(limit);
+
+        assertThat(limit.getConcurrency()).isEqualTo(1);
+        assertThat(limit.getChunkSize()).isEqualTo(4);
+
+        limit.call(() -> null);
+
+        assertThat(limit.getConcurrency()).isEqualTo(2);
+        assertThat(limit.getChunkSize()).isEqualTo(6);
+
+        // The limits only grow after as many fast calls as are allowed at once
+        limit.call(() -> null);
+
+        assertThat(limit.getConcurrency()).isEqualTo(2);
+
+        for (int i = 0; i < 20; i++) {
+            limit.call(() -> null);
+        }
+
+        assertThat(limit.getConcurrency()).isEqualTo(4);
+        assertThat(limit.getChunkSize()).isEqualTo(16);
+    }
+
+    @Test
+    void testCallsInFlightAreOnlyCountedOnce() throws Exception {
+        KojiCallLimit limit = new KojiCallLimit("getTaskInfo", 4, 16);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch failing = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> first = pool.submit(() -> limit.call(() -> {
+                started.countDown();
+                await(failing);
+                throw new KojiClientException("Error");
+            }));
+            Future<?> second = pool.submit(() -> limit.call(() -> {
+                started.countDown();
+                await(failing);
+                throw new KojiClientException("Error");
+            }));
+
+            started.await();
+            failing.countDown();
+
+            assertThatThrownBy(first::get).hasCauseInstanceOf(KojiClientException.class);
+            assertThatThrownBy(second::get).hasCauseInstanceOf(KojiClientException.class);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(limit.getConcurrency()).isEqualTo(2);
+        assertThat(limit.getNumFailed()).isEqualTo(2L);
+    }
+
+    @Test
+    void testCallsWaitAtConcurrencyLimit() throws Exception {
+        KojiCallLimit limit = new KojiCallLimit("getRPM", 1, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            pool.submit(() -> limit.call(() -> {
+                started.countDown();
+                await(done);
+                return null;
+            }));
+            started.await();
+
+            CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return limit.call(() -> "result");
+                } catch (KojiClientException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, pool);
+
+            assertThatThrownBy(() -> waiting.get(100L, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            done.countDown();
+
+            assertThat(waiting.get(10L, TimeUnit.SECONDS)).isEqualTo("result");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSkippedCallsAreNotCounted() throws KojiClientException {
+        KojiCallLimit limit = new KojiCallLimit("listArchives", 1, 16, Duration.ZERO);
+
+        assertThat(limit.callUnless(() -> true, 1, () -> "result")).isEmpty();
+        assertThat(limit.getNumCalls()).isZero();
+        assertThat(limit.getNumSlow()).isZero();
+        assertThat(limit.getChunkSize()).isEqualTo(16);
+
+        // The skipped call no longer holds the only call allowed at once
+        assertThat(limit.callUnless(() -> false, 1, () -> "result")).contains("result");
+        assertThat(limit.getNumCalls()).isEqualTo(1L);
+        assertThat(limit.getNumSlow()).isEqualTo(1L);
+    }
+}
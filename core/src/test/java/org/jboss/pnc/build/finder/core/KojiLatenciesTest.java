@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class KojiLatenciesTest {
+    @Test
+    void testNoPercentileWithTooFewSamples() {
+        KojiLatencies latencies = new KojiLatencies();
+
+        for (int i = 1; i < KojiLatencies.MIN_SAMPLES; i++) {
+            latencies.record(i);
+        }
+
+        assertThat(latencies.getPercentile(50)).isEmpty();
+
+        latencies.record(KojiLatencies.MIN_SAMPLES);
+
+        assertThat(latencies.getPercentile(50)).isNotEmpty();
+    }
+
+    @Test
+    void testPercentile() {
+        KojiLatencies latencies = new KojiLatencies();
+
+        // Recorded out of order
+        for (int i = 100; i >= 1; i--) {
+            latencies.record(i);
+        }
+
+        assertThat(latencies.getPercentile(50)).hasValue(50L);
+        assertThat(latencies.getPercentile(95)).hasValue(95L);
+        assertThat(latencies.getPercentile(100)).hasValue(100L);
+        assertThat(latencies.getPercentile(1)).hasValue(1L);
+    }
+
+    @Test
+    void testOnlyMostRecentSamplesAreKept() {
+        KojiLatencies latencies = new KojiLatencies();
+
+        for (int i = 0; i < KojiLatencies.MAX_SAMPLES; i++) {
+            latencies.record(1000L);
+        }
+
+        for (int i = 0; i < KojiLatencies.MAX_SAMPLES; i++) {
+            latencies.record(1L);
+        }
+
+        assertThat(latencies.getNumSamples()).isEqualTo(KojiLatencies.MAX_SAMPLES);
+        assertThat(latencies.getPercentile(100)).hasValue(1L);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.pnc.build.finder.koji.KojiLocalArchive;
+import org.junit.jupiter.api.Test;
+
+import com.redhat.red.build.koji.model.xmlrpc.KojiArchiveInfo;
+
+class LocalArchiveIndexTest {
+    private static final String MD5 = "ee5d8b8d0a8b4fb6eb5b4b4b7a1d6ff0";
+
+    private static final String SHA256 = "6b86b273ff34fce19d6b804eff5a3f5747ada4eaa22f1d49c01e52ddb7875b4b";
+
+    private static KojiLocalArchive archive(String filename, Checksum... checksums) {
+        return new KojiLocalArchive(new KojiArchiveInfo(), List.of(filename), Set.of(checksums));
+    }
+
+    @Test
+    void testArchivesByFilename() {
+        LocalArchiveIndex index = new LocalArchiveIndex();
+        KojiLocalArchive first = archive("dist.zip!/a.jar");
+        KojiLocalArchive second = archive("dist.zip!/a.jar");
+
+        index.add(first);
+        index.add(second);
+        first.getFilenames().add("dist.zip!/b.jar");
+        index.add(first);
+
+        assertThat(index.getArchive("dist.zip!/a.jar")).containsSame(first);
+        assertThat(index.getArchive("dist.zip!/b.jar")).containsSame(first);
+        assertThat(index.getArchive("dist.zip!/c.jar")).isEmpty();
+
+        index.removeFilename(first, "dist.zip!/a.jar");
+
+        assertThat(index.getArchive("dist.zip!/a.jar")).containsSame(second);
+
+        index.remove(second);
+
+        assertThat(index.getArchive("dist.zip!/a.jar")).isEmpty();
+        assertThat(index.getArchive("dist.zip!/b.jar")).containsSame(first);
+    }
+
+    @Test
+    void testNotFoundArchivesByChecksum() {
+        LocalArchiveIndex index = new LocalArchiveIndex();
+        KojiLocalArchive archive = archive(
+                "dist.zip!/a.jar",
+                new Checksum(ChecksumType.md5, MD5, "dist.zip!/a.jar", 1L),
+                new Checksum(ChecksumType.sha256, SHA256, "dist.zip!/a.jar", 1L));
+
+        index.addNotFound(archive);
+
+        // Found by any of its checksums, whatever the file the checksum is of
+        assertThat(index.getNotFound(new Checksum(ChecksumType.md5, MD5, "other.jar", 2L))).containsSame(archive);
+        assertThat(index.getNotFound(new Checksum(ChecksumType.sha256, SHA256, "a.jar", 1L))).containsSame(archive);
+        assertThat(index.getNotFound(new Checksum(ChecksumType.sha1, SHA256.substring(0, 40), "a.jar", 1L)))
+                .isEmpty();
+        assertThat(index.getArchive("dist.zip!/a.jar")).containsSame(archive);
+
+        index.remove(archive);
+
+        assertThat(index.getNotFound(new Checksum(ChecksumType.md5, MD5, "a.jar", 1L))).isEmpty();
+        assertThat(index.getArchive("dist.zip!/a.jar")).isEmpty();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class PathDictionaryTest {
+    private static final int NUM_PATHS = 5000;
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = { "dist.zip", "dist.zip!/lib/a.jar!/META-INF/MANIFEST.MF", "/dist.zip", "dist/", "a//b", "",
+                    "x!y 100%.txt" })
+    void testPathIsKept(String path) {
+        PathDictionary paths = new PathDictionary();
+        int id = paths.add(path);
+
+        assertThat(paths.get(id)).isEqualTo(path);
+        assertThat(paths.add(path)).isEqualTo(id);
+        assertThat(paths.find(path)).isEqualTo(id);
+    }
+
+    @Test
+    void testPathsShareParents() {
+        PathDictionary paths = new PathDictionary();
+        Map<String, Integer> ids = new HashMap<>();
+
+        for (int i = 0; i < NUM_PATHS; i++) {
+            String path = "dist.zip!/lib/" + i % 100 + ".jar!/META-INF/maven/g/a" + i + "/pom.xml";
+            ids.put(path, paths.add(path));
+        }
+
+        assertThat(paths.find("dist.zip!/lib/1.jar!/META-INF")).isNotEqualTo(PathDictionary.NONE);
+        assertThat(paths.find("dist.zip!/lib/1.jar!/META-INF/maven/g/a2/pom.xml")).isEqualTo(PathDictionary.NONE);
+        assertThat(paths.find("dist.zip!/lib/1.jar!/META-INF/MANIFEST.MF")).isEqualTo(PathDictionary.NONE);
+        // The root, dist.zip! and lib, then every jar with META-INF, maven and g, then every artifact with its pom.xml
+        assertThat(paths.size()).isEqualTo(3 + 100 * 4 + NUM_PATHS * 2);
+
+        ids.forEach((path, id) -> {
+            assertThat(paths.find(path)).isEqualTo(id);
+            assertThat(paths.get(id)).isEqualTo(path);
+        });
+    }
+}
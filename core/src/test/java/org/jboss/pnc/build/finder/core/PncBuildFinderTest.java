@@ -82,7 +82,7 @@ class PncBuildFinderTest {
     @Test
     void testFindOneBuildInPnc() throws RemoteResourceException {
         // given
-        String md5 = "md5-checksum";
+        String md5 = "5d41402abc4b2a76b9719d911017c592";
         LocalFile filename = new LocalFile("empty.jar", -1L);
         Checksum checksum = new Checksum(ChecksumType.md5, md5, filename);
         PncClient pncClient = Mockito.mock(PncClient.class);
@@ -140,7 +140,7 @@ class PncBuildFinderTest {
     @Test
     void testNotFindABuildInPnc() throws RemoteResourceException {
         // given
-        String givenMd5 = "md5-different";
+        String givenMd5 = "7d793037a0760186574b0282f2f435e7";
         LocalFile filename = new LocalFile("empty.jar", -1L);
         Checksum checksum = new Checksum(ChecksumType.md5, givenMd5, filename);
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.packager.rpm.RpmSignatureTag;
+import org.eclipse.packager.rpm.RpmTag;
+import org.eclipse.packager.rpm.build.BuilderContext;
+import org.eclipse.packager.rpm.build.RpmBuilder;
+import org.eclipse.packager.rpm.parse.RpmInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RpmHeadersTest {
+    private static final int PAYLOAD_SIZE = 262144;
+
+    static Path createRpm(Path folder, String name, int seed) throws IOException {
+        byte[] content = new byte[PAYLOAD_SIZE];
+        new Random(seed).nextBytes(content);
+
+        try (RpmBuilder builder = new RpmBuilder(name, "1.0", "1", "noarch", folder)) {
+            BuilderContext context = builder.newContext();
+            context.addFile("/opt/" + name + "/data.bin", content);
+            builder.build();
+            return builder.getTargetFile();
+        }
+    }
+
+    @Test
+    void testMatchesRpmInputStream(@TempDir Path folder) throws IOException {
+        Path rpm = createRpm(folder, "test", 1);
+        RpmHeaders fromChannel;
+
+        try (FileChannel channel = FileChannel.open(rpm, StandardOpenOption.READ)) {
+            fromChannel = RpmHeaders.read(channel, true);
+        }
+
+        RpmHeaders fromBuffer = RpmHeaders.read(ByteBuffer.wrap(Files.readAllBytes(rpm)), true);
+
+        try (InputStream is = Files.newInputStream(rpm); RpmInputStream in = new RpmInputStream(is)) {
+            for (RpmHeaders headers : List.of(fromChannel, fromBuffer)) {
+                assertThat(headers.getName()).isEqualTo(in.getLead().getName());
+
+                for (RpmSignatureTag tag : List.of(
+                        RpmSignatureTag.MD5,
+                        RpmSignatureTag.SHA1HEADER,
+                        RpmSignatureTag.SHA256HEADER)) {
+                    assertThat(headers.getSignatureTag(tag)).isNotNull()
+                            .isEqualTo(in.getSignatureHeader().getTag(tag));
+                }
+
+                assertThat(headers.getHeaderTag(RpmTag.PAYLOAD_CODING)).isNotNull()
+                        .isEqualTo(in.getPayloadHeader().getTag(RpmTag.PAYLOAD_CODING));
+                assertThat(headers.getHeaderTag(RpmTag.NAME)).isEqualTo("test");
+            }
+        }
+    }
+
+    @Test
+    void testPayloadIsNotRead(@TempDir Path folder) throws IOException {
+        Path rpm = createRpm(folder, "test", 2);
+        byte[] bytes = Files.readAllBytes(rpm);
+        Object md5;
+        long end;
+
+        try (FileChannel channel = FileChannel.open(rpm, StandardOpenOption.READ)) {
+            md5 = RpmHeaders.read(channel, false).getSignatureTag(RpmSignatureTag.MD5);
+            end = channel.position();
+        }
+
+        assertThat(end).isLessThan(bytes.length - PAYLOAD_SIZE / 2);
+
+        // Only the lead and the signature header are needed for the checksums
+        RpmHeaders headers = RpmHeaders.read(ByteBuffer.wrap(Arrays.copyOf(bytes, (int) end)), false);
+        assertThat(headers.getSignatureTag(RpmSignatureTag.MD5)).isEqualTo(md5);
+        assertThat(headers.getHeaderTag(RpmTag.PAYLOAD_CODING)).isNull();
+        assertThatThrownBy(() -> RpmHeaders.read(ByteBuffer.wrap(Arrays.copyOf(bytes, (int) end - 1)), false))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testNotRpm() {
+        byte[] bytes = new byte[PAYLOAD_SIZE];
+        new Random(3).nextBytes(bytes);
+
+        assertThatThrownBy(() -> RpmHeaders.read(ByteBuffer.wrap(bytes), false)).isInstanceOf(IOException.class)
+                .hasMessage("Not an RPM file");
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.pnc.build.finder.core.BuildConfig;
+import org.jboss.pnc.build.finder.core.Checksum;
+import org.jboss.pnc.build.finder.core.ChecksumType;
+import org.jboss.pnc.build.finder.core.DistributionAnalyzer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Profiles the contention between the analyzer threads while recording the checksums of a distribution containing
+ * thousands of small nested jars, while the checksums are received from the channel like the build finder does. The
+ * time that all threads spent blocked on monitors is measured, and the threads are sampled to attribute the time
+ * spent waiting for monitors and locks to the class of the monitor or lock they were waiting for.
+ */
+class AnalyzerContentionIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnalyzerContentionIT.class);
+
+    private static final int NUM_JARS = 2000;
+
+    private static final int NUM_CLASSES = 64;
+
+    private static final int MAX_CLASS_SIZE = 256;
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 1L;
+
+    @TempDir
+    static Path folder;
+
+    @BeforeAll
+    static void createDistribution() throws IOException {
+        Random random = new Random(NUM_JARS);
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(folder.resolve("dist.zip")))) {
+            for (int i = 0; i < NUM_JARS; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+                try (ZipOutputStream jar = new ZipOutputStream(bytes)) {
+                    for (int j = 0; j < NUM_CLASSES; j++) {
+                        byte[] content = new byte[random.nextInt(MAX_CLASS_SIZE)];
+                        random.nextBytes(content);
+                        jar.putNextEntry(new ZipEntry("org/example/a" + i + "/Class" + j + ".class"));
+                        jar.write(content);
+                        jar.closeEntry();
+                    }
+                }
+
+                zip.putNextEntry(new ZipEntry("dist/lib/artifact-" + i + ".jar"));
+                zip.write(bytes.toByteArray());
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 4, 8 })
+    void testContention(int numThreads) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assertThat(threads.isThreadContentionMonitoringSupported()).isTrue();
+        threads.setThreadContentionMonitoringEnabled(true);
+
+        BuildConfig config = new BuildConfig();
+        config.setArchiveExtensions(Collections.emptyList());
+        config.setChecksumTypes(EnumSet.allOf(ChecksumType.class));
+        config.setAnalyzerNumThreads(numThreads);
+        DistributionAnalyzer da = new DistributionAnalyzer(
+                List.of(folder.resolve("dist.zip").toString()),
+                config,
+                null);
+        Map<Long, Long> blockedBefore = new HashMap<>();
+        // The blocked time of the threads is sampled as well, since it is lost once the threads of the pool terminate
+        Map<Long, Long> blockedAfter = new ConcurrentHashMap<>();
+        Map<String, Long> samples = new TreeMap<>();
+
+        for (ThreadInfo info : threads.dumpAllThreads(false, false)) {
+            blockedBefore.put(info.getThreadId(), info.getBlockedTime());
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        Thread sampler = new Thread(() -> {
+            long last = System.nanoTime();
+
+            while (!done.get()) {
+                ThreadInfo[] infos = threads.dumpAllThreads(false, false);
+                long now = System.nanoTime();
+
+                for (ThreadInfo info : infos) {
+                    LockInfo lock = info.getLockInfo();
+                    blockedAfter.put(info.getThreadId(), info.getBlockedTime());
+
+                    // Threads waiting for a condition, such as idle threads of the pool, are not waiting for a lock
+                    if (lock != null && (info.getThreadState() == Thread.State.BLOCKED
+                            || lock.getClassName().startsWith(ReentrantLock.class.getName()))) {
+                        // Attribute the time since the previous sample, since a sample takes longer than the interval
+                        samples.merge(lock.getClassName(), now - last, Long::sum);
+                    }
+                }
+
+                last = now;
+
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        CompletableFuture<Long> receiver = CompletableFuture.supplyAsync(() -> {
+            long received = 0L;
+
+            try {
+                for (List<Checksum> checksums = da.getChannel().receive(); !checksums.isEmpty(); checksums = da
+                        .getChannel()
+                        .receive()) {
+                    received += checksums.size();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            return received;
+        });
+
+        Instant start = Instant.now();
+        da.call();
+        Duration duration = Duration.between(start, Instant.now());
+        long received = receiver.get();
+        done.set(true);
+        sampler.join();
+
+        long blockedMillis = 0L;
+
+        for (Map.Entry<Long, Long> entry : blockedAfter.entrySet()) {
+            blockedMillis += entry.getValue() - blockedBefore.getOrDefault(entry.getKey(), 0L);
+        }
+
+        LOGGER.info(
+                "Threads: {}, files: {}, checksums received: {}, time: {}, blocked on monitors: {} ms, waiting for the"
+                        + " receiver: {} ms",
+                numThreads,
+                da.getFiles().size(),
+                received,
+                duration,
+                blockedMillis,
+                da.getChannel().getSendWait().toMillis());
+        samples.forEach(
+                (className, nanos) -> LOGGER.info(
+                        "Threads: {}, waiting for {}: ~{} ms",
+                        numThreads,
+                        className,
+                        Duration.ofNanos(nanos).toMillis()));
+
+        assertThat(received).isEqualTo(da.getChecksums().get(ChecksumType.md5).size());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.jboss.pnc.build.finder.core.Checksum;
+import org.jboss.pnc.build.finder.core.ChecksumType;
+import org.jboss.pnc.build.finder.core.Digest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the throughput of map operations on checksums, as done by the build finder for the checksums found and not
+ * found, with checksums keyed by their digest and by the hex string of their value, as they were before digests.
+ */
+class ChecksumMapIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumMapIT.class);
+
+    private static final int NUM_CHECKSUMS = 300000;
+
+    private static final int NUM_LOOPS = 5;
+
+    private static List<Checksum> checksums;
+
+    @BeforeAll
+    static void createChecksums() {
+        Random random = new Random(NUM_CHECKSUMS);
+        checksums = new ArrayList<>(NUM_CHECKSUMS);
+
+        for (int i = 0; i < NUM_CHECKSUMS; i++) {
+            byte[] bytes = new byte[ChecksumType.md5.getDigestLength()];
+            random.nextBytes(bytes);
+            checksums.add(new Checksum(ChecksumType.md5, Digest.of(bytes), "dist.zip!/lib/" + i + ".jar", i));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Key.class)
+    void testMapOperations(Key key) {
+        List<Object> keys = checksums.stream().map(key.function).toList();
+        List<Object> lookups = new ArrayList<>(checksums.stream().map(key.function).toList());
+        Collections.shuffle(lookups, new Random(NUM_LOOPS));
+        Duration best = null;
+
+        for (int i = 0; i < NUM_LOOPS; i++) {
+            Instant start = Instant.now();
+            Map<Object, Integer> map = new HashMap<>();
+
+            for (Object k : keys) {
+                map.merge(k, 1, Integer::sum);
+            }
+
+            int found = 0;
+
+            for (Object lookup : lookups) {
+                if (map.containsKey(lookup)) {
+                    found++;
+                }
+            }
+
+            Duration duration = Duration.between(start, Instant.now());
+            assertThat(found).isEqualTo(NUM_CHECKSUMS);
+
+            if (best == null || duration.compareTo(best) < 0) {
+                best = duration;
+            }
+        }
+
+        LOGGER.info(
+                "Key: {}, checksums: {}, time: {}, operations/s: {}",
+                key,
+                NUM_CHECKSUMS,
+                best,
+                String.format("%.0f", 2.0D * NUM_CHECKSUMS * 1000.0D / Math.max(1L, best.toMillis())));
+    }
+
+    enum Key {
+        // The checksum itself, which is hashed and compared by its digest
+        CHECKSUM(checksum -> checksum),
+        // A copy of the checksum fields with the value as a hex string, which is how checksums were hashed before
+        HEX(checksum -> new HexChecksum(checksum)),
+        // Only the digest
+        DIGEST(Checksum::getDigest);
+
+        private final Function<Checksum, Object> function;
+
+        Key(Function<Checksum, Object> function) {
+            this.function = function;
+        }
+    }
+
+    private record HexChecksum(ChecksumType type, String value, String filename, long fileSize) {
+        private HexChecksum(Checksum checksum) {
+            this(checksum.getType(), checksum.getValue(), checksum.getFilename(), checksum.getFileSize());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, value, filename, fileSize);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.jboss.pnc.build.finder.core.Checksum;
+import org.jboss.pnc.build.finder.core.ChecksumType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the throughput of checksumming a large local file through a file channel with reading it through the file
+ * content of its file object, for every checksum type on its own and for all of them at once. With enough processors,
+ * the latter takes about as long as the slowest checksum type on its own, since every digest has its own lane.
+ */
+class ChecksumThroughputIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumThroughputIT.class);
+
+    private static final int FILE_SIZE = 268435456;
+
+    private static final int BUFFER_SIZE = 16777216;
+
+    private static final int NUM_LOOPS = 3;
+
+    @TempDir
+    static Path folder;
+
+    private static Path file;
+
+    @BeforeAll
+    static void createFile() throws IOException {
+        file = folder.resolve("file.bin");
+        Random random = new Random(FILE_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < FILE_SIZE / buffer.length; i++) {
+                random.nextBytes(buffer);
+                out.write(buffer);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "md5", "sha1", "sha256", "" })
+    void testThroughput(String type) throws IOException {
+        Set<ChecksumType> checksumTypes = type.isEmpty()
+                ? EnumSet.allOf(ChecksumType.class)
+                : EnumSet.of(ChecksumType.valueOf(type));
+        String root = folder.toUri().toString();
+
+        try (FileObject fo = VFS.getManager().resolveFile(file.toUri())) {
+            Duration bestStream = null;
+            Duration bestChannel = null;
+            Set<Checksum> streamChecksums = null;
+            Set<Checksum> channelChecksums = null;
+
+            for (int i = 0; i < NUM_LOOPS; i++) {
+                Instant start = Instant.now();
+
+                try (FileContent fc = fo.getContent(); InputStream in = fc.getInputStream()) {
+                    streamChecksums = Checksum.checksum(in, fo.getName(), fc.getSize(), checksumTypes, root);
+                }
+
+                Duration stream = Duration.between(start, Instant.now());
+                start = Instant.now();
+                channelChecksums = Checksum.checksum(fo, checksumTypes, root);
+                Duration channel = Duration.between(start, Instant.now());
+
+                if (bestStream == null || stream.compareTo(bestStream) < 0) {
+                    bestStream = stream;
+                }
+
+                if (bestChannel == null || channel.compareTo(bestChannel) < 0) {
+                    bestChannel = channel;
+                }
+            }
+
+            assertThat(channelChecksums).hasSize(checksumTypes.size()).isEqualTo(streamChecksums);
+
+            LOGGER.info(
+                    "Checksum types: {}, stream: {} ({} MiB/s), channel: {} ({} MiB/s)",
+                    checksumTypes,
+                    bestStream,
+                    String.format("%.0f", FILE_SIZE / 1048576.0D * 1000.0D / Math.max(1L, bestStream.toMillis())),
+                    bestChannel,
+                    String.format("%.0f", FILE_SIZE / 1048576.0D * 1000.0D / Math.max(1L, bestChannel.toMillis())));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.build.finder.core.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.jboss.pnc.build.finder.core.BuildConfig;
+import org.jboss.pnc.build.finder.core.DistributionAnalyzer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput of listing a distribution containing thousands of nested jars with an increasing number of
+ * threads, both with native zip and tar archive reading and with Commons VFS only. The distribution is both a zip
+ * archive and a compressed tar archive.
+ */
+class DistributionAnalyzerScalingIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributionAnalyzerScalingIT.class);
+
+    private static final int NUM_JARS = 2000;
+
+    private static final int NUM_CLASSES = 32;
+
+    private static final int MAX_CLASS_SIZE = 8192;
+
+    private static final int NUM_LOOPS = 3;
+
+    @TempDir
+    static Path folder;
+
+    @BeforeAll
+    static void createDistributions() throws IOException {
+        Random random = new Random(NUM_JARS);
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(folder.resolve("dist.zip")));
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                        new GZIPOutputStream(Files.newOutputStream(folder.resolve("dist.tar.gz"))))) {
+            for (int i = 0; i < NUM_JARS; i++) {
+                String name = "dist/lib/artifact-" + i + ".jar";
+                byte[] jar = createJar(random, i);
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(jar);
+                zip.closeEntry();
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(jar.length);
+                tar.putArchiveEntry(entry);
+                tar.write(jar);
+                tar.closeArchiveEntry();
+            }
+        }
+    }
+
+    private static byte[] createJar(Random random, int index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < NUM_CLASSES; i++) {
+                byte[] content = new byte[random.nextInt(MAX_CLASS_SIZE)];
+                random.nextBytes(content);
+                out.putNextEntry(new ZipEntry("org/example/a" + index + "/Class" + i + ".class"));
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "dist.zip, false", "dist.zip, true", "dist.tar.gz, false", "dist.tar.gz, true" })
+    void testScaling(String filename, boolean disableNativeZip) throws IOException {
+        Path distribution = folder.resolve(filename);
+        int numProcessors = Runtime.getRuntime().availableProcessors();
+        List<Integer> parallelisms = Stream
+                .concat(IntStream.iterate(1, i -> i < numProcessors, i -> i * 2).boxed(), Stream.of(numProcessors))
+                .toList();
+        Duration baseline = null;
+        int numFiles = -1;
+
+        for (int parallelism : parallelisms) {
+            Duration best = null;
+
+            for (int i = 0; i < NUM_LOOPS; i++) {
+                BuildConfig config = new BuildConfig();
+                config.setArchiveExtensions(Collections.emptyList());
+                config.setDisableNativeZip(disableNativeZip);
+                config.setAnalyzerNumThreads(parallelism);
+                DistributionAnalyzer da = new DistributionAnalyzer(List.of(distribution.toString()), config, null);
+                Instant start = Instant.now();
+                da.checksumFiles();
+                Duration duration = Duration.between(start, Instant.now());
+
+                if (numFiles == -1) {
+                    numFiles = da.getFiles().size();
+                }
+
+                assertThat(da.getFiles()).hasSize(numFiles);
+                assertThat(da.getFileErrors()).isEmpty();
+
+                if (best == null || duration.compareTo(best) < 0) {
+                    best = duration;
+                }
+            }
+
+            if (baseline == null) {
+                baseline = best;
+            }
+
+            LOGGER.info(
+                    "Distribution: {}, native: {}, threads: {}, files: {}, time: {}, files/s: {}, speedup: {}",
+                    filename,
+                    !disableNativeZip,
+                    parallelism,
+                    numFiles,
+                    best,
+                    String.format("%.0f", numFiles * 1000.0D / Math.max(1L, best.toMillis())),
+                    String.format("%.2f", (double) baseline.toMillis() / Math.max(1L, best.toMillis())));
+        }
+
+        // Every jar and its classes, as well as the distribution itself and the tar archive in it if it is compressed
+        assertThat(numFiles).isEqualTo(NUM_JARS * (NUM_CLASSES + 1) + (filename.endsWith(".gz") ? 2 : 1));
+    }
+}